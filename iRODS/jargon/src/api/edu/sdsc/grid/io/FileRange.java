@@ -0,0 +1,55 @@
+package edu.sdsc.grid.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A range of a file to be read by
+ * {@link GeneralRandomAccessFile#readRanges(java.util.List) readRanges}, and
+ * the buffer it is read into. The range starts at <code>offset</code> and is
+ * as long as the buffer has bytes remaining when the range is created. The
+ * bytes are put at the buffer's position, which is advanced past them.
+ */
+public final class FileRange {
+
+	private final long offset;
+	private final int length;
+	private final ByteBuffer buffer;
+
+	/**
+	 * @param offset
+	 *            <code>long</code> with the offset in the file of the first
+	 *            byte to read
+	 * @param buffer
+	 *            <code>ByteBuffer</code> to read into, from its position to its
+	 *            limit
+	 */
+	public FileRange(final long offset, final ByteBuffer buffer) {
+		if (offset < 0) {
+			throw new IllegalArgumentException("negative offset");
+		}
+		if (buffer == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+		this.offset = offset;
+		this.buffer = buffer;
+		this.length = buffer.remaining();
+	}
+
+	public long getOffset() {
+		return offset;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	public ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	@Override
+	public String toString() {
+		return "FileRange offset:" + offset + " length:" + length;
+	}
+
+}
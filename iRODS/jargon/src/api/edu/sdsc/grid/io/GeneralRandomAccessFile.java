@@ -46,6 +46,7 @@ import java.io.DataOutput;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.UTFDataFormatException;
+import java.util.List;
 
 /**
  * <DIV ALIGN=JUSTIFY> Instances of this class support I/O on random-access
@@ -78,6 +79,15 @@ import java.io.UTFDataFormatException;
  * Multi-value write methods write multiple shorts, ints, longs, etc., from an
  * array of values.
  * <P>
+ * The read methods, and <code>readLine()</code>, read the file a window of
+ * bytes at a time rather than a value or character at a time, so that each
+ * value does not cost a call to the file system. The file pointer is left just
+ * past the bytes returned, and the window is used again by the next such read
+ * if the pointer has not been moved outside it. Setting the pointer back after
+ * each value is a call to <code>seek()</code>, so subclasses whose file
+ * system does seeks remotely keep the pointer themselves and send the seek
+ * with the next read or write, as the iRODS, SRB and HTTP files do.
+ * <P>
  * <B>Note:</B> This class offers features that extend those found in
  * java.io.RandomAccessFile. However, it <I>is not</I> a subclass, due to the
  * unfortunate use of final methods in java.io.RandomAccessFile. </DIV>
@@ -144,6 +154,35 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 
 	protected String mode;
 
+	/**
+	 * Number of bytes the line and primitive readers read from the file at a
+	 * time.
+	 */
+	protected static final int READ_WINDOW_SIZE = 8192;
+
+	/**
+	 * Bytes of the file starting at <code>windowStart</code>, read by the line
+	 * and primitive readers. The next such read uses the window again if the
+	 * file pointer is still inside it, which is the case unless the file has
+	 * been seeked elsewhere or read or written through other methods since.
+	 * Writes through this class drop the window.
+	 */
+	private byte[] readWindow = null;
+	private long windowStart = 0;
+	private int windowLength = 0;
+
+	/**
+	 * While a line or primitive reader runs, the index in the window of the
+	 * next byte to return.
+	 */
+	private int windowPosition = 0;
+
+	/**
+	 * While a line or primitive reader runs, the file pointer of the
+	 * subclass, which is past the window once the window has been filled.
+	 */
+	private long windowFilePointer = 0;
+
 	/**
 	 * Creates a random access file stream to read from, and optionally to write
 	 * to, the file specified by the {@link GeneralFile} argument. A new file
@@ -467,6 +506,157 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 		} while (inc < len);
 	}
 
+	/**
+	 * Reads each of the given ranges of this file into its buffer. The file
+	 * pointer is where it was before the call. Subclasses may read the ranges
+	 * in any order, and may read the bytes between ranges that are close
+	 * together.
+	 * 
+	 * @param ranges
+	 *            <code>List</code> of {@link FileRange FileRange} with the
+	 *            offsets to read and the buffers to read them into
+	 * @throws EOFException
+	 *             if a range goes past the end of the file, in which case
+	 *             some buffers may have been filled.
+	 * @throws IOException
+	 *             if an I/O error occurs.
+	 */
+	public void readRanges(final List<FileRange> ranges) throws IOException {
+		long position = getFilePointer();
+		try {
+			for (FileRange range : ranges) {
+				byte[] bytes = new byte[range.getLength()];
+				seek(range.getOffset());
+				readFully(bytes, 0, bytes.length);
+				range.getBuffer().put(bytes);
+			}
+		} finally {
+			seek(position);
+		}
+	}
+
+	/**
+	 * Drops the bytes read ahead by the line and primitive readers, so that
+	 * the next such read goes to the file. Subclasses that change the file
+	 * other than through the write methods of this class should call this.
+	 */
+	protected void invalidateReadWindow() {
+		windowLength = 0;
+		windowPosition = 0;
+	}
+
+	/**
+	 * Starts a read from the window, using the bytes already in it if the file
+	 * pointer is inside it. Must be followed by {@link #endWindowRead()}.
+	 */
+	private void startWindowRead() throws IOException {
+		long pointer = getFilePointer();
+		windowFilePointer = pointer;
+		if (windowLength > 0 && pointer >= windowStart
+				&& pointer <= windowStart + windowLength) {
+			windowPosition = (int) (pointer - windowStart);
+		} else {
+			windowStart = pointer;
+			windowLength = 0;
+			windowPosition = 0;
+		}
+	}
+
+	/**
+	 * Moves the file pointer to just past the bytes returned from the window,
+	 * if reading ahead left it elsewhere.
+	 */
+	private void endWindowRead() throws IOException {
+		long pointer = windowStart + windowPosition;
+		if (windowFilePointer != pointer) {
+			seek(pointer);
+			windowFilePointer = pointer;
+		}
+	}
+
+	/**
+	 * Reads the bytes of the file that follow the window into it.
+	 * 
+	 * @return <code>false</code> if the end of the file has been reached.
+	 */
+	private boolean fillWindow() throws IOException {
+		long pointer = windowStart + windowLength;
+		windowStart = pointer;
+		windowLength = 0;
+		windowPosition = 0;
+		if (windowFilePointer != pointer) {
+			seek(pointer);
+			windowFilePointer = pointer;
+		}
+		if (readWindow == null) {
+			readWindow = new byte[READ_WINDOW_SIZE];
+		}
+
+		int read = readBytes(readWindow, 0, readWindow.length);
+		if (read <= 0) {
+			return false;
+		}
+		windowLength = read;
+		windowFilePointer = pointer + read;
+		return true;
+	}
+
+	/**
+	 * @return the next byte of the window, as for <code>read()</code>, or
+	 *         <code>-1</code> at the end of the file.
+	 */
+	private int windowRead() throws IOException {
+		if (windowPosition >= windowLength && !fillWindow()) {
+			return -1;
+		}
+		return readWindow[windowPosition++] & 0xFF;
+	}
+
+	/**
+	 * Copies bytes from the window, as for <code>readFully</code>. Reads too
+	 * large for the window go to the file directly once the window is used
+	 * up.
+	 */
+	private void windowReadFully(final byte b[], final int offset,
+			final int len) throws IOException {
+		int done = 0;
+		while (done < len) {
+			int available = windowLength - windowPosition;
+			if (available > 0) {
+				int count = Math.min(available, len - done);
+				System.arraycopy(readWindow, windowPosition, b, offset + done,
+						count);
+				windowPosition += count;
+				done += count;
+			} else if (len - done >= READ_WINDOW_SIZE) {
+				long pointer = windowStart + windowPosition;
+				invalidateReadWindow();
+				windowStart = pointer;
+				if (windowFilePointer != pointer) {
+					seek(pointer);
+				}
+				readFully(b, offset + done, len - done);
+				windowStart = pointer + len - done;
+				windowFilePointer = windowStart;
+				done = len;
+			} else if (!fillWindow()) {
+				endWindowRead();
+				throw new EOFException();
+			}
+		}
+	}
+
+	/**
+	 * Reads exactly <code>len</code> bytes, as for <code>readFully</code>,
+	 * through the window.
+	 */
+	private void readWindowFully(final byte b[], final int offset,
+			final int len) throws IOException {
+		startWindowRead();
+		windowReadFully(b, offset, len);
+		endWindowRead();
+	}
+
 	/**
 	 * Attempts to skip over <code>n</code> bytes of input discarding the
 	 * skipped bytes.
@@ -513,6 +703,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 	public void write(final int b) throws IOException {
 		byte buffer[] = { (byte) b };
 
+		invalidateReadWindow();
 		writeBytes(buffer, 0, buffer.length);
 	}
 
@@ -542,6 +733,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 	 *             if an I/O error occurs.
 	 */
 	public void write(final byte b[]) throws IOException {
+		invalidateReadWindow();
 		writeBytes(b, 0, b.length);
 	}
 
@@ -560,6 +752,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 	 */
 	public void write(final byte b[], final int offset, final int len)
 			throws IOException {
+		invalidateReadWindow();
 		writeBytes(b, offset, len);
 	}
 
@@ -573,6 +766,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 	 *             if an I/O error occurs.
 	 */
 	public void write(final String text) throws IOException {
+		invalidateReadWindow();
 		writeBytes(text.getBytes(), 0, text.length());
 	}
 
@@ -693,7 +887,9 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 	 *             if an I/O error occurs.
 	 */
 	public boolean readBoolean() throws IOException {
-		int value = this.read();
+		startWindowRead();
+		int value = windowRead();
+		endWindowRead();
 		if (value < 0) {
 			throw new EOFException();
 		}
@@ -725,7 +921,9 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 	 *             if an I/O error occurs.
 	 */
 	public byte readByte() throws IOException {
-		int value = this.read();
+		startWindowRead();
+		int value = windowRead();
+		endWindowRead();
 		if (value < 0) {
 			throw new EOFException();
 		}
@@ -749,7 +947,9 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 	 *             if an I/O error occurs.
 	 */
 	public int readUnsignedByte() throws IOException {
-		int value = this.read();
+		startWindowRead();
+		int value = windowRead();
+		endWindowRead();
 		if (value < 0) {
 			throw new EOFException();
 		}
@@ -777,7 +977,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 	 */
 	public short readShort() throws EOFException, IOException {
 		byte bytes[] = new byte[Host.MAX_TYPE_SIZE];
-		readFully(bytes, 0, fileFormat.getShortSize());
+		readWindowFully(bytes, 0, fileFormat.getShortSize());
 		return fileFormat.shortValue(bytes);
 	}
 
@@ -802,7 +1002,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 	 */
 	public int readUnsignedShort() throws IOException, EOFException {
 		byte bytes[] = new byte[Host.MAX_TYPE_SIZE];
-		readFully(bytes, 0, fileFormat.getShortSize());
+		readWindowFully(bytes, 0, fileFormat.getShortSize());
 		return fileFormat.unsignedShortValue(bytes);
 	}
 
@@ -829,8 +1029,10 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 	 *             if an I/O error occurs.
 	 */
 	public char readChar() throws IOException {
-		int s = this.read();
-		int t = this.read();
+		startWindowRead();
+		int s = windowRead();
+		int t = windowRead();
+		endWindowRead();
 		if ((s | t) < 0) {
 			throw new EOFException();
 		}
@@ -858,7 +1060,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 	 */
 	public int readInt() throws EOFException, IOException {
 		byte bytes[] = new byte[Host.MAX_TYPE_SIZE];
-		readFully(bytes, 0, fileFormat.getIntSize());
+		readWindowFully(bytes, 0, fileFormat.getIntSize());
 		return fileFormat.intValue(bytes);
 	}
 
@@ -883,7 +1085,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 	 */
 	public long readUnsignedInt() throws IOException, EOFException {
 		byte bytes[] = new byte[Host.MAX_TYPE_SIZE];
-		readFully(bytes, 0, fileFormat.getIntSize());
+		readWindowFully(bytes, 0, fileFormat.getIntSize());
 		return fileFormat.unsignedIntValue(bytes);
 	}
 
@@ -907,7 +1109,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 	 */
 	public long readLong() throws EOFException, IOException {
 		byte bytes[] = new byte[Host.MAX_TYPE_SIZE];
-		readFully(bytes, 0, fileFormat.getLongSize());
+		readWindowFully(bytes, 0, fileFormat.getLongSize());
 		return fileFormat.longValue(bytes);
 	}
 
@@ -932,7 +1134,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 	 */
 	public long readUnsignedLong() throws IOException, EOFException {
 		byte bytes[] = new byte[Host.MAX_TYPE_SIZE];
-		readFully(bytes, 0, fileFormat.getLongSize());
+		readWindowFully(bytes, 0, fileFormat.getLongSize());
 		return fileFormat.unsignedLongValue(bytes);
 	}
 
@@ -957,7 +1159,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 	 */
 	public long readUnsignedLongLong() throws IOException, EOFException {
 		byte bytes[] = new byte[Host.MAX_TYPE_SIZE];
-		readFully(bytes, 0, fileFormat.getLongLongSize());
+		readWindowFully(bytes, 0, fileFormat.getLongLongSize());
 		return fileFormat.unsignedLongLongValue(bytes);
 	}
 
@@ -981,7 +1183,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 	 */
 	public long readLongLong() throws IOException, EOFException {
 		byte bytes[] = new byte[Host.MAX_TYPE_SIZE];
-		readFully(bytes, 0, fileFormat.getLongLongSize());
+		readWindowFully(bytes, 0, fileFormat.getLongLongSize());
 		return fileFormat.longLongValue(bytes);
 	}
 
@@ -1005,7 +1207,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 	 */
 	public double readLongDouble() throws IOException, EOFException {
 		byte bytes[] = new byte[Host.MAX_TYPE_SIZE];
-		readFully(bytes, 0, fileFormat.getLongDoubleSize());
+		readWindowFully(bytes, 0, fileFormat.getLongDoubleSize());
 		return fileFormat.longDoubleValue(bytes);
 	}
 
@@ -1029,7 +1231,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 	 */
 	public float readFloat() throws EOFException, IOException {
 		byte bytes[] = new byte[Host.MAX_TYPE_SIZE];
-		readFully(bytes, 0, fileFormat.getFloatSize());
+		readWindowFully(bytes, 0, fileFormat.getFloatSize());
 		return fileFormat.floatValue(bytes);
 	}
 
@@ -1053,7 +1255,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 	 */
 	public double readDouble() throws EOFException, IOException {
 		byte bytes[] = new byte[Host.MAX_TYPE_SIZE];
-		readFully(bytes, 0, fileFormat.getDoubleSize());
+		readWindowFully(bytes, 0, fileFormat.getDoubleSize());
 		return fileFormat.doubleValue(bytes);
 	}
 
@@ -1083,19 +1285,26 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 	 *             if an I/O error occurs.
 	 */
 	public String readLine() throws IOException {
-		char ch = (char) read();
-		StringBuffer line = new StringBuffer();
+		startWindowRead();
+		int ch = windowRead();
+		if (ch < 0) {
+			endWindowRead();
+			return null;
+		}
 
-		while ((ch != '\n') && (ch != '\r') && (ch != (char) -1)) {
-			line.append(ch);
-			ch = (char) read();
+		StringBuffer line = new StringBuffer();
+		while ((ch >= 0) && (ch != '\n') && (ch != '\r')) {
+			line.append((char) ch);
+			ch = windowRead();
 		}
 
-		if ((ch == '\r') && ((read()) != '\n')) {
-			seek(getFilePointer());
-		} else if ((ch == -1) && (line.length() == 0)) {
-			return null;
+		// a '\r' may be followed by a '\n', which is part of the terminator
+		if ((ch == '\r')
+				&& (windowPosition < windowLength || fillWindow())
+				&& (readWindow[windowPosition] == '\n')) {
+			windowPosition++;
 		}
+		endWindowRead();
 
 		return line.toString();
 	}
@@ -1368,6 +1577,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 	 *             if an I/O error occurs.
 	 */
 	public void writeBytes(final String s) throws IOException {
+		invalidateReadWindow();
 		writeBytes(s.getBytes(), 0, s.length());
 	}
 
@@ -1507,7 +1717,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 	public void readBooleans(final boolean[] values, final int nValues)
 			throws EOFException, IOException {
 		byte bytes[] = new byte[nValues];
-		readFully(bytes, 0, nValues);
+		readWindowFully(bytes, 0, nValues);
 		for (int i = 0; i < nValues; i++) {
 			values[i] = (bytes[i] != 0);
 		}
@@ -1543,7 +1753,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 			throws EOFException, IOException {
 		int nBytes = nValues * fileFormat.getDoubleSize();
 		byte bytes[] = new byte[nBytes];
-		readFully(bytes, 0, nBytes);
+		readWindowFully(bytes, 0, nBytes);
 		fileFormat.doubleValues(bytes, values, nValues);
 	}
 
@@ -1577,7 +1787,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 			throws EOFException, IOException {
 		int nBytes = nValues * fileFormat.getFloatSize();
 		byte bytes[] = new byte[nBytes];
-		readFully(bytes, 0, nBytes);
+		readWindowFully(bytes, 0, nBytes);
 		fileFormat.floatValues(bytes, values, nValues);
 	}
 
@@ -1610,7 +1820,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 			throws EOFException, IOException {
 		int nBytes = nValues * fileFormat.getIntSize();
 		byte bytes[] = new byte[nBytes];
-		readFully(bytes, 0, nBytes);
+		readWindowFully(bytes, 0, nBytes);
 		fileFormat.intValues(bytes, values, nValues);
 	}
 
@@ -1643,7 +1853,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 			throws EOFException, IOException {
 		int nBytes = nValues * fileFormat.getLongSize();
 		byte bytes[] = new byte[nBytes];
-		readFully(bytes, 0, nBytes);
+		readWindowFully(bytes, 0, nBytes);
 		fileFormat.longValues(bytes, values, nValues);
 	}
 
@@ -1677,7 +1887,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 			throws EOFException, IOException {
 		int nBytes = nValues * fileFormat.getLongDoubleSize();
 		byte bytes[] = new byte[nBytes];
-		readFully(bytes, 0, nBytes);
+		readWindowFully(bytes, 0, nBytes);
 		fileFormat.longDoubleValues(bytes, values, nValues);
 	}
 
@@ -1710,7 +1920,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 			throws EOFException, IOException {
 		int nBytes = nValues * fileFormat.getLongLongSize();
 		byte bytes[] = new byte[nBytes];
-		readFully(bytes, 0, nBytes);
+		readWindowFully(bytes, 0, nBytes);
 		fileFormat.longLongValues(bytes, values, nValues);
 	}
 
@@ -1743,7 +1953,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 			throws EOFException, IOException {
 		int nBytes = nValues * fileFormat.getShortSize();
 		byte bytes[] = new byte[nBytes];
-		readFully(bytes, 0, nBytes);
+		readWindowFully(bytes, 0, nBytes);
 		fileFormat.shortValues(bytes, values, nValues);
 	}
 
@@ -1777,7 +1987,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 			throws EOFException, IOException {
 		int nBytes = nValues * fileFormat.getShortSize();
 		byte bytes[] = new byte[nBytes];
-		readFully(bytes, 0, nBytes);
+		readWindowFully(bytes, 0, nBytes);
 		fileFormat.unsignedShortValues(bytes, values, nValues);
 	}
 
@@ -1811,7 +2021,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 			throws EOFException, IOException {
 		int nBytes = nValues * fileFormat.getIntSize();
 		byte bytes[] = new byte[nBytes];
-		readFully(bytes, 0, nBytes);
+		readWindowFully(bytes, 0, nBytes);
 		fileFormat.unsignedIntValues(bytes, values, nValues);
 	}
 
@@ -1845,7 +2055,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 			throws EOFException, IOException {
 		int nBytes = nValues * fileFormat.getLongSize();
 		byte bytes[] = new byte[nBytes];
-		readFully(bytes, 0, nBytes);
+		readWindowFully(bytes, 0, nBytes);
 		fileFormat.unsignedLongValues(bytes, values, nValues);
 	}
 
@@ -1879,7 +2089,7 @@ public abstract class GeneralRandomAccessFile implements DataOutput, DataInput//
 			throws EOFException, IOException {
 		int nBytes = nValues * fileFormat.getLongLongSize();
 		byte bytes[] = new byte[nBytes];
-		readFully(bytes, 0, nBytes);
+		readWindowFully(bytes, 0, nBytes);
 		fileFormat.unsignedLongLongValues(bytes, values, nValues);
 	}
 
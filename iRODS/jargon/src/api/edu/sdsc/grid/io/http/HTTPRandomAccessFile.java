@@ -68,6 +68,12 @@ public class HTTPRandomAccessFile extends RemoteRandomAccessFile {
 	 * Position of read/write pointer in file.
 	 */
 	private long filePointer = 0;
+
+	/**
+	 * Position of <code>in</code>, which lags behind <code>filePointer</code>
+	 * after a seek.
+	 */
+	private long streamPointer = 0;
 	private long length;
 	private HTTPFile httpFile;
 
@@ -194,6 +200,7 @@ public class HTTPRandomAccessFile extends RemoteRandomAccessFile {
 			out = conn.getOutputStream();
 		}
 		in = conn.getInputStream();
+		streamPointer = 0;
 		// cache it for the URLConnection reasons
 		length = file.length();
 	}
@@ -201,13 +208,35 @@ public class HTTPRandomAccessFile extends RemoteRandomAccessFile {
 	@Override
 	protected int readBytes(final byte b[], final int offset, final int len)
 			throws IOException {
+		seekStream();
 		int read = in.read(b, offset, len);
 		if (read > 0) {
 			filePointer += read;
+			streamPointer = filePointer;
 		}
 		return read;
 	}
 
+	/**
+	 * Move <code>in</code> to <code>filePointer</code>, opening the file again
+	 * if it has to go back.
+	 */
+	private void seekStream() throws IOException {
+		if (filePointer < streamPointer) {
+			open(httpFile);
+		}
+		while (streamPointer < filePointer) {
+			long skipped = in.skip(filePointer - streamPointer);
+			if (skipped <= 0) {
+				if (in.read() < 0) {
+					break;
+				}
+				skipped = 1;
+			}
+			streamPointer += skipped;
+		}
+	}
+
 	// Private method in wrapper, so call public.
 	@Override
 	protected void writeBytes(final byte b[], final int offset, final int len)
@@ -246,7 +275,7 @@ public class HTTPRandomAccessFile extends RemoteRandomAccessFile {
 	 */
 	@Override
 	public void seek(final long position) throws IOException {
-		seek(position, SEEK_CURRENT);
+		seek(position, SEEK_START);
 	}
 
 	/**
@@ -256,6 +285,8 @@ public class HTTPRandomAccessFile extends RemoteRandomAccessFile {
 	 * The file length will change only by writing after the offset has been set
 	 * beyond the end of the file. However, as of this release, all http files
 	 * are read-only.
+	 * <p>
+	 * The stream is moved to the new offset by the next read.
 	 * 
 	 * @param pos
 	 *            the offset position, measured in bytes from the at which to
@@ -278,20 +309,15 @@ public class HTTPRandomAccessFile extends RemoteRandomAccessFile {
 		}
 		switch (origin) {
 		case 1:
-			filePointer += in.skip(position + getFilePointer());
+			filePointer += position;
 			break;
 		case 2:
 			// kind of pointless, always read only.
-			filePointer += in.skip(position + length - getFilePointer());
+			filePointer = position + length;
 			break;
 		case 0:
 		default:
-			if (position < filePointer) {
-				open(httpFile);
-				in.skip(position);
-			} else {
-				in.skip(position - getFilePointer());
-			}
+			filePointer = position;
 			break;
 		}
 	}
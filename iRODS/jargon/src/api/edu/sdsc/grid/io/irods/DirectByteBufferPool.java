@@ -0,0 +1,71 @@
+package edu.sdsc.grid.io.irods;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared free lists of direct buffers for the
+ * {@link NioSocketChannelTransport NioSocketChannelTransport}. Direct buffers
+ * are slow to allocate and are only freed by the garbage collector, so
+ * connections that are opened and closed often take theirs from here rather
+ * than allocating new ones.
+ */
+final class DirectByteBufferPool {
+
+	private static final Map<Integer, List<ByteBuffer>> freeBuffers = new HashMap<Integer, List<ByteBuffer>>();
+
+	private DirectByteBufferPool() {
+	}
+
+	/**
+	 * Take a cleared direct buffer of the given capacity from the pool, or
+	 * allocate one if none is free.
+	 */
+	static ByteBuffer borrow(final int capacity) {
+		synchronized (freeBuffers) {
+			List<ByteBuffer> free = freeBuffers.get(capacity);
+			if (free != null && !free.isEmpty()) {
+				ByteBuffer buffer = free.remove(free.size() - 1);
+				buffer.clear();
+				return buffer;
+			}
+		}
+		return ByteBuffer.allocateDirect(capacity);
+	}
+
+	/**
+	 * Give a buffer back. At most <code>maxPooled</code> buffers of each
+	 * capacity are kept, others are left to the garbage collector.
+	 */
+	static void release(final ByteBuffer buffer, final int maxPooled) {
+		if (buffer == null || !buffer.isDirect()) {
+			return;
+		}
+
+		synchronized (freeBuffers) {
+			List<ByteBuffer> free = freeBuffers.get(buffer.capacity());
+			if (free == null) {
+				free = new ArrayList<ByteBuffer>();
+				freeBuffers.put(buffer.capacity(), free);
+			}
+			if (free.size() < maxPooled) {
+				free.add(buffer);
+			}
+		}
+	}
+
+	/**
+	 * @return <code>int</code> with the number of free buffers of the given
+	 *         capacity
+	 */
+	static int getFreeCount(final int capacity) {
+		synchronized (freeBuffers) {
+			List<ByteBuffer> free = freeBuffers.get(capacity);
+			return free == null ? 0 : free.size();
+		}
+	}
+
+}
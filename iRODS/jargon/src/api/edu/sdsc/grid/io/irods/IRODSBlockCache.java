@@ -0,0 +1,189 @@
+package edu.sdsc.grid.io.irods;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of fixed-size blocks of data objects, read through an
+ * <code>IRODSRandomAccessFile</code>, so that reads near offsets already read
+ * do not go back to the server.
+ * <p/>
+ * Blocks are keyed by the data path, the replica, and the block number, and
+ * are evicted least recently used first once the bytes held pass the memory
+ * budget. A block shorter than the block size is the last one in the data
+ * object. Writes through a handle invalidate the blocks they touch in every
+ * replica, along with any last block, as the object may have grown.
+ * <p/>
+ * A cache may belong to a single handle, or be the shared instance used by
+ * every handle opened with a shared cache.
+ */
+final class IRODSBlockCache {
+
+	private static Logger log = LoggerFactory.getLogger(IRODSBlockCache.class);
+
+	private static IRODSBlockCache sharedInstance = null;
+
+	private final LinkedHashMap<BlockKey, byte[]> blocks = new LinkedHashMap<BlockKey, byte[]>(
+			16, 0.75f, true);
+	private long memoryBudget;
+	private long bytesHeld = 0;
+
+	/**
+	 * @param memoryBudget
+	 *            <code>long</code> with the most bytes to hold for the shared
+	 *            cache, replacing the budget it had
+	 * @return <code>IRODSBlockCache</code> shared by all handles, created on
+	 *         first use
+	 */
+	static synchronized IRODSBlockCache getSharedInstance(
+			final long memoryBudget) {
+		if (sharedInstance == null) {
+			sharedInstance = new IRODSBlockCache(memoryBudget);
+		} else {
+			sharedInstance.setMemoryBudget(memoryBudget);
+		}
+		return sharedInstance;
+	}
+
+	/**
+	 * Create a cache of its own for a handle.
+	 *
+	 * @param memoryBudget
+	 *            <code>long</code> with the most bytes to hold
+	 */
+	static IRODSBlockCache instance(final long memoryBudget) {
+		return new IRODSBlockCache(memoryBudget);
+	}
+
+	private IRODSBlockCache(final long memoryBudget) {
+		if (memoryBudget < 0) {
+			throw new IllegalArgumentException("negative memory budget");
+		}
+		this.memoryBudget = memoryBudget;
+	}
+
+	synchronized void setMemoryBudget(final long memoryBudget) {
+		if (memoryBudget < 0) {
+			throw new IllegalArgumentException("negative memory budget");
+		}
+		this.memoryBudget = memoryBudget;
+		evict();
+	}
+
+	synchronized long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * @return <code>byte[]</code> with the block, which must not be changed, or
+	 *         <code>null</code> if it is not cached
+	 */
+	synchronized byte[] get(final String dataPath, final String replica,
+			final long block) {
+		return blocks.get(new BlockKey(dataPath, replica, block));
+	}
+
+	/**
+	 * Add a block, which the cache keeps and must not be changed afterwards.
+	 */
+	synchronized void put(final String dataPath, final String replica,
+			final long block, final byte[] data) {
+		if (data.length > memoryBudget) {
+			return;
+		}
+		byte[] replaced = blocks.put(new BlockKey(dataPath, replica, block),
+				data);
+		if (replaced != null) {
+			bytesHeld -= replaced.length;
+		}
+		bytesHeld += data.length;
+		evict();
+	}
+
+	/**
+	 * Drop the blocks from <code>firstBlock</code> to <code>lastBlock</code>
+	 * of every replica of a data object, and any block that ends the object.
+	 *
+	 * @param blockSize
+	 *            <code>int</code> with the size of a full block, so that the
+	 *            last block of the object can be found
+	 */
+	synchronized void invalidate(final String dataPath, final long firstBlock,
+			final long lastBlock, final int blockSize) {
+		Iterator<Map.Entry<BlockKey, byte[]>> entries = blocks.entrySet()
+				.iterator();
+		while (entries.hasNext()) {
+			Map.Entry<BlockKey, byte[]> entry = entries.next();
+			BlockKey key = entry.getKey();
+			if (!key.dataPath.equals(dataPath)) {
+				continue;
+			}
+			if ((key.block >= firstBlock && key.block <= lastBlock)
+					|| entry.getValue().length < blockSize) {
+				bytesHeld -= entry.getValue().length;
+				entries.remove();
+			}
+		}
+	}
+
+	/**
+	 * Drop every block of every replica of a data object.
+	 */
+	synchronized void invalidate(final String dataPath) {
+		invalidate(dataPath, 0, Long.MAX_VALUE, 0);
+	}
+
+	synchronized long getBytesHeld() {
+		return bytesHeld;
+	}
+
+	synchronized int size() {
+		return blocks.size();
+	}
+
+	private void evict() {
+		Iterator<byte[]> eldest = blocks.values().iterator();
+		while (bytesHeld > memoryBudget && eldest.hasNext()) {
+			bytesHeld -= eldest.next().length;
+			eldest.remove();
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("block cache holds " + bytesHeld + " bytes in "
+					+ blocks.size() + " blocks");
+		}
+	}
+
+	private static final class BlockKey {
+
+		private final String dataPath;
+		private final String replica;
+		private final long block;
+
+		BlockKey(final String dataPath, final String replica, final long block) {
+			this.dataPath = dataPath;
+			this.replica = replica == null ? "" : replica;
+			this.block = block;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof BlockKey)) {
+				return false;
+			}
+			BlockKey other = (BlockKey) obj;
+			return block == other.block && dataPath.equals(other.dataPath)
+					&& replica.equals(other.replica);
+		}
+
+		@Override
+		public int hashCode() {
+			return (dataPath.hashCode() * 31 + replica.hashCode()) * 31
+					+ (int) (block ^ (block >>> 32));
+		}
+	}
+
+}
@@ -0,0 +1,40 @@
+package edu.sdsc.grid.io.irods;
+
+import java.io.File;
+
+/**
+ * Callbacks of an {@link IRODSBulkDownloader IRODSBulkDownloader}, made for
+ * each file as it is unpacked, so progress can be shown while a download
+ * streams.
+ * <p/>
+ * The callbacks are made on the thread that called <code>download()</code>,
+ * one file at a time, and the download waits for them.
+ */
+public interface IRODSBulkDownloadListener {
+
+	/**
+	 * Called after a file has been written.
+	 *
+	 * @param name
+	 *            <code>String</code> with the path of the file relative to the
+	 *            collection downloaded
+	 * @param localFile
+	 *            <code>File</code> written
+	 * @param length
+	 *            <code>long</code> with the bytes written
+	 */
+	void fileDownloaded(String name, File localFile, long length);
+
+	/**
+	 * Called for a file not written because a local file exists and the
+	 * overwrite policy is to skip it.
+	 *
+	 * @param name
+	 *            <code>String</code> with the path of the file relative to the
+	 *            collection downloaded
+	 * @param localFile
+	 *            <code>File</code> that exists
+	 */
+	void fileSkipped(String name, File localFile);
+
+}
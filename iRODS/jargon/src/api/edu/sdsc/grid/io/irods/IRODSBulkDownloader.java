@@ -0,0 +1,341 @@
+package edu.sdsc.grid.io.irods;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.irods.jargon.core.accessobject.IRODSAccessObjectFactoryImpl;
+import org.irods.jargon.core.exception.JargonException;
+import org.irods.jargon.core.pub.io.TarInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Gets a collection into a local directory by having the server bundle it
+ * into a tar data object, as <code>ibun -c</code> does, then reading the
+ * bundle in one stream and unpacking each file as it arrives, without storing
+ * the bundle locally. The bundle is deleted once read.
+ * <p/>
+ * Getting many small files this way takes a few round trips for the whole
+ * collection, rather than an open, transfer and close for each file. The
+ * server limits the size of a bundle, so a collection holding more than that
+ * should be got with <code>IRODSCommands.get</code>, or a collection at a
+ * time.
+ * <p/>
+ * An {@link IRODSBulkDownloadListener IRODSBulkDownloadListener} is told of
+ * each file as it is written. What is done when a local file exists is set
+ * with an {@link OverwritePolicy OverwritePolicy}.
+ * <p/>
+ * The settings of a downloader are set before downloading. A download uses
+ * the connection of the file system given, so only one is done at a time.
+ */
+public final class IRODSBulkDownloader {
+
+	private static Logger log = LoggerFactory
+			.getLogger(IRODSBulkDownloader.class);
+
+	public enum OverwritePolicy {
+		/**
+		 * Replace a local file that exists.
+		 */
+		OVERWRITE,
+		/**
+		 * Keep a local file that exists, and go on with the next file.
+		 */
+		SKIP,
+		/**
+		 * Stop the download when a local file exists. Files written before
+		 * are kept.
+		 */
+		FAIL
+	}
+
+	/**
+	 * Buffer between the data object and the tar stream, so the bundle is
+	 * read in large reads.
+	 */
+	static final int BUNDLE_READ_BUFFER_SIZE = 2097152;
+
+	static final String BUNDLE_NAME_PREFIX = ".bulkdownload-";
+
+	private static final AtomicInteger downloadNumber = new AtomicInteger();
+
+	private final IRODSFileSystem irodsFileSystem;
+
+	private OverwritePolicy overwritePolicy = OverwritePolicy.FAIL;
+	private String resource = "";
+	private String stagingCollection = null;
+	private IRODSBulkDownloadListener listener = null;
+
+	/**
+	 * @param irodsFileSystem
+	 *            {@link IRODSFileSystem} the bundle is made and read with
+	 * @return <code>IRODSBulkDownloader</code>
+	 * @throws JargonException
+	 */
+	public static IRODSBulkDownloader instance(
+			final IRODSFileSystem irodsFileSystem) throws JargonException {
+		return new IRODSBulkDownloader(irodsFileSystem);
+	}
+
+	private IRODSBulkDownloader(final IRODSFileSystem irodsFileSystem)
+			throws JargonException {
+		if (irodsFileSystem == null) {
+			throw new JargonException("null irodsFileSystem");
+		}
+		this.irodsFileSystem = irodsFileSystem;
+	}
+
+	public OverwritePolicy getOverwritePolicy() {
+		return overwritePolicy;
+	}
+
+	/**
+	 * @param overwritePolicy
+	 *            {@link OverwritePolicy} for a local file that exists, which
+	 *            is <code>FAIL</code> unless set
+	 */
+	public void setOverwritePolicy(final OverwritePolicy overwritePolicy) {
+		if (overwritePolicy == null) {
+			throw new IllegalArgumentException("null overwritePolicy");
+		}
+		this.overwritePolicy = overwritePolicy;
+	}
+
+	public String getResource() {
+		return resource;
+	}
+
+	/**
+	 * @param resource
+	 *            <code>String</code> with the resource the bundle is made on,
+	 *            blank for the default resource
+	 */
+	public void setResource(final String resource) {
+		if (resource == null) {
+			throw new IllegalArgumentException(
+					"null resource, set to blank if not used");
+		}
+		this.resource = resource;
+	}
+
+	public String getStagingCollection() {
+		return stagingCollection;
+	}
+
+	/**
+	 * @param stagingCollection
+	 *            <code>String</code> with the absolute path of the collection
+	 *            the bundle is made in, which must not be under the collection
+	 *            downloaded, or <code>null</code> for the home directory
+	 */
+	public void setStagingCollection(final String stagingCollection) {
+		if (stagingCollection != null && !stagingCollection.startsWith("/")) {
+			throw new IllegalArgumentException(
+					"stagingCollection must be an absolute path");
+		}
+		this.stagingCollection = stagingCollection;
+	}
+
+	public IRODSBulkDownloadListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * @param listener
+	 *            {@link IRODSBulkDownloadListener} told of each file, or
+	 *            <code>null</code>
+	 */
+	public void setListener(final IRODSBulkDownloadListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Get the files and collections under a collection into a local
+	 * directory.
+	 *
+	 * @param collection
+	 *            <code>String</code> with the absolute path of the collection
+	 *            whose contents are got
+	 * @param localDirectory
+	 *            <code>File</code> with the local directory the contents are
+	 *            written to, which is made if it does not exist
+	 * @return <code>int</code> with the files written
+	 * @throws JargonException
+	 *             if the bundle could not be made or read, a file could not be
+	 *             written, or a file exists and the overwrite policy is
+	 *             <code>FAIL</code>. Files written before the error are kept.
+	 */
+	public int download(final String collection, final File localDirectory)
+			throws JargonException {
+		if (collection == null || !collection.startsWith("/")) {
+			throw new JargonException("null or relative collection");
+		}
+
+		if (localDirectory == null) {
+			throw new JargonException("null localDirectory");
+		}
+
+		String source = collection;
+		if (source.length() > 1 && source.endsWith("/")) {
+			source = source.substring(0, source.length() - 1);
+		}
+
+		String staging = stagingCollection == null ? irodsFileSystem
+				.getHomeDirectory() : stagingCollection;
+		if (staging.equals(source) || staging.startsWith(source + "/")) {
+			throw new JargonException(
+					"staging collection is under the collection downloaded:"
+							+ staging);
+		}
+
+		if (!localDirectory.isDirectory() && !localDirectory.mkdirs()) {
+			throw new JargonException("cannot make local directory:"
+					+ localDirectory);
+		}
+
+		String bundlePath = staging + "/" + BUNDLE_NAME_PREFIX
+				+ System.currentTimeMillis() + "-"
+				+ downloadNumber.incrementAndGet() + ".tar";
+		log.info("bulk download of:{}", source);
+		log.info("bundled in:{}", bundlePath);
+
+		IRODSAccessObjectFactoryImpl.instance(irodsFileSystem.getCommands())
+				.getBulkFileOperationsAO()
+				.createABundleFromIrodsFilesAndStoreInIrodsWithForceOption(
+						bundlePath, source, resource);
+		try {
+			int files = unpack(bundlePath, localDirectory);
+			log.info("bulk download wrote {} files", files);
+			return files;
+		} finally {
+			if (!new IRODSFile(irodsFileSystem, bundlePath).delete(true)) {
+				log.warn("bundle not deleted:{}", bundlePath);
+			}
+		}
+	}
+
+	private int unpack(final String bundlePath, final File localDirectory)
+			throws JargonException {
+		int files = 0;
+		String name = null;
+		TarInputStream tar = null;
+		try {
+			tar = new TarInputStream(new BufferedInputStream(
+					new IRODSFileInputStream(irodsFileSystem, bundlePath),
+					BUNDLE_READ_BUFFER_SIZE));
+			TarInputStream.Entry entry;
+			while ((entry = tar.getNextEntry()) != null) {
+				name = entry.getName();
+				if (name.length() == 0) {
+					// the collection itself
+					continue;
+				}
+
+				File localFile = localFile(localDirectory, name);
+				if (entry.isDirectory()) {
+					if (!localFile.isDirectory() && !localFile.mkdirs()) {
+						throw new JargonException(
+								"cannot make local directory:" + localFile);
+					}
+				} else if (write(entry, tar, localFile)) {
+					files++;
+				}
+			}
+		} catch (IOException e) {
+			log.error("error reading bundle:" + bundlePath + " at:" + name, e);
+			throw new JargonException("error reading bundle:" + bundlePath, e);
+		} finally {
+			if (tar != null) {
+				try {
+					tar.close();
+				} catch (IOException e) {
+					log.warn("error closing bundle is logged and ignored", e);
+				}
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * Write the content of an entry to a local file, as the overwrite policy
+	 * allows. A file only partly written is deleted.
+	 *
+	 * @return <code>boolean</code> that is <code>true</code> if the file was
+	 *         written, <code>false</code> if skipped
+	 */
+	private boolean write(final TarInputStream.Entry entry,
+			final InputStream content, final File localFile)
+			throws IOException, JargonException {
+		if (localFile.exists()) {
+			if (localFile.isDirectory()
+					|| overwritePolicy == OverwritePolicy.FAIL) {
+				throw new JargonException("local file exists:" + localFile);
+			}
+
+			if (overwritePolicy == OverwritePolicy.SKIP) {
+				log.debug("skipping local file that exists:{}", localFile);
+				if (listener != null) {
+					listener.fileSkipped(entry.getName(), localFile);
+				}
+				return false;
+			}
+		}
+
+		File parent = localFile.getParentFile();
+		if (!parent.isDirectory() && !parent.mkdirs()) {
+			throw new JargonException("cannot make local directory:" + parent);
+		}
+
+		boolean written = false;
+		OutputStream out = new FileOutputStream(localFile);
+		try {
+			byte[] buffer = new byte[IRODSFileSystem.BUFFER_SIZE];
+			int n;
+			while ((n = content.read(buffer)) > 0) {
+				out.write(buffer, 0, n);
+			}
+			written = true;
+		} finally {
+			out.close();
+			if (!written && !localFile.delete()) {
+				log.warn("partly written file not deleted:{}", localFile);
+			}
+		}
+
+		if (entry.getLastModified() > 0) {
+			localFile.setLastModified(entry.getLastModified());
+		}
+
+		if (listener != null) {
+			listener.fileDownloaded(entry.getName(), localFile, entry
+					.getLength());
+		}
+		return true;
+	}
+
+	/**
+	 * Get the local file of an entry, which must be under the local
+	 * directory.
+	 */
+	private static File localFile(final File localDirectory, final String name)
+			throws JargonException {
+		File file = localDirectory;
+		for (String part : name.split("/")) {
+			if (part.length() == 0 || part.equals(".")) {
+				continue;
+			}
+			if (part.equals("..")) {
+				throw new JargonException("bundle entry outside the collection:"
+						+ name);
+			}
+			file = new File(file, part);
+		}
+		return file;
+	}
+
+}
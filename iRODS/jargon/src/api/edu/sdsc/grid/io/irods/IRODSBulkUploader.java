@@ -0,0 +1,626 @@
+package edu.sdsc.grid.io.irods;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.irods.jargon.core.accessobject.BulkFileOperationsAO;
+import org.irods.jargon.core.accessobject.IRODSAccessObjectFactoryImpl;
+import org.irods.jargon.core.exception.JargonException;
+import org.irods.jargon.core.pub.io.TarOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Puts a local directory tree into an iRODS collection by packing the files
+ * into tar bundles as they are sent, uploading several bundles at once on
+ * connections borrowed from an {@link IRODSConnectionPool
+ * IRODSConnectionPool}, and having the server extract each bundle with bulk
+ * registration, as <code>ibun -x -b</code> does.
+ * <p/>
+ * A bundle is written straight from the local files to a data object in a
+ * staging collection, without a temporary file, and is deleted once
+ * extracted. Putting many small files this way takes a few round trips per
+ * bundle, rather than several per file. A file too large to fit in a bundle
+ * is put by itself with an <code>IRODSFileOutputStream</code>.
+ * <p/>
+ * The local tree is read as bundles are needed, and only a few bundles are
+ * waiting to be sent at a time, so any number of files can be put. The
+ * collections are made by the extraction, and an empty directory is put in a
+ * bundle as a directory entry so it is made as well.
+ * <p/>
+ * The settings of an uploader are set before uploading, after which it can
+ * do several uploads at once.
+ */
+public final class IRODSBulkUploader {
+
+	private static Logger log = LoggerFactory
+			.getLogger(IRODSBulkUploader.class);
+
+	public static final int DEFAULT_MAX_CONCURRENT_UPLOADS = 4;
+	public static final long DEFAULT_BUNDLE_LENGTH = 32 * 1024 * 1024;
+
+	/**
+	 * Buffer between the tar stream and the data object, so headers and small
+	 * files are sent in large writes.
+	 */
+	static final int BUNDLE_WRITE_BUFFER_SIZE = 2097152;
+
+	static final String BUNDLE_NAME_PREFIX = ".bulkupload-";
+
+	private static final AtomicInteger uploadNumber = new AtomicInteger();
+
+	private final IRODSFileSystem irodsFileSystem;
+	private final IRODSConnectionPool irodsConnectionPool;
+	private final int maxConcurrentUploads;
+
+	private long bundleLength = DEFAULT_BUNDLE_LENGTH;
+	private String resource = "";
+	private boolean force = false;
+	private String stagingCollection = null;
+
+	/**
+	 * @param irodsFileSystem
+	 *            {@link IRODSFileSystem} used to make the target and staging
+	 *            collections
+	 * @param irodsConnectionPool
+	 *            {@link IRODSConnectionPool} with connections to the same
+	 *            server and account, which should allow at least
+	 *            <code>maxConcurrentUploads</code> connections
+	 * @param maxConcurrentUploads
+	 *            <code>int</code> with the most bundles sent at once
+	 * @return <code>IRODSBulkUploader</code>
+	 * @throws JargonException
+	 */
+	public static IRODSBulkUploader instance(
+			final IRODSFileSystem irodsFileSystem,
+			final IRODSConnectionPool irodsConnectionPool,
+			final int maxConcurrentUploads) throws JargonException {
+		return new IRODSBulkUploader(irodsFileSystem, irodsConnectionPool,
+				maxConcurrentUploads);
+	}
+
+	private IRODSBulkUploader(final IRODSFileSystem irodsFileSystem,
+			final IRODSConnectionPool irodsConnectionPool,
+			final int maxConcurrentUploads) throws JargonException {
+		if (irodsFileSystem == null) {
+			throw new JargonException("null irodsFileSystem");
+		}
+
+		if (irodsConnectionPool == null) {
+			throw new JargonException("null irodsConnectionPool");
+		}
+
+		if (maxConcurrentUploads < 1) {
+			throw new JargonException("maxConcurrentUploads must be at least 1");
+		}
+
+		this.irodsFileSystem = irodsFileSystem;
+		this.irodsConnectionPool = irodsConnectionPool;
+		this.maxConcurrentUploads = maxConcurrentUploads;
+	}
+
+	public long getBundleLength() {
+		return bundleLength;
+	}
+
+	/**
+	 * @param bundleLength
+	 *            <code>long</code> with the size a bundle is filled to. A file
+	 *            that would not fit in an empty bundle of this size is put by
+	 *            itself.
+	 */
+	public void setBundleLength(final long bundleLength) {
+		if (bundleLength < TarOutputStream.BLOCK_SIZE * 4) {
+			throw new IllegalArgumentException("bundleLength is too small");
+		}
+		this.bundleLength = bundleLength;
+	}
+
+	public String getResource() {
+		return resource;
+	}
+
+	/**
+	 * @param resource
+	 *            <code>String</code> with the resource the files are put on,
+	 *            blank for the default resource
+	 */
+	public void setResource(final String resource) {
+		if (resource == null) {
+			throw new IllegalArgumentException(
+					"null resource, set to blank if not used");
+		}
+		this.resource = resource;
+	}
+
+	public boolean isForce() {
+		return force;
+	}
+
+	/**
+	 * @param force
+	 *            <code>boolean</code> that is <code>true</code> to overwrite
+	 *            data objects that exist already
+	 */
+	public void setForce(final boolean force) {
+		this.force = force;
+	}
+
+	public String getStagingCollection() {
+		return stagingCollection;
+	}
+
+	/**
+	 * @param stagingCollection
+	 *            <code>String</code> with the absolute path of the collection
+	 *            bundles are written to before being extracted, or
+	 *            <code>null</code> to write them to the target collection
+	 */
+	public void setStagingCollection(final String stagingCollection) {
+		if (stagingCollection != null && !stagingCollection.startsWith("/")) {
+			throw new IllegalArgumentException(
+					"stagingCollection must be an absolute path");
+		}
+		this.stagingCollection = stagingCollection;
+	}
+
+	/**
+	 * Put the files and directories under a local directory into a
+	 * collection, returning when every bundle has been extracted.
+	 *
+	 * @param localDirectory
+	 *            <code>File</code> with the local directory whose contents are
+	 *            put
+	 * @param targetCollection
+	 *            <code>String</code> with the absolute path of the collection
+	 *            the contents are put in, which is made if it does not exist
+	 * @return <code>int</code> with the files put
+	 * @throws JargonException
+	 *             if a file could not be read, or a bundle could not be sent
+	 *             or extracted. Bundles sent before the error may have been
+	 *             extracted.
+	 */
+	public int upload(final File localDirectory, final String targetCollection)
+			throws JargonException {
+		if (localDirectory == null || !localDirectory.isDirectory()) {
+			throw new JargonException("null localDirectory, or not a directory");
+		}
+
+		if (targetCollection == null || !targetCollection.startsWith("/")) {
+			throw new JargonException("null or relative targetCollection");
+		}
+
+		String target = targetCollection;
+		if (target.length() > 1 && target.endsWith("/")) {
+			target = target.substring(0, target.length() - 1);
+		}
+
+		return new Upload(target, stagingCollection == null ? target
+				: stagingCollection, bundleLength, resource, force)
+				.run(localDirectory);
+	}
+
+	/**
+	 * Local file or directory, with the path it is given in a bundle.
+	 */
+	private static final class Entry {
+		private final File file;
+		private final String name;
+		private final long length;
+
+		private Entry(final File file, final String name, final long length) {
+			this.file = file;
+			this.name = name;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * State of one call of <code>upload()</code>.
+	 */
+	private final class Upload {
+		private final String targetCollection;
+		private final String stagingCollection;
+		private final long bundleLength;
+		private final String resource;
+		private final boolean force;
+		private final IRODSAccount irodsAccount;
+		private final String bundleNamePrefix;
+
+		private final ThreadPoolExecutor executor;
+
+		/**
+		 * Bundles read and not yet sent, kept to a few so the local tree is
+		 * read no faster than it is sent.
+		 */
+		private final Semaphore waiting;
+		private final AtomicInteger bundleNumber = new AtomicInteger();
+		private final AtomicInteger filesPut = new AtomicInteger();
+
+		private volatile Exception failure = null;
+
+		private Upload(final String targetCollection,
+				final String stagingCollection, final long bundleLength,
+				final String resource, final boolean force) {
+			this.targetCollection = targetCollection;
+			this.stagingCollection = stagingCollection;
+			this.bundleLength = bundleLength;
+			this.resource = resource;
+			this.force = force;
+			this.irodsAccount = (IRODSAccount) irodsFileSystem.getAccount();
+
+			final int number = uploadNumber.incrementAndGet();
+			bundleNamePrefix = BUNDLE_NAME_PREFIX + System.currentTimeMillis()
+					+ "-" + number + "-";
+			waiting = new Semaphore(maxConcurrentUploads * 2);
+			executor = new ThreadPoolExecutor(maxConcurrentUploads,
+					maxConcurrentUploads, 0L, TimeUnit.MILLISECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+						private final AtomicInteger threadNumber = new AtomicInteger();
+
+						public Thread newThread(final Runnable runnable) {
+							Thread thread = new Thread(runnable,
+									"irods-bulk-uploader-" + number + "-"
+											+ threadNumber.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+
+		private int run(final File localDirectory) throws JargonException {
+			log.info("bulk upload of:{}", localDirectory);
+			log.info("to collection:{}", targetCollection);
+			try {
+				new IRODSFile(irodsFileSystem, targetCollection).mkdirs();
+				new IRODSFile(irodsFileSystem, stagingCollection).mkdirs();
+				readTree(localDirectory);
+				executor.shutdown();
+				while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+					log.debug("waiting for bundles to be extracted");
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new JargonException("interrupted waiting for bulk upload");
+			} finally {
+				executor.shutdownNow();
+			}
+
+			if (failure instanceof JargonException) {
+				throw (JargonException) failure;
+			}
+			if (failure != null) {
+				throw new JargonException("bulk upload failed", failure);
+			}
+
+			log.info("bulk upload put {} files", filesPut.get());
+			return filesPut.get();
+		}
+
+		/**
+		 * Read the local tree depth first, sending a bundle each time one is
+		 * full.
+		 */
+		private void readTree(final File localDirectory)
+				throws JargonException, InterruptedException {
+			List<Entry> bundle = new ArrayList<Entry>();
+			long bundled = TarOutputStream.trailerLength();
+
+			LinkedList<Entry> directories = new LinkedList<Entry>();
+			directories.add(new Entry(localDirectory, "", 0));
+			while (!directories.isEmpty() && failure == null) {
+				Entry directory = directories.removeFirst();
+				File[] children = directory.file.listFiles();
+				if (children == null) {
+					throw new JargonException("cannot list local directory:"
+							+ directory.file);
+				}
+
+				if (children.length == 0 && directory.name.length() > 0) {
+					// an empty directory is only made if it is in a bundle
+					Entry entry = new Entry(directory.file, directory.name
+							+ "/", 0);
+					bundled = add(bundle, bundled, entry);
+				}
+
+				int insertAt = 0;
+				for (File child : children) {
+					String name = directory.name.length() == 0 ? child
+							.getName() : directory.name + "/" + child.getName();
+					if (child.isDirectory()) {
+						// children go first, in order, to keep the walk depth first
+						directories.add(insertAt++, new Entry(child, name, 0));
+					} else if (child.isFile()) {
+						Entry entry = new Entry(child, name, child.length());
+						if (TarOutputStream.archivedLength(name, entry.length)
+								+ TarOutputStream.trailerLength() > bundleLength) {
+							submit(new SinglePut(entry));
+						} else {
+							bundled = add(bundle, bundled, entry);
+						}
+					} else {
+						log.warn("skipping what is not a file or directory:{}",
+								child);
+					}
+				}
+			}
+
+			if (!bundle.isEmpty() && failure == null) {
+				submit(new BundlePut(bundle));
+			}
+		}
+
+		/**
+		 * Add an entry to the bundle being filled, sending the bundle first
+		 * if the entry does not fit.
+		 *
+		 * @return <code>long</code> with the archived length of the bundle
+		 */
+		private long add(final List<Entry> bundle, final long bundled,
+				final Entry entry) throws InterruptedException {
+			long entryLength = TarOutputStream.archivedLength(entry.name,
+					entry.length);
+			long length = bundled;
+			if (length + entryLength > bundleLength && !bundle.isEmpty()) {
+				submit(new BundlePut(new ArrayList<Entry>(bundle)));
+				bundle.clear();
+				length = TarOutputStream.trailerLength();
+			}
+			bundle.add(entry);
+			return length + entryLength;
+		}
+
+		private void submit(final Runnable put) throws InterruptedException {
+			waiting.acquire();
+			executor.execute(put);
+		}
+
+		private void fail(final Exception e) {
+			if (failure == null) {
+				failure = e;
+			}
+		}
+
+		/**
+		 * Bundle written to a staging data object, then extracted into the
+		 * target collection.
+		 */
+		private final class BundlePut implements Runnable {
+			private final List<Entry> entries;
+
+			private BundlePut(final List<Entry> entries) {
+				this.entries = entries;
+			}
+
+			public void run() {
+				try {
+					if (failure == null) {
+						put();
+					}
+				} finally {
+					waiting.release();
+				}
+			}
+
+			private void put() {
+				String bundlePath = stagingCollection + "/" + bundleNamePrefix
+						+ bundleNumber.incrementAndGet() + ".tar";
+				IRODSFileSystem fileSystem = null;
+				boolean connectionUsable = false;
+				try {
+					fileSystem = new IRODSFileSystem(irodsAccount,
+							irodsConnectionPool);
+					writeBundle(fileSystem, bundlePath);
+
+					BulkFileOperationsAO bulkFileOperationsAO = IRODSAccessObjectFactoryImpl
+							.instance(fileSystem.getCommands())
+							.getBulkFileOperationsAO();
+					if (force) {
+						bulkFileOperationsAO
+								.extractABundleIntoAnIrodsCollectionWithBulkOperationOptimizationAndForceOption(
+										bundlePath, targetCollection, resource);
+					} else {
+						bulkFileOperationsAO
+								.extractABundleIntoAnIrodsCollectionWithBulkOperationOptimization(
+										bundlePath, targetCollection, resource);
+					}
+
+					int files = 0;
+					for (Entry entry : entries) {
+						if (!entry.name.endsWith("/")) {
+							files++;
+						}
+					}
+					filesPut.addAndGet(files);
+					log.debug("extracted bundle:{}", bundlePath);
+					connectionUsable = true;
+				} catch (Exception e) {
+					log.error("error putting bundle:" + bundlePath, e);
+					fail(e);
+				} finally {
+					if (fileSystem != null) {
+						finish(fileSystem, bundlePath, connectionUsable);
+					}
+				}
+			}
+
+			private void writeBundle(final IRODSFileSystem fileSystem,
+					final String bundlePath) throws IOException {
+				IRODSFileOutputStream bundle = new IRODSFileOutputStream(
+						fileSystem, bundlePath, resource);
+				TarOutputStream tar = new TarOutputStream(
+						new BufferedOutputStream(bundle,
+								BUNDLE_WRITE_BUFFER_SIZE));
+				boolean written = false;
+				try {
+					for (Entry entry : entries) {
+						if (entry.name.endsWith("/")) {
+							tar.putDirectoryEntry(entry.name, entry.file
+									.lastModified());
+						} else {
+							tar.putNextFileEntry(entry.name, entry.length,
+									entry.file.lastModified());
+							copy(entry, tar);
+							tar.closeEntry();
+						}
+					}
+					tar.close();
+					written = true;
+				} finally {
+					if (!written) {
+						/*
+						 * finishing the archive would fail on the entry left
+						 * open and hide the cause, so only the data object is
+						 * closed
+						 */
+						try {
+							bundle.close();
+						} catch (IOException e) {
+							log.warn("error closing bundle after an error is logged and ignored",
+									e);
+						}
+					}
+				}
+			}
+
+			/**
+			 * Delete the bundle, extracted or not, and give back the
+			 * connection. After an error the connection is discarded, and the
+			 * bundle is deleted over another one.
+			 */
+			private void finish(final IRODSFileSystem fileSystem,
+					final String bundlePath, final boolean connectionUsable) {
+				IRODSFileSystem deleteFileSystem = fileSystem;
+				if (!connectionUsable) {
+					fileSystem.closeAfterError();
+					try {
+						deleteFileSystem = new IRODSFileSystem(irodsAccount,
+								irodsConnectionPool);
+					} catch (IOException e) {
+						log.warn("bundle not deleted:" + bundlePath, e);
+						return;
+					}
+				}
+
+				boolean deleted = false;
+				try {
+					deleted = new IRODSFile(deleteFileSystem, bundlePath)
+							.delete(true);
+				} catch (RuntimeException e) {
+					log.warn("error deleting bundle:" + bundlePath, e);
+				} finally {
+					if (deleted) {
+						closeQuietly(deleteFileSystem);
+					} else {
+						log.warn("bundle not deleted:{}", bundlePath);
+						deleteFileSystem.closeAfterError();
+					}
+				}
+			}
+		}
+
+		/**
+		 * File too large for a bundle, put by itself.
+		 */
+		private final class SinglePut implements Runnable {
+			private final Entry entry;
+
+			private SinglePut(final Entry entry) {
+				this.entry = entry;
+			}
+
+			public void run() {
+				try {
+					if (failure == null) {
+						put();
+					}
+				} finally {
+					waiting.release();
+				}
+			}
+
+			private void put() {
+				String path = targetCollection + "/" + entry.name;
+				IRODSFileSystem fileSystem = null;
+				boolean connectionUsable = false;
+				try {
+					fileSystem = new IRODSFileSystem(irodsAccount,
+							irodsConnectionPool);
+					IRODSFile file = new IRODSFile(fileSystem, path);
+					if (file.exists() && !force) {
+						throw new JargonException("data object exists:" + path);
+					}
+					((IRODSFile) file.getParentFile()).mkdirs();
+
+					OutputStream out = new IRODSFileOutputStream(fileSystem,
+							path, resource);
+					try {
+						copy(entry, out);
+					} finally {
+						out.close();
+					}
+					filesPut.incrementAndGet();
+					connectionUsable = true;
+				} catch (Exception e) {
+					log.error("error putting file:" + path, e);
+					fail(e);
+				} finally {
+					if (fileSystem != null) {
+						if (connectionUsable) {
+							closeQuietly(fileSystem);
+						} else {
+							fileSystem.closeAfterError();
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * Copy the length of a file read when the tree was read, so a file
+		 * that changed since then fails rather than leaving a bad bundle.
+		 */
+		private void copy(final Entry entry, final OutputStream out)
+				throws IOException {
+			byte[] buffer = new byte[IRODSFileSystem.BUFFER_SIZE];
+			InputStream in = new FileInputStream(entry.file);
+			try {
+				long remaining = entry.length;
+				while (remaining > 0) {
+					int read = in.read(buffer, 0, (int) Math.min(
+							buffer.length, remaining));
+					if (read < 0) {
+						throw new IOException("file shorter than when read:"
+								+ entry.file);
+					}
+					out.write(buffer, 0, read);
+					remaining -= read;
+				}
+			} finally {
+				in.close();
+			}
+		}
+	}
+
+	private static void closeQuietly(final IRODSFileSystem fileSystem) {
+		try {
+			fileSystem.close();
+		} catch (IOException e) {
+			log.warn("error giving back connection of bulk upload", e);
+		}
+	}
+
+}
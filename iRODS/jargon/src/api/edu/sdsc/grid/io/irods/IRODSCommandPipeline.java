@@ -0,0 +1,218 @@
+package edu.sdsc.grid.io.irods;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.irods.jargon.core.exception.JargonException;
+import org.irods.jargon.core.packinstr.IRodsPI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Opt-in pipelined submission of independent API requests over one
+ * {@link IRODSCommands IRODSCommands} connection. Normally each
+ * <code>irodsFunction()</code> call sends a request, flushes, and blocks on the
+ * reply, so a run of small requests, such as adding AVU metadata to many files
+ * or creating many collections, costs one network round trip per request.
+ * <p/>
+ * Requests submitted here are queued, and when {@link #execute() execute()} is
+ * called they are written to the socket back to back and flushed once, after
+ * which the replies are read and matched to the requests in order. The iRODS
+ * agent answers requests in the order it reads them, so no request ids are
+ * needed. To keep both ends from blocking on full socket buffers, at most
+ * <code>pipelineDepth</code> requests are outstanding at once.
+ * <p/>
+ * Each submit returns a <code>Future</code> for the reply <code>Tag</code>
+ * (which may be <code>null</code>, as with <code>irodsFunction()</code>, for
+ * requests with no reply body). If iRODS returns an error for one request, only
+ * that future fails, with the <code>IRODSException</code> as the cause, and
+ * the rest of the batch continues. If the connection itself fails, every
+ * request not yet answered fails.
+ * <p/>
+ * Only requests that neither send nor receive a byte stream, and that do not
+ * trigger further messages from the server, may be pipelined. The transfer
+ * APIs are refused by <code>submit()</code>, and a reply that still carries a
+ * byte stream is skipped and fails its future. Calling
+ * <code>get()</code> on a future of a request that has not been sent will
+ * execute the pipeline first.
+ * <p/>
+ * A pipeline may be shared between threads, the requests are sent while
+ * holding the lock on the <code>IRODSCommands</code>, as other calls are.
+ */
+public final class IRODSCommandPipeline {
+
+	private static Logger log = LoggerFactory
+			.getLogger(IRODSCommandPipeline.class);
+
+	/**
+	 * Default number of requests that may be outstanding on the connection
+	 * at once.
+	 */
+	public static final int DEFAULT_PIPELINE_DEPTH = 32;
+
+	/**
+	 * APIs that send or receive a byte stream after the message.
+	 */
+	private static final int[] BYTE_STREAM_API_NUMBERS = {
+			IRODSConstants.FILE_WRITE_AN, IRODSConstants.FILE_READ_AN,
+			IRODSConstants.FILE_PUT_AN, IRODSConstants.DATA_OBJ_READ_AN,
+			IRODSConstants.DATA_OBJ_WRITE_AN, IRODSConstants.DATA_OBJ_PUT_AN,
+			IRODSConstants.DATA_PUT_AN, IRODSConstants.DATA_OBJ_GET_AN,
+			IRODSConstants.DATA_GET_AN,
+			IRODSConstants.SUB_STRUCT_FILE_READ_AN,
+			IRODSConstants.SUB_STRUCT_FILE_WRITE_AN,
+			IRODSConstants.SUB_STRUCT_FILE_GET_AN,
+			IRODSConstants.SUB_STRUCT_FILE_PUT_AN,
+			IRODSConstants.L3_FILE_GET_SINGLE_BUF_AN,
+			IRODSConstants.L3_FILE_PUT_SINGLE_BUF_AN };
+
+	private final IRODSCommands irodsCommands;
+	private final int pipelineDepth;
+	private final List<PipelinedRequest> queuedRequests = new ArrayList<PipelinedRequest>();
+
+	/**
+	 * Create a pipeline over the given connection with the default depth.
+	 *
+	 * @param irodsCommands
+	 *            {@link IRODSCommands IRODSCommands} that is connected
+	 * @return <code>IRODSCommandPipeline</code>
+	 * @throws JargonException
+	 */
+	public static IRODSCommandPipeline instance(
+			final IRODSCommands irodsCommands) throws JargonException {
+		return new IRODSCommandPipeline(irodsCommands, DEFAULT_PIPELINE_DEPTH);
+	}
+
+	/**
+	 * Create a pipeline over the given connection.
+	 *
+	 * @param irodsCommands
+	 *            {@link IRODSCommands IRODSCommands} that is connected
+	 * @param pipelineDepth
+	 *            <code>int</code> with the most requests that will be sent
+	 *            before their replies are read
+	 * @return <code>IRODSCommandPipeline</code>
+	 * @throws JargonException
+	 */
+	public static IRODSCommandPipeline instance(
+			final IRODSCommands irodsCommands, final int pipelineDepth)
+			throws JargonException {
+		return new IRODSCommandPipeline(irodsCommands, pipelineDepth);
+	}
+
+	private IRODSCommandPipeline(final IRODSCommands irodsCommands,
+			final int pipelineDepth) throws JargonException {
+		if (irodsCommands == null) {
+			throw new JargonException("null irodsCommands");
+		}
+
+		if (pipelineDepth <= 0) {
+			throw new JargonException("pipelineDepth must be greater than zero");
+		}
+
+		this.irodsCommands = irodsCommands;
+		this.pipelineDepth = pipelineDepth;
+	}
+
+	/**
+	 * Queue a packing instruction to be sent on the next
+	 * <code>execute()</code>.
+	 *
+	 * @param irodsPI
+	 *            {@link IRodsPI IRodsPI} with the request
+	 * @return <code>Future</code> that will hold the reply <code>Tag</code>
+	 * @throws JargonException
+	 */
+	public Future<Tag> submit(final IRodsPI irodsPI) throws JargonException {
+		if (irodsPI == null) {
+			throw new JargonException("null irodsPI");
+		}
+
+		return submit(irodsPI.getTagValue(), irodsPI.getApiNumber());
+	}
+
+	/**
+	 * Queue a request in <code>Tag</code> form to be sent on the next
+	 * <code>execute()</code>.
+	 *
+	 * @param message
+	 *            {@link Tag Tag} with the packing instruction
+	 * @param apiNumber
+	 *            <code>int</code> with the iRODS API number of the request
+	 * @return <code>Future</code> that will hold the reply <code>Tag</code>
+	 * @throws JargonException
+	 *             if the API sends or receives a byte stream
+	 */
+	public Future<Tag> submit(final Tag message, final int apiNumber)
+			throws JargonException {
+		if (message == null) {
+			throw new JargonException("null message");
+		}
+
+		for (int byteStreamApiNumber : BYTE_STREAM_API_NUMBERS) {
+			if (apiNumber == byteStreamApiNumber) {
+				throw new JargonException(
+						"requests with a byte stream cannot be pipelined, api:"
+								+ apiNumber);
+			}
+		}
+
+		PipelinedRequest request = new PipelinedRequest(this, message,
+				apiNumber);
+		synchronized (this) {
+			queuedRequests.add(request);
+		}
+		return request;
+	}
+
+	/**
+	 * Send all queued requests and read their replies. Errors for single
+	 * requests are reported through their futures.
+	 *
+	 * @return <code>int</code> with the number of requests sent
+	 * @throws JargonException
+	 *             if the connection failed, in which case all requests not
+	 *             answered have also been failed
+	 */
+	public int execute() throws JargonException {
+		List<PipelinedRequest> requests;
+		synchronized (this) {
+			if (queuedRequests.isEmpty()) {
+				return 0;
+			}
+			requests = new ArrayList<PipelinedRequest>(queuedRequests);
+			queuedRequests.clear();
+			for (PipelinedRequest request : requests) {
+				request.markSent();
+			}
+		}
+
+		log.debug("executing {} pipelined requests", requests.size());
+		irodsCommands.irodsFunctionPipelined(requests, pipelineDepth);
+		return requests.size();
+	}
+
+	/**
+	 * @return <code>int</code> with the number of requests waiting for
+	 *         <code>execute()</code>
+	 */
+	public synchronized int getQueuedCount() {
+		return queuedRequests.size();
+	}
+
+	public int getPipelineDepth() {
+		return pipelineDepth;
+	}
+
+	/**
+	 * Take a request that has not been sent out of the queue.
+	 *
+	 * @return <code>boolean</code> that is <code>true</code> if the request was
+	 *         still queued
+	 */
+	synchronized boolean dequeue(final PipelinedRequest request) {
+		return queuedRequests.remove(request);
+	}
+
+}
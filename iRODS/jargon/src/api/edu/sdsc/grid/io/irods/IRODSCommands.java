@@ -44,21 +44,26 @@ package edu.sdsc.grid.io.irods;
 import static edu.sdsc.grid.io.irods.IRODSConstants.*;
 
 import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.net.ProtocolException;
 import java.net.Socket;
 import java.net.URI;
+import java.nio.channels.FileChannel;
 import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
+import java.util.List;
 
 import org.irods.jargon.core.accessobject.BulkFileOperationsAO;
 import org.irods.jargon.core.accessobject.IRODSAccessObjectFactory;
 import org.irods.jargon.core.accessobject.IRODSAccessObjectFactoryImpl;
 import org.irods.jargon.core.accessobject.RemoteExecutionOfCommandsAO;
-import org.irods.jargon.core.connection.ConnectionConstants;
 import org.irods.jargon.core.connection.EnvironmentalInfoAccessor;
 import org.irods.jargon.core.connection.IRODSServerProperties;
 import org.irods.jargon.core.exception.JargonException;
@@ -67,6 +72,7 @@ import org.irods.jargon.core.packinstr.CollInp;
 import org.irods.jargon.core.packinstr.DataObjInp;
 import org.irods.jargon.core.packinstr.IRodsPI;
 import org.irods.jargon.core.packinstr.OpenedDataObjInp;
+import org.irods.jargon.core.packinstr.TransferOptions;
 import org.irods.jargon.core.query.GenQueryClassicMidLevelService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -83,6 +89,7 @@ import edu.sdsc.grid.io.MetaDataRecordList;
 import edu.sdsc.grid.io.MetaDataSelect;
 import edu.sdsc.grid.io.MetaDataSet;
 import edu.sdsc.grid.io.Namespace;
+import edu.sdsc.grid.io.local.LocalFile;
 
 /**
  * Instances of this class support mid-level communication with the IRODS
@@ -101,6 +108,12 @@ public class IRODSCommands {
 
 	private static Logger log = LoggerFactory.getLogger(IRODSCommands.class);
 
+	/**
+	 * Bytes moved per read or write when a restarted transfer fills in the
+	 * ranges missing from its journal.
+	 */
+	private static final int RESTART_BUFFER_SIZE = 1024 * 1024;
+
 	public static String encoding = "utf-8";
 	static {
 		try {
@@ -121,6 +134,12 @@ public class IRODSCommands {
 	private IRODSConnection irodsConnection;
 	private IRODSServerProperties irodsServerProperties;
 
+	/**
+	 * Options for gets and puts, the number of threads requested for a
+	 * parallel transfer is taken from here.
+	 */
+	private volatile TransferOptions transferOptions = new TransferOptions();
+
 	/**
 	 * Handles connection protocol.
 	 * 
@@ -266,10 +285,7 @@ public class IRODSCommands {
 				new Tag(relVersion, IRODSAccount.getVersion()),
 				new Tag(apiVersion, IRODSAccount.getAPIVersion()),
 				new Tag(option, IRODSAccount.getOption()), });
-		String out = startupPacket.parseTag();
-		irodsConnection.send(irodsConnection.createHeader(RODS_CONNECT,
-				out.length(), 0, 0, 0));
-		irodsConnection.send(out);
+		irodsConnection.sendMessage(RODS_CONNECT, startupPacket, 0, 0, 0);
 		irodsConnection.flush();
 		Tag responseMessage = irodsConnection.readMessage();
 
@@ -437,13 +453,8 @@ public class IRODSCommands {
 		}
 
 		try {
-			irodsConnection
-					.send(irodsConnection.createHeader(
-							RODS_API_REQ,
-							message.getBytes(ConnectionConstants.JARGON_CONNECTION_ENCODING).length,
-							errorLength, byteStringLength, intInfo));
-
-			irodsConnection.send(message);
+			irodsConnection.sendMessage(RODS_API_REQ, message, errorLength,
+					byteStringLength, intInfo);
 
 			if (byteStringLength > 0) {
 				irodsConnection.send(bytes, byteOffset, byteStringLength);
@@ -499,12 +510,8 @@ public class IRODSCommands {
 			log.debug(message);
 		}
 		try {
-			irodsConnection
-					.send(irodsConnection.createHeader(
-							RODS_API_REQ,
-							message.getBytes(ConnectionConstants.JARGON_CONNECTION_ENCODING).length,
-							errorLength, byteStreamLength, intInfo));
-			irodsConnection.send(message);
+			irodsConnection.sendMessage(RODS_API_REQ, message, errorLength,
+					byteStreamLength, intInfo);
 			if (errorLength > 0) {
 				irodsConnection.send(new BufferedInputStream(errorStream),
 						errorLength);
@@ -568,21 +575,11 @@ public class IRODSCommands {
 			throw new IllegalArgumentException(err);
 		}
 
-		String out = message.parseTag();
-
-		if (out == null || out.length() == 0) {
-			String err = "null or missing message returned from parse";
-			log.error(err);
-			throw new IllegalArgumentException(err);
-		}
-
 		if (log.isDebugEnabled()) {
-			log.debug(out);
+			log.debug(message.parseTag());
 		}
-		irodsConnection.send(irodsConnection.createHeader(RODS_API_REQ,
-				out.getBytes(encoding).length, errorLength, byteStringLength,
-				intInfo));
-		irodsConnection.send(out);
+		irodsConnection.sendMessage(RODS_API_REQ, message, errorLength,
+				byteStringLength, intInfo);
 		if (byteStringLength > 0) {
 			irodsConnection.send(bytes, byteOffset, byteStringLength);
 		}
@@ -605,23 +602,21 @@ public class IRODSCommands {
 			throw new IllegalArgumentException(err);
 		}
 
-		String out = irodsPI.getParsedTags();
+		Tag message = irodsPI.getTagValue();
 
-		if (out == null || out.length() == 0) {
-			String err = "null or missing message returned from parse";
+		if (message == null) {
+			String err = "null message returned from packing instruction";
 			log.error(err);
 			throw new IllegalArgumentException(err);
 		}
 
 		if (log.isDebugEnabled()) {
-			log.debug(out);
+			log.debug(message.parseTag());
 		}
 
 		try {
-			irodsConnection.send(irodsConnection.createHeader(RODS_API_REQ,
-					out.getBytes(encoding).length, errorLength,
-					byteStringLength, irodsPI.getApiNumber()));
-			irodsConnection.send(out);
+			irodsConnection.sendMessage(RODS_API_REQ, message, errorLength,
+					byteStringLength, irodsPI.getApiNumber());
 
 			if (byteStringLength > 0) {
 				irodsConnection.send(bytes, byteOffset, byteStringLength);
@@ -654,8 +649,7 @@ public class IRODSCommands {
 			throw new IllegalArgumentException(err);
 		}
 
-		return irodsFunction(RODS_API_REQ, irodsPI.getParsedTags(),
-				irodsPI.getApiNumber());
+		return irodsFunction(irodsPI, null, 0, 0, null, 0, 0);
 	}
 
 	/**
@@ -678,31 +672,130 @@ public class IRODSCommands {
 			throw new IllegalArgumentException(err);
 		}
 
-		String out = message.parseTag();
+		if (log.isDebugEnabled()) {
+			log.debug(message.parseTag());
+		}
+		irodsConnection.sendMessage(RODS_API_REQ, message, errorLength,
+				byteStringLength, intInfo);
+		if (errorLength > 0) {
+			irodsConnection.send(errorStream, errorLength);
+		}
+		if (byteStringLength > 0) {
+			irodsConnection.send(byteStream, byteStringLength);
+		}
+		irodsConnection.flush();
+		return irodsConnection.readMessage();
+	}
+
+	/**
+	 * Create an iRODS message Tag, including header, sending the byte stream
+	 * straight from the given local file channel.
+	 */
+	synchronized Tag irodsFunction(final String type, final Tag message,
+			final FileChannel byteChannel, final long byteStringLength,
+			final int intInfo) throws IOException {
 
-		if (out == null || out.length() == 0) {
-			String err = "null or missing message returned from parse";
+		if (type == null || type.length() == 0) {
+			String err = "null or blank type";
 			log.error(err);
 			throw new IllegalArgumentException(err);
 		}
 
-		if (log.isDebugEnabled()) {
-			log.debug(out);
+		if (message == null) {
+			String err = "null message";
+			log.error(err);
+			throw new IllegalArgumentException(err);
 		}
-		irodsConnection.send(irodsConnection.createHeader(RODS_API_REQ,
-				out.getBytes(encoding).length, errorLength, byteStringLength,
-				intInfo));
-		irodsConnection.send(out);
-		if (errorLength > 0) {
-			irodsConnection.send(errorStream, errorLength);
+
+		if (log.isDebugEnabled()) {
+			log.debug(message.parseTag());
 		}
+		irodsConnection.sendMessage(RODS_API_REQ, message, 0,
+				byteStringLength, intInfo);
 		if (byteStringLength > 0) {
-			irodsConnection.send(byteStream, byteStringLength);
+			irodsConnection.send(byteChannel, 0, byteStringLength);
 		}
 		irodsConnection.flush();
 		return irodsConnection.readMessage();
 	}
 
+	/**
+	 * Send a batch of requests queued on an {@link IRODSCommandPipeline
+	 * IRODSCommandPipeline}, at most <code>pipelineDepth</code> at a time with
+	 * one flush each, and complete each request with its reply. An
+	 * <code>IRODSException</code> for one request fails only that request.
+	 * 
+	 * @throws JargonException
+	 *             if the connection failed, every request not answered has
+	 *             then been failed with the same cause
+	 */
+	synchronized void irodsFunctionPipelined(
+			final List<PipelinedRequest> requests, final int pipelineDepth)
+			throws JargonException {
+
+		int answered = 0;
+		try {
+			while (answered < requests.size()) {
+				int windowEnd = Math.min(answered + pipelineDepth,
+						requests.size());
+
+				for (int i = answered; i < windowEnd; i++) {
+					PipelinedRequest request = requests.get(i);
+					if (log.isDebugEnabled()) {
+						log.debug(request.getMessage().parseTag());
+					}
+					irodsConnection.sendMessage(RODS_API_REQ, request
+							.getMessage(), 0, 0, request.getApiNumber());
+				}
+				irodsConnection.flush();
+
+				for (; answered < windowEnd; answered++) {
+					PipelinedRequest request = requests.get(answered);
+					Tag reply;
+					try {
+						reply = irodsConnection.readMessage();
+					} catch (IRODSException e) {
+						// readMessage() reads the rest of an error reply
+						log.warn("pipelined request failed", e);
+						request.fail(e);
+						continue;
+					}
+
+					Tag header = reply == null ? null : reply
+							.getTag(MsgHeader_PI);
+					int length = header == null ? 0 : header.getTag(bsLen)
+							.getIntValue();
+					if (length > 0) {
+						// no one will read the bytes, skip them to the next reply
+						irodsConnection.skip(length);
+						log.warn("pipelined request api:{} replied with bytes",
+								request.getApiNumber());
+						request.fail(new JargonException(
+								"pipelined request replied with a byte stream, api:"
+										+ request.getApiNumber()));
+						continue;
+					}
+					request.complete(reply);
+				}
+			}
+		} catch (IOException e) {
+			log.error("io exception in pipelined requests", e);
+			failRemaining(requests, answered, e);
+			throw new JargonException(e);
+		} catch (RuntimeException e) {
+			log.error("error reading pipelined replies", e);
+			failRemaining(requests, answered, e);
+			throw e;
+		}
+	}
+
+	private void failRemaining(final List<PipelinedRequest> requests,
+			final int from, final Throwable cause) {
+		for (int i = from; i < requests.size(); i++) {
+			requests.get(i).fail(cause);
+		}
+	}
+
 	/*
 	 * Functions which call irodsFunction(...) then send or recieve more bytes,
 	 * such as get, put, fileRead, or really any time the message header
@@ -1007,6 +1100,106 @@ public class IRODSCommands {
 		}
 	}
 
+	/**
+	 * Read ranges of an open data object, each into its own byte array, with
+	 * a seek and a read request for each range. At most
+	 * <code>pipelineDepth</code> ranges are sent with one flush before their
+	 * replies are read, as with {@link #irodsFunctionPipelined(List, int)
+	 * irodsFunctionPipelined}. The file pointer of the descriptor is left at
+	 * the end of the last range.
+	 * 
+	 * @param fd
+	 *            <code>int</code> with the open file descriptor
+	 * @param offsets
+	 *            <code>long[]</code> with the offset of each range
+	 * @param buffers
+	 *            <code>byte[][]</code> with an array as long as each range
+	 * @param pipelineDepth
+	 *            <code>int</code> with the most ranges outstanding at once
+	 * @return <code>int[]</code> with the bytes read for each range, fewer
+	 *         than asked for at the end of the file
+	 * @throws IOException
+	 *             for the first range that iRODS failed, after the replies to
+	 *             the others have been read
+	 */
+	synchronized int[] fileReadPipelined(final int fd, final long[] offsets,
+			final byte[][] buffers, final int pipelineDepth) throws IOException {
+		if (offsets.length != buffers.length) {
+			throw new IllegalArgumentException(
+					"an offset is needed for each buffer");
+		}
+		if (pipelineDepth <= 0) {
+			throw new IllegalArgumentException(
+					"pipelineDepth must be greater than zero");
+		}
+
+		int[] counts = new int[buffers.length];
+		IRODSException firstError = null;
+		int answered = 0;
+		while (answered < buffers.length) {
+			int windowEnd = Math.min(answered + pipelineDepth, buffers.length);
+
+			for (int i = answered; i < windowEnd; i++) {
+				Tag seekMessage;
+				try {
+					seekMessage = OpenedDataObjInp.instanceForFileSeek(
+							offsets[i], fd, GeneralRandomAccessFile.SEEK_START)
+							.getTagValue();
+				} catch (JargonException e) {
+					throw new IOException(e.getMessage());
+				}
+				irodsConnection.sendMessage(RODS_API_REQ, seekMessage, 0, 0,
+						OpenedDataObjInp.SEEK_API_NBR);
+				irodsConnection.sendMessage(RODS_API_REQ, new Tag(
+						dataObjReadInp_PI, new Tag[] { new Tag(l1descInx, fd),
+								new Tag(len, buffers[i].length), }), 0, 0,
+						DATA_OBJ_READ_AN);
+			}
+			irodsConnection.flush();
+
+			for (; answered < windowEnd; answered++) {
+				try {
+					irodsConnection.readMessage();
+				} catch (IRODSException e) {
+					// the read that follows still has a reply to consume
+					log.warn("pipelined seek failed", e);
+					if (firstError == null) {
+						firstError = e;
+					}
+				}
+
+				Tag message;
+				try {
+					message = irodsConnection.readMessage();
+				} catch (IRODSException e) {
+					log.warn("pipelined read failed", e);
+					if (firstError == null) {
+						firstError = e;
+					}
+					continue;
+				}
+				if (message == null) {
+					continue;
+				}
+
+				int length = message.getTag(MsgHeader_PI).getTag(bsLen)
+						.getIntValue();
+				if (length > buffers[answered].length) {
+					throw new ProtocolException("read reply of " + length
+							+ " bytes for a range of "
+							+ buffers[answered].length);
+				}
+				counts[answered] = irodsConnection.read(buffers[answered], 0,
+						length);
+			}
+		}
+
+		if (firstError != null) {
+			throw firstError;
+		}
+		return counts;
+	}
+
 	/**
 	 * Set the file position for the IRODS file to the specified position
 	 * 
@@ -1099,11 +1292,38 @@ public class IRODSCommands {
 			rescKeyValueTag = Tag.createKeyValueTag(kvArray);
 		}
 
+		/*
+		 * a memory mapped get sizes the local file first, the size has to be
+		 * looked up now, as the connection is busy once the transfer starts
+		 */
+		boolean memoryMapped = getTransferOptions().isMemoryMappedParallelGet()
+				&& destination instanceof LocalFile;
+		boolean restartable = getTransferOptions().isRestartableTransfers()
+				&& destination instanceof LocalFile;
+		long expectedLength = memoryMapped || restartable ? source.length() : 0;
+		restartable = restartable && expectedLength > MAX_SZ_FOR_SINGLE_BUF;
+
+		if (restartable) {
+			File localFile = ((LocalFile) destination).getFile();
+			TransferJournal journal = TransferJournal.resume(
+					getRestartJournalDirectory(), GET_OPR, localFile
+							.getAbsolutePath(), source.getAbsolutePath(),
+					expectedLength, 0);
+			if (journal != null && !localFile.exists()) {
+				log.info("local file for the journaled get is gone, getting all of it");
+				journal.delete();
+			} else if (journal != null) {
+				resumeGet(source, localFile, journal);
+				return;
+			}
+		}
+
 		Tag message = new Tag(DataObjInp_PI, new Tag[] {
 				new Tag(objPath, source.getAbsolutePath()),
 				new Tag(createMode, 0), new Tag(openFlags, 0),
 				new Tag(offset, 0), new Tag(dataSize, 0),
-				new Tag(numThreads, 0), new Tag(oprType, GET_OPR),
+				new Tag(numThreads, getRequestedThreads()),
+				new Tag(oprType, GET_OPR),
 				rescKeyValueTag, });
 
 		message = irodsFunction(RODS_API_REQ, message, DATA_OBJ_GET_AN);
@@ -1145,6 +1365,42 @@ public class IRODSCommands {
 				int pass = message.getTag(PortList_PI).getTag(cookie)
 						.getIntValue();
 
+				if (destination instanceof LocalFile) {
+					File file = ((LocalFile) destination).getFile();
+					TransferJournal journal = null;
+					if (restartable) {
+						journal = TransferJournal.instance(
+								getRestartJournalDirectory(), GET_OPR, file
+										.getAbsolutePath(), source
+										.getAbsolutePath(), expectedLength, 0);
+					}
+					RandomAccessFile localFile = new RandomAccessFile(file,
+							"rw");
+					try {
+						if (memoryMapped && expectedLength > 0) {
+							localFile.setLength(expectedLength);
+						}
+						long timeoutMillis = getTransferOptions()
+								.getParallelTransferTimeoutMillis();
+						long start = System.nanoTime();
+						long received = ParallelTransferEngine
+								.getSharedInstance().get(host, port, pass,
+										threads, localFile.getChannel(),
+										memoryMapped, journal, timeoutMillis);
+						recordParallelTransfer(threads, received, start);
+						if (journal != null) {
+							journal.delete();
+						}
+					} finally {
+						localFile.close();
+						if (journal != null) {
+							journal.close();
+						}
+					}
+					log.info("parallel transfer complete");
+					return;
+				}
+
 				Thread[] transferThreads = new Thread[threads];
 				TransferThread[] transfer = new TransferThread[threads];
 				for (int i = 0; i < threads; i++) {
@@ -1185,8 +1441,21 @@ public class IRODSCommands {
 		} else {
 			log.info("normal file transfer started");
 			// read the message byte stream into the local file
-			irodsConnection.read(
-					FileFactory.newRandomAccessFile(destination, "rw"), length);
+			if (destination instanceof LocalFile) {
+				RandomAccessFile localFile = new RandomAccessFile(
+						((LocalFile) destination).getFile(), "rw");
+				try {
+					FileChannel channel = localFile.getChannel();
+					irodsConnection.read(channel, 0, length);
+					channel.truncate(length);
+				} finally {
+					localFile.close();
+				}
+			} else {
+				irodsConnection.read(
+						FileFactory.newRandomAccessFile(destination, "rw"),
+						length);
+			}
 			log.info("transfer is complete");
 		}
 
@@ -1242,6 +1511,23 @@ public class IRODSCommands {
 						+ length
 						+ " is greater that the MAX_SZ_FOR_SINGLE_BUF setting");
 			}
+
+			boolean restartable = getTransferOptions()
+					.isRestartableTransfers()
+					&& source instanceof LocalFile;
+			if (restartable) {
+				File localFile = ((LocalFile) source).getFile();
+				TransferJournal journal = TransferJournal.resume(
+						getRestartJournalDirectory(), PUT_OPR, localFile
+								.getAbsolutePath(), destination
+								.getAbsolutePath(), length, localFile
+								.lastModified());
+				if (journal != null
+						&& resumePut(localFile, destination, journal)) {
+					return;
+				}
+			}
+
 			String[][] keyword = {
 					{ IRODSMetaDataSet.DATA_TYPE_KW, destination.getDataType() },
 					{ null }, { null } };
@@ -1258,7 +1544,8 @@ public class IRODSCommands {
 							new Tag(createMode, 448), // octal for 700 owner has
 							// rw
 							new Tag(openFlags, 1), new Tag(offset, 0),
-							new Tag(dataSize, length), new Tag(numThreads, 0),
+							new Tag(dataSize, length),
+							new Tag(numThreads, getRequestedThreads()),
 							new Tag(oprType, PUT_OPR),
 							Tag.createKeyValueTag(keyword), });
 
@@ -1273,13 +1560,45 @@ public class IRODSCommands {
 			if (log.isInfoEnabled()) {
 				log.info("tranfer will be done using " + threads + " threads");
 			}
-			if (threads > 0) {
-				InputStream[] inputs = new InputStream[threads];
-				for (int i = 0; i < threads; i++) {
-					inputs[i] = new BufferedInputStream(
-							FileFactory.newFileInputStream(source));
+			if (threads > 0 && source instanceof LocalFile) {
+				String host = message.getTag(PortList_PI).getTag(hostAddr)
+						.getStringValue();
+				int port = message.getTag(PortList_PI).getTag(portNum)
+						.getIntValue();
+				int pass = message.getTag(PortList_PI).getTag(cookie)
+						.getIntValue();
+				File file = ((LocalFile) source).getFile();
+				TransferJournal journal = null;
+				if (restartable) {
+					journal = TransferJournal.instance(
+							getRestartJournalDirectory(), PUT_OPR, file
+									.getAbsolutePath(), destination
+									.getAbsolutePath(), length, file
+									.lastModified());
 				}
+				FileInputStream localFile = new FileInputStream(file);
+				try {
+					long start = System.nanoTime();
+					long sent = ParallelTransferEngine.getSharedInstance().put(
+							host, port, pass, threads, localFile.getChannel(),
+							journal,
+							getTransferOptions()
+									.getParallelTransferTimeoutMillis());
+					recordParallelTransfer(threads, sent, start);
+					log.info("transfer is complete");
 
+					// return complete( file descriptor )
+					operationComplete(message.getTag(l1descInx).getIntValue());
+					if (journal != null) {
+						journal.delete();
+					}
+				} finally {
+					localFile.close();
+					if (journal != null) {
+						journal.close();
+					}
+				}
+			} else if (threads > 0) {
 				synchronized (this) {
 					String host = message.getTag(PortList_PI).getTag(hostAddr)
 							.getStringValue();
@@ -1287,41 +1606,23 @@ public class IRODSCommands {
 							.getIntValue();
 					int pass = message.getTag(PortList_PI).getTag(cookie)
 							.getIntValue();
-					long transferLength = length / threads;
 
+					/*
+					 * each thread sends whatever ranges the server asks for on
+					 * its socket, rather than a fixed slice of the file
+					 */
 					Thread[] transferThreads = new Thread[threads];
 					TransferThread[] transfer = new TransferThread[threads];
-					for (int i = 0; i < threads - 1; i++) {
-						transfer[i] = new TransferThread(host, port, pass, // connection
-								// info
-								inputs[i], // sourceFile
-								transferLength * i, // offset
-								transferLength // length
-						);
+					for (int i = 0; i < threads; i++) {
+						transfer[i] = new TransferThread(host, port, pass,
+								FileFactory.newRandomAccessFile(source, "r"),
+								PUT_OPR);
 						transferThreads[i] = new Thread(transfer[i]);
 						if (log.isInfoEnabled()) {
 							log.info("creating transfer thread number:" + i
 									+ "with thread name:"
 									+ transferThreads[i].getName());
 						}
-
-					}
-					// last thread is a little different
-					transfer[threads - 1] = new TransferThread(host, port,
-							pass, // connection info
-							inputs[threads - 1], // sourceFile
-							transferLength * (threads - 1), // offset
-							(int) (length - transferLength * (threads - 1)) // length
-																			// FIXME:should
-																			// this
-																			// be
-																			// int?
-					);
-					transferThreads[threads - 1] = new Thread(
-							transfer[threads - 1]);
-					if (log.isInfoEnabled()) {
-						log.info("creating final tranfer thread as:"
-								+ transferThreads[threads - 1].getName());
 					}
 
 					for (int i = 0; i < threads; i++) {
@@ -1342,9 +1643,8 @@ public class IRODSCommands {
 					}
 					log.info("closing threads");
 					for (int i = 0; i < threads; i++) {
-						if (transferThreads[i].isAlive()) {
-							transfer[i].close();
-						}
+						transfer[i].close();
+						transfer[i].local.close();
 					}
 
 					log.info("transfer is complete");
@@ -1377,18 +1677,172 @@ public class IRODSCommands {
 							Tag.createKeyValueTag(keyword), });
 			// send the message, no result expected.
 			// exception thrown on error.
-			irodsFunction(
-					RODS_API_REQ,
-					message,
-					0,
-					null,
-					length,
-					new BufferedInputStream(FileFactory
-							.newFileInputStream(source)), DATA_OBJ_PUT_AN);
+			if (source instanceof LocalFile) {
+				FileInputStream localFile = new FileInputStream(
+						((LocalFile) source).getFile());
+				try {
+					irodsFunction(RODS_API_REQ, message,
+							localFile.getChannel(), length, DATA_OBJ_PUT_AN);
+				} finally {
+					localFile.close();
+				}
+			} else {
+				irodsFunction(
+						RODS_API_REQ,
+						message,
+						0,
+						null,
+						length,
+						new BufferedInputStream(FileFactory
+								.newFileInputStream(source)), DATA_OBJ_PUT_AN);
+			}
 			log.info("transfer complete");
 		}
 	}
 
+	/**
+	 * Finish a get that failed part way, reading the ranges its journal does
+	 * not have with seeks and reads on the opened data object, then comparing
+	 * checksums.
+	 */
+	private void resumeGet(final IRODSFile source, final File destination,
+			final TransferJournal journal) throws IOException {
+		if (log.isInfoEnabled()) {
+			log.info("resuming get of " + source.getAbsolutePath() + ", "
+					+ journal.getCompletedLength() + " of "
+					+ journal.getLength() + " bytes were received before");
+		}
+
+		int fd = fileOpen(source, true, false);
+		try {
+			RandomAccessFile localFile = new RandomAccessFile(destination,
+					"rw");
+			try {
+				localFile.setLength(journal.getLength());
+				byte[] buffer = new byte[RESTART_BUFFER_SIZE];
+				for (long[] range : journal.getMissingRanges()) {
+					long position = range[0];
+					long end = range[0] + range[1];
+					fileSeek(fd, position, OpenedDataObjInp.SEEK_START);
+					while (position < end) {
+						int n = fileRead(fd, buffer, 0, (int) Math.min(
+								buffer.length, end - position));
+						if (n <= 0) {
+							throw new EOFException("data object ended at "
+									+ position + " of "
+									+ journal.getLength() + " bytes");
+						}
+						localFile.seek(position);
+						localFile.write(buffer, 0, n);
+						journal.recordCompleted(position, n);
+						position += n;
+					}
+				}
+			} finally {
+				localFile.close();
+			}
+		} finally {
+			journal.close();
+			fileClose(fd);
+		}
+
+		verifyRestartedTransfer(source, new LocalFile(destination), journal);
+	}
+
+	/**
+	 * Finish a put that failed part way, writing the ranges its journal does
+	 * not have with seeks and writes on the opened data object, then comparing
+	 * checksums.
+	 * 
+	 * @return <code>boolean</code> that is <code>false</code> if the data
+	 *         object could not be opened, in which case the journal is removed
+	 *         and the whole file should be put
+	 */
+	private boolean resumePut(final File source, final IRODSFile destination,
+			final TransferJournal journal) throws IOException {
+		if (log.isInfoEnabled()) {
+			log.info("resuming put to " + destination.getAbsolutePath() + ", "
+					+ journal.getCompletedLength() + " of "
+					+ journal.getLength() + " bytes were sent before");
+		}
+
+		int fd;
+		try {
+			fd = fileOpen(destination, false, true);
+		} catch (IRODSException e) {
+			log.warn("unable to open the data object to resume the put, "
+					+ "the whole file will be sent", e);
+			journal.delete();
+			return false;
+		}
+
+		try {
+			RandomAccessFile localFile = new RandomAccessFile(source, "r");
+			try {
+				byte[] buffer = new byte[RESTART_BUFFER_SIZE];
+				for (long[] range : journal.getMissingRanges()) {
+					long position = range[0];
+					long end = range[0] + range[1];
+					fileSeek(fd, position, OpenedDataObjInp.SEEK_START);
+					localFile.seek(position);
+					while (position < end) {
+						int n = (int) Math.min(buffer.length, end - position);
+						localFile.readFully(buffer, 0, n);
+						int written = fileWrite(fd, buffer, 0, n);
+						if (written != n) {
+							throw new ProtocolException("wrote " + written
+									+ " of " + n + " bytes at " + position);
+						}
+						journal.recordCompleted(position, n);
+						position += n;
+					}
+				}
+			} finally {
+				localFile.close();
+			}
+		} finally {
+			journal.close();
+			fileClose(fd);
+		}
+
+		verifyRestartedTransfer(destination, new LocalFile(source), journal);
+		return true;
+	}
+
+	/**
+	 * Compare the checksum iRODS computes for the data object with the local
+	 * file. The journal is removed once the checksums have been compared, so
+	 * after a mismatch the next attempt moves the whole file.
+	 */
+	private void verifyRestartedTransfer(final IRODSFile irodsFile,
+			final LocalFile localFile, final TransferJournal journal)
+			throws IOException {
+		String irodsChecksum = checksum(irodsFile, true);
+		String localChecksum = localFile.checksumUsingMD5();
+		journal.delete();
+
+		if (irodsChecksum == null || !irodsChecksum.equals(localChecksum)) {
+			log.error("checksum mismatch after restarted transfer, irods:"
+					+ irodsChecksum + " local:" + localChecksum);
+			throw new IOException("checksum of " + irodsFile.getAbsolutePath()
+					+ " does not match " + localFile.getAbsolutePath()
+					+ " after restarted transfer");
+		}
+		log.info("restarted transfer complete, checksums match");
+	}
+
+	/**
+	 * @return <code>File</code> with the directory for the journals of
+	 *         restartable transfers
+	 */
+	private File getRestartJournalDirectory() {
+		String directory = getTransferOptions().getRestartJournalDirectory();
+		if (directory == null || directory.length() == 0) {
+			directory = System.getProperty("java.io.tmpdir");
+		}
+		return new File(directory);
+	}
+
 	/**
 	 * Add or update an AVU value for a data object or collection
 	 * 
@@ -1768,12 +2222,28 @@ public class IRODSCommands {
 	}
 
 	String checksum(final IRODSFile file) throws IOException {
+		return checksum(file, false);
+	}
+
+	/**
+	 * @param force
+	 *            <code>boolean</code> that is <code>true</code> to have iRODS
+	 *            compute the checksum again, rather than return the one it
+	 *            has stored
+	 */
+	String checksum(final IRODSFile file, final boolean force)
+			throws IOException {
+		String[][] keyword = null;
+		if (force) {
+			keyword = new String[][] { { IRODSMetaDataSet.FORCE_CHKSUM_KW,
+					"" } };
+		}
 		Tag message = new Tag(DataObjInp_PI, new Tag[] {
 				new Tag(objPath, file.getAbsolutePath()),
 				new Tag(createMode, 0), new Tag(openFlags, 0),
 				new Tag(offset, 0), new Tag(dataSize, 0),
 				new Tag(numThreads, 0), new Tag(oprType, 0),
-				Tag.createKeyValueTag(null) });
+				Tag.createKeyValueTag(keyword) });
 
 		message = irodsFunction(RODS_API_REQ, message, DATA_OBJ_CHKSUM_AN);
 		if (message != null) {
@@ -2093,8 +2563,7 @@ public class IRODSCommands {
 		InputStream in;
 		OutputStream out;
 
-		long transferLength;
-		long offset;
+		int operation;
 		int which;
 
 		/**
@@ -2102,54 +2571,37 @@ public class IRODSCommands {
 		 */
 		TransferThread(final String host, final int port, final int cookie,
 				final GeneralRandomAccessFile destination) throws IOException {
-			local = destination;
-			s = new Socket(host, port);
-			byte[] outputBuffer = new byte[4];
-			Host.copyInt(cookie, outputBuffer);
-			in = new BufferedInputStream(s.getInputStream());
-			s.getOutputStream().write(outputBuffer);
-			which = incThread;
-			incThread++;
-			if (log.isInfoEnabled()) {
-				log.info("transfer thread details:");
-				log.info("    host:" + host);
-				log.info("    port:" + port);
-				log.info("    destination:"
-						+ destination.getFile().getAbsolutePath());
-			}
+			this(host, port, cookie, destination, GET_OPR);
 		}
 
 		/**
-		 * Used by client parallel transfer put
+		 * Used by client parallel transfer get and put
 		 * 
-		 * @param host
-		 * @param port
-		 * @param cookie
-		 * @param in
-		 *            file to upload
-		 * @param offset
-		 *            offset into the file
-		 * @param length
-		 *            number of bytes this thread should transfer
+		 * @param local
+		 *            file to download into or upload from
+		 * @param operation
+		 *            <code>GET_OPR</code> or <code>PUT_OPR</code>
 		 * @throws java.io.IOException
 		 */
 		TransferThread(final String host, final int port, final int cookie,
-				final InputStream in, final long offset, final long length)
+				final GeneralRandomAccessFile local, final int operation)
 				throws IOException {
-			this.in = in;
-			transferLength = length;
-			if (offset > 0) {
-				in.skip(offset);
-			}
-			this.offset = offset;
+			this.local = local;
+			this.operation = operation;
 			s = new Socket(host, port);
+			byte[] outputBuffer = new byte[4];
+			Host.copyInt(cookie, outputBuffer);
+			in = new BufferedInputStream(s.getInputStream());
 			out = s.getOutputStream();
-			// write the cookie
-			byte b[] = new byte[4];
-			Host.copyInt(cookie, b);
-			out.write(b);
+			out.write(outputBuffer);
 			which = incThread;
 			incThread++;
+			if (log.isInfoEnabled()) {
+				log.info("transfer thread details:");
+				log.info("    host:" + host);
+				log.info("    port:" + port);
+				log.info("    local file:" + local.getFile().getAbsolutePath());
+			}
 		}
 
 		@Override
@@ -2172,9 +2624,7 @@ public class IRODSCommands {
 
 		int readInt() throws IOException {
 			byte[] b = new byte[4];
-			int read = in.read(b);
-			if (read != 4) {
-			}
+			readFully(b);
 			return Host.castToInt(b);
 		}
 
@@ -2182,20 +2632,26 @@ public class IRODSCommands {
 			// length comes down the wire as an signed long long in network
 			// order
 			byte[] b = new byte[8];
+			readFully(b);
+			return Host.castToLong(b);
+		}
 
-			int read = in.read(b);
-			if (read != 8) {
-				log.error("did not read 8 bytes for long");
-				throw new RuntimeException(
-						"unable to read all the bytes for an expected long value");
+		private void readFully(final byte[] b) throws IOException {
+			int read = 0;
+			while (read < b.length) {
+				int n = in.read(b, read, b.length - read);
+				if (n < 0) {
+					log.error("connection closed in transfer header");
+					throw new EOFException(
+							"connection closed in transfer header");
+				}
+				read += n;
 			}
-
-			return Host.castToLong(b);
 		}
 
 		public void run() {
 			try {
-				if (local != null) {
+				if (operation == GET_OPR) {
 					log.info("transfer is a get operation");
 					get();
 				} else {
@@ -2238,30 +2694,52 @@ public class IRODSCommands {
 			}
 		}
 
+		/**
+		 * Send the ranges the server asks for on the socket set up for this
+		 * thread, until it sends <code>DONE_OPR</code>. See
+		 * rcPartialDataPut() in rcPortalOpr.c for the IRODS side.
+		 * 
+		 * @throws IOException
+		 */
 		void put() throws IOException {
-			// Holds all the data for transfer
-			byte[] buffer = null;
-			int read = 0;
+			log.info("parallel transfer put");
+			byte[] buffer = new byte[IRODSConnection.OUTPUT_BUFFER_LENGTH];
+
+			while (true) {
+				int operation = readInt();
+				readInt(); // flags
+				long offset = readLong();
+				long length = readLong();
+				if (log.isDebugEnabled()) {
+					log.debug("put header operation:" + operation + " offset:"
+							+ offset + " length:" + length);
+				}
 
-			// begin transfer
-			if (transferLength <= 0) {
-				return;
-			} else {
-				// length has a max of 8mb?
-				buffer = new byte[IRODSConnection.OUTPUT_BUFFER_LENGTH];
-			}
+				if (operation == DONE_OPR) {
+					return;
+				}
+				if (operation != PUT_OPR) {
+					throw new ProtocolException("Parallel transfer expected "
+							+ "PUT, server requested " + operation);
+				}
+				if (offset < 0 || length < 0) {
+					throw new ProtocolException(
+							"invalid parallel transfer range, offset:" + offset
+									+ " length:" + length);
+				}
 
-			while (transferLength > 0) {
-				// need Math.min or reads into what the other threads are
-				// transferring
-				read = in.read(buffer, 0, (int) Math.min(
-						IRODSConnection.OUTPUT_BUFFER_LENGTH, transferLength));
-				if (read > 0) {
-					transferLength -= read;
+				local.seek(offset, GeneralRandomAccessFile.SEEK_START);
+				while (length > 0) {
+					int read = local.read(buffer, 0, (int) Math.min(
+							buffer.length, length));
+					if (read < 0) {
+						throw new EOFException("local file ended with "
+								+ length + " bytes of the range left");
+					}
 					out.write(buffer, 0, read);
-				} else if (read < 0) {
-					throw new IOException("oops");
+					length -= read;
 				}
+				out.flush();
 			}
 		}
 
@@ -2390,6 +2868,43 @@ public class IRODSCommands {
 		this.irodsServerProperties = irodsServerProperties;
 	}
 
+	public TransferOptions getTransferOptions() {
+		return transferOptions;
+	}
+
+	public void setTransferOptions(final TransferOptions transferOptions) {
+		if (transferOptions == null) {
+			throw new IllegalArgumentException("null transferOptions");
+		}
+		this.transferOptions = transferOptions;
+	}
+
+	/**
+	 * @return <code>int</code> with the number of threads to ask the server
+	 *         for in a get or put, the server may use fewer
+	 */
+	private int getRequestedThreads() {
+		TransferOptions options = getTransferOptions();
+		int maxThreads = Math.max(options.getMaxThreads(), 0);
+		if (!options.isAutotuneThreads()) {
+			return maxThreads;
+		}
+		return ParallelTransferAutotuner.getSharedInstance().recommendThreads(
+				irodsAccount.getHost(), maxThreads);
+	}
+
+	/**
+	 * Feed a parallel transfer's throughput to the thread autotuner.
+	 */
+	private void recordParallelTransfer(final int threads, final long bytes,
+			final long startNanos) {
+		if (getTransferOptions().isAutotuneThreads()) {
+			ParallelTransferAutotuner.getSharedInstance().record(
+					irodsAccount.getHost(), threads, bytes,
+					System.nanoTime() - startNanos);
+		}
+	}
+
 	/**
 	 * Replicate the given file to all files in the given resource group. This
 	 * is analagous to an irepl -a command.
@@ -2,7 +2,7 @@ package edu.sdsc.grid.io.irods;
 
 import static org.irods.jargon.core.connection.ConnectionConstants.INT_LENGTH;
 
-import java.io.BufferedInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
@@ -11,9 +11,12 @@ import java.net.ProtocolException;
 import java.net.Socket;
 import java.net.UnknownHostException;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
 import java.util.Date;
 
 import org.irods.jargon.core.connection.IRODSManagedConnection;
+import org.irods.jargon.core.connection.IRODSTransportOptions;
 import org.irods.jargon.core.exception.JargonException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,23 +51,20 @@ public final class IRODSConnection implements IRODSManagedConnection {
 	// private final IRODSProtocolManager irodsProtocolManager;
 	private String connectionInternalIdentifier;
 	private boolean connected = false;
-	private Socket connection;
+	private IRODSTransport transport;
 
 	public Socket getConnection() {
-		return connection;
+		return transport.getSocket();
 	}
 
-	private InputStream irodsInputStream;
-
 	public InputStream getIrodsInputStream() {
-		return irodsInputStream;
+		return transport.getInputStream();
 	}
 
 	public OutputStream getIrodsOutputStream() {
-		return irodsOutputStream;
+		return transport.getOutputStream();
 	}
 
-	private OutputStream irodsOutputStream;
 	private final String encoding;
 	/**
 	 * Used in Debug mode
@@ -83,14 +83,27 @@ public final class IRODSConnection implements IRODSManagedConnection {
 	public static final int HEADER_INT_LENGTH = 4;
 
 	/**
-	 * Buffer output to the socket.
+	 * Largest inbound message buffer kept between reads, larger messages get a
+	 * buffer of their own that is dropped once parsed.
 	 */
-	private byte outputBuffer[] = new byte[OUTPUT_BUFFER_LENGTH];
+	static final int MAX_RETAINED_READ_BUFFER_LENGTH = 1024 * 1024;
 
 	/**
-	 * Holds the offset into the outputBuffer array for adding new data.
+	 * Reused to read headers, message bodies and error messages, which are
+	 * parsed straight out of this buffer.
 	 */
-	private int outputOffset = 0;
+	private byte readBuffer[] = new byte[8192];
+
+	/**
+	 * Reused to copy byte streams between the socket and local files, created
+	 * on first use.
+	 */
+	private byte transferBuffer[] = null;
+
+	/**
+	 * Reused to write outbound message headers and packing instructions.
+	 */
+	private final TagWriter messageWriter;
 
 	static IRODSConnection instance(final IRODSAccount irodsAccount,
 			final String encoding) throws IRODSException, JargonException {
@@ -152,12 +165,14 @@ public final class IRODSConnection implements IRODSManagedConnection {
 		this.irodsAccount = null;
 		// this.irodsServerProperties = null;
 		this.encoding = null;
+		this.messageWriter = null;
 	}
 
 	private IRODSConnection(final IRODSAccount irodsAccount,
 			final String encoding) {
 		this.irodsAccount = irodsAccount;
 		this.encoding = encoding;
+		this.messageWriter = new TagWriter(encoding);
 	}
 
 	/*
@@ -175,18 +190,7 @@ public final class IRODSConnection implements IRODSManagedConnection {
 		}
 
 		try {
-			connection = new Socket(irodsAccount.getHost(),
-					irodsAccount.getPort());
-			if (IRODSConstants.CONNECTION_TIMEOUT_VALUE != IRODSConstants.CONNECTION_TIMEOUT_NO_TIMEOUT) {
-				log.warn("setting a connection timeout of:{}",
-						IRODSConstants.CONNECTION_TIMEOUT_VALUE);
-				connection
-						.setSoTimeout(IRODSConstants.CONNECTION_TIMEOUT_VALUE);
-			}
-
-			irodsInputStream = new BufferedInputStream(
-					connection.getInputStream());
-			irodsOutputStream = connection.getOutputStream();
+			transport = openTransport(IRODSFileSystem.getTransportOptions());
 		} catch (UnknownHostException e) {
 			log.error("exception opening socket to:" + irodsAccount.getHost()
 					+ " port:" + irodsAccount.getPort(), e);
@@ -202,6 +206,41 @@ public final class IRODSConnection implements IRODSManagedConnection {
 		log.info("socket connected");
 	}
 
+	/**
+	 * Open the transport named in the options. The <code>NIO</code> transport
+	 * falls back to the <code>SOCKET</code> transport if a socket channel
+	 * cannot be opened, or if a read timeout is set, as reads on a blocking
+	 * channel ignore it.
+	 */
+	private IRODSTransport openTransport(
+			final IRODSTransportOptions transportOptions) throws IOException {
+		log.debug("transport options:{}", transportOptions);
+
+		if (transportOptions.getTransportType() == IRODSTransportOptions.TransportType.NIO) {
+			if (IRODSConstants.CONNECTION_TIMEOUT_VALUE != IRODSConstants.CONNECTION_TIMEOUT_NO_TIMEOUT) {
+				log.warn("connection timeout is set, using socket transport instead of nio");
+			} else {
+				SocketChannel channel = null;
+				try {
+					channel = SocketChannel.open();
+				} catch (IOException e) {
+					log.warn(
+							"unable to open socket channel, using socket transport instead of nio",
+							e);
+				}
+
+				if (channel != null) {
+					return NioSocketChannelTransport.instance(channel,
+							irodsAccount.getHost(), irodsAccount.getPort(),
+							transportOptions);
+				}
+			}
+		}
+
+		return SocketTransport.instance(irodsAccount.getHost(),
+				irodsAccount.getPort(), transportOptions, OUTPUT_BUFFER_LENGTH);
+	}
+
 	/*
 	 * physically closing down the socket. This method will be called at the by
 	 * {@link IRODSCommands IRODSCommands} at the appropriate time.
@@ -216,8 +255,8 @@ public final class IRODSConnection implements IRODSManagedConnection {
 		}
 
 		try {
-			log.debug("I'm connected, call connection.close()");
-			connection.close();
+			log.debug("I'm connected, call transport.close()");
+			transport.close();
 		} catch (IOException ex) {
 			log.warn("IOException closing: ", ex);
 		} finally {
@@ -229,28 +268,9 @@ public final class IRODSConnection implements IRODSManagedConnection {
 
 		log.error("thinking about obliterating connection");
 
-		if (!connection.isClosed()) {
+		if (transport != null && !transport.isClosed()) {
 			log.info("connection is indeed open....blat");
-
-			try {
-				connection.shutdownInput();
-			} catch (Exception e) {
-				// ignore
-			}
-
-			try {
-				connection.shutdownOutput();
-			} catch (Exception e) {
-				// ignore
-			}
-
-			try {
-				connection.close();
-
-			} catch (Exception e) {
-				// ignore
-			}
-
+			transport.closeQuietly();
 			connected = false;
 		}
 	}
@@ -307,25 +327,12 @@ public final class IRODSConnection implements IRODSManagedConnection {
 			return;
 		}
 
-		if ((value.length + outputOffset) >= OUTPUT_BUFFER_LENGTH) {
-			// in cases where OUTPUT_BUFFER_LENGTH isn't big enough
-			irodsOutputStream.write(outputBuffer, 0, outputOffset);
-			irodsOutputStream.write(value);
-			irodsOutputStream.flush();
-			outputOffset = 0;
-		} else {
-			// the message sent isn't longer than OUTPUT_BUFFER_LENGTH
-			System.arraycopy(value, 0, outputBuffer, outputOffset, value.length);
-			outputOffset += value.length;
-			log.debug("output offset now:{}", outputOffset);
-
-		}
+		transport.write(value, 0, value.length);
 	}
 
 	/**
 	 * Writes a certain length of bytes at some offset in the value array to the
-	 * output stream, by converting the value to a byte array and calling send(
-	 * byte[] value ).
+	 * output stream, copying them straight from the value array.
 	 * 
 	 * @param value
 	 *            value to be sent
@@ -363,11 +370,95 @@ public final class IRODSConnection implements IRODSManagedConnection {
 			throw new IllegalArgumentException(err);
 		}
 
-		byte temp[] = new byte[length];
+		if (offset + length > value.length) {
+			String err = "trying to send past the end of the byte buffer";
+			log.error(err);
+			throw new IllegalArgumentException(err);
+		}
+
+		transport.write(value, offset, length);
+	}
+
+	/**
+	 * Send a message header followed by the given packing instruction. The
+	 * packing instruction is written as bytes by a {@link TagWriter TagWriter}
+	 * so that its length is known for the header without building a
+	 * <code>String</code> first.
+	 * 
+	 * @param type
+	 *            <code>String</code> with the message type, e.g. RODS_API_REQ
+	 * @param message
+	 *            {@link Tag Tag} with the packing instruction, may be
+	 *            <code>null</code> to send a header alone
+	 * @param errorLength
+	 *            <code>int</code> with the length of the error stream that
+	 *            will follow
+	 * @param byteStringLength
+	 *            <code>long</code> with the length of the binary data that will
+	 *            follow
+	 * @param intInfo
+	 *            <code>int</code> with the api number
+	 * @throws IOException
+	 */
+	void sendMessage(final String type, final Tag message,
+			final int errorLength, final long byteStringLength,
+			final int intInfo) throws IOException {
+		if (type == null || type.length() == 0) {
+			String err = "null or blank type";
+			log.error(err);
+			throw new IllegalArgumentException(err);
+		}
+
+		messageWriter.reset();
+		int messageLength = 0;
+		if (message != null) {
+			messageWriter.writeTag(message);
+			messageLength = messageWriter.getLength();
+		}
+
+		// the header goes after the message in the buffer, as its msgLen
+		// depends on the message
+		messageWriter.writeHeader(type, messageLength, errorLength,
+				byteStringLength, intInfo);
+		byte[] buffer = messageWriter.getBuffer();
+		transport.write(buffer, messageLength, messageWriter.getLength()
+				- messageLength);
+		if (messageLength > 0) {
+			transport.write(buffer, 0, messageLength);
+		}
+	}
+
+	/**
+	 * Send a message header followed by the given packing instruction that is
+	 * already in XML form. The message is converted to bytes once, and that
+	 * length is used for the header.
+	 * 
+	 * @see #sendMessage(String, Tag, int, long, int)
+	 */
+	void sendMessage(final String type, final String message,
+			final int errorLength, final long byteStringLength,
+			final int intInfo) throws IOException {
+		if (type == null || type.length() == 0) {
+			String err = "null or blank type";
+			log.error(err);
+			throw new IllegalArgumentException(err);
+		}
 
-		System.arraycopy(value, offset, temp, 0, length);
+		messageWriter.reset();
+		int messageLength = 0;
+		if (message != null) {
+			messageWriter.writeRaw(message);
+			messageLength = messageWriter.getLength();
+		}
 
-		send(temp);
+		messageWriter.writeHeader(type, messageLength, errorLength,
+				byteStringLength, intInfo);
+		byte[] buffer = messageWriter.getBuffer();
+		transport.write(buffer, messageLength, messageWriter.getLength()
+				- messageLength);
+		if (messageLength > 0) {
+			transport.write(buffer, 0, messageLength);
+		}
 	}
 
 	/**
@@ -418,17 +509,45 @@ public final class IRODSConnection implements IRODSManagedConnection {
 			throw new IllegalArgumentException(err);
 		}
 
-		byte[] temp = new byte[Math.min(IRODSFileSystem.BUFFER_SIZE,
-				(int) length)];
+		byte[] temp = getTransferBuffer();
 		while (length > 0) {
-			if (temp.length > length) {
-				temp = new byte[(int) length];
+			int n = source.read(temp, 0, (int) Math.min(temp.length, length));
+			if (n < 0) {
+				String err = "source ended before all bytes were sent";
+				log.error(err);
+				throw new IOException(err);
+			}
+			if (n > 0) {
+				transport.write(temp, 0, n);
+				length -= n;
 			}
-			length -= source.read(temp, 0, temp.length);
-			send(temp);
 		}
 	}
 
+	/**
+	 * Send <code>length</code> bytes of a local file, starting at
+	 * <code>position</code>, after anything already buffered. The bytes go
+	 * from the file to the socket without passing through a Java array where
+	 * the transport allows it.
+	 */
+	void send(final FileChannel source, final long position, final long length)
+			throws IOException {
+		if (source == null) {
+			String err = "source is null";
+			log.error(err);
+			throw new IllegalArgumentException(err);
+		}
+
+		transport.sendFile(source, position, length);
+	}
+
+	private byte[] getTransferBuffer() {
+		if (transferBuffer == null) {
+			transferBuffer = new byte[IRODSFileSystem.BUFFER_SIZE];
+		}
+		return transferBuffer;
+	}
+
 	/**
 	 * Flushes all data in the output stream and sends it to the server.
 	 * 
@@ -438,14 +557,13 @@ public final class IRODSConnection implements IRODSManagedConnection {
 	 *             If an IOException occurs
 	 */
 	void flush() throws IOException {
-		if (connection.isClosed()) {
+		if (transport.isClosed()) {
 			// hopefully this isn't too slow to check.
 			log.error("attempting flush when connection was closed");
 			throw new ClosedChannelException();
 		}
 
-		irodsOutputStream.write(outputBuffer, 0, outputOffset);
-		outputOffset = 0;
+		transport.flush();
 	}
 
 	/**
@@ -466,12 +584,10 @@ public final class IRODSConnection implements IRODSManagedConnection {
 			throw new IllegalArgumentException(err);
 		}
 
-		byte[] temp = new byte[Math.min(IRODSFileSystem.BUFFER_SIZE,
-				(int) length)];
+		byte[] temp = getTransferBuffer();
 		int n = 0;
 		while (length > 0) {
-			n = read(temp, 0,
-					Math.min(IRODSFileSystem.BUFFER_SIZE, (int) length));
+			n = read(temp, 0, (int) Math.min(temp.length, length));
 			if (n > 0) {
 				length -= n;
 				destination.write(temp, 0, n);
@@ -481,6 +597,28 @@ public final class IRODSConnection implements IRODSManagedConnection {
 		}
 	}
 
+	/**
+	 * read length bytes from the server socket connection and write them to
+	 * the local file starting at <code>position</code>
+	 */
+	void read(final FileChannel destination, final long position,
+			final long length) throws IOException {
+
+		if (destination == null) {
+			String err = "destination is null";
+			log.error(err);
+			throw new IllegalArgumentException(err);
+		}
+
+		if (length == 0) {
+			String err = "read length is set to zero";
+			log.error(err);
+			throw new IllegalArgumentException(err);
+		}
+
+		transport.receiveFile(destination, position, length);
+	}
+
 	/**
 	 * read length bytes from the server socket connection and write them to
 	 * destination
@@ -500,12 +638,10 @@ public final class IRODSConnection implements IRODSManagedConnection {
 			throw new IllegalArgumentException(err);
 		}
 
-		byte[] temp = new byte[Math.min(IRODSFileSystem.BUFFER_SIZE,
-				(int) length)];
+		byte[] temp = getTransferBuffer();
 		int n = 0;
 		while (length > 0) {
-			n = read(temp, 0,
-					Math.min(IRODSFileSystem.BUFFER_SIZE, (int) length));
+			n = read(temp, 0, (int) Math.min(temp.length, length));
 			if (n > 0) {
 				length -= n;
 				destination.write(temp, 0, n);
@@ -554,7 +690,7 @@ public final class IRODSConnection implements IRODSManagedConnection {
 		}
 		int bytesRead = 0;
 		while (bytesRead < length) {
-			int read = irodsInputStream.read(value, offset + bytesRead, length
+			int read = transport.read(value, offset + bytesRead, length
 					- bytesRead);
 			if (read == -1) {
 				break;
@@ -585,34 +721,10 @@ public final class IRODSConnection implements IRODSManagedConnection {
 			throw new IllegalArgumentException(err);
 		}
 
-		StringBuilder headerBuilder = new StringBuilder();
-		headerBuilder.append("<MsgHeader_PI>");
-		headerBuilder.append("<type>");
-		headerBuilder.append(type);
-		headerBuilder.append("</type>");
-		headerBuilder.append("<msgLen>");
-		headerBuilder.append(messageLength);
-		headerBuilder.append("</msgLen>");
-		headerBuilder.append("<errorLen>");
-		headerBuilder.append(errorLength);
-		headerBuilder.append("</errorLen>");
-		headerBuilder.append("<bsLen>");
-		headerBuilder.append(byteStringLength);
-		headerBuilder.append("</bsLen>");
-		headerBuilder.append("<intInfo>");
-		headerBuilder.append(intInfo);
-		headerBuilder.append("</intInfo>");
-		headerBuilder.append("</MsgHeader_PI>");
-
-		String header = headerBuilder.toString();
-
-		byte[] temp = header.getBytes(encoding);
-		byte[] full = new byte[4 + temp.length];
-		// load first 4 byte with header length
-		Host.copyInt(temp.length, full);
-		// copy rest of header into full
-		System.arraycopy(temp, 0, full, 4, temp.length);
-		return full;
+		TagWriter headerWriter = new TagWriter(encoding, 256);
+		headerWriter.writeHeader(type, messageLength, errorLength,
+				byteStringLength, intInfo);
+		return headerWriter.toByteArray();
 	}
 
 	Tag readMessage() throws IOException {
@@ -643,16 +755,14 @@ public final class IRODSConnection implements IRODSManagedConnection {
 			log.info("info less than zero:{}", info);
 			// if nothing else, read the returned bytes and throw them away
 			if (messageLength > 0) {
-				read(new byte[messageLength], 0, messageLength);
+				fillReadBuffer(messageLength);
 			}
 
 			if (info == IRODSException.CAT_NO_ROWS_FOUND
 					|| info == IRODSException.CAT_SUCCESS_BUT_WITH_NO_INFO) {
 				log.info("no rows found or success with no info");
 				if (errorLength != 0) {
-					byte[] errorMessage = new byte[errorLength];
-					read(errorMessage, 0, errorLength);
-					Tag errorTag = Tag.readNextTag(errorMessage, encoding);
+					Tag errorTag = readTagFromReadBuffer(errorLength, true);
 					log.warn("IRODS error occured, no rows found or success with no info "
 							+ errorTag.getTag(IRODSConstants.RErrMsg_PI)
 									.getTag(IRODSConstants.msg) + " : " + info);
@@ -666,36 +776,44 @@ public final class IRODSConnection implements IRODSManagedConnection {
 				log.warn(
 						"Attempt to overwrite file without force flag. info: {} ",
 						info);
+				// read the rest of the reply, so the next one is read whole
+				if (errorLength != 0) {
+					fillReadBuffer(errorLength);
+				}
+				skip(bytesLength);
 				throw new IRODSException(
 						"Attempt to overwrite file without force flag. ", info);
 			} else {
 				if (errorLength != 0) {
-					byte[] errorMessage = new byte[errorLength];
-					read(errorMessage, 0, errorLength);
-					Tag errorTag = Tag.readNextTag(errorMessage, encoding);
+					Tag errorTag = readTagFromReadBuffer(errorLength, true);
 					log.info("errorTag:{}", errorTag);
 					log.error("IRODS error occured "
 							+ errorTag.getTag(IRODSConstants.RErrMsg_PI)
 									.getTag(IRODSConstants.msg) + " info:"
 							+ info);
+					skip(bytesLength);
 
 					throw new IRODSException("IRODS error occured "
 							+ errorTag.getTag(IRODSConstants.RErrMsg_PI)
 									.getTag(IRODSConstants.msg), info);
 				}
 				log.error("IRODS error occured, info:" + info);
+				skip(bytesLength);
 				throw new IRODSException("IRODS error occured " + info, info);
 			}
 		}
 
 		if (errorLength != 0) {
 			log.warn("error length is not zero, extracting error message");
-			byte[] errorMessage = new byte[errorLength];
-			read(errorMessage, 0, errorLength);
-			Tag errorTag = Tag.readNextTag(errorMessage, encoding);
+			// the body comes before the error, and the bytes after it
+			if (messageLength > 0) {
+				fillReadBuffer(messageLength);
+			}
+			Tag errorTag = readTagFromReadBuffer(errorLength, true);
 			log.error("IRODS error occured"
 					+ errorTag.getTag(IRODSConstants.RErrMsg_PI).getTag(
 							IRODSConstants.msg));
+			skip(bytesLength);
 
 			throw new IRODSException("IRODS error occured "
 					+ errorTag.getTag(IRODSConstants.RErrMsg_PI).getTag(
@@ -752,6 +870,7 @@ public final class IRODSConnection implements IRODSManagedConnection {
 
 			// to recover from some protocol errors, (slowly and if lucky)
 			// read until a new message header is found.
+			InputStream irodsInputStream = transport.getInputStream();
 			boolean cont = true; // thread to eventually end this when blocked
 			int searchForNewHeaderChar;
 			byte[] temp = new byte[13];
@@ -804,10 +923,7 @@ public final class IRODSConnection implements IRODSManagedConnection {
 
 		}
 
-		header = new byte[length];
-		read(header, 0, length);
-
-		return Tag.readNextTag(header, encoding);
+		return readTagFromReadBuffer(length, true);
 	}
 
 	int readHeaderLength() throws IOException {
@@ -816,10 +932,56 @@ public final class IRODSConnection implements IRODSManagedConnection {
 		return Host.castToInt(headerInt);
 	}
 
+	/**
+	 * Read and throw away <code>length</code> bytes of a byte stream that will
+	 * not be used, so the next message is read from its start.
+	 */
+	void skip(long length) throws IOException {
+		if (length <= 0) {
+			return;
+		}
+
+		byte[] temp = getTransferBuffer();
+		while (length > 0) {
+			int n = read(temp, 0, (int) Math.min(temp.length, length));
+			if (n <= 0) {
+				throw new EOFException("connection closed in a byte stream");
+			}
+			length -= n;
+		}
+	}
+
 	Tag readMessageBody(final int length, final boolean decode)
 			throws IOException {
-		byte[] body = new byte[length];
-		read(body, 0, length);
-		return Tag.readNextTag(body, decode, encoding);
+		return readTagFromReadBuffer(length, decode);
+	}
+
+	/**
+	 * Read <code>length</code> bytes of XML protocol from the server and parse
+	 * them in place.
+	 */
+	private Tag readTagFromReadBuffer(final int length, final boolean decode)
+			throws IOException {
+		byte[] buffer = fillReadBuffer(length);
+		return Tag.readNextTag(buffer, 0, length, decode, encoding);
+	}
+
+	/**
+	 * Read <code>length</code> bytes from the server into the start of the
+	 * reusable read buffer, growing it if needed.
+	 * 
+	 * @return <code>byte[]</code> holding the bytes read, only valid until the
+	 *         next read
+	 */
+	private byte[] fillReadBuffer(final int length) throws IOException {
+		byte[] buffer = readBuffer;
+		if (length > buffer.length) {
+			buffer = new byte[length];
+			if (length <= MAX_RETAINED_READ_BUFFER_LENGTH) {
+				readBuffer = buffer;
+			}
+		}
+		read(buffer, 0, length);
+		return buffer;
 	}
 }
@@ -0,0 +1,511 @@
+package edu.sdsc.grid.io.irods;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.irods.jargon.core.connection.IRODSConnectionPoolConfig;
+import org.irods.jargon.core.connection.IRODSConnectionPoolStatistics;
+import org.irods.jargon.core.exception.JargonException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps authenticated connections to iRODS open so that they may be reused,
+ * avoiding the startup packet and challenge/response handshake done in
+ * {@link IRODSCommands#connect(IRODSAccount) IRODSCommands.connect()} for each
+ * new session.
+ * <p/>
+ * Connections are kept per {@link IRODSConnectionPoolKey key}, so a borrow
+ * will only ever return a connection opened for the same host, port, user,
+ * zone and proxy user, with the same credentials. The limits in the given
+ * {@link IRODSConnectionPoolConfig IRODSConnectionPoolConfig} are applied per
+ * key.
+ * <p/>
+ * Typical use is to borrow a {@link PooledIRODSConnection
+ * PooledIRODSConnection}, either directly or through the
+ * {@link IRODSFileSystem#IRODSFileSystem(IRODSAccount, IRODSConnectionPool)
+ * pooled IRODSFileSystem constructor}, and to call <code>shutdown()</code> (or
+ * <code>IRODSFileSystem.close()</code>) when done, which gives the connection
+ * back.
+ * <p/>
+ * This class is thread-safe. The connections it hands out are not, and should
+ * not be shared between threads while borrowed.
+ */
+public final class IRODSConnectionPool {
+
+	private static Logger log = LoggerFactory
+			.getLogger(IRODSConnectionPool.class);
+
+	private final IRODSConnectionPoolConfig config;
+	private final Map<IRODSConnectionPoolKey, KeyedPool> keyedPools = new HashMap<IRODSConnectionPoolKey, KeyedPool>();
+	private final Timer evictionTimer;
+	private volatile boolean closed = false;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong validationFailures = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong borrowTimeouts = new AtomicLong();
+	private final AtomicLong connectionsCreated = new AtomicLong();
+	private final AtomicLong connectionsDestroyed = new AtomicLong();
+
+	/**
+	 * Connection kept by the pool. Each borrow of it is handed out wrapped in
+	 * a {@link PooledIRODSConnection PooledIRODSConnection} of its own.
+	 */
+	static final class PoolEntry {
+		private final IRODSConnectionPoolKey poolKey;
+		private final IRODSCommands irodsCommands;
+		private long lastReturnedAt = System.currentTimeMillis();
+
+		private PoolEntry(final IRODSConnectionPoolKey poolKey,
+				final IRODSCommands irodsCommands) {
+			this.poolKey = poolKey;
+			this.irodsCommands = irodsCommands;
+		}
+
+		IRODSConnectionPoolKey getPoolKey() {
+			return poolKey;
+		}
+
+		IRODSCommands getIrodsCommands() {
+			return irodsCommands;
+		}
+
+		synchronized long getLastReturnedAt() {
+			return lastReturnedAt;
+		}
+
+		synchronized void setLastReturnedAt(final long lastReturnedAt) {
+			this.lastReturnedAt = lastReturnedAt;
+		}
+	}
+
+	/**
+	 * Idle and borrowed connections for one key. All fields are guarded by the
+	 * <code>KeyedPool</code> instance lock.
+	 */
+	private static final class KeyedPool {
+		/**
+		 * Most recently returned first, so that busy keys keep reusing warm
+		 * connections and the rest age out at the tail.
+		 */
+		final LinkedList<PoolEntry> idle = new LinkedList<PoolEntry>();
+		int numActive = 0;
+
+		/**
+		 * Copy of the account first used for this key, used to open
+		 * connections when topping up to <code>minIdle</code>
+		 */
+		IRODSAccount irodsAccount = null;
+	}
+
+	/**
+	 * Create a connection pool with the given settings. If the settings call
+	 * for it, a daemon thread is started to evict idle connections.
+	 *
+	 * @param config
+	 *            {@link IRODSConnectionPoolConfig IRODSConnectionPoolConfig}
+	 *            with the pool limits.
+	 * @return <code>IRODSConnectionPool</code>
+	 * @throws JargonException
+	 */
+	public static IRODSConnectionPool instance(
+			final IRODSConnectionPoolConfig config) throws JargonException {
+		return new IRODSConnectionPool(config);
+	}
+
+	private IRODSConnectionPool(final IRODSConnectionPoolConfig config)
+			throws JargonException {
+		if (config == null) {
+			throw new JargonException("null config");
+		}
+
+		this.config = config;
+		log.info("creating connection pool with config:{}", config);
+
+		long interval = config.getTimeBetweenEvictionRunsMillis();
+		if (interval > 0) {
+			evictionTimer = new Timer("irods-connection-pool-evictor", true);
+			evictionTimer.schedule(new TimerTask() {
+				@Override
+				public void run() {
+					try {
+						evictIdleConnections();
+					} catch (Throwable e) {
+						log.error("error in idle connection eviction run", e);
+					}
+				}
+			}, interval, interval);
+		} else {
+			evictionTimer = null;
+		}
+	}
+
+	/**
+	 * Borrow a connection for the given account. An idle connection is
+	 * preferred (and validated first if so configured); otherwise a new
+	 * connection is opened as long as the <code>maxActive</code> limit for the
+	 * account allows it. When the limit is reached this method waits up to
+	 * <code>maxWaitMillis</code> for a connection to be returned.
+	 *
+	 * @param irodsAccount
+	 *            {@link IRODSAccount IRODSAccount} to connect as. The account is
+	 *            cloned before it is used for a new connection.
+	 * @return {@link PooledIRODSConnection PooledIRODSConnection} that is
+	 *         connected and authenticated.
+	 * @throws JargonException
+	 *             if the pool is closed, the wait times out, or a new
+	 *             connection cannot be opened.
+	 */
+	public PooledIRODSConnection borrowConnection(
+			final IRODSAccount irodsAccount) throws JargonException {
+
+		if (irodsAccount == null) {
+			throw new JargonException("null irodsAccount");
+		}
+
+		if (closed) {
+			throw new JargonException("connection pool is closed");
+		}
+
+		IRODSConnectionPoolKey key = IRODSConnectionPoolKey
+				.instance(irodsAccount);
+		KeyedPool keyedPool = getKeyedPool(key, irodsAccount);
+		long maxWait = config.getMaxWaitMillis();
+		long deadline = System.currentTimeMillis() + maxWait;
+
+		while (true) {
+			PoolEntry candidate = null;
+
+			synchronized (keyedPool) {
+				while (candidate == null) {
+					if (closed) {
+						throw new JargonException("connection pool is closed");
+					}
+
+					if (!keyedPool.idle.isEmpty()) {
+						candidate = keyedPool.idle.removeFirst();
+						keyedPool.numActive++;
+					} else if (config.getMaxActive() <= 0
+							|| keyedPool.numActive + keyedPool.idle.size() < config
+									.getMaxActive()) {
+						keyedPool.numActive++;
+						break;
+					} else {
+						waitForReturn(keyedPool, key, maxWait, deadline);
+					}
+				}
+			}
+
+			if (candidate == null) {
+				return createConnection(key, keyedPool, irodsAccount);
+			}
+
+			if (!config.isValidateOnBorrow() || validate(candidate)) {
+				hits.incrementAndGet();
+				log.debug("pool hit for:{}", key);
+				return new PooledIRODSConnection(this, candidate);
+			}
+
+			validationFailures.incrementAndGet();
+			log.warn("idle connection failed validation, discarding:{}", key);
+			releaseSlot(keyedPool);
+			destroy(candidate);
+		}
+	}
+
+	/**
+	 * Wait on the keyed pool for a connection to be returned. Must be called
+	 * holding the <code>keyedPool</code> lock.
+	 */
+	private void waitForReturn(final KeyedPool keyedPool,
+			final IRODSConnectionPoolKey key, final long maxWait,
+			final long deadline) throws JargonException {
+		try {
+			if (maxWait <= 0) {
+				keyedPool.wait();
+			} else {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					borrowTimeouts.incrementAndGet();
+					log.error("timed out waiting for a connection for:{}", key);
+					throw new JargonException(
+							"timed out waiting for a pooled connection for:"
+									+ key);
+				}
+				keyedPool.wait(remaining);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JargonException(
+					"interrupted waiting for a pooled connection", e);
+		}
+	}
+
+	private PooledIRODSConnection createConnection(
+			final IRODSConnectionPoolKey key, final KeyedPool keyedPool,
+			final IRODSAccount irodsAccount) throws JargonException {
+		misses.incrementAndGet();
+		log.info("pool miss, opening new connection for:{}", key);
+		try {
+			return new PooledIRODSConnection(this, openConnection(key,
+					irodsAccount));
+		} catch (JargonException e) {
+			releaseSlot(keyedPool);
+			throw e;
+		} catch (RuntimeException e) {
+			releaseSlot(keyedPool);
+			throw e;
+		}
+	}
+
+	private PoolEntry openConnection(
+			final IRODSConnectionPoolKey key, final IRODSAccount irodsAccount)
+			throws JargonException {
+		IRODSCommands irodsCommands = new IRODSCommands();
+		try {
+			irodsCommands.connect((IRODSAccount) irodsAccount.clone());
+		} catch (IOException e) {
+			log.error("io exception opening pooled connection", e);
+			throw new JargonException(e);
+		}
+		connectionsCreated.incrementAndGet();
+		return new PoolEntry(key, irodsCommands);
+	}
+
+	/**
+	 * Called by <code>PooledIRODSConnection.shutdown()</code>.
+	 */
+	void returnConnection(final PoolEntry connection) {
+		KeyedPool keyedPool = getKeyedPool(connection.getPoolKey());
+		boolean keep = !closed && connection.getIrodsCommands().isConnected();
+
+		synchronized (keyedPool) {
+			keyedPool.numActive--;
+			if (keep && keyedPool.idle.size() < config.getMaxIdle()) {
+				connection.setLastReturnedAt(System.currentTimeMillis());
+				keyedPool.idle.addFirst(connection);
+			} else {
+				keep = false;
+			}
+			keyedPool.notifyAll();
+		}
+
+		if (!keep) {
+			log.debug("returned connection not kept idle, closing");
+			destroy(connection);
+		}
+	}
+
+	/**
+	 * Called by
+	 * <code>PooledIRODSConnection.obliterateConnectionAndDiscardErrors()</code>
+	 */
+	void invalidateConnection(final PoolEntry connection) {
+		releaseSlot(getKeyedPool(connection.getPoolKey()));
+		destroy(connection);
+	}
+
+	/**
+	 * Close idle connections that have been idle longer than
+	 * <code>minEvictableIdleTimeMillis</code>, keeping at least
+	 * <code>minIdle</code> per key, then open connections to bring each key
+	 * back up to <code>minIdle</code>. This is normally called from the pool's
+	 * own timer, but may be called directly.
+	 */
+	public void evictIdleConnections() {
+		if (closed) {
+			return;
+		}
+
+		long cutoff = System.currentTimeMillis()
+				- config.getMinEvictableIdleTimeMillis();
+		int minIdle = config.getMinIdle();
+		List<PoolEntry> evicted = new ArrayList<PoolEntry>();
+
+		Map<IRODSConnectionPoolKey, KeyedPool> snapshot;
+		synchronized (keyedPools) {
+			snapshot = new HashMap<IRODSConnectionPoolKey, KeyedPool>(
+					keyedPools);
+		}
+
+		for (Map.Entry<IRODSConnectionPoolKey, KeyedPool> entry : snapshot
+				.entrySet()) {
+			KeyedPool keyedPool = entry.getValue();
+			synchronized (keyedPool) {
+				// oldest are at the tail
+				while (keyedPool.idle.size() > minIdle
+						&& keyedPool.idle.getLast().getLastReturnedAt() < cutoff) {
+					evicted.add(keyedPool.idle.removeLast());
+				}
+			}
+		}
+
+		for (PoolEntry connection : evicted) {
+			evictions.incrementAndGet();
+			destroy(connection);
+		}
+
+		if (!evicted.isEmpty()) {
+			log.info("evicted {} idle connections", evicted.size());
+		}
+
+		if (minIdle > 0) {
+			for (Map.Entry<IRODSConnectionPoolKey, KeyedPool> entry : snapshot
+					.entrySet()) {
+				ensureMinIdle(entry.getKey(), entry.getValue(), minIdle);
+			}
+		}
+	}
+
+	private void ensureMinIdle(final IRODSConnectionPoolKey key,
+			final KeyedPool keyedPool, final int minIdle) {
+		while (!closed) {
+			IRODSAccount irodsAccount;
+			synchronized (keyedPool) {
+				if (keyedPool.idle.size() >= minIdle
+						|| (config.getMaxActive() > 0 && keyedPool.numActive
+								+ keyedPool.idle.size() >= config
+								.getMaxActive())) {
+					return;
+				}
+
+				irodsAccount = keyedPool.irodsAccount;
+				keyedPool.numActive++;
+			}
+
+			PoolEntry connection;
+			try {
+				connection = openConnection(key, irodsAccount);
+			} catch (JargonException e) {
+				log.warn("unable to open connection to maintain minIdle", e);
+				releaseSlot(keyedPool);
+				return;
+			}
+
+			returnConnection(connection);
+		}
+	}
+
+	/**
+	 * Close all idle connections and refuse further borrows. Connections that
+	 * are currently borrowed are closed when they are returned.
+	 */
+	public void close() {
+		log.info("closing connection pool");
+		closed = true;
+
+		if (evictionTimer != null) {
+			evictionTimer.cancel();
+		}
+
+		List<PoolEntry> idle = new ArrayList<PoolEntry>();
+		synchronized (keyedPools) {
+			for (KeyedPool keyedPool : keyedPools.values()) {
+				synchronized (keyedPool) {
+					idle.addAll(keyedPool.idle);
+					keyedPool.idle.clear();
+					keyedPool.notifyAll();
+				}
+			}
+		}
+
+		for (PoolEntry connection : idle) {
+			destroy(connection);
+		}
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * @return {@link IRODSConnectionPoolStatistics
+	 *         IRODSConnectionPoolStatistics} with a snapshot of the pool
+	 *         counters, summed over all keys.
+	 */
+	public IRODSConnectionPoolStatistics getStatistics() {
+		int numActive = 0;
+		int numIdle = 0;
+
+		synchronized (keyedPools) {
+			for (KeyedPool keyedPool : keyedPools.values()) {
+				synchronized (keyedPool) {
+					numActive += keyedPool.numActive;
+					numIdle += keyedPool.idle.size();
+				}
+			}
+		}
+
+		return IRODSConnectionPoolStatistics.instance(hits.get(),
+				misses.get(), validationFailures.get(), evictions.get(),
+				borrowTimeouts.get(), connectionsCreated.get(),
+				connectionsDestroyed.get(), numActive, numIdle);
+	}
+
+	public IRODSConnectionPoolConfig getConfig() {
+		return config;
+	}
+
+	private KeyedPool getKeyedPool(final IRODSConnectionPoolKey key) {
+		synchronized (keyedPools) {
+			return keyedPools.get(key);
+		}
+	}
+
+	private KeyedPool getKeyedPool(final IRODSConnectionPoolKey key,
+			final IRODSAccount irodsAccount) {
+		synchronized (keyedPools) {
+			KeyedPool keyedPool = keyedPools.get(key);
+			if (keyedPool == null) {
+				keyedPool = new KeyedPool();
+				keyedPool.irodsAccount = (IRODSAccount) irodsAccount.clone();
+				keyedPools.put(key, keyedPool);
+			}
+			return keyedPool;
+		}
+	}
+
+	private void releaseSlot(final KeyedPool keyedPool) {
+		synchronized (keyedPool) {
+			keyedPool.numActive--;
+			keyedPool.notifyAll();
+		}
+	}
+
+	/**
+	 * Probe an idle connection with a <code>miscServerInfo</code> call.
+	 */
+	private boolean validate(final PoolEntry connection) {
+		IRODSCommands irodsCommands = connection.getIrodsCommands();
+		if (!irodsCommands.isConnected()) {
+			return false;
+		}
+
+		try {
+			irodsCommands.miscServerInfo();
+			return true;
+		} catch (Exception e) {
+			log.warn("validation of pooled connection failed", e);
+			return false;
+		}
+	}
+
+	private void destroy(final PoolEntry connection) {
+		connectionsDestroyed.incrementAndGet();
+		try {
+			connection.getIrodsCommands().close();
+		} catch (JargonException e) {
+			log.warn("error closing pooled connection, logged and ignored", e);
+		}
+	}
+
+}
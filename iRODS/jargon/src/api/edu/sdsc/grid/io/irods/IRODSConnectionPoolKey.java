@@ -0,0 +1,113 @@
+package edu.sdsc.grid.io.irods;
+
+import org.ietf.jgss.GSSCredential;
+
+/**
+ * Immutable key used by the {@link IRODSConnectionPool IRODSConnectionPool} to
+ * separate connections by the identity they were opened with.
+ * <code>IRODSAccount</code> is mutable and does not define
+ * <code>hashCode()</code>, so the relevant values are copied out when the key
+ * is built.
+ * <p/>
+ * Connections are keyed on host, port, user, zone and proxy (client) user and
+ * zone. The password, authentication scheme and GSI credential are also part
+ * of the key so that an already authenticated connection is never handed to a
+ * caller that presented different credentials.
+ */
+final class IRODSConnectionPoolKey {
+
+	private final String host;
+	private final int port;
+	private final String userName;
+	private final String zone;
+	private final String clientUserName;
+	private final String clientRodsZone;
+	private final String password;
+	private final String authenticationScheme;
+	private final GSSCredential gssCredential;
+	private final int hashCode;
+
+	static IRODSConnectionPoolKey instance(final IRODSAccount irodsAccount) {
+		if (irodsAccount == null) {
+			throw new IllegalArgumentException("null irodsAccount");
+		}
+		return new IRODSConnectionPoolKey(irodsAccount);
+	}
+
+	private IRODSConnectionPoolKey(final IRODSAccount irodsAccount) {
+		this.host = irodsAccount.getHost();
+		this.port = irodsAccount.getPort();
+		this.userName = irodsAccount.getUserName();
+		this.zone = irodsAccount.getZone();
+		this.clientUserName = irodsAccount.getEffectiveClientUserName();
+		this.clientRodsZone = irodsAccount.getEffectiveClientRodsZone();
+		this.password = irodsAccount.getPassword();
+		this.authenticationScheme = irodsAccount.getAuthenticationScheme();
+		this.gssCredential = irodsAccount.getGSSCredential();
+
+		int result = 17;
+		result = 31 * result + hashOf(host);
+		result = 31 * result + port;
+		result = 31 * result + hashOf(userName);
+		result = 31 * result + hashOf(zone);
+		result = 31 * result + hashOf(clientUserName);
+		result = 31 * result + hashOf(clientRodsZone);
+		this.hashCode = result;
+	}
+
+	private static int hashOf(final Object value) {
+		return value == null ? 0 : value.hashCode();
+	}
+
+	private static boolean same(final Object left, final Object right) {
+		return left == null ? right == null : left.equals(right);
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+
+		if (!(obj instanceof IRODSConnectionPoolKey)) {
+			return false;
+		}
+
+		IRODSConnectionPoolKey other = (IRODSConnectionPoolKey) obj;
+
+		return port == other.port && same(host, other.host)
+				&& same(userName, other.userName) && same(zone, other.zone)
+				&& same(clientUserName, other.clientUserName)
+				&& same(clientRodsZone, other.clientRodsZone)
+				&& same(password, other.password)
+				&& same(authenticationScheme, other.authenticationScheme)
+				&& gssCredential == other.gssCredential;
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	/**
+	 * Note that the password is not included.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("irods://");
+		builder.append(clientUserName);
+		builder.append('#');
+		builder.append(clientRodsZone);
+		builder.append('(');
+		builder.append(userName);
+		builder.append('#');
+		builder.append(zone);
+		builder.append(")@");
+		builder.append(host);
+		builder.append(':');
+		builder.append(port);
+		return builder.toString();
+	}
+
+}
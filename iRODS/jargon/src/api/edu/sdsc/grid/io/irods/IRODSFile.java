@@ -831,8 +831,12 @@ public class IRODSFile extends RemoteFile {
 
 				} else if (destinationFile instanceof IRODSFile) {
 					log.info("dest is an IRODS file");
-					iRODSFileSystem.commands.copy(this,
-							(IRODSFile) destinationFile, forceOverwrite);
+					try {
+						iRODSFileSystem.commands.copy(this,
+								(IRODSFile) destinationFile, forceOverwrite);
+					} finally {
+						((IRODSFile) destinationFile).invalidateStat();
+					}
 				} else {
 					super.copyTo(destinationFile, forceOverwrite);
 				}
@@ -947,6 +951,7 @@ public class IRODSFile extends RemoteFile {
 					// rerouting logic again
 					reroutedFile.copyFrom(sourceFile, forceOverwrite, false);
 					reroutedIRODSFileSystem.close();
+					invalidateStat();
 					return;
 				}
 			}
@@ -994,6 +999,8 @@ public class IRODSFile extends RemoteFile {
 				IOException io = new IOException();
 				io.initCause(e);
 				throw io;
+			} finally {
+				invalidateStat();
 			}
 		}
 	}
@@ -1194,6 +1201,7 @@ public class IRODSFile extends RemoteFile {
 		}
 
 		try {
+			iRODSFileSystem.getStatCache().invalidate(getAbsolutePath());
 			iRODSFileSystem.commands.modifyMetaData(this, metaData);
 		} catch (IRODSException e) {
 			int error = e.getType()
@@ -1264,6 +1272,7 @@ public class IRODSFile extends RemoteFile {
 		}
 
 		log.debug("sending avu request");
+		iRODSFileSystem.getStatCache().invalidate(getAbsolutePath());
 
 		try {
 			iRODSFileSystem.getCommands().irodsFunction(modifyAvuMetadataInp);
@@ -1300,6 +1309,7 @@ public class IRODSFile extends RemoteFile {
 			throw new IllegalArgumentException(
 					"The metadata attribute and value " + "cannot be empty.");
 		}
+		iRODSFileSystem.getStatCache().invalidate(getAbsolutePath());
 		iRODSFileSystem.commands.deleteMetaData(this, metaData);
 	}
 
@@ -1385,7 +1395,15 @@ public class IRODSFile extends RemoteFile {
 			// for files, get the actual resource associated with the file,
 			// otherwise,
 			// get any default set by the IRODS account
-			if (this.isFile()) {
+			IRODSFileStat stat = cachedStat();
+			if (stat != null) {
+				if (stat.getType() == IRODSFileStat.Type.FILE) {
+					resource = stat.getResource();
+				} else {
+					resource = ((IRODSFileSystem) fileSystem)
+							.getDefaultStorageResource();
+				}
+			} else if (this.isFile()) {
 				resource = firstQueryResult(ResourceMetaData.COLL_RESOURCE_NAME);
 			} else {
 				resource = ((IRODSFileSystem) fileSystem)
@@ -1452,6 +1470,7 @@ public class IRODSFile extends RemoteFile {
 	@Override
 	public void replicate(final String newResource) throws IOException {
 		iRODSFileSystem.commands.replicate(this, newResource);
+		iRODSFileSystem.getStatCache().invalidate(getAbsolutePath());
 	}
 
 	/**
@@ -1470,6 +1489,7 @@ public class IRODSFile extends RemoteFile {
 		log.info("replicating file:{}", this.getAbsolutePath());
 		log.info("to resource group:{}", resourceGroup);
 		iRODSFileSystem.commands.replicateToResourceGroup(this, resourceGroup);
+		iRODSFileSystem.getStatCache().invalidate(getAbsolutePath());
 
 	}
 
@@ -1519,6 +1539,7 @@ public class IRODSFile extends RemoteFile {
 
 		iRODSFileSystem.commands.chmod(this, permission, userName, zone,
 				recursive);
+		iRODSFileSystem.getStatCache().invalidateTree(getAbsolutePath());
 	}
 
 	/**
@@ -1535,6 +1556,11 @@ public class IRODSFile extends RemoteFile {
 	}
 
 	boolean canRead(final boolean update) {
+		int permissions = cachedPermissions();
+		if (permissions != IRODSFileStat.PERMISSIONS_UNKNOWN) {
+			return permissions >= READ_PERMISSIONS;
+		}
+
 		if (update || (pathNameType == PATH_IS_UNKNOWN)
 				|| pathNameType == PATH_IS_FILE) {
 			try {
@@ -1583,6 +1609,11 @@ public class IRODSFile extends RemoteFile {
 			log.info("checking if i can write:" + this.getAbsolutePath());
 		}
 
+		int permissions = cachedPermissions();
+		if (permissions != IRODSFileStat.PERMISSIONS_UNKNOWN) {
+			return permissions >= WRITE_PERMISSIONS;
+		}
+
 		if (update || (pathNameType == PATH_IS_UNKNOWN)
 				|| pathNameType == PATH_IS_FILE) {
 			log.debug("checking permissions as file");
@@ -1707,6 +1738,145 @@ public class IRODSFile extends RemoteFile {
 		return permissions;
 	}
 
+	/**
+	 * Get what is known about this path from the stat cache of the file
+	 * system, querying the catalog if it is not cached.
+	 * 
+	 * @return {@link IRODSFileStat IRODSFileStat} of this path, or
+	 *         <code>null</code> if the stat cache is off or the query failed, in
+	 *         which case the caller queries as it would without the cache
+	 */
+	private IRODSFileStat cachedStat() {
+		IRODSStatCache statCache = iRODSFileSystem.getStatCache();
+		if (!statCache.isEnabled()) {
+			return null;
+		}
+
+		String absolutePath = getAbsolutePath();
+		IRODSFileStat stat = statCache.get(absolutePath);
+		if (stat == null) {
+			try {
+				stat = queryStat();
+			} catch (IOException e) {
+				log.warn("io exception querying stat is logged and ignored", e);
+				return null;
+			} catch (NumberFormatException e) {
+				log.warn("unexpected stat value is logged and ignored", e);
+				return null;
+			}
+			statCache.put(stat);
+		}
+
+		if (stat.getType() == IRODSFileStat.Type.FILE) {
+			pathNameType = PATH_IS_FILE;
+		} else if (stat.getType() == IRODSFileStat.Type.DIRECTORY) {
+			pathNameType = PATH_IS_DIRECTORY;
+		}
+		return stat;
+	}
+
+	/**
+	 * Query the catalog for this path as a file, with the size and resource of
+	 * each replica and the modify time in one query, and if it is not a file,
+	 * as a directory.
+	 */
+	private IRODSFileStat queryStat() throws IOException {
+		String absolutePath = getAbsolutePath();
+		String parent = getParent();
+		MetaDataRecordList[] rl = null;
+
+		if (parent != null) {
+			MetaDataCondition[] conditions = {
+					MetaDataSet.newCondition(StandardMetaData.DIRECTORY_NAME,
+							MetaDataCondition.EQUAL, parent),
+					MetaDataSet.newCondition(StandardMetaData.FILE_NAME,
+							MetaDataCondition.EQUAL, getName()) };
+			String[] fields = { ResourceMetaData.COLL_RESOURCE_NAME,
+					GeneralMetaData.SIZE, GeneralMetaData.MODIFICATION_DATE };
+			rl = fileSystem.query(conditions, MetaDataSet.newSelection(fields),
+					500);
+		}
+
+		if (rl != null && rl.length > 0) {
+			String[] resources = new String[rl.length];
+			long[] sizes = new long[rl.length];
+			for (int i = 0; i < rl.length; i++) {
+				resources[i] = rl[i].getStringValue(0);
+				sizes[i] = parseStatValue(rl[i].getStringValue(1));
+			}
+			return IRODSFileStat.instanceForFile(absolutePath, resources,
+					sizes, parseStatValue(rl[0].getStringValue(2)));
+		}
+
+		MetaDataCondition[] conditions = { MetaDataSet.newCondition(
+				StandardMetaData.DIRECTORY_NAME, MetaDataCondition.EQUAL,
+				absolutePath) };
+		MetaDataSelect[] selects = { MetaDataSet
+				.newSelection(DirectoryMetaData.DIRECTORY_MODIFY_DATE) };
+		rl = fileSystem.query(conditions, selects, 3);
+
+		if (rl != null && rl.length > 0) {
+			return IRODSFileStat.instanceForDirectory(absolutePath,
+					parseStatValue(rl[0].getStringValue(0)));
+		}
+		return IRODSFileStat.instanceForMissing(absolutePath);
+	}
+
+	private long parseStatValue(final String value) {
+		if (value == null || value.length() == 0) {
+			return 0;
+		}
+		return Long.parseLong(value.trim());
+	}
+
+	/**
+	 * Get the permissions of the user for this path from the stat cache,
+	 * querying them as a file or directory, whichever the path is, if they
+	 * are not cached.
+	 * 
+	 * @return <code>int</code> with the permissions, -1 if the path does not
+	 *         exist, or <code>IRODSFileStat.PERMISSIONS_UNKNOWN</code> if the
+	 *         stat cache is off
+	 */
+	private int cachedPermissions() {
+		IRODSFileStat stat = cachedStat();
+		if (stat == null) {
+			return IRODSFileStat.PERMISSIONS_UNKNOWN;
+		}
+
+		if (stat.getType() == IRODSFileStat.Type.NONE) {
+			return -1;
+		}
+
+		if (stat.getPermissions() != IRODSFileStat.PERMISSIONS_UNKNOWN) {
+			return stat.getPermissions();
+		}
+
+		int permissions;
+		try {
+			if (stat.getType() == IRODSFileStat.Type.FILE) {
+				permissions = filePermissions();
+			} else {
+				permissions = directoryPermissions();
+			}
+		} catch (IOException e) {
+			log.error("io exception", e);
+			throw new JargonRuntimeException("io exception", e);
+		}
+		iRODSFileSystem.getStatCache().replace(stat,
+				stat.withPermissions(permissions));
+		return permissions;
+	}
+
+	/**
+	 * Drop what the stat cache of the file system knows about this path, what
+	 * is under it, and the directories above it, after this client changed
+	 * it.
+	 */
+	void invalidateStat() {
+		iRODSFileSystem.getStatCache().invalidateChange(getAbsolutePath());
+	}
+
 	/**
 	 * Atomically creates a new, empty file named by this abstract pathname if
 	 * and only if a file with this name does not yet exist. The check for the
@@ -1735,6 +1905,7 @@ public class IRODSFile extends RemoteFile {
 
 				// Be sure to close files after a create() or open().
 				iRODSFileSystem.commands.fileClose(fd);
+				invalidateStat();
 				return true;
 			}
 		} catch (IRODSException e) {
@@ -1927,6 +2098,8 @@ public class IRODSFile extends RemoteFile {
 		} catch (IOException e) {
 			log.warn("io exception is logged and ignored", e);
 			return false;
+		} finally {
+			invalidateStat();
 		}
 	}
 
@@ -1948,6 +2121,7 @@ public class IRODSFile extends RemoteFile {
 
 			if (isFile()) {
 				iRODSFileSystem.commands.deleteReplica(this, resource);
+				iRODSFileSystem.getStatCache().invalidate(getAbsolutePath());
 			}
 		} catch (IOException e) {
 			log.warn("io exception is logged and ignored", e);
@@ -2021,6 +2195,11 @@ public class IRODSFile extends RemoteFile {
 	 */
 	@Override
 	public boolean exists() {
+		IRODSFileStat stat = cachedStat();
+		if (stat != null) {
+			return stat.getType() != IRODSFileStat.Type.NONE;
+		}
+
 		try {
 			MetaDataRecordList[] rl = null;
 			int operator = MetaDataCondition.EQUAL;
@@ -2140,9 +2319,13 @@ public class IRODSFile extends RemoteFile {
 	public boolean isDirectory() {
 		if (useCache) {
 			return isDirectory(false);
-		} else {
-			return isDirectory(true);
 		}
+
+		IRODSFileStat stat = cachedStat();
+		if (stat != null) {
+			return stat.getType() == IRODSFileStat.Type.DIRECTORY;
+		}
+		return isDirectory(true);
 	}
 
 	/**
@@ -2209,9 +2392,13 @@ public class IRODSFile extends RemoteFile {
 	public boolean isFile() {
 		if (useCache) {
 			return isFile(false);
-		} else {
-			return isFile(true);
 		}
+
+		IRODSFileStat stat = cachedStat();
+		if (stat != null) {
+			return stat.getType() == IRODSFileStat.Type.FILE;
+		}
+		return isFile(true);
 	}
 
 	/**
@@ -2283,6 +2470,12 @@ public class IRODSFile extends RemoteFile {
 	 */
 	@Override
 	public long lastModified() {
+		IRODSFileStat stat = cachedStat();
+		if (stat != null) {
+			// irods returns seconds
+			return stat.getModifiedSeconds() * 1000;
+		}
+
 		long lastModified = 0;
 		String result = null;
 		try {
@@ -2524,6 +2717,36 @@ public class IRODSFile extends RemoteFile {
 		}
 	}
 
+	/**
+	 * Lists the directories and files in the directory denoted by this
+	 * abstract pathname, with the type, size, modify time, owner, checksum and
+	 * resource of each, read a page of <code>DEFAULT_RECORDS_WANTED</code> at
+	 * a time as the listing is iterated. The <code>IRODSFile</code> of an
+	 * entry knows whether it is a file or a directory, and when the stat cache
+	 * of the file system is on, answers the rest of what the listing read
+	 * without a query.
+	 * <P>
+	 * The listing is empty if this abstract pathname is not a directory. A
+	 * caller that stops iterating before the last entry should close the
+	 * listing.
+	 * 
+	 * @return {@link IRODSFileListing IRODSFileListing} of the directories,
+	 *         then the files, in this directory
+	 * @throws IOException
+	 */
+	public IRODSFileListing listEntries() throws IOException {
+		try {
+			IRODSAccessObjectFactory irodsAccessObjectFactory = IRODSAccessObjectFactoryImpl
+					.instance(iRODSFileSystem.getCommands());
+			return IRODSFileListing.instance(this, irodsAccessObjectFactory
+					.getIRODSGenQueryExcecutor(),
+					GeneralFileSystem.DEFAULT_RECORDS_WANTED);
+		} catch (JargonException e) {
+			log.error("rethrowing exception as IOException for method contracts");
+			throw new IOException(e.getMessage());
+		}
+	}
+
 	/**
 	 * Creates the directory named by this abstract pathname. This method will
 	 * not create intermediate directories.
@@ -2537,6 +2760,7 @@ public class IRODSFile extends RemoteFile {
 		try {
 			if (!isDirectory()) {
 				iRODSFileSystem.commands.mkdir(this, false);
+				invalidateStat();
 				return true;
 			}
 		} catch (IOException e) {
@@ -2557,6 +2781,7 @@ public class IRODSFile extends RemoteFile {
 		try {
 			if (!isDirectory()) {
 				iRODSFileSystem.commands.mkdir(this, true);
+				invalidateStat();
 				return true;
 			}
 		} catch (IOException e) {
@@ -2610,6 +2835,8 @@ public class IRODSFile extends RemoteFile {
 					iRODSFileSystem.commands.physicalMove(this,
 							(IRODSFile) dest);
 				}
+				invalidateStat();
+				((IRODSFile) dest).invalidateStat();
 			} else {
 				return super.renameTo(dest);
 			}
@@ -2768,6 +2995,11 @@ public class IRODSFile extends RemoteFile {
 	 */
 	@Override
 	public long length() {
+		IRODSFileStat stat = cachedStat();
+		if (stat != null) {
+			return stat.getLength(resource);
+		}
+
 		long length = 0;
 
 		MetaDataCondition[] condition = {};
@@ -32,11 +32,21 @@
 package edu.sdsc.grid.io.irods;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.irods.jargon.core.accessobject.FileCatalogObjectAO;
 import org.irods.jargon.core.accessobject.IRODSAccessObjectFactory;
 import org.irods.jargon.core.accessobject.IRODSAccessObjectFactoryImpl;
 import org.irods.jargon.core.exception.JargonException;
+import org.irods.jargon.core.packinstr.TransferOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,6 +68,19 @@ import edu.sdsc.grid.io.StandardMetaData;
  * IRODSFileInputStream is meant for reading streams of raw bytes such as image
  * data.
  * <P>
+ * Reads are served from a read-ahead buffer, filled a block at a time, so that
+ * small reads do not each go to the server. The block starts at the
+ * <code>readAheadBufferSize</code> of the connection's
+ * {@link TransferOptions}, and doubles, up to the
+ * <code>maxReadAheadBufferSize</code>, with each block that is read in
+ * sequence. With <code>readAheadPrefetch</code> turned on, which it is not by
+ * default, the next block is read in the background while one is consumed.
+ * That read is sent over the connection of the stream, so the connection must
+ * not be used for anything else, nor returned to a pool, until the stream is
+ * closed. A skip or seek outside the current block drops back to the smallest
+ * block, with no background read, until the stream is read in sequence again.
+ * A <code>readAheadBufferSize</code> of zero turns the buffer off.
+ * <P>
  * 
  * @author Lucas Gilbert
  * @since JARGON2.0
@@ -88,6 +111,64 @@ public class IRODSFileInputStream extends RemoteFileInputStream {
 	 */
 	IRODSFile file;
 
+	private static final AtomicInteger readAheadThreadNumber = new AtomicInteger();
+
+	/**
+	 * Threads that read the next block of streams being read in sequence.
+	 */
+	private static final ExecutorService readAheadExecutor = Executors
+			.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(final Runnable runnable) {
+					Thread thread = new Thread(runnable, "irods-read-ahead-"
+							+ readAheadThreadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	/**
+	 * Smallest and largest read-ahead blocks, zero if reads are not buffered.
+	 */
+	private int minBlockSize = 0;
+	private int maxBlockSize = 0;
+	private boolean prefetchEnabled = false;
+
+	/**
+	 * Size of the next block to read, doubled for each block read in sequence.
+	 */
+	private int blockSize = 0;
+
+	/**
+	 * <code>false</code> after a skip or seek, until a block has been read.
+	 */
+	private boolean sequential = true;
+	private boolean endOfFile = false;
+
+	private byte[] buffer = null;
+	private int bufferPosition = 0;
+	private int bufferLimit = 0;
+
+	/**
+	 * Offset in the file of the first byte in the buffer.
+	 */
+	private long bufferStart = 0;
+
+	/**
+	 * Offset of the server's file pointer, the end of the last block read.
+	 */
+	private long remotePointer = 0;
+
+	private Future<Integer> prefetch = null;
+
+	/**
+	 * Set by whichever comes first, the background read starting or the
+	 * stream giving it up.
+	 */
+	private AtomicBoolean prefetchClaimed = null;
+	private byte[] prefetchBuffer = null;
+	private long prefetchStart = 0;
+	private int prefetchLength = 0;
+
 	/**
 	 * Creates a <code>IRODSFileInputStream</code> by opening a connection to an
 	 * actual file, the file named by the path name <code>name</code> in the
@@ -113,6 +194,7 @@ public class IRODSFileInputStream extends RemoteFileInputStream {
 		super(fileSystem, name);
 
 		this.fileSystem = fileSystem;
+		configureReadAhead(fileSystem.commands.getTransferOptions());
 		try {
 			this.lookForReroutingOfConnection(name, "");
 		} catch (JargonException e) {
@@ -145,6 +227,7 @@ public class IRODSFileInputStream extends RemoteFileInputStream {
 	public IRODSFileInputStream(final IRODSFile file) throws IOException {
 		super(file);
 		fileSystem = (IRODSFileSystem) file.getFileSystem();
+		configureReadAhead(fileSystem.commands.getTransferOptions());
 		try {
 			this.lookForReroutingOfConnection(file.getAbsolutePath(),
 					file.getResource());
@@ -153,6 +236,14 @@ public class IRODSFileInputStream extends RemoteFileInputStream {
 		}
 	}
 
+	private void configureReadAhead(final TransferOptions transferOptions) {
+		minBlockSize = Math.max(transferOptions.getReadAheadBufferSize(), 0);
+		maxBlockSize = Math.max(transferOptions.getMaxReadAheadBufferSize(),
+				minBlockSize);
+		prefetchEnabled = transferOptions.isReadAheadPrefetch();
+		blockSize = minBlockSize;
+	}
+
 	/**
 	 * Finalizes the object by explicitly letting go of each of its internally
 	 * held values.
@@ -215,9 +306,10 @@ public class IRODSFileInputStream extends RemoteFileInputStream {
 	}
 
 	/**
-	 * Note: Use of this method is inadvisable due to the long delays that can
-	 * occur with network communcations. Reading even a few bytes in this manner
-	 * could cause noticeable slowdowns.
+	 * Note: If the read-ahead buffer is turned off, use of this method is
+	 * inadvisable due to the long delays that can occur with network
+	 * communcations. Reading even a few bytes in this manner could cause
+	 * noticeable slowdowns.
 	 * 
 	 * Reads the next byte of data from the input stream. The value byte is
 	 * returned as an <code>int</code> in the range <code>0</code> to
@@ -233,6 +325,14 @@ public class IRODSFileInputStream extends RemoteFileInputStream {
 	 */
 	@Override
 	public int read() throws IOException {
+		if (minBlockSize > 0) {
+			if (bufferPosition >= bufferLimit && !fill()) {
+				return -1;
+			}
+			filePointer++;
+			return buffer[bufferPosition++] & 0xFF;
+		}
+
 		try {
 			byte buffer[] = new byte[1];
 			int temp = fileSystem.commands.fileRead(fd, buffer, 0, 1);
@@ -330,11 +430,227 @@ public class IRODSFileInputStream extends RemoteFileInputStream {
 	@Override
 	public int read(final byte b[], final int off, final int len)
 			throws IOException {
-		int temp = fileSystem.commands.fileRead(fd, b, off, len);
-		if (temp > 0) {
-			filePointer += temp;
+		if (minBlockSize <= 0) {
+			int temp = fileSystem.commands.fileRead(fd, b, off, len);
+			if (temp > 0) {
+				filePointer += temp;
+			}
+			return temp;
+		}
+
+		if (off < 0 || len < 0 || len > b.length - off) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0) {
+			return 0;
+		}
+
+		int available = bufferLimit - bufferPosition;
+		if (available <= 0) {
+			if (prefetch == null && len >= blockSize) {
+				// a read as big as a block gains nothing from the buffer
+				if (endOfFile) {
+					return -1;
+				}
+				int read = readBlock(fileSystem.commands, fd, b, off, len);
+				remotePointer += read;
+				// the old block no longer ends where the server is
+				bufferLimit = 0;
+				bufferPosition = 0;
+				if (read < len) {
+					endOfFile = true;
+				}
+				if (read <= 0) {
+					return -1;
+				}
+				filePointer += read;
+				return read;
+			}
+			if (!fill()) {
+				return -1;
+			}
+			available = bufferLimit - bufferPosition;
 		}
-		return temp;
+
+		int n = Math.min(len, available);
+		System.arraycopy(buffer, bufferPosition, b, off, n);
+		bufferPosition += n;
+		filePointer += n;
+		return n;
+	}
+
+	/**
+	 * Make the next block the current one, taking the block read in the
+	 * background if there is one, and start reading the block after it if the
+	 * stream is being read in sequence.
+	 * 
+	 * @return <code>boolean</code> that is <code>false</code> at the end of
+	 *         the file
+	 */
+	private boolean fill() throws IOException {
+		int requested;
+		int count;
+		if (prefetch != null) {
+			requested = prefetchLength;
+			count = awaitPrefetch();
+			byte[] swap = buffer;
+			buffer = prefetchBuffer;
+			prefetchBuffer = swap;
+			bufferStart = prefetchStart;
+		} else {
+			if (endOfFile) {
+				return false;
+			}
+			requested = blockSize;
+			if (buffer == null || buffer.length < requested) {
+				buffer = new byte[requested];
+			}
+			bufferStart = remotePointer;
+			count = readBlock(fileSystem.commands, fd, buffer, 0, requested);
+		}
+
+		remotePointer = bufferStart + count;
+		bufferPosition = 0;
+		bufferLimit = count;
+		if (count < requested) {
+			endOfFile = true;
+		}
+		if (count <= 0) {
+			return false;
+		}
+
+		if (sequential) {
+			blockSize = blockSize > maxBlockSize / 2 ? maxBlockSize
+					: blockSize * 2;
+			if (prefetchEnabled && !endOfFile) {
+				startPrefetch();
+			}
+		}
+		sequential = true;
+		return true;
+	}
+
+	private void startPrefetch() {
+		if (prefetchBuffer == null || prefetchBuffer.length < blockSize) {
+			prefetchBuffer = new byte[blockSize];
+		}
+		final IRODSCommands commands = fileSystem.commands;
+		final int descriptor = fd;
+		final byte[] into = prefetchBuffer;
+		final int length = blockSize;
+		final AtomicBoolean claimed = new AtomicBoolean();
+		prefetchStart = remotePointer;
+		prefetchLength = length;
+		prefetchClaimed = claimed;
+		prefetch = readAheadExecutor.submit(new Callable<Integer>() {
+			public Integer call() throws IOException {
+				if (!claimed.compareAndSet(false, true)) {
+					return 0;
+				}
+				return readBlock(commands, descriptor, into, 0, length);
+			}
+		});
+	}
+
+	private int awaitPrefetch() throws IOException {
+		try {
+			int count = prefetch.get();
+			prefetch = null;
+			return count;
+		} catch (InterruptedException e) {
+			// the read is left pending, to be taken by the next read
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(
+					"interrupted waiting for read ahead");
+		} catch (ExecutionException e) {
+			prefetch = null;
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			IOException ioException = new IOException("read ahead failed");
+			ioException.initCause(cause);
+			throw ioException;
+		}
+	}
+
+	/**
+	 * Drop the buffer, and any background read, waiting for one that has
+	 * started.
+	 */
+	private void discardReadAhead() {
+		if (prefetch != null) {
+			// a read that has started must finish before the pointer moves
+			if (!prefetchClaimed.compareAndSet(false, true)) {
+				boolean interrupted = false;
+				while (true) {
+					try {
+						prefetch.get();
+						break;
+					} catch (InterruptedException e) {
+						interrupted = true;
+					} catch (ExecutionException e) {
+						log.debug("discarded read ahead had failed", e);
+						break;
+					}
+				}
+				if (interrupted) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			prefetch = null;
+		}
+		bufferPosition = 0;
+		bufferLimit = 0;
+	}
+
+	/**
+	 * Read from the server until <code>length</code> bytes have been read or
+	 * the end of the file is reached.
+	 * 
+	 * @return <code>int</code> with the number of bytes read
+	 */
+	private static int readBlock(final IRODSCommands commands, final int fd,
+			final byte[] into, final int offset, final int length)
+			throws IOException {
+		int total = 0;
+		while (total < length) {
+			int read;
+			try {
+				read = commands.fileRead(fd, into, offset + total, length
+						- total);
+			} catch (IRODSException e) {
+				// -1 just means EOF
+				if (e.getType() != -1) {
+					throw e;
+				}
+				read = -1;
+			}
+			if (read <= 0) {
+				break;
+			}
+			total += read;
+		}
+		return total;
+	}
+
+	/**
+	 * Move to an offset in the file, dropping the read-ahead buffer and going
+	 * back to the smallest block.
+	 */
+	private long seekTo(final long position) throws IOException {
+		discardReadAhead();
+		long seekVal = fileSystem.commands.fileSeek(fd, position,
+				GeneralRandomAccessFile.SEEK_START);
+		filePointer = seekVal;
+		remotePointer = seekVal;
+		blockSize = minBlockSize;
+		sequential = false;
+		endOfFile = false;
+		return seekVal;
 	}
 
 	/**
@@ -351,30 +667,41 @@ public class IRODSFileInputStream extends RemoteFileInputStream {
 	 */
 	@Override
 	public long skip(final long n) throws IOException {
-		long length = available();
-		if (length <= 0) {
+		if (n <= 0) {
 			return 0;
 		}
 
-		if ((filePointer + n) < length) {
-			fileSystem.commands.fileSeek(fd, n,
-					GeneralRandomAccessFile.SEEK_CURRENT);
+		if (n <= bufferLimit - bufferPosition) {
+			bufferPosition += (int) n;
 			filePointer += n;
 			return n;
-		} else {
-			fileSystem.commands.fileSeek(fd, length,
-					GeneralRandomAccessFile.SEEK_CURRENT);
-			filePointer += length;
-			return length;
 		}
+
+		long length = available();
+		if (length <= 0) {
+			return 0;
+		}
+
+		long skipped = Math.min(n, length);
+		seekTo(filePointer + skipped);
+		return skipped;
 	}
 
+	/**
+	 * Move the read pointer <code>n</code> bytes from where it is, staying in
+	 * the read-ahead buffer if the new position is in it.
+	 * 
+	 * @return <code>long</code> with the new position in the file
+	 */
 	public long seek(final long n) throws IOException {
-		long seekVal = fileSystem.commands.fileSeek(fd, n,
-				GeneralRandomAccessFile.SEEK_CURRENT);
-		filePointer = seekVal;
-		return seekVal;
-
+		long target = filePointer + n;
+		if (bufferLimit > 0 && target >= bufferStart
+				&& target < bufferStart + bufferLimit) {
+			bufferPosition = (int) (target - bufferStart);
+			filePointer = target;
+			return target;
+		}
+		return seekTo(target);
 	}
 
 	/**
@@ -429,6 +756,9 @@ public class IRODSFileInputStream extends RemoteFileInputStream {
 	 */
 	@Override
 	public void close() throws IOException {
+		discardReadAhead();
+		buffer = null;
+		prefetchBuffer = null;
 		if (fileSystem != null) {
 			fileSystem.commands.fileClose(fd);
 			fileSystem = null;
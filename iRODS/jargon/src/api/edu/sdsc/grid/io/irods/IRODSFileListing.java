@@ -0,0 +1,367 @@
+package edu.sdsc.grid.io.irods;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.irods.jargon.core.accessobject.IRODSGenQueryExecutor;
+import org.irods.jargon.core.accessobject.IRODSQueryResultIterator;
+import org.irods.jargon.core.exception.JargonException;
+import org.irods.jargon.core.exception.JargonRuntimeException;
+import org.irods.jargon.core.query.IRODSQuery;
+import org.irods.jargon.core.query.IRODSQueryResultRow;
+import org.irods.jargon.core.query.JargonQueryException;
+import org.irods.jargon.core.query.RodsGenQueryEnum;
+import org.irods.jargon.core.utils.IRODSDataConversionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Listing of the directories and files in a directory, returned by
+ * {@link IRODSFile#listEntries()}. Each
+ * {@link IRODSFileListingEntry IRODSFileListingEntry} carries the type, size,
+ * modify time, owner, checksum and resource read by the listing, so a
+ * directory of any size is listed with a round trip per page, not per entry.
+ * <p/>
+ * The sub-directories are listed first, then the files. The catalog keeps
+ * directories and files apart, so this takes one query of each, read a page
+ * at a time as the entries are handed out, with the next page requested in
+ * the background. The rows of the replicas of a file, which the catalog
+ * returns together, are made into one entry.
+ * <p/>
+ * A caller that stops before the last entry should call {@link #close()}, so
+ * the server can let go of the query. Errors talking to the server are thrown
+ * from <code>hasNext()</code> and <code>next()</code> as a
+ * <code>JargonRuntimeException</code>. This class is not thread-safe, and
+ * iterates once, <code>iterator()</code> returns this object.
+ */
+public final class IRODSFileListing implements
+		Iterator<IRODSFileListingEntry>, Iterable<IRODSFileListingEntry> {
+
+	private static Logger log = LoggerFactory.getLogger(IRODSFileListing.class);
+
+	private static final String COMMA = ", ";
+	private static final String WHERE = " WHERE ";
+	private static final String EQUALS_AND_QUOTE = " = '";
+	private static final String QUOTE = "'";
+	private static final String AND = " and ";
+
+	private final IRODSFile directory;
+	private final String path;
+	private final IRODSGenQueryExecutor irodsGenQueryExecutor;
+	private final int pageSize;
+	private final String fileConditions;
+	private final boolean includeFiles;
+
+	private IRODSQueryResultIterator rows;
+	private boolean listingFiles = false;
+
+	/**
+	 * Row of the files query read ahead to see if it is another replica of
+	 * the entry being made.
+	 */
+	private IRODSQueryResultRow nextFileRow = null;
+
+	private IRODSFileListingEntry nextEntry = null;
+	private boolean closed = false;
+
+	/**
+	 * @param directory
+	 *            {@link IRODSFile} of the directory to list
+	 * @param irodsGenQueryExecutor
+	 *            {@link IRODSGenQueryExecutor} connected to the file system of
+	 *            the directory
+	 * @param pageSize
+	 *            <code>int</code> with the rows read in a round trip
+	 * @return <code>IRODSFileListing</code> that has sent the query for the
+	 *         sub-directories
+	 * @throws JargonException
+	 */
+	static IRODSFileListing instance(final IRODSFile directory,
+			final IRODSGenQueryExecutor irodsGenQueryExecutor,
+			final int pageSize) throws JargonException {
+		return new IRODSFileListing(directory, irodsGenQueryExecutor,
+				pageSize, null, null, true);
+	}
+
+	/**
+	 * Listing narrowed by conditions added to its queries, such as a
+	 * <code>COLL_NAME like</code> condition that keeps the sub-directories to
+	 * those under a path prefix.
+	 *
+	 * @param directory
+	 *            {@link IRODSFile} of the directory to list
+	 * @param irodsGenQueryExecutor
+	 *            {@link IRODSGenQueryExecutor} connected to the file system of
+	 *            the directory
+	 * @param pageSize
+	 *            <code>int</code> with the rows read in a round trip
+	 * @param directoryConditions
+	 *            <code>String</code> with conditions, in iquest form, added to
+	 *            the query of the sub-directories, or <code>null</code>
+	 * @param fileConditions
+	 *            <code>String</code> with conditions, in iquest form, added to
+	 *            the query of the files, or <code>null</code>
+	 * @param includeFiles
+	 *            <code>boolean</code> that is <code>false</code> to list only
+	 *            the sub-directories
+	 * @return <code>IRODSFileListing</code> that has sent the query for the
+	 *         sub-directories
+	 * @throws JargonException
+	 */
+	static IRODSFileListing instanceWithConditions(final IRODSFile directory,
+			final IRODSGenQueryExecutor irodsGenQueryExecutor,
+			final int pageSize, final String directoryConditions,
+			final String fileConditions, final boolean includeFiles)
+			throws JargonException {
+		return new IRODSFileListing(directory, irodsGenQueryExecutor,
+				pageSize, directoryConditions, fileConditions, includeFiles);
+	}
+
+	private IRODSFileListing(final IRODSFile directory,
+			final IRODSGenQueryExecutor irodsGenQueryExecutor,
+			final int pageSize, final String directoryConditions,
+			final String fileConditions, final boolean includeFiles)
+			throws JargonException {
+		if (directory == null) {
+			throw new JargonException("null directory");
+		}
+
+		if (irodsGenQueryExecutor == null) {
+			throw new JargonException("null irodsGenQueryExecutor");
+		}
+
+		if (pageSize < 1) {
+			throw new JargonException("pageSize must be at least 1");
+		}
+
+		this.directory = directory;
+		this.path = directory.getAbsolutePath();
+		this.irodsGenQueryExecutor = irodsGenQueryExecutor;
+		this.pageSize = pageSize;
+		this.fileConditions = fileConditions;
+		this.includeFiles = includeFiles;
+
+		final StringBuilder sb = new StringBuilder();
+		sb.append("SELECT ");
+		sb.append(RodsGenQueryEnum.COL_COLL_NAME.getName());
+		sb.append(COMMA);
+		sb.append(RodsGenQueryEnum.COL_COLL_OWNER_NAME.getName());
+		sb.append(COMMA);
+		sb.append(RodsGenQueryEnum.COL_COLL_MODIFY_TIME.getName());
+		sb.append(WHERE);
+		sb.append(RodsGenQueryEnum.COL_COLL_PARENT_NAME.getName());
+		sb.append(EQUALS_AND_QUOTE);
+		sb.append(IRODSDataConversionUtil.escapeSingleQuotes(path));
+		sb.append(QUOTE);
+		if (directoryConditions != null) {
+			sb.append(AND);
+			sb.append(directoryConditions);
+		}
+		log.debug("directory listing query: {}", sb);
+		rows = execute(sb.toString());
+	}
+
+	/**
+	 * @return this listing, which can only be iterated once
+	 */
+	public Iterator<IRODSFileListingEntry> iterator() {
+		return this;
+	}
+
+	public boolean hasNext() {
+		if (nextEntry != null) {
+			return true;
+		}
+
+		if (closed) {
+			return false;
+		}
+
+		try {
+			nextEntry = readEntry();
+		} catch (JargonException e) {
+			throw new JargonRuntimeException(e);
+		}
+		return nextEntry != null;
+	}
+
+	public IRODSFileListingEntry next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		IRODSFileListingEntry entry = nextEntry;
+		nextEntry = null;
+		return entry;
+	}
+
+	/**
+	 * @throws UnsupportedOperationException
+	 *             use <code>IRODSFile.delete()</code> to remove an entry
+	 */
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Stop listing, closing the query on the server if it has more results.
+	 * Once closed, <code>hasNext()</code> returns <code>false</code>.
+	 *
+	 * @throws JargonException
+	 */
+	public void close() throws JargonException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		nextEntry = null;
+		rows.close();
+	}
+
+	/**
+	 * @return the next entry, <code>null</code> after the last file
+	 */
+	private IRODSFileListingEntry readEntry() throws JargonException {
+		if (!listingFiles) {
+			while (rows.hasNext()) {
+				IRODSFileListingEntry entry = directoryEntry(rows.next());
+				if (entry != null) {
+					return entry;
+				}
+			}
+			if (!includeFiles) {
+				closed = true;
+				return null;
+			}
+			startFiles();
+		}
+
+		if (nextFileRow == null) {
+			if (!rows.hasNext()) {
+				closed = true;
+				return null;
+			}
+			nextFileRow = rows.next();
+		}
+		return fileEntry();
+	}
+
+	private void startFiles() throws JargonException {
+		listingFiles = true;
+
+		final StringBuilder sb = new StringBuilder();
+		sb.append("SELECT ");
+		sb.append(RodsGenQueryEnum.COL_DATA_NAME.getName());
+		sb.append(COMMA);
+		sb.append(RodsGenQueryEnum.COL_D_RESC_NAME.getName());
+		sb.append(COMMA);
+		sb.append(RodsGenQueryEnum.COL_DATA_SIZE.getName());
+		sb.append(COMMA);
+		sb.append(RodsGenQueryEnum.COL_D_MODIFY_TIME.getName());
+		sb.append(COMMA);
+		sb.append(RodsGenQueryEnum.COL_D_OWNER_NAME.getName());
+		sb.append(COMMA);
+		sb.append(RodsGenQueryEnum.COL_D_DATA_CHECKSUM.getName());
+		sb.append(WHERE);
+		sb.append(RodsGenQueryEnum.COL_COLL_NAME.getName());
+		sb.append(EQUALS_AND_QUOTE);
+		sb.append(IRODSDataConversionUtil.escapeSingleQuotes(path));
+		sb.append(QUOTE);
+		if (fileConditions != null) {
+			sb.append(AND);
+			sb.append(fileConditions);
+		}
+		log.debug("file listing query: {}", sb);
+		rows = execute(sb.toString());
+	}
+
+	private IRODSQueryResultIterator execute(final String query)
+			throws JargonException {
+		try {
+			return irodsGenQueryExecutor.executeIRODSQueryAndIterate(IRODSQuery
+					.instance(query, pageSize));
+		} catch (JargonQueryException e) {
+			log.error("query exception for listing query: " + query, e);
+			throw new JargonException("error in listing query", e);
+		}
+	}
+
+	/**
+	 * @return the entry of a row of the directories query, <code>null</code>
+	 *         for the root, which is its own parent
+	 */
+	private IRODSFileListingEntry directoryEntry(final IRODSQueryResultRow row)
+			throws JargonException {
+		String absolutePath = row.getColumn(0);
+		if (absolutePath.equals(path)) {
+			return null;
+		}
+
+		String name = absolutePath
+				.substring(absolutePath.lastIndexOf('/') + 1);
+		return IRODSFileListingEntry.instanceForDirectory(
+				directory.iRODSFileSystem, name,
+				IRODSFileStat.instanceForDirectory(absolutePath,
+						parseLong(row.getColumn(2))), row.getColumn(1));
+	}
+
+	/**
+	 * Make an entry of the read ahead row and the rows after it for the same
+	 * file, leaving the row of the next file read ahead.
+	 */
+	private IRODSFileListingEntry fileEntry() throws JargonException {
+		IRODSQueryResultRow first = nextFileRow;
+		String name = first.getColumn(0);
+		List<String> resources = new ArrayList<String>();
+		List<Long> sizes = new ArrayList<Long>();
+
+		IRODSQueryResultRow row = first;
+		while (true) {
+			resources.add(row.getColumn(1));
+			sizes.add(parseLong(row.getColumn(2)));
+			if (!rows.hasNext()) {
+				nextFileRow = null;
+				break;
+			}
+			row = rows.next();
+			if (!row.getColumn(0).equals(name)) {
+				nextFileRow = row;
+				break;
+			}
+		}
+
+		long[] replicaSizes = new long[sizes.size()];
+		for (int i = 0; i < replicaSizes.length; i++) {
+			replicaSizes[i] = sizes.get(i);
+		}
+
+		String absolutePath = path.endsWith("/") ? path + name : path + "/"
+				+ name;
+		IRODSFileStat stat = IRODSFileStat.instanceForFile(absolutePath,
+				resources.toArray(new String[resources.size()]),
+				replicaSizes, parseLong(first.getColumn(3)));
+		return IRODSFileListingEntry.instanceForFile(
+				directory.iRODSFileSystem, name, stat,
+				first.getColumn(4), first.getColumn(5), replicaSizes.length);
+	}
+
+	private static long parseLong(final String value) throws JargonException {
+		if (value == null || value.length() == 0) {
+			return 0;
+		}
+
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			throw new JargonException("unexpected number in listing: "
+					+ value);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "IRODSFileListing " + path;
+	}
+
+}
@@ -0,0 +1,145 @@
+package edu.sdsc.grid.io.irods;
+
+/**
+ * One file or directory of an {@link IRODSFileListing IRODSFileListing}, with
+ * what the listing query read about it, so it can be shown or compared without
+ * asking the catalog again.
+ * <p/>
+ * A file with several replicas is one entry, whose size, resource and checksum
+ * are those of the first replica read. This object is immutable, and is
+ * thread-safe.
+ */
+public final class IRODSFileListingEntry {
+
+	private final IRODSFileSystem irodsFileSystem;
+	private final String name;
+	private final IRODSFileStat stat;
+	private final String owner;
+	private final String checksum;
+	private final int replicaCount;
+
+	static IRODSFileListingEntry instanceForFile(
+			final IRODSFileSystem irodsFileSystem, final String name,
+			final IRODSFileStat stat, final String owner,
+			final String checksum, final int replicaCount) {
+		return new IRODSFileListingEntry(irodsFileSystem, name, stat, owner,
+				checksum, replicaCount);
+	}
+
+	static IRODSFileListingEntry instanceForDirectory(
+			final IRODSFileSystem irodsFileSystem, final String name,
+			final IRODSFileStat stat, final String owner) {
+		return new IRODSFileListingEntry(irodsFileSystem, name, stat, owner,
+				null, 0);
+	}
+
+	private IRODSFileListingEntry(final IRODSFileSystem irodsFileSystem,
+			final String name, final IRODSFileStat stat, final String owner,
+			final String checksum, final int replicaCount) {
+		if (irodsFileSystem == null) {
+			throw new IllegalArgumentException("null irodsFileSystem");
+		}
+
+		// only the root has an empty name
+		if (name == null) {
+			throw new IllegalArgumentException("null name");
+		}
+
+		if (stat == null) {
+			throw new IllegalArgumentException("null stat");
+		}
+
+		this.irodsFileSystem = irodsFileSystem;
+		this.name = name;
+		this.stat = stat;
+		this.owner = owner;
+		this.checksum = checksum;
+		this.replicaCount = replicaCount;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getAbsolutePath() {
+		return stat.getAbsolutePath();
+	}
+
+	public boolean isDirectory() {
+		return stat.getType() == IRODSFileStat.Type.DIRECTORY;
+	}
+
+	public boolean isFile() {
+		return stat.getType() == IRODSFileStat.Type.FILE;
+	}
+
+	/**
+	 * @return <code>long</code> with the size of the first replica, 0 for a
+	 *         directory
+	 */
+	public long getLength() {
+		return stat.getLength(null);
+	}
+
+	/**
+	 * @return <code>long</code> with the modify time in milliseconds, as
+	 *         returned by <code>IRODSFile.lastModified()</code>
+	 */
+	public long getLastModified() {
+		// irods returns seconds
+		return stat.getModifiedSeconds() * 1000;
+	}
+
+	public String getOwner() {
+		return owner;
+	}
+
+	/**
+	 * @return <code>String</code> with the checksum of the first replica, empty
+	 *         if it has not been computed, <code>null</code> for a directory
+	 */
+	public String getChecksum() {
+		return checksum;
+	}
+
+	/**
+	 * @return <code>String</code> with the resource of the first replica,
+	 *         <code>null</code> for a directory
+	 */
+	public String getResource() {
+		return stat.getResource();
+	}
+
+	/**
+	 * @return <code>int</code> with the number of replicas read, 0 for a
+	 *         directory
+	 */
+	public int getReplicaCount() {
+		return replicaCount;
+	}
+
+	/**
+	 * Get the entry as an <code>IRODSFile</code>, which knows whether it is a
+	 * file or a directory without a query. When the stat cache of the file
+	 * system is on, what the listing read is put in it, so the
+	 * <code>length()</code>, <code>lastModified()</code> and
+	 * <code>getResource()</code> of the file are answered without a query as
+	 * well.
+	 *
+	 * @return <code>IRODSFile</code> for this entry
+	 */
+	public IRODSFile getFile() {
+		IRODSFile file = new IRODSFile(irodsFileSystem, getAbsolutePath());
+		file.pathNameType = isDirectory() ? IRODSFile.PATH_IS_DIRECTORY
+				: IRODSFile.PATH_IS_FILE;
+		irodsFileSystem.getStatCache().put(stat);
+		return file;
+	}
+
+	@Override
+	public String toString() {
+		return "IRODSFileListingEntry " + getAbsolutePath()
+				+ (isDirectory() ? " directory" : " file length:" + getLength());
+	}
+
+}
@@ -49,11 +49,20 @@
 package edu.sdsc.grid.io.irods;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.irods.jargon.core.accessobject.FileCatalogObjectAO;
 import org.irods.jargon.core.accessobject.IRODSAccessObjectFactory;
 import org.irods.jargon.core.accessobject.IRODSAccessObjectFactoryImpl;
 import org.irods.jargon.core.exception.JargonException;
+import org.irods.jargon.core.packinstr.TransferOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -66,6 +75,15 @@ import edu.sdsc.grid.io.RemoteFileOutputStream;
  * <P>
  * IRODSFileOutputStream is meant for writing streams of raw bytes such as image
  * data.
+ * <P>
+ * Writes are gathered in a buffer of the <code>writeBehindBufferSize</code> of
+ * the connection's {@link TransferOptions}, and sent when it fills, so that
+ * small writes do not each go to the server. With
+ * <code>writeBehindAsync</code> turned on, which it is not by default, a full
+ * buffer is sent in the background while the next one is filled, and an error
+ * in sending it is thrown by the next write, flush or close. Once <code>flush</code> or <code>close</code> returns,
+ * everything written has been accepted by the server. A
+ * <code>writeBehindBufferSize</code> of zero turns the buffer off.
  * 
  * @author Lucas Gilbert
  * @since JARGON2.0
@@ -79,12 +97,48 @@ public final class IRODSFileOutputStream extends RemoteFileOutputStream {
 	 */
 	protected IRODSFileSystem fileSystem;
 
+	/**
+	 * Path of the file written, whose stat is dropped from the stat cache
+	 * when the stream is closed.
+	 */
+	private String statPath = null;
+
 	/**
 	 * Holds an irodsFileSystem object when the input stream has been rerouted
 	 * to a new irods server
 	 */
 	private IRODSFileSystem reroutedFileSystem = null;
 
+	private static final AtomicInteger writeBehindThreadNumber = new AtomicInteger();
+
+	/**
+	 * Threads that send full buffers while the next ones are filled.
+	 */
+	private static final ExecutorService writeBehindExecutor = Executors
+			.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(final Runnable runnable) {
+					Thread thread = new Thread(runnable, "irods-write-behind-"
+							+ writeBehindThreadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	private byte[] buffer = null;
+	private int count = 0;
+	private boolean writeBehindAsync = false;
+
+	/**
+	 * Buffer being sent in the background, filled again once it is sent.
+	 */
+	private byte[] sendingBuffer = null;
+	private Future<Integer> pendingWrite = null;
+
+	/**
+	 * First error in sending buffered data, thrown by every later write.
+	 */
+	private IOException writeError = null;
+
 	/**
 	 * Creates a <code>FileOuputStream</code> by opening a connection to an
 	 * actual file, the file named by the path name <code>name</code> in the
@@ -133,6 +187,7 @@ public final class IRODSFileOutputStream extends RemoteFileOutputStream {
 		super(fileSystem, name);
 
 		this.fileSystem = fileSystem;
+		configureWriteBehind(fileSystem.commands.getTransferOptions());
 
 		try {
 			this.lookForReroutingOfConnection(name, resourceName);
@@ -164,6 +219,7 @@ public final class IRODSFileOutputStream extends RemoteFileOutputStream {
 	public IRODSFileOutputStream(final IRODSFile file) throws IOException {
 		super(file);
 		fileSystem = (IRODSFileSystem) file.getFileSystem();
+		configureWriteBehind(fileSystem.commands.getTransferOptions());
 		try {
 			this.lookForReroutingOfConnection(file.getAbsolutePath(),
 					file.getResource());
@@ -172,6 +228,14 @@ public final class IRODSFileOutputStream extends RemoteFileOutputStream {
 		}
 	}
 
+	private void configureWriteBehind(final TransferOptions transferOptions) {
+		int bufferSize = transferOptions.getWriteBehindBufferSize();
+		if (bufferSize > 0) {
+			buffer = new byte[bufferSize];
+			writeBehindAsync = transferOptions.isWriteBehindAsync();
+		}
+	}
+
 	/**
 	 * Finalizes the object by explicitly letting go of each of its internally
 	 * held values.
@@ -194,6 +258,7 @@ public final class IRODSFileOutputStream extends RemoteFileOutputStream {
 	 */
 	@Override
 	protected void open(final GeneralFile file) throws IOException {
+		statPath = file.getAbsolutePath();
 		if (!file.exists()) {
 			fd = ((IRODSFileSystem) file.getFileSystem()).commands.fileCreate(
 					(IRODSFile) file, false, true);
@@ -219,7 +284,146 @@ public final class IRODSFileOutputStream extends RemoteFileOutputStream {
 	@Override
 	public void write(final byte buffer[], final int offset, final int length)
 			throws IOException {
-		fileSystem.commands.fileWrite(fd, buffer, offset, length);
+		if (this.buffer == null) {
+			fileSystem.commands.fileWrite(fd, buffer, offset, length);
+			return;
+		}
+
+		if (offset < 0 || length < 0 || length > buffer.length - offset) {
+			throw new IndexOutOfBoundsException();
+		}
+		checkWriteError();
+
+		if (length >= this.buffer.length) {
+			// a write as big as the buffer gains nothing from it
+			flushBuffer();
+			awaitPendingWrite();
+			fileSystem.commands.fileWrite(fd, buffer, offset, length);
+			return;
+		}
+
+		int copied = Math.min(length, this.buffer.length - count);
+		System.arraycopy(buffer, offset, this.buffer, count, copied);
+		count += copied;
+		if (count == this.buffer.length) {
+			flushBuffer();
+			System.arraycopy(buffer, offset + copied, this.buffer, 0, length
+					- copied);
+			count = length - copied;
+		}
+	}
+
+	/**
+	 * Writes the specified byte to this file output stream, through the
+	 * buffer.
+	 * 
+	 * @param b
+	 *            the byte to be written.
+	 * @exception IOException
+	 *                if an I/O error occurs.
+	 */
+	@Override
+	public void write(final int b) throws IOException {
+		if (buffer == null) {
+			super.write(b);
+			return;
+		}
+
+		checkWriteError();
+		buffer[count++] = (byte) b;
+		if (count == buffer.length) {
+			flushBuffer();
+		}
+	}
+
+	/**
+	 * Sends any buffered bytes, and waits for the server to accept them and
+	 * any being sent in the background.
+	 * 
+	 * @exception IOException
+	 *                if an I/O error occurs, including one in an earlier
+	 *                background send.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (buffer == null || fileSystem == null) {
+			return;
+		}
+		checkWriteError();
+		flushBuffer();
+		awaitPendingWrite();
+	}
+
+	/**
+	 * Send the buffered bytes, in the background if <code>writeBehindAsync</code>
+	 * is set, once the previous background send is done.
+	 */
+	private void flushBuffer() throws IOException {
+		awaitPendingWrite();
+		if (count == 0) {
+			return;
+		}
+
+		if (!writeBehindAsync) {
+			fileSystem.commands.fileWrite(fd, buffer, 0, count);
+			count = 0;
+			return;
+		}
+
+		final IRODSCommands commands = fileSystem.commands;
+		final int descriptor = fd;
+		final byte[] full = buffer;
+		final int length = count;
+		pendingWrite = writeBehindExecutor.submit(new Callable<Integer>() {
+			public Integer call() throws IOException {
+				commands.fileWrite(descriptor, full, 0, length);
+				return length;
+			}
+		});
+		buffer = sendingBuffer == null ? new byte[full.length] : sendingBuffer;
+		sendingBuffer = full;
+		count = 0;
+	}
+
+	/**
+	 * Wait for the background send, if any, keeping its error for every later
+	 * write.
+	 */
+	private void awaitPendingWrite() throws IOException {
+		if (pendingWrite == null) {
+			return;
+		}
+		try {
+			pendingWrite.get();
+			pendingWrite = null;
+		} catch (InterruptedException e) {
+			// the send is left pending, to be waited for by the next call
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(
+					"interrupted waiting for write behind");
+		} catch (ExecutionException e) {
+			pendingWrite = null;
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				writeError = (IOException) cause;
+			} else {
+				writeError = new IOException("write behind failed");
+				writeError.initCause(cause);
+			}
+			throw writeError;
+		}
+	}
+
+	private void checkWriteError() throws IOException {
+		if (fileSystem == null) {
+			throw new IOException("stream is closed");
+		}
+		if (writeError != null) {
+			throw writeError;
+		}
+		if (pendingWrite != null && pendingWrite.isDone()) {
+			awaitPendingWrite();
+		}
 	}
 
 	/**
@@ -232,13 +436,33 @@ public final class IRODSFileOutputStream extends RemoteFileOutputStream {
 	 * well.
 	 * 
 	 * @exception IOException
-	 *                if an I/O error occurs.
+	 *                if an I/O error occurs. An error in sending the buffered
+	 *                bytes is thrown after the file has been closed.
 	 */
 	@Override
 	public void close() throws IOException {
+		IOException flushError = null;
+		if (fileSystem != null && buffer != null) {
+			// the descriptor is closed even if buffered bytes cannot be sent
+			try {
+				flush();
+			} catch (InterruptedIOException e) {
+				throw e;
+			} catch (IOException e) {
+				flushError = e;
+			}
+			count = 0;
+		}
+
 		if (fileSystem != null) {
-			fileSystem.commands.fileClose(fd);
-			fileSystem = null;
+			try {
+				fileSystem.commands.fileClose(fd);
+			} finally {
+				if (statPath != null) {
+					fileSystem.getStatCache().invalidateChange(statPath);
+				}
+				fileSystem = null;
+			}
 		}
 
 		// if there was a rerouted connection, shut down that IRODSFileSystem
@@ -247,6 +471,10 @@ public final class IRODSFileOutputStream extends RemoteFileOutputStream {
 			log.info("shutting down rerouted file system");
 			reroutedFileSystem.close();
 		}
+
+		if (flushError != null) {
+			throw flushError;
+		}
 	}
 
 	/**
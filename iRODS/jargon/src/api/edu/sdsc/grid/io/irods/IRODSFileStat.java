@@ -0,0 +1,141 @@
+package edu.sdsc.grid.io.irods;
+
+/**
+ * What an {@link IRODSFile IRODSFile} knows about a path after one query of
+ * the catalog: whether it is a file, a directory or neither, and for a file
+ * the size and resource of each replica. Kept in the {@link IRODSStatCache
+ * IRODSStatCache} of the file system.
+ * <p/>
+ * This object is immutable, and is thread-safe.
+ */
+final class IRODSFileStat {
+
+	enum Type {
+		FILE, DIRECTORY, NONE
+	}
+
+	/**
+	 * Permissions have not been asked for yet.
+	 */
+	static final int PERMISSIONS_UNKNOWN = Integer.MIN_VALUE;
+
+	private static final String[] NO_RESOURCES = new String[0];
+	private static final long[] NO_SIZES = new long[0];
+
+	private final String absolutePath;
+	private final Type type;
+	private final String[] resources;
+	private final long[] sizes;
+	private final long modifiedSeconds;
+	private final int permissions;
+	private final long fetchedMillis;
+
+	static IRODSFileStat instanceForFile(final String absolutePath,
+			final String[] resources, final long[] sizes,
+			final long modifiedSeconds) {
+		if (resources == null || sizes == null
+				|| resources.length != sizes.length) {
+			throw new IllegalArgumentException("resources do not match sizes");
+		}
+
+		return new IRODSFileStat(absolutePath, Type.FILE, resources, sizes,
+				modifiedSeconds, PERMISSIONS_UNKNOWN, System
+						.currentTimeMillis());
+	}
+
+	static IRODSFileStat instanceForDirectory(final String absolutePath,
+			final long modifiedSeconds) {
+		return new IRODSFileStat(absolutePath, Type.DIRECTORY, NO_RESOURCES,
+				NO_SIZES, modifiedSeconds, PERMISSIONS_UNKNOWN, System
+						.currentTimeMillis());
+	}
+
+	static IRODSFileStat instanceForMissing(final String absolutePath) {
+		return new IRODSFileStat(absolutePath, Type.NONE, NO_RESOURCES,
+				NO_SIZES, 0, PERMISSIONS_UNKNOWN, System.currentTimeMillis());
+	}
+
+	private IRODSFileStat(final String absolutePath, final Type type,
+			final String[] resources, final long[] sizes,
+			final long modifiedSeconds, final int permissions,
+			final long fetchedMillis) {
+		if (absolutePath == null || absolutePath.length() == 0) {
+			throw new IllegalArgumentException("null or empty absolutePath");
+		}
+
+		this.absolutePath = absolutePath;
+		this.type = type;
+		this.resources = resources;
+		this.sizes = sizes;
+		this.modifiedSeconds = modifiedSeconds;
+		this.permissions = permissions;
+		this.fetchedMillis = fetchedMillis;
+	}
+
+	/**
+	 * @return a copy of this stat with the permissions of the user, which
+	 *         expires when this one does
+	 */
+	IRODSFileStat withPermissions(final int permissions) {
+		return new IRODSFileStat(absolutePath, type, resources, sizes,
+				modifiedSeconds, permissions, fetchedMillis);
+	}
+
+	String getAbsolutePath() {
+		return absolutePath;
+	}
+
+	Type getType() {
+		return type;
+	}
+
+	/**
+	 * @return <code>String</code> with the resource of the first replica,
+	 *         <code>null</code> if this is not a file
+	 */
+	String getResource() {
+		if (resources.length == 0) {
+			return null;
+		}
+		return resources[0];
+	}
+
+	/**
+	 * @param resource
+	 *            <code>String</code> with the resource of the replica, or
+	 *            <code>null</code> or empty for the first replica
+	 * @return <code>long</code> with the size of the replica, 0 if there is
+	 *         none
+	 */
+	long getLength(final String resource) {
+		if (resource == null || resource.length() == 0) {
+			return sizes.length == 0 ? 0 : sizes[0];
+		}
+
+		for (int i = 0; i < resources.length; i++) {
+			if (resource.equals(resources[i])) {
+				return sizes[i];
+			}
+		}
+		return 0;
+	}
+
+	long getModifiedSeconds() {
+		return modifiedSeconds;
+	}
+
+	int getPermissions() {
+		return permissions;
+	}
+
+	long getFetchedMillis() {
+		return fetchedMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "IRODSFileStat " + absolutePath + " " + type + " modified:"
+				+ modifiedSeconds + " replicas:" + resources.length;
+	}
+
+}
@@ -55,6 +55,7 @@ import java.util.Vector;
 import org.ietf.jgss.GSSException;
 import org.irods.jargon.core.accessobject.IRODSAccessObjectFactory;
 import org.irods.jargon.core.accessobject.IRODSAccessObjectFactoryImpl;
+import org.irods.jargon.core.connection.IRODSTransportOptions;
 import org.irods.jargon.core.exception.JargonException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -90,6 +91,11 @@ public class IRODSFileSystem extends RemoteFileSystem {
 
 	static int BUFFER_SIZE = 65535;
 
+	/**
+	 * Socket options for connections opened after they are set.
+	 */
+	private static IRODSTransportOptions transportOptions = new IRODSTransportOptions();
+
 	private Logger log = LoggerFactory.getLogger(IRODSFileSystem.class);
 
 	// Add the metadata query attributes
@@ -99,6 +105,28 @@ public class IRODSFileSystem extends RemoteFileSystem {
 		}
 	}
 
+	/**
+	 * Set the transport options used by iRODS connections opened from now on,
+	 * such as the socket buffer sizes, or whether an NIO socket channel is used.
+	 * 
+	 * @param transportOptions
+	 *            {@link IRODSTransportOptions IRODSTransportOptions}
+	 */
+	public static synchronized void setTransportOptions(
+			final IRODSTransportOptions transportOptions) {
+		if (transportOptions == null) {
+			throw new IllegalArgumentException("null transportOptions");
+		}
+		IRODSFileSystem.transportOptions = transportOptions;
+	}
+
+	/**
+	 * Get the transport options used by iRODS connections opened from now on.
+	 */
+	public static synchronized IRODSTransportOptions getTransportOptions() {
+		return transportOptions;
+	}
+
 	/**
 	 * Use this account object instead of the parent class's GeneralAccount
 	 * object. Just so you don't have to recast it all the time.
@@ -110,6 +138,19 @@ public class IRODSFileSystem extends RemoteFileSystem {
 	 */
 	protected IRODSCommands commands;
 
+	/**
+	 * Set when the <code>commands</code> were borrowed from an
+	 * {@link IRODSConnectionPool IRODSConnectionPool}, in which case
+	 * <code>close()</code> gives the connection back rather than disconnecting.
+	 */
+	private PooledIRODSConnection pooledConnection = null;
+
+	/**
+	 * What is known about paths of this file system, shared by its
+	 * <code>IRODSFile</code> objects. Off unless given a time to live.
+	 */
+	private final IRODSStatCache statCache = IRODSStatCache.instance();
+
 	/**
 	 * Opens a socket connection to read from and write to. Loads the default
 	 * iRODS user account information from their home directory. The account
@@ -162,6 +203,48 @@ public class IRODSFileSystem extends RemoteFileSystem {
 		setAccount(irodsAccount);
 	}
 
+	/**
+	 * Uses a connection borrowed from the given pool rather than opening a new
+	 * socket. Calling {@link #close() close()} on this file system gives the
+	 * connection back to the pool.
+	 * 
+	 * @param irodsAccount
+	 *            The iRODS account information object.
+	 * @param irodsConnectionPool
+	 *            {@link IRODSConnectionPool IRODSConnectionPool} that will
+	 *            supply the connection.
+	 * @throws IOException
+	 *             if an IOException occurs.
+	 */
+	public IRODSFileSystem(IRODSAccount irodsAccount,
+			final IRODSConnectionPool irodsConnectionPool) throws IOException {
+
+		if (irodsConnectionPool == null) {
+			throw new IllegalArgumentException("null irodsConnectionPool");
+		}
+
+		try {
+			log.info("borrowing the irods connection from the pool");
+			pooledConnection = irodsConnectionPool
+					.borrowConnection(irodsAccount);
+			commands = pooledConnection.getIrodsCommands();
+		} catch (JargonException e1) {
+			log.error(
+					"jargon exception, will be rethrown as unchecked exception",
+					e1);
+			throw new RuntimeException(e1);
+		}
+
+		try {
+			irodsAccount = lookupUserIfGSI(irodsAccount);
+			setAccount(irodsAccount);
+		} catch (RuntimeException e) {
+			// the connection is not given to the caller, so it is given back
+			pooledConnection.obliterateConnectionAndDiscardErrors();
+			throw e;
+		}
+	}
+
 	/**
 	 * @param irodsAccount
 	 * @return
@@ -613,6 +696,9 @@ public class IRODSFileSystem extends RemoteFileSystem {
 	 */
 	@Override
 	public boolean isConnected() {
+		if (pooledConnection != null && !pooledConnection.isBorrowed()) {
+			return false;
+		}
 		return commands.isConnected();
 	}
 
@@ -639,10 +725,19 @@ public class IRODSFileSystem extends RemoteFileSystem {
 	 * reconnected after this method is called. If this object, or another
 	 * object which uses this filesystem, tries to send a command to the server
 	 * a ClosedChannelException will be thrown.
+	 * <P>
+	 * If this file system was created with an {@link IRODSConnectionPool
+	 * IRODSConnectionPool}, the connection is given back to the pool instead
+	 * of being disconnected.
 	 */
 	public void close() throws IOException {
 		log.info("calling close() on irodsCommands");
 		try {
+			if (pooledConnection != null) {
+				log.info("connection is pooled, returning to pool");
+				pooledConnection.shutdown();
+				return;
+			}
 			commands.close();
 		} catch (JargonException e) {
 			log.error("error on close", e);
@@ -651,13 +746,31 @@ public class IRODSFileSystem extends RemoteFileSystem {
 		}
 	}
 
+	/**
+	 * Close after an error that may have left the protocol in an unknown
+	 * state, so a pooled connection is discarded rather than given back.
+	 * Errors closing are logged and ignored.
+	 */
+	void closeAfterError() {
+		if (pooledConnection != null) {
+			pooledConnection.obliterateConnectionAndDiscardErrors();
+			return;
+		}
+
+		try {
+			commands.close();
+		} catch (JargonException e) {
+			log.warn("error closing after an error is logged and ignored", e);
+		}
+	}
+
 	/**
 	 * Returns if the connection to iRODS has been closed or not.
 	 * 
 	 * @return true if the connection has been closed
 	 */
 	public boolean isClosed() throws IOException {
-		return !commands.isConnected();
+		return !isConnected();
 	}
 
 	/**
@@ -895,4 +1008,15 @@ public class IRODSFileSystem extends RemoteFileSystem {
 	public IRODSCommands getCommands() {
 		return commands;
 	}
+
+	/**
+	 * Get the stat cache shared by the <code>IRODSFile</code> objects of this
+	 * file system, which is off until given a time to live with
+	 * <code>setTimeToLiveMillis()</code>.
+	 * 
+	 * @return {@link IRODSStatCache IRODSStatCache} of this file system
+	 */
+	public IRODSStatCache getStatCache() {
+		return statCache;
+	}
 }
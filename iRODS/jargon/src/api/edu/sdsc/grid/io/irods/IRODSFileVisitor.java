@@ -0,0 +1,84 @@
+package edu.sdsc.grid.io.irods;
+
+/**
+ * Callbacks of an {@link IRODSTreeWalker IRODSTreeWalker}, made for each
+ * directory and file of the tree it walks.
+ * <p/>
+ * Directories are listed on several connections at once, so the callbacks are
+ * made from several threads at once, and must be thread-safe. The
+ * <code>postVisitDirectory()</code> of a directory is made after the callbacks
+ * of everything under it.
+ */
+public interface IRODSFileVisitor {
+
+	public enum VisitResult {
+		/**
+		 * Go on with the walk.
+		 */
+		CONTINUE,
+		/**
+		 * Do not list this directory, which still gets its
+		 * <code>postVisitDirectory()</code>. The same as
+		 * <code>CONTINUE</code> when returned for a file.
+		 */
+		SKIP_SUBTREE,
+		/**
+		 * Stop the walk. No more callbacks are made, and directories being
+		 * listed are closed.
+		 */
+		TERMINATE
+	}
+
+	/**
+	 * Called for a directory before it is listed.
+	 *
+	 * @param directory
+	 *            {@link IRODSFileListingEntry} of the directory
+	 * @param depth
+	 *            <code>int</code> with the depth of the directory, 0 for the
+	 *            directory the walk started in
+	 * @return {@link VisitResult}
+	 */
+	VisitResult preVisitDirectory(IRODSFileListingEntry directory, int depth);
+
+	/**
+	 * Called for each file found by listing a directory.
+	 *
+	 * @param file
+	 *            {@link IRODSFileListingEntry} of the file
+	 * @param depth
+	 *            <code>int</code> with the depth of the file
+	 * @return {@link VisitResult}
+	 */
+	VisitResult visitFile(IRODSFileListingEntry file, int depth);
+
+	/**
+	 * Called for a directory after it, and each directory under it, has been
+	 * listed and visited.
+	 *
+	 * @param directory
+	 *            {@link IRODSFileListingEntry} of the directory
+	 * @param depth
+	 *            <code>int</code> with the depth of the directory
+	 * @return {@link VisitResult}
+	 */
+	VisitResult postVisitDirectory(IRODSFileListingEntry directory, int depth);
+
+	/**
+	 * Called when a directory could not be listed, in which case what was not
+	 * yet listed in it is not visited. Its <code>postVisitDirectory()</code>
+	 * is still made.
+	 *
+	 * @param directory
+	 *            {@link IRODSFileListingEntry} of the directory
+	 * @param depth
+	 *            <code>int</code> with the depth of the directory
+	 * @param exception
+	 *            <code>Exception</code> that listing the directory failed with
+	 * @return {@link VisitResult}, where <code>TERMINATE</code> stops the walk
+	 *         and has it throw the exception
+	 */
+	VisitResult visitDirectoryFailed(IRODSFileListingEntry directory,
+			int depth, Exception exception);
+
+}
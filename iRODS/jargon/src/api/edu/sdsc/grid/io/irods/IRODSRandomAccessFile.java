@@ -45,9 +45,18 @@
 //
 package edu.sdsc.grid.io.irods;
 
+import java.io.EOFException;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 
+import org.irods.jargon.core.packinstr.TransferOptions;
+
+import edu.sdsc.grid.io.FileRange;
 import edu.sdsc.grid.io.GeneralFile;
 import edu.sdsc.grid.io.GeneralFileSystem;
 import edu.sdsc.grid.io.GeneralMetaData;
@@ -83,6 +92,16 @@ import edu.sdsc.grid.io.StandardMetaData;
  * <code>IOException</code> other than <code>EOFException</code> is thrown. In
  * particular, an <code>IOException</code> may be thrown if the stream has been
  * closed.
+ * <p>
+ * Reads may go through a cache of fixed-size blocks, so small reads near each
+ * other do not each go to the server. The cache is off unless
+ * <code>setRandomAccessCacheBlockSize()</code> of the connection's
+ * {@link TransferOptions} is given a size over zero. Writes and
+ * <code>setLength</code> drop the cached blocks they change, but changes made
+ * to the data object through another handle, stream or client are not seen
+ * while a block is cached. Seeks only move the file pointer, the server is
+ * told where to read or write when a read goes to the server or a write is
+ * made.
  * 
  * @author Lucas Gilbert
  * @since JARGON2.0
@@ -99,6 +118,42 @@ public class IRODSRandomAccessFile extends RemoteRandomAccessFile {
 	 */
 	IRODSFileSystem fileSystem;
 
+	/**
+	 * Path of the file when opened for writing, whose stat is dropped from the
+	 * stat cache when the file is closed.
+	 */
+	private String statPath = null;
+
+	/**
+	 * Most blocks missing from the cache that are read in one request.
+	 */
+	static final int MAX_BLOCKS_PER_READ = 16;
+
+	/**
+	 * Ranges given to <code>readRanges</code> this close together are read
+	 * as one, along with the bytes between them.
+	 */
+	static final int RANGE_MERGE_GAP = 64 * 1024;
+
+	/**
+	 * Most bytes asked for by one read request of <code>readRanges</code>.
+	 */
+	static final int MAX_RANGE_READ_LENGTH = 4 * 1024 * 1024;
+
+	/**
+	 * Position of the server's file pointer, which lags behind
+	 * <code>filePointer</code> after a seek.
+	 */
+	private long remotePointer = 0;
+
+	/**
+	 * Cache of blocks read, <code>null</code> if reads are not cached.
+	 */
+	private IRODSBlockCache blockCache = null;
+	private int blockSize = 0;
+	private String cachePath = null;
+	private String cacheReplica = null;
+
 	/**
 	 * Creates a random access file stream to read from, and optionally to write
 	 * to, a file with the specified name. A new file descriptor is obtained
@@ -219,6 +274,27 @@ public class IRODSRandomAccessFile extends RemoteRandomAccessFile {
 		super(file, mode);
 
 		setFileSystem(file.getFileSystem());
+		configureBlockCache(file, fileSystem.commands.getTransferOptions());
+	}
+
+	private void configureBlockCache(final IRODSFile file,
+			final TransferOptions transferOptions) throws IOException {
+		blockSize = transferOptions.getRandomAccessCacheBlockSize();
+		long cacheSize = transferOptions.getRandomAccessCacheSize();
+		if (blockSize <= 0 || cacheSize < blockSize) {
+			blockSize = 0;
+			return;
+		}
+
+		if (transferOptions.isSharedRandomAccessCache()) {
+			blockCache = IRODSBlockCache.getSharedInstance(cacheSize);
+		} else {
+			blockCache = IRODSBlockCache.instance(cacheSize);
+		}
+		// the same path on another grid is another data object
+		cachePath = fileSystem.getHost() + ':' + fileSystem.getPort()
+				+ file.getAbsolutePath();
+		cacheReplica = file.getResource();
 	}
 
 	/**
@@ -246,6 +322,9 @@ public class IRODSRandomAccessFile extends RemoteRandomAccessFile {
 			SecurityException, IOException {
 		// had to overwrite
 		rwCheck(file, mode);
+		if (rw != 0) {
+			statPath = file.getAbsolutePath();
+		}
 
 		// super insures file.isFile()
 		if (rw == 0) {
@@ -347,12 +426,18 @@ public class IRODSRandomAccessFile extends RemoteRandomAccessFile {
 	@Override
 	public int read() throws IOException {
 		byte buffer[] = new byte[1];
+		if (blockCache != null) {
+			return readCached(buffer, 0, 1) == 1 ? buffer[0] & 0xFF : -1;
+		}
+
 		int offset = 0;
+		seekServer();
 		int read = fileSystem.commands.fileRead(fd, buffer, offset, 1);
 		if (read == 1 && buffer != null) {
 			filePointer += 1;
+			remotePointer = filePointer;
 
-			return buffer[0];
+			return buffer[0] & 0xFF;
 		}
 		return -1;
 
@@ -373,12 +458,217 @@ public class IRODSRandomAccessFile extends RemoteRandomAccessFile {
 	@Override
 	protected int readBytes(final byte buffer[], final int offset, final int len)
 			throws IOException {
+		if (blockCache != null) {
+			return readCached(buffer, offset, len);
+		}
+
+		seekServer();
 		int read = fileSystem.commands.fileRead(fd, buffer, offset, len);
-		filePointer += read;
+		if (read > 0) {
+			filePointer += read;
+			remotePointer = filePointer;
+		}
 
 		return read;
 	}
 
+	/**
+	 * Reads from the cached blocks, reading those that are missing.
+	 * 
+	 * @return <code>int</code> with the number of bytes read, or
+	 *         <code>-1</code> at the end of the file
+	 */
+	private int readCached(final byte buffer[], final int offset,
+			final int len) throws IOException {
+		if (offset < 0 || len < 0 || len > buffer.length - offset) {
+			throw new IndexOutOfBoundsException();
+		}
+
+		int total = 0;
+		while (total < len) {
+			long block = filePointer / blockSize;
+			int within = (int) (filePointer % blockSize);
+			byte[] data = blockCache.get(cachePath, cacheReplica, block);
+			if (data == null) {
+				data = readBlocks(block, (filePointer + len - total - 1)
+						/ blockSize);
+			}
+			if (within >= data.length) {
+				break;
+			}
+
+			int count = Math.min(len - total, data.length - within);
+			System.arraycopy(data, within, buffer, offset + total, count);
+			total += count;
+			filePointer += count;
+			if (data.length < blockSize) {
+				// the last block of the file
+				break;
+			}
+		}
+
+		if (total == 0 && len > 0) {
+			return -1;
+		}
+		return total;
+	}
+
+	/**
+	 * Read, in one request, the blocks from <code>firstBlock</code> up to
+	 * <code>lastBlock</code> or the first one already cached, and cache them.
+	 * 
+	 * @return <code>byte[]</code> with the first block, shorter than the block
+	 *         size, or empty, at the end of the file
+	 */
+	private byte[] readBlocks(final long firstBlock, final long lastBlock)
+			throws IOException {
+		int blocks = 1;
+		while (blocks < MAX_BLOCKS_PER_READ
+				&& firstBlock + blocks <= lastBlock
+				&& blockCache.get(cachePath, cacheReplica, firstBlock + blocks) == null) {
+			blocks++;
+		}
+
+		long start = firstBlock * blockSize;
+		if (remotePointer != start) {
+			fileSystem.commands.fileSeek(fd, start, SEEK_START);
+			remotePointer = start;
+		}
+		byte[] data = new byte[blocks * blockSize];
+		int total = 0;
+		while (total < data.length) {
+			int read;
+			try {
+				read = fileSystem.commands.fileRead(fd, data, total,
+						data.length - total);
+			} catch (IRODSException e) {
+				// -1 just means EOF
+				if (e.getType() != -1) {
+					throw e;
+				}
+				read = -1;
+			}
+			if (read <= 0) {
+				break;
+			}
+			total += read;
+		}
+		remotePointer += total;
+
+		byte[] first = null;
+		for (int i = 0; i < blocks; i++) {
+			int blockStart = i * blockSize;
+			int length = Math.max(Math.min(blockSize, total - blockStart), 0);
+			byte[] block = new byte[length];
+			System.arraycopy(data, blockStart, block, 0, length);
+			blockCache.put(cachePath, cacheReplica, firstBlock + i, block);
+			if (i == 0) {
+				first = block;
+			}
+			if (length < blockSize) {
+				break;
+			}
+		}
+		return first;
+	}
+
+	/**
+	 * Reads each of the given ranges of this file into its buffer, without
+	 * moving the file pointer. Ranges within {@link #RANGE_MERGE_GAP} of each
+	 * other are merged, and a seek and a read for every merged range are sent
+	 * together, with the replies read once they have all been sent, so the
+	 * ranges cost about one round trip rather than two each.
+	 * 
+	 * @param ranges
+	 *            <code>List</code> of {@link FileRange FileRange} with the
+	 *            offsets to read and the buffers to read them into
+	 * @throws EOFException
+	 *             if a range goes past the end of the file, in which case
+	 *             some buffers may have been filled.
+	 * @throws IOException
+	 *             if an I/O error occurs.
+	 */
+	@Override
+	public void readRanges(final List<FileRange> ranges) throws IOException {
+		List<FileRange> sorted = new ArrayList<FileRange>(ranges);
+		Collections.sort(sorted, new Comparator<FileRange>() {
+			public int compare(final FileRange first, final FileRange second) {
+				return first.getOffset() < second.getOffset() ? -1 : first
+						.getOffset() == second.getOffset() ? 0 : 1;
+			}
+		});
+
+		List<Long> readOffsets = new ArrayList<Long>();
+		List<byte[]> readBuffers = new ArrayList<byte[]>();
+		int i = 0;
+		while (i < sorted.size()) {
+			long start = sorted.get(i).getOffset();
+			long end = start + sorted.get(i).getLength();
+			for (i++; i < sorted.size()
+					&& sorted.get(i).getOffset() <= end + RANGE_MERGE_GAP; i++) {
+				end = Math.max(end, sorted.get(i).getOffset()
+						+ sorted.get(i).getLength());
+			}
+			for (long position = start; position < end; position += MAX_RANGE_READ_LENGTH) {
+				readOffsets.add(position);
+				readBuffers.add(new byte[(int) Math.min(MAX_RANGE_READ_LENGTH,
+						end - position)]);
+			}
+		}
+		if (readOffsets.isEmpty()) {
+			return;
+		}
+
+		long[] offsets = new long[readOffsets.size()];
+		for (int j = 0; j < offsets.length; j++) {
+			offsets[j] = readOffsets.get(j);
+		}
+		byte[][] buffers = readBuffers.toArray(new byte[readBuffers.size()][]);
+		int[] counts;
+		try {
+			counts = fileSystem.commands.fileReadPipelined(fd, offsets,
+					buffers, IRODSCommandPipeline.DEFAULT_PIPELINE_DEPTH);
+		} finally {
+			// the server is wherever the last read left it
+			remotePointer = -1;
+		}
+
+		for (FileRange range : ranges) {
+			long position = range.getOffset();
+			int remaining = range.getLength();
+			int read = Arrays.binarySearch(offsets, position);
+			if (read < 0) {
+				read = -read - 2;
+			}
+			while (remaining > 0) {
+				// a read cut short by the end of the file leaves a gap
+				if (read >= offsets.length || position < offsets[read]
+						|| position - offsets[read] >= counts[read]) {
+					throw new EOFException("range at offset:"
+							+ range.getOffset() + " length:"
+							+ range.getLength() + " is past the end of the file");
+				}
+				int within = (int) (position - offsets[read]);
+				int count = Math.min(remaining, counts[read] - within);
+				range.getBuffer().put(buffers[read], within, count);
+				position += count;
+				remaining -= count;
+				read++;
+			}
+		}
+	}
+
+	/**
+	 * Tell the server where <code>filePointer</code> is, if it has moved
+	 * since the server last read or wrote.
+	 */
+	private void seekServer() throws IOException {
+		if (remotePointer != filePointer) {
+			fileSystem.commands.fileSeek(fd, filePointer, SEEK_START);
+			remotePointer = filePointer;
+		}
+	}
+
 	/**
 	 * Writes a sub array as a sequence of bytes.
 	 * 
@@ -394,7 +684,14 @@ public class IRODSRandomAccessFile extends RemoteRandomAccessFile {
 	@Override
 	protected void writeBytes(final byte buffer[], final int offset,
 			final int len) throws IOException {
+		seekServer();
+		long start = filePointer;
 		filePointer += fileSystem.commands.fileWrite(fd, buffer, offset, len);
+		remotePointer = filePointer;
+		if (blockCache != null && len > 0) {
+			blockCache.invalidate(cachePath, start / blockSize, (start + len - 1)
+					/ blockSize, blockSize);
+		}
 	}
 
 	/**
@@ -416,6 +713,9 @@ public class IRODSRandomAccessFile extends RemoteRandomAccessFile {
 	 * the end of the file does not change the file length. The file length will
 	 * change only by writing after the offset has been set beyond the end of
 	 * the file.
+	 * <p>
+	 * Seeks from the start or the current position go to the server with the
+	 * next read that misses the cache, or the next write.
 	 * 
 	 * @param pos
 	 *            the offset position, measured in bytes from the at which to
@@ -437,8 +737,14 @@ public class IRODSRandomAccessFile extends RemoteRandomAccessFile {
 			throw new IllegalArgumentException();
 		}
 
-		fileSystem.commands.fileSeek(fd, position, origin);
-		filePointer = position;
+		if (origin == SEEK_START) {
+			filePointer = position;
+		} else if (origin == SEEK_CURRENT) {
+			filePointer += position;
+		} else {
+			filePointer = fileSystem.commands.fileSeek(fd, position, origin);
+			remotePointer = filePointer;
+		}
 	}
 
 	/**
@@ -506,6 +812,9 @@ public class IRODSRandomAccessFile extends RemoteRandomAccessFile {
 		if (newLength > length) {
 			seek(newLength - 1);
 			write(0);
+			if (blockCache != null) {
+				blockCache.invalidate(cachePath);
+			}
 		} else if (newLength < length) {
 			// The IRODS does not currently support
 			throw new UnsupportedOperationException();
@@ -523,9 +832,16 @@ public class IRODSRandomAccessFile extends RemoteRandomAccessFile {
 	@Override
 	public void close() throws IOException {
 		if (fileSystem != null) {
-			fileSystem.commands.fileClose(fd);
-			fileSystem = null;
+			try {
+				fileSystem.commands.fileClose(fd);
+			} finally {
+				if (statPath != null) {
+					fileSystem.getStatCache().invalidateChange(statPath);
+				}
+				fileSystem = null;
+			}
 		}
+		blockCache = null;
 		if (fileFormat != null) {
 			fileFormat = null;
 		}
@@ -0,0 +1,258 @@
+package edu.sdsc.grid.io.irods;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of what is known about paths of an {@link IRODSFileSystem
+ * IRODSFileSystem}, shared by all the {@link IRODSFile IRODSFile} objects of
+ * the file system, so that <code>exists()</code>, <code>isFile()</code>,
+ * <code>isDirectory()</code>, <code>length()</code>,
+ * <code>lastModified()</code>, <code>canRead()</code> and
+ * <code>getResource()</code> of a path are answered by one query of the
+ * catalog.
+ * <p/>
+ * Entries expire after the time to live, and are dropped when this client
+ * changes the path, such as by deleting, renaming or writing it. Changes made
+ * by other clients are seen once the entry expires. The cache is off, with a
+ * time to live of 0, unless turned on with {@link #setTimeToLiveMillis(long)}.
+ * When full, the least recently used entry is dropped.
+ * <p/>
+ * This class is thread-safe.
+ */
+public final class IRODSStatCache {
+
+	public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+	private long timeToLiveMillis = 0;
+	private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long expirations = 0;
+	private long invalidations = 0;
+
+	/**
+	 * Entries by absolute path, most recently used last, guarded by this.
+	 */
+	private final LinkedHashMap<String, IRODSFileStat> entries = new LinkedHashMap<String, IRODSFileStat>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(
+				final Map.Entry<String, IRODSFileStat> eldest) {
+			return size() > maxEntries;
+		}
+	};
+
+	static IRODSStatCache instance() {
+		return new IRODSStatCache();
+	}
+
+	private IRODSStatCache() {
+	}
+
+	/**
+	 * @return <code>true</code> if the time to live is more than 0
+	 */
+	public synchronized boolean isEnabled() {
+		return timeToLiveMillis > 0;
+	}
+
+	public synchronized long getTimeToLiveMillis() {
+		return timeToLiveMillis;
+	}
+
+	/**
+	 * @param timeToLiveMillis
+	 *            <code>long</code> with how long an entry is used after it is
+	 *            read from the catalog, 0 to turn the cache off
+	 */
+	public synchronized void setTimeToLiveMillis(final long timeToLiveMillis) {
+		if (timeToLiveMillis < 0) {
+			throw new IllegalArgumentException("negative timeToLiveMillis");
+		}
+		this.timeToLiveMillis = timeToLiveMillis;
+		if (timeToLiveMillis == 0) {
+			entries.clear();
+		}
+	}
+
+	public synchronized int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	 * @param maxEntries
+	 *            <code>int</code> with the most paths kept
+	 */
+	public synchronized void setMaxEntries(final int maxEntries) {
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("maxEntries must be at least 1");
+		}
+		this.maxEntries = maxEntries;
+		Iterator<String> paths = entries.keySet().iterator();
+		while (entries.size() > maxEntries) {
+			paths.next();
+			paths.remove();
+		}
+	}
+
+	/**
+	 * @return the entry for the path, <code>null</code> if there is none, it
+	 *         has expired, or the cache is off
+	 */
+	synchronized IRODSFileStat get(final String absolutePath) {
+		if (timeToLiveMillis <= 0) {
+			return null;
+		}
+
+		IRODSFileStat stat = entries.get(absolutePath);
+		if (stat == null) {
+			misses++;
+			return null;
+		}
+
+		if (System.currentTimeMillis() - stat.getFetchedMillis() >= timeToLiveMillis) {
+			entries.remove(absolutePath);
+			expirations++;
+			misses++;
+			return null;
+		}
+
+		hits++;
+		return stat;
+	}
+
+	synchronized void put(final IRODSFileStat stat) {
+		if (timeToLiveMillis > 0) {
+			entries.put(stat.getAbsolutePath(), stat);
+		}
+	}
+
+	/**
+	 * Replace an entry with a copy that knows more, unless it was dropped or
+	 * replaced since it was read.
+	 */
+	synchronized void replace(final IRODSFileStat stat,
+			final IRODSFileStat updated) {
+		String absolutePath = stat.getAbsolutePath();
+		if (entries.get(absolutePath) == stat) {
+			entries.put(absolutePath, updated);
+		}
+	}
+
+	/**
+	 * Drop the entry for a path.
+	 *
+	 * @param absolutePath
+	 *            <code>String</code> with the absolute path
+	 */
+	public synchronized void invalidate(final String absolutePath) {
+		if (entries.remove(absolutePath) != null) {
+			invalidations++;
+		}
+	}
+
+	/**
+	 * Drop the entries for a path and every path under it.
+	 *
+	 * @param absolutePath
+	 *            <code>String</code> with the absolute path of a directory or
+	 *            file
+	 */
+	public synchronized void invalidateTree(final String absolutePath) {
+		invalidate(absolutePath);
+		String prefix = absolutePath.endsWith("/") ? absolutePath
+				: absolutePath + "/";
+		Iterator<String> paths = entries.keySet().iterator();
+		while (paths.hasNext()) {
+			if (paths.next().startsWith(prefix)) {
+				paths.remove();
+				invalidations++;
+			}
+		}
+	}
+
+	/**
+	 * Drop the entries a change to a path makes stale: the path, every path
+	 * under it, and the directories above it, whose modify time changes and
+	 * which may have been created by the change.
+	 *
+	 * @param absolutePath
+	 *            <code>String</code> with the absolute path that was changed
+	 */
+	synchronized void invalidateChange(final String absolutePath) {
+		invalidateTree(absolutePath);
+		String parent = absolutePath;
+		int slash = parent.lastIndexOf('/');
+		while (slash > 0) {
+			parent = parent.substring(0, slash);
+			invalidate(parent);
+			slash = parent.lastIndexOf('/');
+		}
+		invalidate("/");
+	}
+
+	/**
+	 * Drop all entries.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return <code>long</code> with the lookups that had to query the
+	 *         catalog, including those of expired entries
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getExpirations() {
+		return expirations;
+	}
+
+	public synchronized long getInvalidations() {
+		return invalidations;
+	}
+
+	/**
+	 * @return <code>double</code> with the share of lookups answered from the
+	 *         cache, 0 if there have been none
+	 */
+	public synchronized double getHitRatio() {
+		long lookups = hits + misses;
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("IRODS stat cache");
+		sb.append("\n    time to live millis:");
+		sb.append(timeToLiveMillis);
+		sb.append("\n    entries:");
+		sb.append(entries.size());
+		sb.append("\n    hits:");
+		sb.append(hits);
+		sb.append("\n    misses:");
+		sb.append(misses);
+		sb.append("\n    expirations:");
+		sb.append(expirations);
+		sb.append("\n    invalidations:");
+		sb.append(invalidations);
+		return sb.toString();
+	}
+
+}
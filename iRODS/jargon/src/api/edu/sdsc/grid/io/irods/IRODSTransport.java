@@ -0,0 +1,77 @@
+package edu.sdsc.grid.io.irods;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+
+/**
+ * The byte transport under an {@link IRODSConnection IRODSConnection}. Writes
+ * are buffered until <code>flush()</code>, or until they no longer fit in the
+ * buffer. Like the connection itself, implementations are not synchronized,
+ * {@link IRODSCommands IRODSCommands} serializes access.
+ */
+interface IRODSTransport {
+
+	/**
+	 * Buffer the bytes to be sent, writing them through to the socket if they
+	 * do not fit.
+	 */
+	void write(byte[] value, int offset, int length) throws IOException;
+
+	/**
+	 * Send any buffered bytes to the server.
+	 */
+	void flush() throws IOException;
+
+	/**
+	 * Read up to <code>length</code> bytes, blocking until at least one is
+	 * available.
+	 *
+	 * @return <code>int</code> with the number of bytes read, or -1 if the
+	 *         server closed the connection
+	 */
+	int read(byte[] value, int offset, int length) throws IOException;
+
+	/**
+	 * Send <code>count</code> bytes of the file starting at
+	 * <code>position</code>, after anything already buffered.
+	 */
+	void sendFile(FileChannel source, long position, long count)
+			throws IOException;
+
+	/**
+	 * Read <code>count</code> bytes into the file starting at
+	 * <code>position</code>.
+	 *
+	 * @throws EOFException
+	 *             if the server closes the connection first
+	 */
+	void receiveFile(FileChannel destination, long position, long count)
+			throws IOException;
+
+	/**
+	 * @return <code>InputStream</code> that reads from this transport, used
+	 *         where another protocol (e.g. GSI) works over the connection
+	 */
+	InputStream getInputStream();
+
+	/**
+	 * @return <code>OutputStream</code> that writes straight to the socket,
+	 *         bypassing the buffer
+	 */
+	OutputStream getOutputStream();
+
+	Socket getSocket();
+
+	boolean isClosed();
+
+	void close() throws IOException;
+
+	/**
+	 * Shut down and close the socket, ignoring any errors.
+	 */
+	void closeQuietly();
+
+}
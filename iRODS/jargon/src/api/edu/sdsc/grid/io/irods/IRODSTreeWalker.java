@@ -0,0 +1,584 @@
+package edu.sdsc.grid.io.irods;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.irods.jargon.core.accessobject.IRODSAccessObjectFactoryImpl;
+import org.irods.jargon.core.accessobject.IRODSGenQueryExecutor;
+import org.irods.jargon.core.exception.JargonException;
+import org.irods.jargon.core.query.IRODSQuery;
+import org.irods.jargon.core.query.IRODSQueryResultRow;
+import org.irods.jargon.core.query.IRODSQueryResultSet;
+import org.irods.jargon.core.query.JargonQueryException;
+import org.irods.jargon.core.query.RodsGenQueryEnum;
+import org.irods.jargon.core.utils.IRODSDataConversionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.sdsc.grid.io.GeneralFileSystem;
+import edu.sdsc.grid.io.irods.IRODSFileVisitor.VisitResult;
+
+/**
+ * Walks the tree of directories and files under a directory, calling an
+ * {@link IRODSFileVisitor IRODSFileVisitor} for each, with several
+ * directories listed at once on connections borrowed from an
+ * {@link IRODSConnectionPool IRODSConnectionPool}.
+ * <p/>
+ * Each directory is listed with an {@link IRODSFileListing IRODSFileListing},
+ * a page at a time, so a walk takes a round trip per page of entries. The
+ * deepest directory waiting is listed next, which keeps the directories found
+ * but not yet listed to about the depth of the tree times the directories in
+ * each. The callbacks are made on the threads that list, holding their
+ * connection, so a visitor that falls behind slows the listing down rather
+ * than having entries pile up.
+ * <p/>
+ * The walk can be kept to a depth, and to the paths starting with a prefix.
+ * The prefix is added to the listing queries, so only the directories above
+ * the prefix, and the paths starting with it, are read from the catalog.
+ * <p/>
+ * The <code>IRODSFile</code> of an entry uses the file system given to this
+ * walker, not the borrowed connections. The settings of a walker are set
+ * before walking, after which it can do several walks at once.
+ */
+public final class IRODSTreeWalker {
+
+	private static Logger log = LoggerFactory.getLogger(IRODSTreeWalker.class);
+
+	public static final int DEFAULT_MAX_CONCURRENT_LISTINGS = 4;
+
+	private static final AtomicInteger walkNumber = new AtomicInteger();
+
+	private final IRODSFileSystem irodsFileSystem;
+	private final IRODSConnectionPool irodsConnectionPool;
+	private final int maxConcurrentListings;
+
+	private int maxDepth = Integer.MAX_VALUE;
+	private String pathPrefix = null;
+	private int pageSize = GeneralFileSystem.DEFAULT_RECORDS_WANTED;
+
+	/**
+	 * @param irodsFileSystem
+	 *            {@link IRODSFileSystem} of the tree, used for the
+	 *            <code>IRODSFile</code> of each entry
+	 * @param irodsConnectionPool
+	 *            {@link IRODSConnectionPool} with connections to the same
+	 *            server and account, which should allow at least
+	 *            <code>maxConcurrentListings</code> connections
+	 * @param maxConcurrentListings
+	 *            <code>int</code> with the most directories listed at once
+	 * @return <code>IRODSTreeWalker</code>
+	 * @throws JargonException
+	 */
+	public static IRODSTreeWalker instance(
+			final IRODSFileSystem irodsFileSystem,
+			final IRODSConnectionPool irodsConnectionPool,
+			final int maxConcurrentListings) throws JargonException {
+		return new IRODSTreeWalker(irodsFileSystem, irodsConnectionPool,
+				maxConcurrentListings);
+	}
+
+	private IRODSTreeWalker(final IRODSFileSystem irodsFileSystem,
+			final IRODSConnectionPool irodsConnectionPool,
+			final int maxConcurrentListings) throws JargonException {
+		if (irodsFileSystem == null) {
+			throw new JargonException("null irodsFileSystem");
+		}
+
+		if (irodsConnectionPool == null) {
+			throw new JargonException("null irodsConnectionPool");
+		}
+
+		if (maxConcurrentListings < 1) {
+			throw new JargonException(
+					"maxConcurrentListings must be at least 1");
+		}
+
+		this.irodsFileSystem = irodsFileSystem;
+		this.irodsConnectionPool = irodsConnectionPool;
+		this.maxConcurrentListings = maxConcurrentListings;
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * @param maxDepth
+	 *            <code>int</code> with the depth of the deepest entries
+	 *            visited, where the directory the walk starts in is at 0.
+	 *            Directories at this depth are visited, but not listed.
+	 */
+	public void setMaxDepth(final int maxDepth) {
+		if (maxDepth < 0) {
+			throw new IllegalArgumentException("negative maxDepth");
+		}
+		this.maxDepth = maxDepth;
+	}
+
+	public String getPathPrefix() {
+		return pathPrefix;
+	}
+
+	/**
+	 * @param pathPrefix
+	 *            <code>String</code> with the start of the absolute paths that
+	 *            are visited, such as <code>/zone/home/project/run2</code> for
+	 *            <code>run2</code>, <code>run20</code> and everything under
+	 *            them, or <code>null</code> to visit every path. The
+	 *            directories above the prefix are visited as well.
+	 */
+	public void setPathPrefix(final String pathPrefix) {
+		if (pathPrefix != null && !pathPrefix.startsWith("/")) {
+			throw new IllegalArgumentException(
+					"pathPrefix must be an absolute path");
+		}
+		this.pathPrefix = pathPrefix;
+	}
+
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * @param pageSize
+	 *            <code>int</code> with the entries read in a round trip
+	 */
+	public void setPageSize(final int pageSize) {
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("pageSize must be at least 1");
+		}
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Walk the tree under a directory, returning when every directory has
+	 * been listed and visited, or the walk was terminated.
+	 *
+	 * @param absolutePath
+	 *            <code>String</code> with the absolute path of the directory
+	 * @param visitor
+	 *            {@link IRODSFileVisitor} called for each directory and file
+	 * @throws JargonException
+	 *             if the directory does not exist, the visitor threw an
+	 *             exception, or the visitor terminated the walk when a
+	 *             directory could not be listed
+	 */
+	public void walk(final String absolutePath, final IRODSFileVisitor visitor)
+			throws JargonException {
+		if (absolutePath == null || !absolutePath.startsWith("/")) {
+			throw new JargonException("null or relative absolutePath");
+		}
+
+		if (visitor == null) {
+			throw new JargonException("null visitor");
+		}
+
+		String path = absolutePath;
+		if (path.length() > 1 && path.endsWith("/")) {
+			path = path.substring(0, path.length() - 1);
+		}
+
+		new Walk(visitor, maxDepth, pathPrefix, pageSize).run(path);
+	}
+
+	/**
+	 * Read the entry of the directory a walk starts in.
+	 */
+	private IRODSFileListingEntry directoryEntry(final String path)
+			throws JargonException {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("SELECT ");
+		sb.append(RodsGenQueryEnum.COL_COLL_NAME.getName());
+		sb.append(", ");
+		sb.append(RodsGenQueryEnum.COL_COLL_OWNER_NAME.getName());
+		sb.append(", ");
+		sb.append(RodsGenQueryEnum.COL_COLL_MODIFY_TIME.getName());
+		sb.append(" WHERE ");
+		sb.append(RodsGenQueryEnum.COL_COLL_NAME.getName());
+		sb.append(" = '");
+		sb.append(IRODSDataConversionUtil.escapeSingleQuotes(path));
+		sb.append("'");
+
+		IRODSGenQueryExecutor irodsGenQueryExecutor = IRODSAccessObjectFactoryImpl
+				.instance(irodsFileSystem.getCommands())
+				.getIRODSGenQueryExcecutor();
+		IRODSQueryResultSet resultSet;
+		try {
+			resultSet = irodsGenQueryExecutor.executeIRODSQuery(IRODSQuery
+					.instance(sb.toString(), 1), 0);
+		} catch (JargonQueryException e) {
+			log.error("query exception for directory query: " + sb, e);
+			throw new JargonException("error in directory query", e);
+		}
+
+		if (resultSet.getResults().isEmpty()) {
+			throw new JargonException("not a directory:" + path);
+		}
+		if (resultSet.isHasMoreRecords()) {
+			irodsGenQueryExecutor.closeResults(resultSet);
+		}
+
+		IRODSQueryResultRow row = resultSet.getResults().get(0);
+		long modifiedSeconds = 0;
+		try {
+			modifiedSeconds = Long.parseLong(row.getColumn(2).trim());
+		} catch (NumberFormatException e) {
+			log.warn("unexpected modify time is logged and ignored", e);
+		}
+		return IRODSFileListingEntry.instanceForDirectory(irodsFileSystem,
+				path.substring(path.lastIndexOf('/') + 1), IRODSFileStat
+						.instanceForDirectory(path, modifiedSeconds), row
+						.getColumn(1));
+	}
+
+	/**
+	 * Directory being walked, which is done when it and the directories
+	 * under it have been listed.
+	 */
+	private static final class Node {
+		private final IRODSFileListingEntry entry;
+		private final int depth;
+		private final Node parent;
+
+		/**
+		 * Listing of this directory, and the directories under it being
+		 * walked.
+		 */
+		private final AtomicInteger pending = new AtomicInteger(1);
+
+		private Node(final IRODSFileListingEntry entry, final int depth,
+				final Node parent) {
+			this.entry = entry;
+			this.depth = depth;
+			this.parent = parent;
+		}
+	}
+
+	/**
+	 * State of one call of <code>walk()</code>.
+	 */
+	private final class Walk {
+		private final IRODSFileVisitor visitor;
+		private final int maxDepth;
+		private final String pathPrefix;
+		private final int pageSize;
+		private final IRODSAccount irodsAccount;
+
+		private final ThreadPoolExecutor executor;
+		private final AtomicLong sequence = new AtomicLong();
+
+		/**
+		 * Listings scheduled and not yet finished, the walk is done at 0.
+		 */
+		private final AtomicInteger outstanding = new AtomicInteger();
+		private final CountDownLatch done = new CountDownLatch(1);
+
+		private volatile boolean stopped = false;
+		private volatile Exception failure = null;
+
+		private Walk(final IRODSFileVisitor visitor, final int maxDepth,
+				final String pathPrefix, final int pageSize) {
+			this.visitor = visitor;
+			this.maxDepth = maxDepth;
+			this.pathPrefix = pathPrefix;
+			this.pageSize = pageSize;
+			this.irodsAccount = (IRODSAccount) irodsFileSystem.getAccount();
+
+			final int number = walkNumber.incrementAndGet();
+			// the queue of a pool of fixed size is never full
+			executor = new ThreadPoolExecutor(maxConcurrentListings,
+					maxConcurrentListings, 0L, TimeUnit.MILLISECONDS,
+					new PriorityBlockingQueue<Runnable>(),
+					new ThreadFactory() {
+						private final AtomicInteger threadNumber = new AtomicInteger();
+
+						public Thread newThread(final Runnable runnable) {
+							Thread thread = new Thread(runnable,
+									"irods-tree-walker-" + number + "-"
+											+ threadNumber.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+
+		private void run(final String path) throws JargonException {
+			log.info("walking tree under:{}", path);
+			try {
+				Node root = new Node(directoryEntry(path), 0, null);
+				VisitResult result = call(CallbackType.PRE_VISIT, root.entry,
+						0, null);
+				if (result == VisitResult.CONTINUE && maxDepth > 0) {
+					schedule(root);
+					awaitDone();
+				} else if (result != VisitResult.TERMINATE) {
+					call(CallbackType.POST_VISIT, root.entry, 0, null);
+				}
+			} finally {
+				executor.shutdownNow();
+			}
+
+			if (failure instanceof JargonException) {
+				throw (JargonException) failure;
+			} else if (failure != null) {
+				throw new JargonException("error walking tree under:" + path,
+						failure);
+			}
+		}
+
+		private void awaitDone() throws JargonException {
+			try {
+				done.await();
+			} catch (InterruptedException e) {
+				stopped = true;
+				Thread.currentThread().interrupt();
+				throw new JargonException("interrupted walking tree");
+			}
+		}
+
+		private void schedule(final Node node) {
+			outstanding.incrementAndGet();
+			executor.execute(new ListTask(node, sequence.incrementAndGet()));
+		}
+
+		private void stop(final Exception exception) {
+			if (exception != null) {
+				synchronized (this) {
+					if (failure == null) {
+						failure = exception;
+					}
+				}
+			}
+			stopped = true;
+		}
+
+		/**
+		 * Make a callback, stopping the walk if it says to or throws.
+		 */
+		private VisitResult call(final CallbackType callbackType,
+				final IRODSFileListingEntry entry, final int depth,
+				final Exception exception) {
+			if (stopped) {
+				return VisitResult.TERMINATE;
+			}
+
+			VisitResult result;
+			try {
+				switch (callbackType) {
+				case PRE_VISIT:
+					result = visitor.preVisitDirectory(entry, depth);
+					break;
+				case VISIT_FILE:
+					result = visitor.visitFile(entry, depth);
+					break;
+				case POST_VISIT:
+					result = visitor.postVisitDirectory(entry, depth);
+					break;
+				default:
+					result = visitor.visitDirectoryFailed(entry, depth,
+							exception);
+					if (result == VisitResult.TERMINATE) {
+						stop(exception);
+					}
+				}
+			} catch (RuntimeException e) {
+				log.error("visitor threw exception, stopping walk", e);
+				stop(e);
+				return VisitResult.TERMINATE;
+			}
+
+			if (result == null) {
+				result = VisitResult.CONTINUE;
+			} else if (result == VisitResult.TERMINATE) {
+				log.info("visitor terminated walk at:{}", entry
+						.getAbsolutePath());
+				stop(null);
+			}
+			return result;
+		}
+
+		/**
+		 * A listing of a directory, or of a directory under it, is done.
+		 */
+		private void complete(final Node node) {
+			if (node.pending.decrementAndGet() > 0) {
+				return;
+			}
+			call(CallbackType.POST_VISIT, node.entry, node.depth, null);
+			if (node.parent != null) {
+				complete(node.parent);
+			}
+		}
+
+		private void visitDirectory(final IRODSFileListingEntry entry,
+				final Node parent) {
+			int depth = parent.depth + 1;
+			VisitResult result = call(CallbackType.PRE_VISIT, entry, depth,
+					null);
+			if (result == VisitResult.TERMINATE) {
+				return;
+			}
+
+			if (result == VisitResult.SKIP_SUBTREE || depth >= maxDepth) {
+				call(CallbackType.POST_VISIT, entry, depth, null);
+				return;
+			}
+
+			parent.pending.incrementAndGet();
+			schedule(new Node(entry, depth, parent));
+		}
+
+		/**
+		 * @return <code>true</code> if the path starts with the prefix, or is
+		 *         a directory above it
+		 */
+		private boolean isWalked(final String path) {
+			return pathPrefix == null || path.startsWith(pathPrefix)
+					|| pathPrefix.startsWith(childPrefix(path));
+		}
+
+		private String childPrefix(final String path) {
+			return path.endsWith("/") ? path : path + "/";
+		}
+
+		/**
+		 * List a directory, with the prefix added to the queries when the
+		 * directory is above it.
+		 */
+		private IRODSFileListing list(final Node node,
+				final IRODSGenQueryExecutor irodsGenQueryExecutor)
+				throws JargonException {
+			IRODSFile directory = new IRODSFile(irodsFileSystem, node.entry
+					.getAbsolutePath());
+			String path = directory.getAbsolutePath();
+			String childPrefix = childPrefix(path);
+			if (pathPrefix == null || !pathPrefix.startsWith(childPrefix)) {
+				return IRODSFileListing.instanceWithConditions(directory,
+						irodsGenQueryExecutor, pageSize, null, null, true);
+			}
+
+			String rest = pathPrefix.substring(childPrefix.length());
+			int slash = rest.indexOf('/');
+			if (slash != -1) {
+				// only the directory on the way to the prefix is walked
+				return IRODSFileListing.instanceWithConditions(directory,
+						irodsGenQueryExecutor, pageSize, RodsGenQueryEnum.COL_COLL_NAME
+								.getName()
+								+ " = '"
+								+ IRODSDataConversionUtil
+										.escapeSingleQuotes(childPrefix
+												+ rest.substring(0, slash))
+								+ "'", null, false);
+			}
+
+			// _ and % in the prefix match more, which isWalked() drops
+			return IRODSFileListing.instanceWithConditions(directory,
+					irodsGenQueryExecutor, pageSize,
+					RodsGenQueryEnum.COL_COLL_NAME.getName()
+							+ " like '"
+							+ IRODSDataConversionUtil
+									.escapeSingleQuotes(pathPrefix) + "%'",
+					RodsGenQueryEnum.COL_DATA_NAME.getName()
+							+ " like '"
+							+ IRODSDataConversionUtil.escapeSingleQuotes(rest)
+							+ "%'", true);
+		}
+
+		private final class ListTask implements Runnable,
+				Comparable<ListTask> {
+			private final Node node;
+			private final long sequenceNumber;
+
+			private ListTask(final Node node, final long sequenceNumber) {
+				this.node = node;
+				this.sequenceNumber = sequenceNumber;
+			}
+
+			/**
+			 * Deepest first, then in the order found.
+			 */
+			public int compareTo(final ListTask other) {
+				if (node.depth != other.node.depth) {
+					return node.depth > other.node.depth ? -1 : 1;
+				}
+				if (sequenceNumber == other.sequenceNumber) {
+					return 0;
+				}
+				return sequenceNumber < other.sequenceNumber ? -1 : 1;
+			}
+
+			public void run() {
+				try {
+					if (!stopped) {
+						listAndVisit();
+					}
+				} finally {
+					complete(node);
+					if (outstanding.decrementAndGet() == 0) {
+						done.countDown();
+					}
+				}
+			}
+
+			private void listAndVisit() {
+				PooledIRODSConnection connection = null;
+				boolean connectionUsable = false;
+				try {
+					connection = irodsConnectionPool
+							.borrowConnection(irodsAccount);
+					IRODSFileListing listing = list(node,
+							IRODSAccessObjectFactoryImpl.instance(
+									connection.getIrodsCommands())
+									.getIRODSGenQueryExcecutor());
+					int depth = node.depth + 1;
+					while (!stopped && listing.hasNext()) {
+						IRODSFileListingEntry entry = listing.next();
+						if (!isWalked(entry.getAbsolutePath())) {
+							continue;
+						}
+						if (entry.isDirectory()) {
+							visitDirectory(entry, node);
+						} else {
+							call(CallbackType.VISIT_FILE, entry, depth, null);
+						}
+					}
+					listing.close();
+					connectionUsable = true;
+				} catch (Exception e) {
+					log.warn("error listing directory:"
+							+ node.entry.getAbsolutePath(), e);
+					call(CallbackType.VISIT_FAILED, node.entry, node.depth, e);
+				} finally {
+					if (connection != null) {
+						giveBack(connection, connectionUsable);
+					}
+				}
+			}
+		}
+	}
+
+	private enum CallbackType {
+		PRE_VISIT, VISIT_FILE, POST_VISIT, VISIT_FAILED
+	}
+
+	private static void giveBack(final PooledIRODSConnection connection,
+			final boolean connectionUsable) {
+		if (!connectionUsable) {
+			// the state of the protocol is not known after an error
+			connection.obliterateConnectionAndDiscardErrors();
+			return;
+		}
+
+		try {
+			connection.shutdown();
+		} catch (JargonException e) {
+			log.warn("error giving back connection of tree walk", e);
+		}
+	}
+
+}
@@ -0,0 +1,377 @@
+package edu.sdsc.grid.io.irods;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+
+import org.irods.jargon.core.connection.IRODSTransportOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link IRODSTransport IRODSTransport} over a blocking
+ * <code>SocketChannel</code>.
+ * <p/>
+ * Outbound headers and packing instructions are staged in a direct buffer, so
+ * a flush is a single write from native memory. A byte stream that does not
+ * fit is sent with a gathering write of the staged bytes and the caller's
+ * array, rather than being copied in behind them. Inbound bytes are read into
+ * a second direct buffer, large reads scatter into the caller's array first
+ * and the buffer after it, so the next header usually arrives with the data.
+ * <p/>
+ * File contents are moved with <code>FileChannel.transferTo()</code> and
+ * <code>transferFrom()</code> straight between the file and the socket
+ * channel, which lets the operating system send a file without copying it
+ * through the Java heap.
+ * <p/>
+ * Both buffers come from the {@link DirectByteBufferPool DirectByteBufferPool}
+ * and go back to it when the transport is closed.
+ */
+final class NioSocketChannelTransport implements IRODSTransport {
+
+	private static Logger log = LoggerFactory
+			.getLogger(NioSocketChannelTransport.class);
+
+	private final SocketChannel channel;
+	private final int maxPooledBuffers;
+	private ByteBuffer outputBuffer;
+	private ByteBuffer inputBuffer;
+	private final ByteBuffer[] gather = new ByteBuffer[2];
+	private final ByteBuffer[] scatter = new ByteBuffer[2];
+	private final InputStream inputStream = new ChannelInputStream();
+	private final OutputStream outputStream = new ChannelOutputStream();
+	private boolean closed = false;
+
+	/**
+	 * Connect the given channel, which is put in blocking mode, applying the
+	 * socket options before connecting. The channel is closed if the connect
+	 * fails.
+	 */
+	static NioSocketChannelTransport instance(final SocketChannel channel,
+			final String host, final int port,
+			final IRODSTransportOptions transportOptions) throws IOException {
+		try {
+			channel.configureBlocking(true);
+			SocketTransport.configureSocket(channel.socket(), transportOptions);
+			channel.connect(new InetSocketAddress(host, port));
+		} catch (IOException e) {
+			try {
+				channel.close();
+			} catch (IOException ce) {
+				// ignore
+			}
+			throw e;
+		}
+		return new NioSocketChannelTransport(channel,
+				transportOptions.getDirectBufferSize(),
+				transportOptions.getMaxPooledDirectBuffers());
+	}
+
+	private NioSocketChannelTransport(final SocketChannel channel,
+			final int bufferSize, final int maxPooledBuffers) {
+		this.channel = channel;
+		this.maxPooledBuffers = maxPooledBuffers;
+		this.outputBuffer = DirectByteBufferPool.borrow(bufferSize);
+		this.inputBuffer = DirectByteBufferPool.borrow(bufferSize);
+		// nothing read yet
+		inputBuffer.limit(0);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see edu.sdsc.grid.io.irods.IRODSTransport#write(byte[], int, int)
+	 */
+	public void write(final byte[] value, final int offset, final int length)
+			throws IOException {
+		checkOpen();
+		if (length < outputBuffer.remaining()) {
+			outputBuffer.put(value, offset, length);
+			return;
+		}
+
+		outputBuffer.flip();
+		ByteBuffer payload = ByteBuffer.wrap(value, offset, length);
+		gather[0] = outputBuffer;
+		gather[1] = payload;
+		try {
+			while (payload.hasRemaining()) {
+				channel.write(gather);
+			}
+		} finally {
+			gather[1] = null;
+			outputBuffer.clear();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see edu.sdsc.grid.io.irods.IRODSTransport#flush()
+	 */
+	public void flush() throws IOException {
+		checkOpen();
+		outputBuffer.flip();
+		try {
+			while (outputBuffer.hasRemaining()) {
+				channel.write(outputBuffer);
+			}
+		} finally {
+			outputBuffer.clear();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see edu.sdsc.grid.io.irods.IRODSTransport#read(byte[], int, int)
+	 */
+	public int read(final byte[] value, final int offset, final int length)
+			throws IOException {
+		checkOpen();
+		if (length == 0) {
+			return 0;
+		}
+
+		if (inputBuffer.hasRemaining()) {
+			return copyBuffered(value, offset, length);
+		}
+
+		if (length < inputBuffer.capacity()) {
+			inputBuffer.clear();
+			int n = channel.read(inputBuffer);
+			inputBuffer.flip();
+			if (n < 0) {
+				return -1;
+			}
+			return copyBuffered(value, offset, length);
+		}
+
+		// read straight into the caller's array, anything past it lands in
+		// the input buffer
+		ByteBuffer destination = ByteBuffer.wrap(value, offset, length);
+		inputBuffer.clear();
+		scatter[0] = destination;
+		scatter[1] = inputBuffer;
+		long n;
+		try {
+			n = channel.read(scatter);
+		} finally {
+			scatter[0] = null;
+			inputBuffer.flip();
+		}
+		if (n < 0) {
+			return -1;
+		}
+		return destination.position() - offset;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see edu.sdsc.grid.io.irods.IRODSTransport#sendFile(java.nio.channels.
+	 * FileChannel, long, long)
+	 */
+	public void sendFile(final FileChannel source, final long position,
+			final long count) throws IOException {
+		flush();
+		long sent = 0;
+		while (sent < count) {
+			long n = source.transferTo(position + sent, count - sent, channel);
+			if (n <= 0) {
+				throw new EOFException("source file ended before "
+						+ count + " bytes were sent");
+			}
+			sent += n;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * edu.sdsc.grid.io.irods.IRODSTransport#receiveFile(java.nio.channels.
+	 * FileChannel, long, long)
+	 */
+	public void receiveFile(final FileChannel destination,
+			final long position, final long count) throws IOException {
+		checkOpen();
+		long received = 0;
+
+		// bytes already read past the last message come first
+		if (inputBuffer.hasRemaining()) {
+			int limit = inputBuffer.limit();
+			int n = (int) Math.min(inputBuffer.remaining(), count);
+			inputBuffer.limit(inputBuffer.position() + n);
+			try {
+				while (inputBuffer.hasRemaining()) {
+					received += destination.write(inputBuffer, position
+							+ received);
+				}
+			} finally {
+				inputBuffer.limit(limit);
+			}
+		}
+
+		while (received < count) {
+			long n = destination.transferFrom(channel, position + received,
+					count - received);
+			if (n <= 0) {
+				throw new EOFException("connection closed after " + received
+						+ " of " + count + " bytes");
+			}
+			received += n;
+		}
+	}
+
+	private int copyBuffered(final byte[] value, final int offset,
+			final int length) {
+		int n = Math.min(length, inputBuffer.remaining());
+		inputBuffer.get(value, offset, n);
+		return n;
+	}
+
+	private void checkOpen() throws IOException {
+		if (closed) {
+			throw new ClosedChannelException();
+		}
+	}
+
+	public InputStream getInputStream() {
+		return inputStream;
+	}
+
+	public OutputStream getOutputStream() {
+		return outputStream;
+	}
+
+	public Socket getSocket() {
+		return channel.socket();
+	}
+
+	public boolean isClosed() {
+		return closed || !channel.isOpen();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see edu.sdsc.grid.io.irods.IRODSTransport#close()
+	 */
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			channel.close();
+		} finally {
+			releaseBuffers();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see edu.sdsc.grid.io.irods.IRODSTransport#closeQuietly()
+	 */
+	public void closeQuietly() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			channel.socket().shutdownInput();
+		} catch (Exception e) {
+			// ignore
+		}
+
+		try {
+			channel.socket().shutdownOutput();
+		} catch (Exception e) {
+			// ignore
+		}
+
+		try {
+			channel.close();
+		} catch (Exception e) {
+			// ignore
+		}
+		releaseBuffers();
+	}
+
+	private void releaseBuffers() {
+		log.debug("returning direct buffers to pool");
+		DirectByteBufferPool.release(outputBuffer, maxPooledBuffers);
+		DirectByteBufferPool.release(inputBuffer, maxPooledBuffers);
+		outputBuffer = null;
+		inputBuffer = null;
+	}
+
+	/**
+	 * Reads through the transport, so bytes already in the input buffer are
+	 * not lost.
+	 */
+	private final class ChannelInputStream extends InputStream {
+
+		private final byte[] single = new byte[1];
+
+		@Override
+		public int read() throws IOException {
+			int n = NioSocketChannelTransport.this.read(single, 0, 1);
+			return n < 0 ? -1 : single[0] & 0xff;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len)
+				throws IOException {
+			return NioSocketChannelTransport.this.read(b, off, len);
+		}
+
+		@Override
+		public int available() throws IOException {
+			checkOpen();
+			return inputBuffer.remaining();
+		}
+
+		@Override
+		public void close() throws IOException {
+			NioSocketChannelTransport.this.close();
+		}
+	}
+
+	/**
+	 * Writes through the transport and sends at once, after anything already
+	 * buffered.
+	 */
+	private final class ChannelOutputStream extends OutputStream {
+
+		private final byte[] single = new byte[1];
+
+		@Override
+		public void write(final int b) throws IOException {
+			single[0] = (byte) b;
+			write(single, 0, 1);
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len)
+				throws IOException {
+			NioSocketChannelTransport.this.write(b, off, len);
+			NioSocketChannelTransport.this.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			NioSocketChannelTransport.this.close();
+		}
+	}
+
+}
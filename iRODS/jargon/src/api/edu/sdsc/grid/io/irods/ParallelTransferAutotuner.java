@@ -0,0 +1,171 @@
+package edu.sdsc.grid.io.irods;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Picks the number of threads to ask the server for in a parallel transfer,
+ * from the throughput seen by earlier transfers to the same host.
+ * <p/>
+ * For each host, the throughput of each thread count used is kept as a moving
+ * average. The first transfer asks for the configured maximum. After that the
+ * best thread count so far is asked for, except that a thread count one either
+ * side of it is tried while it has not been measured, and again every
+ * {@link #EXPLORE_INTERVAL} transfers, so the choice follows changes in the
+ * network. The server may still use fewer threads than asked for, the
+ * throughput is kept under the thread count actually used.
+ */
+final class ParallelTransferAutotuner {
+
+	private static Logger log = LoggerFactory
+			.getLogger(ParallelTransferAutotuner.class);
+
+	/**
+	 * Weight of the newest transfer in the moving average of a thread count's
+	 * throughput.
+	 */
+	static final double SMOOTHING = 0.3;
+
+	/**
+	 * Transfers between tries of the thread counts next to the best one.
+	 */
+	static final int EXPLORE_INTERVAL = 8;
+
+	private static ParallelTransferAutotuner sharedInstance = null;
+
+	private final Map<String, HostHistory> hosts = new HashMap<String, HostHistory>();
+
+	/**
+	 * @return <code>ParallelTransferAutotuner</code> shared by all
+	 *         connections, created on first use
+	 */
+	static synchronized ParallelTransferAutotuner getSharedInstance() {
+		if (sharedInstance == null) {
+			sharedInstance = new ParallelTransferAutotuner();
+		}
+		return sharedInstance;
+	}
+
+	/**
+	 * Create an autotuner with a history of its own.
+	 */
+	static ParallelTransferAutotuner instance() {
+		return new ParallelTransferAutotuner();
+	}
+
+	private ParallelTransferAutotuner() {
+	}
+
+	/**
+	 * @param host
+	 *            <code>String</code> with the host the transfer is to or from
+	 * @param maxThreads
+	 *            <code>int</code> with the most threads that may be asked for
+	 * @return <code>int</code> with the number of threads to ask for
+	 */
+	synchronized int recommendThreads(final String host, final int maxThreads) {
+		if (maxThreads <= 1) {
+			return Math.max(maxThreads, 0);
+		}
+		HostHistory history = hosts.get(host);
+		if (history == null) {
+			return maxThreads;
+		}
+		return history.next(maxThreads);
+	}
+
+	/**
+	 * Record a completed transfer.
+	 *
+	 * @param host
+	 *            <code>String</code> with the host the transfer was to or from
+	 * @param threads
+	 *            <code>int</code> with the number of threads the server used
+	 * @param bytes
+	 *            <code>long</code> with the number of bytes moved
+	 * @param elapsedNanos
+	 *            <code>long</code> with the time the transfer took
+	 */
+	synchronized void record(final String host, final int threads,
+			final long bytes, final long elapsedNanos) {
+		if (threads <= 0 || bytes <= 0 || elapsedNanos <= 0) {
+			return;
+		}
+		HostHistory history = hosts.get(host);
+		if (history == null) {
+			history = new HostHistory();
+			hosts.put(host, history);
+		}
+		double throughput = bytes * 1000000000.0 / elapsedNanos;
+		history.record(threads, throughput);
+		if (log.isDebugEnabled()) {
+			log.debug("host:" + host + " threads:" + threads + " throughput:"
+					+ (long) throughput + " bytes/s, average:"
+					+ (long) history.getThroughput(threads));
+		}
+	}
+
+	/**
+	 * @return <code>double</code> with the average throughput, in bytes per
+	 *         second, of transfers to the host with the given thread count,
+	 *         zero if there have been none
+	 */
+	synchronized double getThroughput(final String host, final int threads) {
+		HostHistory history = hosts.get(host);
+		return history == null ? 0 : history.getThroughput(threads);
+	}
+
+	private static final class HostHistory {
+
+		private final Map<Integer, Double> throughputs = new HashMap<Integer, Double>();
+		private int transfers = 0;
+
+		void record(final int threads, final double throughput) {
+			Double average = throughputs.get(threads);
+			if (average == null) {
+				throughputs.put(threads, throughput);
+			} else {
+				throughputs.put(threads, average * (1 - SMOOTHING) + throughput
+						* SMOOTHING);
+			}
+			transfers++;
+		}
+
+		double getThroughput(final int threads) {
+			Double average = throughputs.get(threads);
+			return average == null ? 0 : average;
+		}
+
+		int next(final int maxThreads) {
+			int best = 0;
+			double bestThroughput = -1;
+			for (Map.Entry<Integer, Double> entry : throughputs.entrySet()) {
+				if (entry.getKey() <= maxThreads
+						&& entry.getValue() > bestThroughput) {
+					best = entry.getKey();
+					bestThroughput = entry.getValue();
+				}
+			}
+			if (best == 0) {
+				return maxThreads;
+			}
+
+			int more = Math.min(best + 1, maxThreads);
+			int fewer = Math.max(best - 1, 1);
+			if (!throughputs.containsKey(more)) {
+				return more;
+			}
+			if (!throughputs.containsKey(fewer)) {
+				return fewer;
+			}
+			if (transfers % EXPLORE_INTERVAL == 0) {
+				return (transfers / EXPLORE_INTERVAL) % 2 == 0 ? more : fewer;
+			}
+			return best;
+		}
+	}
+
+}
@@ -0,0 +1,261 @@
+package edu.sdsc.grid.io.irods;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.irods.jargon.core.connection.IRODSTransportOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the stripes of parallel gets and puts on a shared, fixed size pool of
+ * daemon threads, rather than starting threads for each transfer.
+ * <p/>
+ * All stripe sockets are opened, and the cookie sent on each, by the calling
+ * thread before any stripe runs, so the server has accepted every connection
+ * it offered even when the pool is busy with other transfers. The caller then
+ * waits for the stripes. If a stripe fails, the transfer times out, or the
+ * calling thread is interrupted, every stripe socket is closed, which stops
+ * stripes blocked on I/O, and the transfer fails with the errors of all the
+ * stripes that failed.
+ * <p/>
+ * A transfer may be given a {@link TransferJournal}, which the stripes keep up
+ * to date with the ranges they have moved, so a failed transfer can be
+ * resumed.
+ */
+final class ParallelTransferEngine {
+
+	private static Logger log = LoggerFactory
+			.getLogger(ParallelTransferEngine.class);
+
+	/**
+	 * Threads in the shared pool, which is the most stripes that run at once
+	 * over all transfers.
+	 */
+	static final int DEFAULT_POOL_SIZE = 16;
+
+	private static ParallelTransferEngine sharedInstance = null;
+
+	private final ExecutorService executor;
+
+	/**
+	 * @return <code>ParallelTransferEngine</code> shared by all connections,
+	 *         created on first use
+	 */
+	static synchronized ParallelTransferEngine getSharedInstance() {
+		if (sharedInstance == null) {
+			sharedInstance = new ParallelTransferEngine(DEFAULT_POOL_SIZE);
+		}
+		return sharedInstance;
+	}
+
+	/**
+	 * Create an engine with a pool of its own.
+	 *
+	 * @param poolSize
+	 *            <code>int</code> with the number of stripes that may run at
+	 *            once
+	 */
+	static ParallelTransferEngine instance(final int poolSize) {
+		if (poolSize <= 0) {
+			throw new IllegalArgumentException("poolSize must be > 0");
+		}
+		return new ParallelTransferEngine(poolSize);
+	}
+
+	private ParallelTransferEngine(final int poolSize) {
+		final AtomicInteger threadNumber = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(poolSize,
+				new ThreadFactory() {
+					public Thread newThread(final Runnable runnable) {
+						Thread thread = new Thread(runnable,
+								"irods-parallel-transfer-"
+										+ threadNumber.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	/**
+	 * Receive a file over the server's parallel transfer sockets.
+	 *
+	 * @param host
+	 *            <code>String</code> with the host from the
+	 *            <code>PortList_PI</code>
+	 * @param port
+	 *            <code>int</code> with the port from the
+	 *            <code>PortList_PI</code>
+	 * @param cookie
+	 *            <code>int</code> with the cookie from the
+	 *            <code>PortList_PI</code>
+	 * @param threads
+	 *            <code>int</code> with the number of sockets the server
+	 *            opened
+	 * @param destination
+	 *            <code>FileChannel</code> open for writing on the local file
+	 * @param memoryMapped
+	 *            <code>boolean</code> that is <code>true</code> to receive
+	 *            into memory mapped regions of the file, in which case the
+	 *            channel must be open for reading as well, and should already
+	 *            be sized to the data object
+	 * @param journal
+	 *            {@link TransferJournal} to record the ranges received in, or
+	 *            <code>null</code>
+	 * @param timeoutMillis
+	 *            <code>long</code> with the most milliseconds the transfer
+	 *            may take, zero for no limit
+	 * @return <code>long</code> with the number of bytes received
+	 * @throws IOException
+	 */
+	long get(final String host, final int port, final int cookie,
+			final int threads, final FileChannel destination,
+			final boolean memoryMapped, final TransferJournal journal,
+			final long timeoutMillis) throws IOException {
+		return transfer(host, port, cookie, threads, destination,
+				IRODSConstants.GET_OPR, memoryMapped, journal, timeoutMillis);
+	}
+
+	/**
+	 * Send a file over the server's parallel transfer sockets.
+	 *
+	 * @see #get(String, int, int, int, FileChannel, boolean, TransferJournal,
+	 *      long)
+	 */
+	long put(final String host, final int port, final int cookie,
+			final int threads, final FileChannel source,
+			final TransferJournal journal, final long timeoutMillis)
+			throws IOException {
+		return transfer(host, port, cookie, threads, source,
+				IRODSConstants.PUT_OPR, false, journal, timeoutMillis);
+	}
+
+	private long transfer(final String host, final int port,
+			final int cookie, final int threads, final FileChannel file,
+			final int operation, final boolean memoryMapped,
+			final TransferJournal journal, final long timeoutMillis)
+			throws IOException {
+		if (threads <= 0) {
+			throw new IllegalArgumentException("threads must be > 0");
+		}
+
+		if (log.isInfoEnabled()) {
+			log.info("parallel transfer operation:" + operation + " threads:"
+					+ threads + " host:" + host + " port:" + port);
+		}
+
+		IRODSTransportOptions transportOptions = IRODSFileSystem
+				.getTransportOptions();
+		List<ParallelTransferStripe> stripes = new ArrayList<ParallelTransferStripe>(
+				threads);
+		List<Future<Long>> futures = new ArrayList<Future<Long>>(threads);
+		try {
+			for (int i = 0; i < threads; i++) {
+				stripes.add(ParallelTransferStripe.instance(host, port, cookie,
+						file, operation, memoryMapped, journal,
+						transportOptions));
+			}
+
+			for (ParallelTransferStripe stripe : stripes) {
+				futures.add(executor.submit(stripe));
+			}
+
+			return await(stripes, futures, timeoutMillis);
+		} finally {
+			closeAll(stripes, futures);
+		}
+	}
+
+	/**
+	 * Wait for every stripe, stopping the others as soon as one fails.
+	 */
+	private long await(final List<ParallelTransferStripe> stripes,
+			final List<Future<Long>> futures, final long timeoutMillis)
+			throws IOException {
+		long deadline = timeoutMillis > 0 ? System.currentTimeMillis()
+				+ timeoutMillis : 0;
+		List<Throwable> stripeErrors = new ArrayList<Throwable>();
+		long transferred = 0;
+
+		for (Future<Long> future : futures) {
+			try {
+				if (deadline == 0) {
+					transferred += future.get();
+				} else {
+					transferred += future.get(
+							Math.max(deadline - System.currentTimeMillis(), 0),
+							TimeUnit.MILLISECONDS);
+				}
+			} catch (ExecutionException e) {
+				if (stripeErrors.isEmpty()) {
+					log.error("parallel transfer stripe failed, stopping others",
+							e.getCause());
+					closeAll(stripes, futures);
+				}
+				stripeErrors.add(e.getCause());
+			} catch (CancellationException e) {
+				// not started before another stripe failed
+			} catch (TimeoutException e) {
+				log.error("parallel transfer timed out after {} ms",
+						timeoutMillis);
+				closeAll(stripes, futures);
+				stripeErrors.add(e);
+				throw new ParallelTransferException(
+						"parallel transfer timed out after " + timeoutMillis
+								+ " ms", stripeErrors);
+			} catch (InterruptedException e) {
+				log.warn("parallel transfer interrupted, stopping stripes");
+				closeAll(stripes, futures);
+				Thread.currentThread().interrupt();
+				InterruptedIOException interrupted = new InterruptedIOException(
+						"parallel transfer interrupted");
+				interrupted.initCause(e);
+				throw interrupted;
+			}
+		}
+
+		if (!stripeErrors.isEmpty()) {
+			throw new ParallelTransferException(stripeErrors.size() + " of "
+					+ futures.size() + " parallel transfer stripes failed",
+					stripeErrors);
+		}
+
+		log.info("parallel transfer complete, {} bytes", transferred);
+		return transferred;
+	}
+
+	/**
+	 * Cancel stripes that have not started and close every socket. The local
+	 * file is shared, so running stripes are not interrupted, which would
+	 * close it, closing their sockets stops them instead.
+	 */
+	private void closeAll(final List<ParallelTransferStripe> stripes,
+			final List<Future<Long>> futures) {
+		for (Future<Long> future : futures) {
+			future.cancel(false);
+		}
+		for (ParallelTransferStripe stripe : stripes) {
+			stripe.close();
+		}
+	}
+
+	/**
+	 * Stop the pool threads, used for engines that are not shared.
+	 */
+	void shutdown() {
+		executor.shutdownNow();
+	}
+
+}
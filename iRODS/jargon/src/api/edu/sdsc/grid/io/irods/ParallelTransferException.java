@@ -0,0 +1,36 @@
+package edu.sdsc.grid.io.irods;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A parallel get or put failed. Every stripe that failed is reported, the
+ * first failure is also the cause.
+ */
+public class ParallelTransferException extends IOException {
+
+	private static final long serialVersionUID = 4913270856178436751L;
+
+	private final List<Throwable> stripeErrors;
+
+	public ParallelTransferException(final String message,
+			final List<Throwable> stripeErrors) {
+		super(message);
+		this.stripeErrors = Collections
+				.unmodifiableList(new ArrayList<Throwable>(stripeErrors));
+		if (!stripeErrors.isEmpty()) {
+			initCause(stripeErrors.get(0));
+		}
+	}
+
+	/**
+	 * @return <code>List</code> of the errors from each failed stripe, in the
+	 *         order they were collected
+	 */
+	public List<Throwable> getStripeErrors() {
+		return stripeErrors;
+	}
+
+}
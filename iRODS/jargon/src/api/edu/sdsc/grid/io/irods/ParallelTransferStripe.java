@@ -0,0 +1,305 @@
+package edu.sdsc.grid.io.irods;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Callable;
+
+import org.irods.jargon.core.connection.IRODSTransportOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.sdsc.grid.io.Host;
+
+/**
+ * One socket of a parallel transfer. After the cookie is sent, the server
+ * sends a header naming an operation, offset and length, and the stripe moves
+ * that range between the socket and the local file, until the server sends
+ * <code>DONE_OPR</code>. See sendTranHeader() and rcPartialDataPut() in
+ * rcPortalOpr.c for the iRODS side.
+ * <p/>
+ * The local file is read and written with positional I/O, so all stripes can
+ * share one <code>FileChannel</code>. A memory mapped get instead maps each
+ * range of the file, a window at a time, and reads the socket straight into
+ * the mapping. If a mapping cannot be made the stripe goes on with channel
+ * writes.
+ * <p/>
+ * With a {@link TransferJournal} a get records what it has written every
+ * {@link #CHECKPOINT_INTERVAL} bytes, and a put records a range once the
+ * server asks for the next one, as the server has then read all of it.
+ */
+final class ParallelTransferStripe implements Callable<Long> {
+
+	private static Logger log = LoggerFactory
+			.getLogger(ParallelTransferStripe.class);
+
+	/**
+	 * operation, flags, offset and length
+	 */
+	static final int TRANSFER_HEADER_LENGTH = 24;
+
+	/**
+	 * Largest region of the file a memory mapped get maps at once.
+	 */
+	static final int MAP_WINDOW_SIZE = 64 * 1024 * 1024;
+
+	/**
+	 * Bytes a journaled get writes between journal records.
+	 */
+	static final int CHECKPOINT_INTERVAL = 4 * 1024 * 1024;
+
+	private final SocketChannel socket;
+	private final FileChannel file;
+	private final int operation;
+	private final int bufferSize;
+	private final int maxPooledBuffers;
+	private final boolean memoryMapped;
+	private final TransferJournal journal;
+	private boolean mappingFailed = false;
+
+	/**
+	 * Open the socket for a stripe and send the cookie, so the server has
+	 * accepted it before any stripe is run.
+	 *
+	 * @param operation
+	 *            <code>int</code> that is <code>GET_OPR</code> or
+	 *            <code>PUT_OPR</code>
+	 * @param memoryMapped
+	 *            <code>boolean</code> that is <code>true</code> if a get
+	 *            should receive into memory mapped regions of the file, which
+	 *            must then be open for reading and writing
+	 * @param journal
+	 *            {@link TransferJournal} recording the ranges moved, or
+	 *            <code>null</code>
+	 */
+	static ParallelTransferStripe instance(final String host, final int port,
+			final int cookie, final FileChannel file, final int operation,
+			final boolean memoryMapped, final TransferJournal journal,
+			final IRODSTransportOptions transportOptions) throws IOException {
+		SocketChannel socket = SocketChannel.open();
+		try {
+			SocketTransport.configureSocket(socket.socket(), transportOptions);
+			socket.connect(new InetSocketAddress(host, port));
+			byte[] cookieBytes = new byte[4];
+			Host.copyInt(cookie, cookieBytes);
+			ByteBuffer cookieBuffer = ByteBuffer.wrap(cookieBytes);
+			while (cookieBuffer.hasRemaining()) {
+				socket.write(cookieBuffer);
+			}
+		} catch (IOException e) {
+			try {
+				socket.close();
+			} catch (IOException ce) {
+				// ignore
+			}
+			throw e;
+		}
+		return new ParallelTransferStripe(socket, file, operation,
+				memoryMapped, journal, transportOptions.getDirectBufferSize(),
+				transportOptions.getMaxPooledDirectBuffers());
+	}
+
+	private ParallelTransferStripe(final SocketChannel socket,
+			final FileChannel file, final int operation,
+			final boolean memoryMapped, final TransferJournal journal,
+			final int bufferSize, final int maxPooledBuffers) {
+		this.socket = socket;
+		this.file = file;
+		this.operation = operation;
+		this.memoryMapped = memoryMapped;
+		this.journal = journal;
+		this.bufferSize = bufferSize;
+		this.maxPooledBuffers = maxPooledBuffers;
+	}
+
+	/**
+	 * Run the stripe until the server is done with it.
+	 *
+	 * @return <code>Long</code> with the number of bytes moved
+	 */
+	public Long call() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(TRANSFER_HEADER_LENGTH);
+		ByteBuffer buffer = DirectByteBufferPool.borrow(bufferSize);
+		long transferred = 0;
+		long[] sentRange = null;
+		try {
+			while (readHeader(header)) {
+				int headerOperation = header.getInt();
+				header.getInt(); // flags
+				long offset = header.getLong();
+				long length = header.getLong();
+
+				if (sentRange != null) {
+					checkpoint(sentRange[0], sentRange[1]);
+					sentRange = null;
+				}
+
+				if (headerOperation == IRODSConstants.DONE_OPR) {
+					break;
+				}
+
+				if (headerOperation != operation) {
+					throw new ProtocolException("parallel transfer expected "
+							+ operation + ", server requested "
+							+ headerOperation);
+				}
+
+				if (offset < 0 || length < 0) {
+					throw new ProtocolException(
+							"invalid parallel transfer range, offset:" + offset
+									+ " length:" + length);
+				}
+
+				if (log.isDebugEnabled()) {
+					log.debug("stripe range offset:" + offset + " length:"
+							+ length);
+				}
+
+				if (operation == IRODSConstants.GET_OPR) {
+					receive(buffer, offset, length);
+				} else {
+					send(buffer, offset, length);
+					sentRange = new long[] { offset, offset + length };
+				}
+				transferred += length;
+			}
+		} finally {
+			DirectByteBufferPool.release(buffer, maxPooledBuffers);
+			close();
+		}
+		return transferred;
+	}
+
+	/**
+	 * @return <code>boolean</code> that is <code>false</code> if the server
+	 *         closed the socket instead of sending another header
+	 */
+	private boolean readHeader(final ByteBuffer header) throws IOException {
+		header.clear();
+		while (header.hasRemaining()) {
+			if (socket.read(header) < 0) {
+				if (header.position() == 0) {
+					return false;
+				}
+				throw new EOFException("connection closed in transfer header");
+			}
+		}
+		header.flip();
+		return true;
+	}
+
+	private void receive(final ByteBuffer buffer, final long offset,
+			final long length) throws IOException {
+		long position = offset;
+		long remaining = length;
+		if (memoryMapped && !mappingFailed) {
+			long received = receiveMapped(offset, length);
+			position += received;
+			remaining -= received;
+		}
+
+		long checkpointed = position;
+		while (remaining > 0) {
+			buffer.clear();
+			if (remaining < buffer.capacity()) {
+				buffer.limit((int) remaining);
+			}
+			int n = socket.read(buffer);
+			if (n < 0) {
+				throw new EOFException("connection closed with " + remaining
+						+ " bytes of the stripe left");
+			}
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				position += file.write(buffer, position);
+			}
+			remaining -= n;
+			if (remaining == 0
+					|| position - checkpointed >= CHECKPOINT_INTERVAL) {
+				checkpoint(checkpointed, position);
+				checkpointed = position;
+			}
+		}
+	}
+
+	private void checkpoint(final long start, final long end)
+			throws IOException {
+		if (journal != null) {
+			journal.recordCompleted(start, end - start);
+		}
+	}
+
+	/**
+	 * Receive into memory mapped windows of the file.
+	 *
+	 * @return <code>long</code> with the bytes received, less than
+	 *         <code>length</code> if a window could not be mapped
+	 */
+	private long receiveMapped(final long offset, final long length)
+			throws IOException {
+		long received = 0;
+		while (received < length) {
+			int window = (int) Math.min(MAP_WINDOW_SIZE, length - received);
+			MappedByteBuffer mapped;
+			try {
+				mapped = file.map(FileChannel.MapMode.READ_WRITE, offset
+						+ received, window);
+			} catch (IOException e) {
+				log.warn("unable to map local file, using channel writes", e);
+				mappingFailed = true;
+				return received;
+			}
+
+			while (mapped.hasRemaining()) {
+				if (socket.read(mapped) < 0) {
+					throw new EOFException("connection closed with "
+							+ (length - received - mapped.position())
+							+ " bytes of the stripe left");
+				}
+			}
+			checkpoint(offset + received, offset + received + window);
+			received += window;
+		}
+		return received;
+	}
+
+	private void send(final ByteBuffer buffer, final long offset,
+			final long length) throws IOException {
+		long position = offset;
+		long remaining = length;
+		while (remaining > 0) {
+			buffer.clear();
+			if (remaining < buffer.capacity()) {
+				buffer.limit((int) remaining);
+			}
+			int n = file.read(buffer, position);
+			if (n < 0) {
+				throw new EOFException("local file ended with " + remaining
+						+ " bytes of the stripe left");
+			}
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				socket.write(buffer);
+			}
+			position += n;
+			remaining -= n;
+		}
+	}
+
+	/**
+	 * Close the socket, which also stops a stripe blocked on it.
+	 */
+	void close() {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			log.warn("error closing parallel transfer socket", e);
+		}
+	}
+
+}
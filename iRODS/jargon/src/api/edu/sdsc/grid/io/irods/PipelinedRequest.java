@@ -0,0 +1,130 @@
+package edu.sdsc.grid.io.irods;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.irods.jargon.core.exception.JargonException;
+
+/**
+ * A request queued on an {@link IRODSCommandPipeline IRODSCommandPipeline},
+ * and the <code>Future</code> for its reply.
+ */
+final class PipelinedRequest implements Future<Tag> {
+
+	private final IRODSCommandPipeline pipeline;
+	private final Tag message;
+	private final int apiNumber;
+	private final CountDownLatch done = new CountDownLatch(1);
+
+	private boolean sent = false;
+	private boolean cancelled = false;
+	private Tag reply = null;
+	private Throwable failure = null;
+
+	PipelinedRequest(final IRODSCommandPipeline pipeline, final Tag message,
+			final int apiNumber) {
+		this.pipeline = pipeline;
+		this.message = message;
+		this.apiNumber = apiNumber;
+	}
+
+	Tag getMessage() {
+		return message;
+	}
+
+	int getApiNumber() {
+		return apiNumber;
+	}
+
+	synchronized void markSent() {
+		sent = true;
+	}
+
+	void complete(final Tag reply) {
+		synchronized (this) {
+			this.reply = reply;
+		}
+		done.countDown();
+	}
+
+	void fail(final Throwable failure) {
+		synchronized (this) {
+			if (done.getCount() == 0) {
+				return;
+			}
+			this.failure = failure;
+		}
+		done.countDown();
+	}
+
+	/**
+	 * Only a request that has not been sent may be cancelled.
+	 */
+	public boolean cancel(final boolean mayInterruptIfRunning) {
+		if (!pipeline.dequeue(this)) {
+			return false;
+		}
+		synchronized (this) {
+			cancelled = true;
+		}
+		done.countDown();
+		return true;
+	}
+
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+
+	public boolean isDone() {
+		return done.getCount() == 0;
+	}
+
+	/**
+	 * Wait for the reply, executing the pipeline first if this request has not
+	 * been sent.
+	 */
+	public Tag get() throws InterruptedException, ExecutionException {
+		executeIfQueued();
+		done.await();
+		return result();
+	}
+
+	public Tag get(final long timeout, final TimeUnit unit)
+			throws InterruptedException, ExecutionException, TimeoutException {
+		executeIfQueued();
+		if (!done.await(timeout, unit)) {
+			throw new TimeoutException("no reply for pipelined request");
+		}
+		return result();
+	}
+
+	private void executeIfQueued() throws ExecutionException {
+		boolean queued;
+		synchronized (this) {
+			queued = !sent && !cancelled;
+		}
+
+		if (queued) {
+			try {
+				pipeline.execute();
+			} catch (JargonException e) {
+				// this request has been failed as well, result() reports it
+			}
+		}
+	}
+
+	private synchronized Tag result() throws ExecutionException {
+		if (cancelled) {
+			throw new CancellationException();
+		}
+		if (failure != null) {
+			throw new ExecutionException(failure);
+		}
+		return reply;
+	}
+
+}
@@ -0,0 +1,132 @@
+package edu.sdsc.grid.io.irods;
+
+import org.irods.jargon.core.connection.IRODSManagedConnection;
+import org.irods.jargon.core.exception.JargonException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A connection handed out by an {@link IRODSConnectionPool
+ * IRODSConnectionPool}. The wrapped {@link IRODSCommands IRODSCommands} has
+ * already done the startup packet and authentication handshake.
+ * <p/>
+ * Calling {@link #shutdown() shutdown()} does not close the socket, rather, the
+ * connection is given back to the pool it came from. A connection that has seen
+ * a protocol or socket error should be discarded with
+ * {@link #obliterateConnectionAndDiscardErrors()
+ * obliterateConnectionAndDiscardErrors()} so that it is not handed out again.
+ * <p/>
+ * Each borrow gets an object of its own. Once given back, this object may not
+ * be used, and giving it back again has no effect, even after the pool has
+ * lent the socket to another borrower.
+ * <p/>
+ * As with <code>IRODSCommands</code>, a borrowed connection should not be
+ * shared between threads.
+ */
+public final class PooledIRODSConnection implements IRODSManagedConnection {
+
+	private static Logger log = LoggerFactory
+			.getLogger(PooledIRODSConnection.class);
+
+	private final IRODSConnectionPool irodsConnectionPool;
+	private final IRODSConnectionPool.PoolEntry poolEntry;
+	private boolean returned = false;
+
+	PooledIRODSConnection(final IRODSConnectionPool irodsConnectionPool,
+			final IRODSConnectionPool.PoolEntry poolEntry) {
+		this.irodsConnectionPool = irodsConnectionPool;
+		this.poolEntry = poolEntry;
+	}
+
+	/**
+	 * Get the connected <code>IRODSCommands</code> for this connection.
+	 *
+	 * @return {@link IRODSCommands IRODSCommands} that is connected and
+	 *         authenticated
+	 * @throws JargonException
+	 *             if the connection has already been given back to the pool
+	 */
+	public synchronized IRODSCommands getIrodsCommands()
+			throws JargonException {
+		if (returned) {
+			throw new JargonException(
+					"connection has been returned to the pool and may not be used");
+		}
+		return poolEntry.getIrodsCommands();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.irods.jargon.core.connection.IRODSManagedConnection#getIRODSAccount()
+	 */
+	public IRODSAccount getIRODSAccount() {
+		return poolEntry.getIrodsCommands().getIrodsAccount();
+	}
+
+	/**
+	 * Give this connection back to the pool. The underlying socket stays open
+	 * unless the pool decides it has enough idle connections. Calling this
+	 * method more than once has no effect.
+	 */
+	public void shutdown() throws JargonException {
+		if (!markReturned()) {
+			log.debug("connection already returned to pool");
+			return;
+		}
+		irodsConnectionPool.returnConnection(poolEntry);
+	}
+
+	/**
+	 * Close the underlying socket and make sure this connection is not handed
+	 * out again.
+	 */
+	public void obliterateConnectionAndDiscardErrors() {
+		if (!markReturned()) {
+			log.debug("connection already returned to pool");
+			return;
+		}
+		irodsConnectionPool.invalidateConnection(poolEntry);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.irods.jargon.core.connection.IRODSManagedConnection#getConnectionUri
+	 * ()
+	 */
+	public String getConnectionUri() throws JargonException {
+		return poolEntry.getPoolKey().toString();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.irods.jargon.core.connection.IRODSManagedConnection#isConnected()
+	 */
+	public boolean isConnected() {
+		return !isReturned() && poolEntry.getIrodsCommands().isConnected();
+	}
+
+	@Override
+	public String toString() {
+		return "pooled:" + poolEntry.getPoolKey().toString();
+	}
+
+	private synchronized boolean markReturned() {
+		boolean wasBorrowed = !returned;
+		returned = true;
+		return wasBorrowed;
+	}
+
+	synchronized boolean isBorrowed() {
+		return !returned;
+	}
+
+	private synchronized boolean isReturned() {
+		return returned;
+	}
+
+}
@@ -0,0 +1,220 @@
+package edu.sdsc.grid.io.irods;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import org.irods.jargon.core.connection.IRODSTransportOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link IRODSTransport IRODSTransport} over the blocking
+ * <code>java.net.Socket</code> streams.
+ */
+final class SocketTransport implements IRODSTransport {
+
+	private static Logger log = LoggerFactory.getLogger(SocketTransport.class);
+
+	private final Socket socket;
+	private final InputStream inputStream;
+	private final OutputStream outputStream;
+
+	/**
+	 * Buffer output to the socket.
+	 */
+	private final byte outputBuffer[];
+
+	/**
+	 * Holds the offset into the outputBuffer array for adding new data.
+	 */
+	private int outputOffset = 0;
+
+	/**
+	 * Connect a socket to the given host, applying the buffer sizes and
+	 * TCP_NODELAY setting before connecting, so that the TCP window can be
+	 * negotiated from them.
+	 */
+	static SocketTransport instance(final String host, final int port,
+			final IRODSTransportOptions transportOptions,
+			final int outputBufferLength) throws IOException {
+		Socket socket = new Socket();
+		try {
+			configureSocket(socket, transportOptions);
+			if (IRODSConstants.CONNECTION_TIMEOUT_VALUE != IRODSConstants.CONNECTION_TIMEOUT_NO_TIMEOUT) {
+				log.warn("setting a connection timeout of:{}",
+						IRODSConstants.CONNECTION_TIMEOUT_VALUE);
+				socket.setSoTimeout(IRODSConstants.CONNECTION_TIMEOUT_VALUE);
+			}
+			socket.connect(new InetSocketAddress(host, port));
+			return new SocketTransport(socket, outputBufferLength);
+		} catch (IOException e) {
+			try {
+				socket.close();
+			} catch (IOException ce) {
+				// ignore
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Apply the socket options, a zero buffer size leaves the system default.
+	 */
+	static void configureSocket(final Socket socket,
+			final IRODSTransportOptions transportOptions) throws IOException {
+		if (transportOptions.getSendBufferSize() > 0) {
+			socket.setSendBufferSize(transportOptions.getSendBufferSize());
+		}
+		if (transportOptions.getReceiveBufferSize() > 0) {
+			socket.setReceiveBufferSize(transportOptions
+					.getReceiveBufferSize());
+		}
+		socket.setTcpNoDelay(transportOptions.isTcpNoDelay());
+	}
+
+	private SocketTransport(final Socket socket, final int outputBufferLength)
+			throws IOException {
+		this.socket = socket;
+		this.inputStream = new BufferedInputStream(socket.getInputStream());
+		this.outputStream = socket.getOutputStream();
+		this.outputBuffer = new byte[outputBufferLength];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see edu.sdsc.grid.io.irods.IRODSTransport#write(byte[], int, int)
+	 */
+	public void write(final byte[] value, final int offset, final int length)
+			throws IOException {
+		if ((length + outputOffset) >= outputBuffer.length) {
+			// in cases where the output buffer isn't big enough
+			outputStream.write(outputBuffer, 0, outputOffset);
+			outputStream.write(value, offset, length);
+			outputStream.flush();
+			outputOffset = 0;
+		} else {
+			System.arraycopy(value, offset, outputBuffer, outputOffset, length);
+			outputOffset += length;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see edu.sdsc.grid.io.irods.IRODSTransport#flush()
+	 */
+	public void flush() throws IOException {
+		outputStream.write(outputBuffer, 0, outputOffset);
+		outputOffset = 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see edu.sdsc.grid.io.irods.IRODSTransport#read(byte[], int, int)
+	 */
+	public int read(final byte[] value, final int offset, final int length)
+			throws IOException {
+		return inputStream.read(value, offset, length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see edu.sdsc.grid.io.irods.IRODSTransport#sendFile(java.nio.channels.
+	 * FileChannel, long, long)
+	 */
+	public void sendFile(final FileChannel source, final long position,
+			final long count) throws IOException {
+		flush();
+		WritableByteChannel target = Channels.newChannel(outputStream);
+		long sent = 0;
+		while (sent < count) {
+			long n = source.transferTo(position + sent, count - sent, target);
+			if (n <= 0) {
+				throw new EOFException("source file ended before "
+						+ count + " bytes were sent");
+			}
+			sent += n;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * edu.sdsc.grid.io.irods.IRODSTransport#receiveFile(java.nio.channels.
+	 * FileChannel, long, long)
+	 */
+	public void receiveFile(final FileChannel destination,
+			final long position, final long count) throws IOException {
+		// through the buffered stream, so bytes it already holds are kept
+		ReadableByteChannel source = Channels.newChannel(inputStream);
+		long received = 0;
+		while (received < count) {
+			long n = destination.transferFrom(source, position + received,
+					count - received);
+			if (n <= 0) {
+				throw new EOFException("connection closed after " + received
+						+ " of " + count + " bytes");
+			}
+			received += n;
+		}
+	}
+
+	public InputStream getInputStream() {
+		return inputStream;
+	}
+
+	public OutputStream getOutputStream() {
+		return outputStream;
+	}
+
+	public Socket getSocket() {
+		return socket;
+	}
+
+	public boolean isClosed() {
+		return socket.isClosed();
+	}
+
+	public void close() throws IOException {
+		socket.close();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see edu.sdsc.grid.io.irods.IRODSTransport#closeQuietly()
+	 */
+	public void closeQuietly() {
+		try {
+			socket.shutdownInput();
+		} catch (Exception e) {
+			// ignore
+		}
+
+		try {
+			socket.shutdownOutput();
+		} catch (Exception e) {
+			// ignore
+		}
+
+		try {
+			socket.close();
+		} catch (Exception e) {
+			// ignore
+		}
+	}
+
+}
@@ -105,11 +105,7 @@ public class Tag implements Cloneable {
 		}
 		if (decode) {
 			// decode escaped characters
-			value = value.replaceAll("&amp;", "&");
-			value = value.replaceAll("&lt;", "<");
-			value = value.replaceAll("&gt;", ">");
-			value = value.replaceAll("&quot;", "\"");
-			value = value.replaceAll("&apos;", "`");
+			value = TagParser.decodeEntities(value);
 		}
 		this.value = value;
 	}
@@ -265,34 +261,81 @@ public class Tag implements Cloneable {
 	/**
 	 * Outputs a string to send communications (function calls) to the iRODS
 	 * server. All values are strings
+	 * <p/>
+	 * Messages sent by <code>IRODSCommands</code> are written by
+	 * {@link TagWriter TagWriter} straight to bytes, this form is mostly of use
+	 * for logging.
 	 */
 	public String parseTag() {
 		// If something isn't a string and you try to send a
 		// non-printable character this way, it will get all messed up.
 		// so...not sure if should be converted to Base64
-		StringBuffer parsed = new StringBuffer(OPEN_START_TAG + tagName
-				+ CLOSE_START_TAG);
+		StringBuilder parsed = new StringBuilder();
+		appendTag(parsed);
+		return parsed.toString();
+	}
+
+	private void appendTag(final StringBuilder parsed) {
+		parsed.append(OPEN_START_TAG);
+		parsed.append(tagName);
+		parsed.append(CLOSE_START_TAG);
 		if (tags != null) {
 			for (Tag tag : tags) {
-				parsed.append(tag.parseTag());
+				tag.appendTag(parsed);
 			}
+		} else if (value == null) {
+			parsed.append((String) null);
 		} else {
-			parsed.append(escapeChars(value));
+			appendEscaped(value, parsed);
 		}
-		parsed.append(OPEN_END_TAG + tagName + CLOSE_END_TAG + "\n");
+		parsed.append(OPEN_END_TAG);
+		parsed.append(tagName);
+		parsed.append(CLOSE_END_TAG);
+		parsed.append('\n');
+	}
 
-		return parsed.toString();
+	String escapeChars(final String out) {
+		return escapeValue(out);
 	}
 
-	String escapeChars(String out) {
+	/**
+	 * Escape the characters that may not appear in a protocol value, in one
+	 * pass.
+	 */
+	static String escapeValue(final String out) {
 		if (out == null) {
 			return null;
 		}
-		out = out.replaceAll("&", "&amp;");
-		out = out.replaceAll("<", "&lt;");
-		out = out.replaceAll(">", "&gt;");
-		out = out.replaceAll("\"", "&quot;");
-		return out.replaceAll("`", "&apos;");
+		StringBuilder escaped = new StringBuilder(out.length() + 16);
+		appendEscaped(out, escaped);
+		return escaped.toString();
+	}
+
+	private static void appendEscaped(final String out,
+			final StringBuilder escaped) {
+		int length = out.length();
+		for (int i = 0; i < length; i++) {
+			char c = out.charAt(i);
+			switch (c) {
+			case '&':
+				escaped.append("&amp;");
+				break;
+			case '<':
+				escaped.append("&lt;");
+				break;
+			case '>':
+				escaped.append("&gt;");
+				break;
+			case '"':
+				escaped.append("&quot;");
+				break;
+			case '`':
+				escaped.append("&apos;");
+				break;
+			default:
+				escaped.append(c);
+			}
+		}
 	}
 
 	/**
@@ -323,73 +366,25 @@ public class Tag implements Cloneable {
 			log.debug("tag info is null");
 			return null;
 		}
-
-		String d = new String(data, encoding);
-
-		log.debug("string from tag read:{}", d);
-
-		// remove the random '\n'
-		// had to find the end, sometimes '\n' is there, sometimes not.
-		d = d.replaceAll(CLOSE_END_TAG + "\n", "" + CLOSE_END_TAG);
-
-		int start = d.indexOf(OPEN_START_TAG), end = d.indexOf(CLOSE_START_TAG,
-				start);
-		int offset = 0;
-		if (start < 0) {
-			return null;
-		}
-
-		String tagName = d.substring(start + 1, end);
-		end = d.lastIndexOf(OPEN_END_TAG + tagName + CLOSE_END_TAG);
-
-		Tag tag = new Tag(tagName);
-		offset = start + tagName.length() + 2;
-
-		while (d.indexOf(OPEN_START_TAG, offset) >= 0 && offset >= 0
-				&& offset < end) {
-			// send the rest of the bytes read
-			offset = readSubTag(tag, d, offset, decode);
-		}
-
-		return tag;
+		return readNextTag(data, 0, data.length, decode, encoding);
 	}
 
 	/**
-	 * Read the data buffer to discover a sub tag. Fill the values of that tag
-	 * according to the above defined static final values.
+	 * Read the tag found in the given range of the data buffer, without
+	 * copying the range out first. See {@link TagParser TagParser}.
 	 * 
 	 * @throws UnsupportedEncodingException
 	 *             shouldn't throw, already tested for
 	 */
-	private static int readSubTag(final Tag tag, final String data, int offset,
-			final boolean decode) throws UnsupportedEncodingException {
-		// easier to just write a second slightly modified method
-		// instead of try to mix the two together,
-		// even though they are very similar.
-		int start = data.indexOf(OPEN_START_TAG, offset);
-		if (start < 0) {
-			return 1;
-		}
-		int closeStart = data.indexOf(CLOSE_START_TAG, start);
-		String tagName = data.substring(start + 1, closeStart);
-		int end = data.indexOf(OPEN_END_TAG + tagName + CLOSE_END_TAG,
-				closeStart);
-		int subTagStart = data.indexOf(OPEN_START_TAG, closeStart);
-
-		Tag subTag = new Tag(tagName);
-		tag.addTag(subTag);
-		offset = start + tagName.length() + 2;
-		if (subTagStart == end) {
-			subTag.setValue(data.substring(offset, end), decode);
-			return end + tagName.length() + 3; // endTagLocation + </endTag>
-		} else {
-			while (data.indexOf(OPEN_START_TAG, offset) >= 0 && offset >= 0
-					&& offset < end) {
-				// read the subTag, get new offset
-				offset = readSubTag(subTag, data, offset, decode);
-			}
-			return offset + tagName.length() + 3; // endTagLocation + </endTag>
+	static Tag readNextTag(final byte[] data, final int offset,
+			final int length, final boolean decode, final String encoding)
+			throws UnsupportedEncodingException {
+		if (log.isDebugEnabled()) {
+			log.debug("string from tag read:{}", new String(data, offset,
+					length, encoding));
 		}
+
+		return TagParser.parse(data, offset, length, decode, encoding);
 	}
 
 	/**
@@ -0,0 +1,395 @@
+package edu.sdsc.grid.io.irods;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single pass parser that builds a {@link Tag Tag} tree straight from the bytes
+ * of a packing instruction as read off of the iRODS connection.
+ * <p/>
+ * The older parser in <code>Tag</code> turned the whole message into a
+ * <code>String</code>, ran a regular expression over it, and then walked it
+ * with nested <code>indexOf</code> and <code>substring</code> calls. That made
+ * large replies, such as a <code>GenQueryOut_PI</code> with hundreds of rows,
+ * quadratic in time and produced a lot of garbage. This parser walks the bytes
+ * once, keeps children in a list until the enclosing tag is closed, and only
+ * creates a <code>String</code> for tag names it has not seen before and for
+ * the values themselves.
+ * <p/>
+ * Tag names that appear in most replies are interned, so the
+ * <code>String</code> for names like <code>SqlResult_PI</code> and
+ * <code>value</code> is shared between every parsed message. Entity decoding is
+ * only done for values that actually contain an '&', and is done in one pass.
+ * <p/>
+ * The tree that is built is the same as the one the old parser produced: a tag
+ * whose first content is its own end tag is a leaf holding the text as its
+ * value, otherwise the tag holds the nested tags, and the '\n' the server
+ * writes after each '>' is not part of a value.
+ * <p/>
+ * Each call to <code>parse()</code> uses its own parser, so it may be called
+ * from multiple threads.
+ */
+final class TagParser {
+
+	/**
+	 * Tag names that are shared by parsed messages rather than created for
+	 * each occurrence.
+	 */
+	private static final String[] KNOWN_TAG_NAMES = { IRODSConstants.MsgHeader_PI,
+			"type", "msgLen", "errorLen", "bsLen", "intInfo", "GenQueryOut_PI",
+			"rowCnt", "attriCnt", "continueInx", "totalRowCount",
+			IRODSConstants.SqlResult_PI, "attriInx", "reslen", "value",
+			"RError_PI", "count", IRODSConstants.RErrMsg_PI, "status", "msg",
+			IRODSConstants.KeyValPair_PI, "ssLen", "keyWord", "svalue",
+			IRODSConstants.InxIvalPair_PI, "iiLen", "inx", "ivalue",
+			IRODSConstants.InxValPair_PI, "isLen", IRODSConstants.Version_PI,
+			"relVersion", "apiVersion", "reconnAddr", "reconnPort",
+			IRODSConstants.cookie, "MiscSvrInfo_PI", "serverType",
+			"serverBootTime", IRODSConstants.rodsZone,
+			IRODSConstants.RodsObjStat_PI, "objSize", "objType", "dataMode",
+			"dataId", "chksum", "ownerName", "ownerZone", "createTime",
+			"modifyTime", "SpecColl_PI", IRODSConstants.BinBytesBuf_PI,
+			IRODSConstants.buflen, IRODSConstants.buf,
+			IRODSConstants.PortList_PI, "portList_PI", IRODSConstants.portNum,
+			"sock", "windowSize", IRODSConstants.hostAddr, "PortalOprOut_PI",
+			"numThreads", "l1descInx", IRODSConstants.MsParamArray_PI,
+			IRODSConstants.paramLen, "oprType", IRODSConstants.MsParam_PI,
+			IRODSConstants.label, "inOutStruct", "STR_PI", "myStr",
+			IRODSConstants.authRequestOut_PI, "challenge",
+			IRODSConstants.CollOprStat_PI, "filesCnt", "totalFileCnt",
+			"bytesWritten", "lastObjPath", IRODSConstants.simpleQueryOut_PI,
+			"control", "outBuf", "ExecCmdOut_PI", "stdoutBuf", "stderrBuf" };
+
+	/**
+	 * Entities used in packing instructions, note that &amp;apos; stands for
+	 * '`', mirroring <code>Tag.escapeChars()</code>.
+	 */
+	private static final String[] ENTITIES = { "&amp;", "&lt;", "&gt;",
+			"&quot;", "&apos;" };
+	private static final char[] ENTITY_CHARS = { '&', '<', '>', '"', '`' };
+
+	private static final int NAME_TABLE_SIZE = 256;
+	private static final int NAME_TABLE_MASK = NAME_TABLE_SIZE - 1;
+	private static final String[] NAME_TABLE = new String[NAME_TABLE_SIZE];
+
+	static {
+		for (String name : KNOWN_TAG_NAMES) {
+			int slot = name.hashCode() & NAME_TABLE_MASK;
+			while (NAME_TABLE[slot] != null && !NAME_TABLE[slot].equals(name)) {
+				slot = (slot + 1) & NAME_TABLE_MASK;
+			}
+			NAME_TABLE[slot] = name;
+		}
+	}
+
+	private final byte[] data;
+	private final int limit;
+	private final boolean decode;
+	private final String encoding;
+	private int position;
+
+	private TagParser(final byte[] data, final int offset, final int length,
+			final boolean decode, final String encoding) {
+		this.data = data;
+		this.position = offset;
+		this.limit = offset + length;
+		this.decode = decode;
+		this.encoding = encoding;
+	}
+
+	/**
+	 * Parse the first tag found in the given range of bytes, including all of
+	 * its nested tags.
+	 *
+	 * @param data
+	 *            <code>byte[]</code> with the packing instruction
+	 * @param offset
+	 *            <code>int</code> with the index of the first byte to parse
+	 * @param length
+	 *            <code>int</code> with the number of bytes to parse
+	 * @param decode
+	 *            <code>boolean</code> that is <code>true</code> if entities such
+	 *            as &amp;amp; should be decoded in values
+	 * @param encoding
+	 *            <code>String</code> with the character encoding of the data
+	 * @return {@link Tag Tag} that is the root of the message, or
+	 *         <code>null</code> if the data has no tag in it
+	 * @throws UnsupportedEncodingException
+	 */
+	static Tag parse(final byte[] data, final int offset, final int length,
+			final boolean decode, final String encoding)
+			throws UnsupportedEncodingException {
+		if (data == null) {
+			return null;
+		}
+
+		if (offset < 0 || length < 0 || offset + length > data.length) {
+			throw new IllegalArgumentException(
+					"offset and length do not fit the data");
+		}
+
+		TagParser parser = new TagParser(data, offset, length, decode,
+				encoding);
+		if (!parser.skipTo((byte) Tag.OPEN_START_TAG)) {
+			return null;
+		}
+		return parser.readTag();
+	}
+
+	/**
+	 * Decode the entities used in packing instructions in one pass.
+	 */
+	static String decodeEntities(final String value) {
+		if (value == null || value.indexOf('&') < 0) {
+			return value;
+		}
+
+		StringBuilder decoded = new StringBuilder(value.length());
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c == '&') {
+				int consumed = appendEntity(value, i, decoded);
+				if (consumed > 0) {
+					i += consumed - 1;
+					continue;
+				}
+			}
+			decoded.append(c);
+		}
+		return decoded.toString();
+	}
+
+	/**
+	 * Read the tag whose '<' is at the current position and leave the position
+	 * just after its end tag.
+	 */
+	private Tag readTag() throws UnsupportedEncodingException {
+		int nameStart = position + 1;
+		int nameEnd = indexOf((byte) Tag.CLOSE_START_TAG, nameStart);
+		if (nameEnd < 0) {
+			// truncated start tag, keep what there is as the name
+			position = limit;
+			return new Tag(internName(nameStart, limit));
+		}
+
+		Tag tag = new Tag(internName(nameStart, nameEnd));
+		int nameLength = nameEnd - nameStart;
+		position = nameEnd + 1;
+
+		int contentStart = position;
+		int next = indexOf((byte) Tag.OPEN_START_TAG, contentStart);
+		if (next < 0) {
+			// no end tag, the rest is the value
+			tag.value = readValue(contentStart, limit);
+			position = limit;
+			return tag;
+		}
+
+		if (isEndTag(next, nameStart, nameLength)) {
+			tag.value = readValue(contentStart, next);
+			position = next + nameLength + 3;
+			return tag;
+		}
+
+		List<Tag> children = new ArrayList<Tag>();
+		while (true) {
+			if (!skipTo((byte) Tag.OPEN_START_TAG)) {
+				break;
+			}
+
+			if (position + 1 < limit && data[position + 1] == '/') {
+				// end tag of this tag
+				int endTagClose = indexOf((byte) Tag.CLOSE_END_TAG,
+						position + 2);
+				position = endTagClose < 0 ? limit : endTagClose + 1;
+				break;
+			}
+
+			children.add(readTag());
+		}
+
+		if (!children.isEmpty()) {
+			tag.tags = children.toArray(new Tag[children.size()]);
+		}
+		return tag;
+	}
+
+	/**
+	 * @return <code>true</code> if the bytes at <code>index</code> are the end
+	 *         tag for the name found at <code>nameStart</code>
+	 */
+	private boolean isEndTag(final int index, final int nameStart,
+			final int nameLength) {
+		int closeIndex = index + nameLength + 2;
+		if (closeIndex >= limit || data[index + 1] != '/'
+				|| data[closeIndex] != Tag.CLOSE_END_TAG) {
+			return false;
+		}
+
+		for (int i = 0; i < nameLength; i++) {
+			if (data[index + 2 + i] != data[nameStart + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean skipTo(final byte target) {
+		int index = indexOf(target, position);
+		if (index < 0) {
+			position = limit;
+			return false;
+		}
+		position = index;
+		return true;
+	}
+
+	private int indexOf(final byte target, final int from) {
+		for (int i = from; i < limit; i++) {
+			if (data[i] == target) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Find the shared <code>String</code> for a tag name, or create one if the
+	 * name is not a known one.
+	 */
+	private String internName(final int start, final int end)
+			throws UnsupportedEncodingException {
+		int length = end - start;
+		int hash = 0;
+		boolean ascii = true;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + data[i];
+			if (data[i] < 0) {
+				ascii = false;
+			}
+		}
+
+		if (ascii) {
+			int slot = hash & NAME_TABLE_MASK;
+			String candidate;
+			while ((candidate = NAME_TABLE[slot]) != null) {
+				if (matches(candidate, start, length)) {
+					return candidate;
+				}
+				slot = (slot + 1) & NAME_TABLE_MASK;
+			}
+		}
+
+		return new String(data, start, length, encoding);
+	}
+
+	private boolean matches(final String candidate, final int start,
+			final int length) {
+		if (candidate.length() != length) {
+			return false;
+		}
+
+		for (int i = 0; i < length; i++) {
+			if (candidate.charAt(i) != data[start + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Build the value found between <code>start</code> and <code>end</code>,
+	 * dropping the '\n' the server writes after the start tag, and decoding
+	 * entities if needed.
+	 */
+	private String readValue(int start, final int end)
+			throws UnsupportedEncodingException {
+		if (start < end && data[start] == '\n') {
+			start++;
+		}
+
+		boolean ascii = true;
+		boolean hasEntity = false;
+		for (int i = start; i < end; i++) {
+			byte b = data[i];
+			if (b < 0) {
+				ascii = false;
+			} else if (b == '&') {
+				hasEntity = true;
+			}
+		}
+
+		if (!ascii) {
+			String value = new String(data, start, end - start, encoding);
+			return decode && hasEntity ? decodeEntities(value) : value;
+		}
+
+		char[] chars = new char[end - start];
+		int count = 0;
+		if (decode && hasEntity) {
+			for (int i = start; i < end; i++) {
+				char c = (char) data[i];
+				if (c == '&') {
+					int entity = entityAt(i, end);
+					if (entity >= 0) {
+						chars[count++] = ENTITY_CHARS[entity];
+						i += ENTITIES[entity].length() - 1;
+						continue;
+					}
+				}
+				chars[count++] = c;
+			}
+		} else {
+			for (int i = start; i < end; i++) {
+				chars[count++] = (char) data[i];
+			}
+		}
+		return new String(chars, 0, count);
+	}
+
+	/**
+	 * @return the index in <code>ENTITIES</code> of the entity starting at
+	 *         <code>index</code>, or -1 if there is not a known entity there
+	 */
+	private int entityAt(final int index, final int end) {
+		for (int e = 0; e < ENTITIES.length; e++) {
+			String entity = ENTITIES[e];
+			int entityLength = entity.length();
+			if (index + entityLength > end) {
+				continue;
+			}
+			boolean found = true;
+			for (int i = 1; i < entityLength; i++) {
+				if (data[index + i] != entity.charAt(i)) {
+					found = false;
+					break;
+				}
+			}
+			if (found) {
+				return e;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Append the decoded entity found at <code>index</code> in a
+	 * <code>String</code>.
+	 *
+	 * @return <code>int</code> with the number of characters consumed, or zero
+	 *         if there is no known entity there
+	 */
+	private static int appendEntity(final String value, final int index,
+			final StringBuilder decoded) {
+		for (int e = 0; e < ENTITIES.length; e++) {
+			if (value.startsWith(ENTITIES[e], index)) {
+				decoded.append(ENTITY_CHARS[e]);
+				return ENTITIES[e].length();
+			}
+		}
+		return 0;
+	}
+
+}
@@ -0,0 +1,285 @@
+package edu.sdsc.grid.io.irods;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Writes a {@link Tag Tag} tree as the bytes of the iRODS XML protocol into a
+ * reusable buffer. This replaces building the message with
+ * <code>Tag.parseTag()</code>, converting it to bytes, and then copying the
+ * bytes again on the way to the socket.
+ * <p/>
+ * Values are escaped as they are written, in one pass, and plain ASCII is
+ * written byte for byte without going through the character encoder. Only a
+ * value that holds characters outside of ASCII is encoded through a
+ * <code>String</code>. The length of the message, as needed for the msgLen of
+ * the header, is simply the number of bytes written.
+ * <p/>
+ * The output is the same as that of <code>Tag.parseTag()</code> encoded with
+ * the same character encoding.
+ * <p/>
+ * A <code>TagWriter</code> is not thread safe. Each
+ * {@link IRODSConnection IRODSConnection} has its own, and uses it while
+ * holding the lock on the <code>IRODSCommands</code>.
+ */
+final class TagWriter {
+
+	/**
+	 * Largest buffer kept between messages, a larger message gets a buffer
+	 * that is dropped on the next <code>reset()</code>.
+	 */
+	static final int MAX_RETAINED_BUFFER_LENGTH = 1024 * 1024;
+
+	private static final int INITIAL_BUFFER_LENGTH = 4096;
+
+	private static final byte[] AMP = { '&', 'a', 'm', 'p', ';' };
+	private static final byte[] LT = { '&', 'l', 't', ';' };
+	private static final byte[] GT = { '&', 'g', 't', ';' };
+	private static final byte[] QUOT = { '&', 'q', 'u', 'o', 't', ';' };
+	private static final byte[] APOS = { '&', 'a', 'p', 'o', 's', ';' };
+	private static final byte[] NULL_VALUE = { 'n', 'u', 'l', 'l' };
+
+	private final String encoding;
+	private final int initialLength;
+	private byte[] buffer;
+	private int length = 0;
+
+	/**
+	 * @param encoding
+	 *            <code>String</code> with the character encoding used for
+	 *            characters outside of ASCII
+	 */
+	TagWriter(final String encoding) {
+		this(encoding, INITIAL_BUFFER_LENGTH);
+	}
+
+	TagWriter(final String encoding, final int initialLength) {
+		if (encoding == null || encoding.length() == 0) {
+			throw new IllegalArgumentException("null or empty encoding");
+		}
+		if (initialLength <= 0) {
+			throw new IllegalArgumentException("initial length must be > 0");
+		}
+		this.encoding = encoding;
+		this.initialLength = initialLength;
+		this.buffer = new byte[initialLength];
+	}
+
+	/**
+	 * Empty the buffer so it can hold the next message. An overly large buffer
+	 * is let go of at this point.
+	 */
+	void reset() {
+		length = 0;
+		if (buffer.length > MAX_RETAINED_BUFFER_LENGTH) {
+			buffer = new byte[initialLength];
+		}
+	}
+
+	/**
+	 * @return <code>byte[]</code> holding the bytes written since the last
+	 *         <code>reset()</code>, starting at index zero. Only valid until
+	 *         the next write or reset.
+	 */
+	byte[] getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * @return <code>int</code> with the number of bytes written since the last
+	 *         <code>reset()</code>
+	 */
+	int getLength() {
+		return length;
+	}
+
+	/**
+	 * @return <code>byte[]</code> with a copy of the bytes written
+	 */
+	byte[] toByteArray() {
+		byte[] copy = new byte[length];
+		System.arraycopy(buffer, 0, copy, 0, length);
+		return copy;
+	}
+
+	/**
+	 * Write the given tag, and all of its nested tags, in the form used by
+	 * <code>Tag.parseTag()</code>.
+	 */
+	void writeTag(final Tag tag) throws UnsupportedEncodingException {
+		writeStartTag(tag.tagName);
+		if (tag.tags != null) {
+			for (Tag subTag : tag.tags) {
+				writeTag(subTag);
+			}
+		} else {
+			writeEscaped(tag.value);
+		}
+		writeEndTag(tag.tagName);
+		writeByte('\n');
+	}
+
+	/**
+	 * Write the message header, including the four byte header length that
+	 * precedes it on the wire. This is the same header built by
+	 * <code>IRODSConnection.createHeader()</code>.
+	 */
+	void writeHeader(final String type, final int messageLength,
+			final int errorLength, final long byteStringLength,
+			final int intInfo) throws UnsupportedEncodingException {
+		int lengthIndex = length;
+		ensureCapacity(IRODSConnection.HEADER_INT_LENGTH);
+		length += IRODSConnection.HEADER_INT_LENGTH;
+
+		int headerStart = length;
+		writeStartTag(IRODSConstants.MsgHeader_PI);
+		writeStartTag("type");
+		writeRaw(type);
+		writeEndTag("type");
+		writeStartTag("msgLen");
+		writeLong(messageLength);
+		writeEndTag("msgLen");
+		writeStartTag("errorLen");
+		writeLong(errorLength);
+		writeEndTag("errorLen");
+		writeStartTag("bsLen");
+		writeLong(byteStringLength);
+		writeEndTag("bsLen");
+		writeStartTag("intInfo");
+		writeLong(intInfo);
+		writeEndTag("intInfo");
+		writeEndTag(IRODSConstants.MsgHeader_PI);
+
+		int headerLength = length - headerStart;
+		buffer[lengthIndex] = (byte) (headerLength >>> 24);
+		buffer[lengthIndex + 1] = (byte) (headerLength >>> 16);
+		buffer[lengthIndex + 2] = (byte) (headerLength >>> 8);
+		buffer[lengthIndex + 3] = (byte) headerLength;
+	}
+
+	/**
+	 * Write the characters of the given <code>String</code> without escaping
+	 * them, as is done for a message that is already in XML form.
+	 */
+	void writeRaw(final String value) throws UnsupportedEncodingException {
+		int valueLength = value.length();
+		ensureCapacity(valueLength);
+		for (int i = 0; i < valueLength; i++) {
+			char c = value.charAt(i);
+			if (c >= 0x80) {
+				writeBytes(value.getBytes(encoding));
+				return;
+			}
+			buffer[length + i] = (byte) c;
+		}
+		length += valueLength;
+	}
+
+	/**
+	 * Write the value with &amp;, &lt;, &gt;, &quot; and '`' escaped. Note a
+	 * <code>null</code> value is written as 'null', as
+	 * <code>Tag.parseTag()</code> has always done.
+	 */
+	void writeEscaped(final String value) throws UnsupportedEncodingException {
+		if (value == null) {
+			writeBytes(NULL_VALUE);
+			return;
+		}
+
+		int valueLength = value.length();
+		ensureCapacity(valueLength);
+		for (int i = 0; i < valueLength; i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '&':
+				writeBytes(AMP);
+				break;
+			case '<':
+				writeBytes(LT);
+				break;
+			case '>':
+				writeBytes(GT);
+				break;
+			case '"':
+				writeBytes(QUOT);
+				break;
+			case '`':
+				writeBytes(APOS);
+				break;
+			default:
+				if (c >= 0x80) {
+					writeRaw(Tag.escapeValue(value.substring(i)));
+					return;
+				}
+				writeByte(c);
+			}
+		}
+	}
+
+	private void writeStartTag(final String tagName)
+			throws UnsupportedEncodingException {
+		writeByte(Tag.OPEN_START_TAG);
+		writeRaw(tagName);
+		writeByte(Tag.CLOSE_START_TAG);
+	}
+
+	private void writeEndTag(final String tagName)
+			throws UnsupportedEncodingException {
+		writeByte('<');
+		writeByte('/');
+		writeRaw(tagName);
+		writeByte(Tag.CLOSE_END_TAG);
+	}
+
+	private void writeLong(long value) {
+		if (value == Long.MIN_VALUE) {
+			// cannot be negated, rare enough to not care about the garbage
+			byte[] digits = String.valueOf(value).getBytes();
+			writeBytes(digits);
+			return;
+		}
+
+		if (value < 0) {
+			writeByte('-');
+			value = -value;
+		}
+
+		int digitCount = 1;
+		for (long remaining = value / 10; remaining > 0; remaining /= 10) {
+			digitCount++;
+		}
+
+		ensureCapacity(digitCount);
+		for (int i = digitCount - 1; i >= 0; i--) {
+			buffer[length + i] = (byte) ('0' + (value % 10));
+			value /= 10;
+		}
+		length += digitCount;
+	}
+
+	private void writeByte(final char c) {
+		ensureCapacity(1);
+		buffer[length++] = (byte) c;
+	}
+
+	private void writeBytes(final byte[] bytes) {
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, buffer, length, bytes.length);
+		length += bytes.length;
+	}
+
+	private void ensureCapacity(final int additional) {
+		int needed = length + additional;
+		if (needed <= buffer.length) {
+			return;
+		}
+
+		int newLength = buffer.length * 2;
+		if (newLength < needed) {
+			newLength = needed;
+		}
+		byte[] grown = new byte[newLength];
+		System.arraycopy(buffer, 0, grown, 0, length);
+		buffer = grown;
+	}
+
+}
@@ -0,0 +1,352 @@
+package edu.sdsc.grid.io.irods;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local record of the byte ranges of a large get or put that have been moved,
+ * so that a transfer that fails part way can be restarted, sending only the
+ * ranges that are missing.
+ * <p/>
+ * The journal is a small file, named from the operation and the local and
+ * iRODS paths, so a retry of the same transfer finds it. It holds a header
+ * describing the transfer, followed by an offset and length for each range
+ * completed, appended as stripes complete them. A journal whose header does
+ * not match the transfer, such as one for a local file that has since
+ * changed, is discarded. A record cut short by a crash is ignored.
+ * <p/>
+ * Ranges are recorded as they are handed to the operating system, not forced
+ * to disk, so a restarted transfer is finished with a checksum comparison.
+ */
+final class TransferJournal {
+
+	private static Logger log = LoggerFactory.getLogger(TransferJournal.class);
+
+	static final String JOURNAL_SUFFIX = ".journal";
+
+	private static final int MAGIC = 0x4a524e4c;
+	private static final int VERSION = 1;
+	private static final int RECORD_LENGTH = 16;
+
+	private final File journalFile;
+	private final long length;
+	/**
+	 * completed ranges as sorted, non-overlapping, non-adjacent
+	 * <code>{start, end}</code> pairs
+	 */
+	private final List<long[]> completed = new ArrayList<long[]>();
+	private RandomAccessFile out;
+
+	/**
+	 * Start a new journal for a transfer, replacing any earlier one.
+	 *
+	 * @param directory
+	 *            <code>File</code> with the directory holding journals
+	 * @param operation
+	 *            <code>int</code> that is <code>GET_OPR</code> or
+	 *            <code>PUT_OPR</code>
+	 * @param localPath
+	 *            <code>String</code> with the absolute path of the local file
+	 * @param irodsPath
+	 *            <code>String</code> with the absolute path of the data object
+	 * @param length
+	 *            <code>long</code> with the length of the data being moved
+	 * @param localModified
+	 *            <code>long</code> with the modification time of the local
+	 *            file for a put, as a change to the file invalidates the
+	 *            journal, zero for a get
+	 * @return <code>TransferJournal</code>
+	 * @throws IOException
+	 */
+	static TransferJournal instance(final File directory, final int operation,
+			final String localPath, final String irodsPath, final long length,
+			final long localModified) throws IOException {
+		TransferJournal journal = new TransferJournal(journalFile(directory,
+				operation, localPath, irodsPath, length), length);
+		journal.create(operation, localPath, irodsPath, localModified);
+		journal.openForAppend();
+		return journal;
+	}
+
+	/**
+	 * Find the journal left by an earlier attempt at a transfer.
+	 *
+	 * @see #instance(File, int, String, String, long, long)
+	 * @return <code>TransferJournal</code> with the ranges already moved, or
+	 *         <code>null</code> if there is no journal for this transfer with
+	 *         any ranges in it, in which case a journal for some other
+	 *         transfer under the same name is removed
+	 * @throws IOException
+	 */
+	static TransferJournal resume(final File directory, final int operation,
+			final String localPath, final String irodsPath, final long length,
+			final long localModified) throws IOException {
+		File journalFile = journalFile(directory, operation, localPath,
+				irodsPath, length);
+		if (!journalFile.exists()) {
+			return null;
+		}
+
+		TransferJournal journal = new TransferJournal(journalFile, length);
+		if (!journal.load(operation, localPath, irodsPath, localModified)
+				|| journal.getCompletedLength() == 0) {
+			journal.delete();
+			return null;
+		}
+		log.info("resuming transfer from journal:{}", journalFile);
+		journal.openForAppend();
+		return journal;
+	}
+
+	private static File journalFile(final File directory, final int operation,
+			final String localPath, final String irodsPath, final long length)
+			throws IOException {
+		if (directory == null) {
+			throw new IllegalArgumentException("null directory");
+		}
+		if (length < 0) {
+			throw new IllegalArgumentException("negative length");
+		}
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("unable to create journal directory:"
+					+ directory);
+		}
+		return new File(directory, journalName(operation, localPath,
+				irodsPath));
+	}
+
+	private void openForAppend() throws IOException {
+		out = new RandomAccessFile(journalFile, "rw");
+		out.seek(out.length());
+	}
+
+	private TransferJournal(final File journalFile, final long length) {
+		this.journalFile = journalFile;
+		this.length = length;
+	}
+
+	static String journalName(final int operation, final String localPath,
+			final String irodsPath) {
+		try {
+			MessageDigest md5 = MessageDigest.getInstance("MD5");
+			byte[] digest = md5.digest((operation + "\n" + localPath + "\n"
+					+ irodsPath).getBytes("UTF-8"));
+			StringBuilder name = new StringBuilder("jargon-");
+			for (byte b : digest) {
+				String hex = Integer.toHexString(b & 0xff);
+				if (hex.length() == 1) {
+					name.append('0');
+				}
+				name.append(hex);
+			}
+			return name.append(JOURNAL_SUFFIX).toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("MD5 algorithm unavailable", e);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException("UTF-8 unavailable", e);
+		}
+	}
+
+	private void create(final int operation, final String localPath,
+			final String irodsPath, final long localModified)
+			throws IOException {
+		DataOutputStream header = new DataOutputStream(new FileOutputStream(
+				journalFile));
+		try {
+			header.writeInt(MAGIC);
+			header.writeInt(VERSION);
+			header.writeInt(operation);
+			header.writeUTF(localPath);
+			header.writeUTF(irodsPath);
+			header.writeLong(length);
+			header.writeLong(localModified);
+		} finally {
+			header.close();
+		}
+	}
+
+	/**
+	 * @return <code>boolean</code> that is <code>true</code> if the journal
+	 *         on disk is for this transfer, and its ranges were read
+	 */
+	private boolean load(final int operation, final String localPath,
+			final String irodsPath, final long localModified)
+			throws IOException {
+		FileInputStream file = new FileInputStream(journalFile);
+		DataInputStream in = new DataInputStream(file);
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION
+					|| in.readInt() != operation
+					|| !in.readUTF().equals(localPath)
+					|| !in.readUTF().equals(irodsPath)
+					|| in.readLong() != length
+					|| in.readLong() != localModified) {
+				log.info("discarding journal for another transfer:{}",
+						journalFile);
+				return false;
+			}
+
+			long headerEnd = file.getChannel().position();
+			long fileLength = journalFile.length();
+			while (true) {
+				long offset;
+				long rangeLength;
+				try {
+					offset = in.readLong();
+					rangeLength = in.readLong();
+				} catch (EOFException e) {
+					break;
+				}
+				if (offset < 0 || rangeLength < 0
+						|| offset + rangeLength > length) {
+					log.warn("discarding journal with invalid range:{}",
+							journalFile);
+					completed.clear();
+					return false;
+				}
+				add(offset, rangeLength);
+			}
+
+			// drop a record cut short so that appends stay aligned
+			long torn = (fileLength - headerEnd) % RECORD_LENGTH;
+			if (torn != 0) {
+				RandomAccessFile truncate = new RandomAccessFile(journalFile,
+						"rw");
+				try {
+					truncate.setLength(fileLength - torn);
+				} finally {
+					truncate.close();
+				}
+			}
+			return true;
+		} catch (EOFException e) {
+			log.info("discarding incomplete journal:{}", journalFile);
+			completed.clear();
+			return false;
+		} finally {
+			in.close();
+		}
+	}
+
+	private void add(final long offset, final long rangeLength) {
+		if (rangeLength == 0) {
+			return;
+		}
+		long start = offset;
+		long end = offset + rangeLength;
+		int i = 0;
+		while (i < completed.size() && completed.get(i)[1] < start) {
+			i++;
+		}
+		while (i < completed.size() && completed.get(i)[0] <= end) {
+			long[] range = completed.remove(i);
+			start = Math.min(start, range[0]);
+			end = Math.max(end, range[1]);
+		}
+		completed.add(i, new long[] { start, end });
+	}
+
+	/**
+	 * Record a range as moved, called by the stripes as they go.
+	 */
+	synchronized void recordCompleted(final long offset, final long rangeLength)
+			throws IOException {
+		if (offset < 0 || rangeLength < 0 || offset + rangeLength > length) {
+			throw new IOException("range offset:" + offset + " length:"
+					+ rangeLength + " is outside the journaled transfer of "
+					+ length + " bytes");
+		}
+		if (rangeLength == 0) {
+			return;
+		}
+		if (out == null) {
+			throw new IOException("journal is closed");
+		}
+		// one write per record, so a crash leaves at most one record torn
+		ByteBuffer record = ByteBuffer.allocate(RECORD_LENGTH);
+		record.putLong(offset).putLong(rangeLength);
+		out.write(record.array());
+		add(offset, rangeLength);
+	}
+
+	/**
+	 * @return <code>List</code> of <code>{offset, length}</code> pairs, in
+	 *         order, for the ranges not yet moved
+	 */
+	synchronized List<long[]> getMissingRanges() {
+		List<long[]> missing = new ArrayList<long[]>();
+		long position = 0;
+		for (long[] range : completed) {
+			if (range[0] > position) {
+				missing.add(new long[] { position, range[0] - position });
+			}
+			position = range[1];
+		}
+		if (position < length) {
+			missing.add(new long[] { position, length - position });
+		}
+		return missing;
+	}
+
+	/**
+	 * @return <code>long</code> with the number of bytes already moved
+	 */
+	synchronized long getCompletedLength() {
+		long total = 0;
+		for (long[] range : completed) {
+			total += range[1] - range[0];
+		}
+		return total;
+	}
+
+	long getLength() {
+		return length;
+	}
+
+	File getJournalFile() {
+		return journalFile;
+	}
+
+	/**
+	 * Close the journal, leaving it on disk for a retry.
+	 */
+	synchronized void close() {
+		if (out == null) {
+			return;
+		}
+		try {
+			out.close();
+		} catch (IOException e) {
+			log.warn("error closing transfer journal", e);
+		}
+		out = null;
+	}
+
+	/**
+	 * Close and remove the journal, once the transfer is complete or can no
+	 * longer be resumed.
+	 */
+	synchronized void delete() {
+		close();
+		completed.clear();
+		if (journalFile.exists() && !journalFile.delete()) {
+			log.warn("unable to delete transfer journal:{}", journalFile);
+		}
+	}
+
+}
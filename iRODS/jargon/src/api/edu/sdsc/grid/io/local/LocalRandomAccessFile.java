@@ -306,6 +306,7 @@ public class LocalRandomAccessFile extends GeneralRandomAccessFile {
 	// ----------------------------------------------------------------------
 	@Override
 	public void write(final int b) throws IOException {
+		invalidateReadWindow();
 		wrapper.write(b);
 	}
 
@@ -422,6 +423,7 @@ public class LocalRandomAccessFile extends GeneralRandomAccessFile {
 	 */
 	@Override
 	public void setLength(final long newLength) throws IOException {
+		invalidateReadWindow();
 		wrapper.setLength(newLength);
 	}
 
@@ -107,6 +107,12 @@ public class SRBRandomAccessFile extends RemoteRandomAccessFile {
 	 */
 	long filePointer = 0;
 
+	/**
+	 * Position of the server's file pointer, which lags behind
+	 * <code>filePointer</code> after a seek.
+	 */
+	private long remotePointer = 0;
+
 	/**
 	 * Holds the connection through which data is sent.
 	 */
@@ -369,9 +375,11 @@ public class SRBRandomAccessFile extends RemoteRandomAccessFile {
 	 */
 	@Override
 	public int read() throws IOException {
+		seekServer();
 		byte buffer[] = fileSystem.srbObjRead(fd, 1);
 		if (buffer != null) {
 			filePointer += buffer.length;
+			remotePointer = filePointer;
 
 			return buffer[0];
 		}
@@ -395,10 +403,12 @@ public class SRBRandomAccessFile extends RemoteRandomAccessFile {
 			throws IOException {
 		byte b[] = null;
 
+		seekServer();
 		b = fileSystem.srbObjRead(fd, len);
 		if (b != null) {
 			System.arraycopy(b, 0, buffer, offset, b.length);
 			filePointer += b.length;
+			remotePointer = filePointer;
 
 			return b.length;
 		}
@@ -423,7 +433,20 @@ public class SRBRandomAccessFile extends RemoteRandomAccessFile {
 			final int len) throws IOException {
 		byte b[] = new byte[len];
 		System.arraycopy(buffer, offset, b, 0, len);
+		seekServer();
 		filePointer += fileSystem.srbObjWrite(fd, b, len);
+		remotePointer = filePointer;
+	}
+
+	/**
+	 * Tell the server where <code>filePointer</code> is, if it has moved
+	 * since the server last read or wrote.
+	 */
+	private void seekServer() throws IOException {
+		if (remotePointer != filePointer) {
+			fileSystem.srbObjSeek(fd, filePointer, SEEK_START);
+			remotePointer = filePointer;
+		}
 	}
 
 	// ----------------------------------------------------------------------
@@ -448,6 +471,9 @@ public class SRBRandomAccessFile extends RemoteRandomAccessFile {
 	 * the end of the file does not change the file length. The file length will
 	 * change only by writing after the offset has been set beyond the end of
 	 * the file.
+	 * <p>
+	 * Seeks from the start or the current position go to the server with the
+	 * next read or write.
 	 * 
 	 * @param pos
 	 *            the offset position, measured in bytes from the at which to
@@ -469,8 +495,15 @@ public class SRBRandomAccessFile extends RemoteRandomAccessFile {
 			throw new IllegalArgumentException();
 		}
 
-		fileSystem.srbObjSeek(fd, position, origin);
-		filePointer = position;
+		if (origin == SEEK_START) {
+			filePointer = position;
+		} else if (origin == SEEK_CURRENT) {
+			filePointer += position;
+		} else {
+			fileSystem.srbObjSeek(fd, position, origin);
+			filePointer = length() + position;
+			remotePointer = filePointer;
+		}
 	}
 
 	/**
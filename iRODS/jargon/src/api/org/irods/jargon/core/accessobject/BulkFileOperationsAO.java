@@ -128,4 +128,28 @@ public interface BulkFileOperationsAO {
 			String resourceNameWhereBundleWillBeExtracted)
 			throws JargonException;
 
+	/**
+	 * Given a tar file that exists in iRODS, extract the contents to the given
+	 * target directory. This is a force operation, overwriting any previously
+	 * extracted files, that will use the bulk registration optimization.
+	 * 
+	 * @param absolutePathToBundleFileInIrodsToBeExtracted
+	 *            <code>String</code> with the absolute path to the tar file in
+	 *            iRODS to be extracted.
+	 * @param absolutePathToIrodsCollectionToHoldExtractedFiles
+	 *            <code>String</code> with the absolute path to the collection
+	 *            that will be the target of the extraction. The collection does
+	 *            not have to exist.
+	 * @param resourceNameWhereBundleWillBeExtracted
+	 *            <code>String</code> with the target resource for the
+	 *            extraction. This is optional and should be set to blank if not
+	 *            used (not null).
+	 * @throws JargonException
+	 */
+	void extractABundleIntoAnIrodsCollectionWithBulkOperationOptimizationAndForceOption(
+			String absolutePathToBundleFileInIrodsToBeExtracted,
+			String absolutePathToIrodsCollectionToHoldExtractedFiles,
+			String resourceNameWhereBundleWillBeExtracted)
+			throws JargonException;
+
 }
\ No newline at end of file
@@ -186,6 +186,26 @@ public class BulkFileOperationsAOImpl extends AbstractIRODSAccessObject
 				resourceNameWhereBundleWillBeExtracted, true, false);
 	}
 
+	// @Override
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.irods.jargon.core.accessobject.BulkFileOperationsAO#
+	 * extractABundleIntoAnIrodsCollectionWithBulkOperationOptimizationAndForceOption
+	 * (java.lang.String, java.lang.String, java.lang.String)
+	 */
+	public void extractABundleIntoAnIrodsCollectionWithBulkOperationOptimizationAndForceOption(
+			final String absolutePathToBundleFileInIrodsToBeExtracted,
+			final String absolutePathToIrodsCollectionToHoldExtractedFiles,
+			final String resourceNameWhereBundleWillBeExtracted)
+			throws JargonException {
+
+		extractABundleIntoAnIrodsCollection(
+				absolutePathToBundleFileInIrodsToBeExtracted,
+				absolutePathToIrodsCollectionToHoldExtractedFiles,
+				resourceNameWhereBundleWillBeExtracted, true, true);
+	}
+
 	/**
 	 * Internal method with params for various options to be delegated to by
 	 * specific extract methods in api
@@ -1,6 +1,7 @@
 package org.irods.jargon.core.accessobject;
 
 import org.irods.jargon.core.exception.JargonException;
+import org.irods.jargon.core.pub.domain.CollectionSnapshot;
 
 import edu.sdsc.grid.io.irods.IRODSFileSystem;
 
@@ -75,4 +76,24 @@ public interface FileCatalogObjectAO {
 			String irodsFileAbsolutePath, String resourceName)
 			throws JargonException;
 
+	/**
+	 * Read the collections and data objects under a collection into a
+	 * {@link CollectionSnapshot CollectionSnapshot}. The whole tree is read
+	 * with four paged queries, two for the collection itself and two for the
+	 * paths that start with it, rather than with a listing of each
+	 * collection, so the number of round trips to the catalog does not grow
+	 * with the number of collections.
+	 * <p/>
+	 * A data object with several replicas is in the snapshot once, with the
+	 * size of the first replica read.
+	 *
+	 * @param collectionAbsolutePath
+	 *            <code>String</code> with the absolute path of the collection
+	 * @return {@link CollectionSnapshot} of the collection
+	 * @throws JargonException
+	 *             if the collection does not exist, or a query fails
+	 */
+	CollectionSnapshot snapshotSubtree(String collectionAbsolutePath)
+			throws JargonException;
+
 }
\ No newline at end of file
@@ -8,6 +8,7 @@ import org.irods.jargon.core.connection.ConnectionConstants;
 import org.irods.jargon.core.connection.IRODSServerProperties;
 import org.irods.jargon.core.exception.JargonException;
 import org.irods.jargon.core.packinstr.DataObjInp;
+import org.irods.jargon.core.pub.domain.CollectionSnapshot;
 import org.irods.jargon.core.query.IRODSQuery;
 import org.irods.jargon.core.query.IRODSQueryResultRow;
 import org.irods.jargon.core.query.IRODSQueryResultSet;
@@ -53,6 +54,8 @@ public class FileCatalogObjectAOImpl extends AbstractIRODSAccessObject
 			.getLogger(FileCatalogObjectAOImpl.class);
 	private static final String EQUALS_AND_QUOTE = " = '";
 	private static final String QUOTE = "'";
+	private static final String LIKE_AND_QUOTE = " like '";
+	private static final int SNAPSHOT_PAGE_SIZE = 5000;
 
 	/**
 	 * @param irodsCommands
@@ -418,4 +421,145 @@ public class FileCatalogObjectAOImpl extends AbstractIRODSAccessObject
 
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.irods.jargon.core.accessobject.FileCatalogObjectAO#snapshotSubtree
+	 * (java.lang.String)
+	 */
+	// @Override
+	public CollectionSnapshot snapshotSubtree(
+			final String collectionAbsolutePath) throws JargonException {
+
+		if (collectionAbsolutePath == null
+				|| collectionAbsolutePath.length() == 0) {
+			throw new IllegalArgumentException(
+					"null or empty collectionAbsolutePath");
+		}
+
+		String rootPath = collectionAbsolutePath;
+		if (rootPath.length() > 1 && rootPath.endsWith("/")) {
+			rootPath = rootPath.substring(0, rootPath.length() - 1);
+		}
+
+		log.info("snapshotSubtree for collection: {}", rootPath);
+
+		IRODSAccessObjectFactory irodsAccessObjectFactory = IRODSAccessObjectFactoryImpl
+				.instance(this.getIrodsCommands());
+		final IRODSGenQueryExecutor irodsGenQueryExecutor = irodsAccessObjectFactory
+				.getIRODSGenQueryExcecutor();
+
+		final String escapedRoot = IRODSDataConversionUtil
+				.escapeSingleQuotes(rootPath);
+		final String rootCondition = EQUALS_AND_QUOTE + escapedRoot + QUOTE;
+		// _ and % in the path are wildcards too, rows are checked again below
+		final String underRootCondition = LIKE_AND_QUOTE
+				+ (rootPath.equals("/") ? "" : escapedRoot) + "/%" + QUOTE;
+		final String underRootPrefix = rootPath.equals("/") ? "/" : rootPath
+				+ "/";
+
+		final String collectionSelect = "SELECT "
+				+ RodsGenQueryEnum.COL_COLL_NAME.getName() + ", "
+				+ RodsGenQueryEnum.COL_COLL_MODIFY_TIME.getName() + " WHERE "
+				+ RodsGenQueryEnum.COL_COLL_NAME.getName();
+		final String dataObjectSelect = "SELECT "
+				+ RodsGenQueryEnum.COL_COLL_NAME.getName() + ", "
+				+ RodsGenQueryEnum.COL_DATA_NAME.getName() + ", "
+				+ RodsGenQueryEnum.COL_DATA_SIZE.getName() + ", "
+				+ RodsGenQueryEnum.COL_D_MODIFY_TIME.getName() + " WHERE "
+				+ RodsGenQueryEnum.COL_COLL_NAME.getName();
+
+		CollectionSnapshot snapshot = null;
+		IRODSQueryResultIterator rows = executeSnapshotQuery(
+				irodsGenQueryExecutor, collectionSelect + rootCondition);
+		try {
+			if (rows.hasNext()) {
+				IRODSQueryResultRow row = rows.next();
+				snapshot = CollectionSnapshot.instance(rootPath,
+						IRODSDataConversionUtil
+								.getLongOrZeroFromIRODSValue(row.getColumn(1)));
+			}
+		} finally {
+			rows.close();
+		}
+
+		if (snapshot == null) {
+			log.error("collection not found for snapshot: {}", rootPath);
+			throw new JargonException("collection not found:" + rootPath);
+		}
+
+		rows = executeSnapshotQuery(irodsGenQueryExecutor, collectionSelect
+				+ underRootCondition);
+		try {
+			for (IRODSQueryResultRow row : rows) {
+				String collectionName = row.getColumn(0);
+				if (collectionName.startsWith(underRootPrefix)
+						&& collectionName.length() > underRootPrefix.length()) {
+					snapshot.addCollection(collectionName,
+							IRODSDataConversionUtil
+									.getLongOrZeroFromIRODSValue(row
+											.getColumn(1)));
+				}
+			}
+		} finally {
+			rows.close();
+		}
+
+		addSnapshotDataObjects(snapshot, executeSnapshotQuery(
+				irodsGenQueryExecutor, dataObjectSelect + rootCondition),
+				rootPath);
+		addSnapshotDataObjects(snapshot, executeSnapshotQuery(
+				irodsGenQueryExecutor, dataObjectSelect + underRootCondition),
+				underRootPrefix);
+
+		log.info("snapshot: {}", snapshot);
+		return snapshot;
+	}
+
+	/**
+	 * Add the data objects of a query to a snapshot, closing the query.
+	 * 
+	 * @param collectionPrefix
+	 *            <code>String</code> that the collection of a data object must
+	 *            start with to be added
+	 */
+	private void addSnapshotDataObjects(final CollectionSnapshot snapshot,
+			final IRODSQueryResultIterator rows, final String collectionPrefix)
+			throws JargonException {
+		try {
+			for (IRODSQueryResultRow row : rows) {
+				String collectionName = row.getColumn(0);
+				if (!collectionName.startsWith(collectionPrefix)) {
+					continue;
+				}
+
+				StringBuilder absolutePath = new StringBuilder(collectionName);
+				if (!collectionName.endsWith("/")) {
+					absolutePath.append('/');
+				}
+				absolutePath.append(row.getColumn(1));
+				snapshot.addDataObject(absolutePath.toString(),
+						IRODSDataConversionUtil.getLongOrZeroFromIRODSValue(row
+								.getColumn(2)), IRODSDataConversionUtil
+								.getLongOrZeroFromIRODSValue(row.getColumn(3)));
+			}
+		} finally {
+			rows.close();
+		}
+	}
+
+	private IRODSQueryResultIterator executeSnapshotQuery(
+			final IRODSGenQueryExecutor irodsGenQueryExecutor,
+			final String query) throws JargonException {
+		log.debug("snapshot query: {}", query);
+		try {
+			return irodsGenQueryExecutor.executeIRODSQueryAndIterate(IRODSQuery
+					.instance(query, SNAPSHOT_PAGE_SIZE));
+		} catch (JargonQueryException e) {
+			log.error("query exception for snapshot query: " + query, e);
+			throw new JargonException("error in snapshot query", e);
+		}
+	}
+
 }
@@ -4,7 +4,9 @@
 package org.irods.jargon.core.accessobject;
 
 import org.irods.jargon.core.exception.JargonException;
+import org.irods.jargon.core.query.IRODSPreparedQuery;
 import org.irods.jargon.core.query.IRODSQuery;
+import org.irods.jargon.core.query.IRODSQueryColumnarResultSet;
 import org.irods.jargon.core.query.IRODSQueryResultSet;
 import org.irods.jargon.core.query.JargonQueryException;
 
@@ -50,4 +52,114 @@ public interface IRODSGenQueryExecutor {
 	IRODSQueryResultSet getMoreResults(IRODSQueryResultSet irodsQueryResultSet)
 			throws JargonException, JargonQueryException;
 
+	/**
+	 * Close a query that has more results without reading them, so that the
+	 * server frees the statement it holds for the continuation. Nothing is
+	 * sent if the result set has no more records.
+	 * 
+	 * @param irodsQueryResultSet
+	 *            {@link org.irods.jargon.core.query.IRODSQueryResultSet} with
+	 *            the last results read from the query
+	 * @throws JargonException
+	 */
+	void closeResults(IRODSQueryResultSet irodsQueryResultSet)
+			throws JargonException;
+
+	/**
+	 * Execute an iquest-like query and return the results a column at a time,
+	 * as the server sends them, rather than as an object per row.
+	 * 
+	 * @param irodsQuery
+	 *            {@link org.irods.jargon.core.query.IRODSQuery} that will wrap
+	 *            the given iquest-like query
+	 * @return {@link org.irods.jargon.core.query.IRODSQueryColumnarResultSet}
+	 *         that contains the first results of the query
+	 * @throws JargonException
+	 * @throws JargonQueryException
+	 */
+	IRODSQueryColumnarResultSet executeIRODSQueryColumnar(IRODSQuery irodsQuery)
+			throws JargonException, JargonQueryException;
+
+	/**
+	 * Execute a requery meant to retrieve more results a column at a time.
+	 * 
+	 * @param columnarResultSet
+	 *            {@link org.irods.jargon.core.query.IRODSQueryColumnarResultSet}
+	 *            that contains the results of the previous query.
+	 * @return <code>IRODSQueryColumnarResultSet</code> containing the next
+	 *         batch of query results.
+	 * @throws JargonException
+	 * @throws JargonQueryException
+	 */
+	IRODSQueryColumnarResultSet getMoreColumnarResults(
+			IRODSQueryColumnarResultSet columnarResultSet)
+			throws JargonException, JargonQueryException;
+
+	/**
+	 * Close a query read a column at a time that has more results, without
+	 * reading them. Nothing is sent if there are no more records.
+	 * 
+	 * @param columnarResultSet
+	 *            {@link org.irods.jargon.core.query.IRODSQueryColumnarResultSet}
+	 *            with the last results read from the query
+	 * @throws JargonException
+	 */
+	void closeColumnarResults(IRODSQueryColumnarResultSet columnarResultSet)
+			throws JargonException;
+
+	/**
+	 * Execute an iquest-like query and return an iterator over all of its
+	 * rows. The rows are requested a page of
+	 * <code>numberOfResultsDesired</code> at a time, and the next page is
+	 * requested in the background while the rows of the current page are
+	 * handed out, so that at most two pages are held at once.
+	 * <p/>
+	 * The query is closed on the server once the last row has been read. A
+	 * caller that stops early must call
+	 * {@link IRODSQueryResultIterator#close()}.
+	 * 
+	 * @param irodsQuery
+	 *            {@link org.irods.jargon.core.query.IRODSQuery} that will wrap
+	 *            the given iquest-like query
+	 * @return {@link IRODSQueryResultIterator} over the rows of the query
+	 * @throws JargonException
+	 * @throws JargonQueryException
+	 */
+	IRODSQueryResultIterator executeIRODSQueryAndIterate(IRODSQuery irodsQuery)
+			throws JargonException, JargonQueryException;
+
+	/**
+	 * Translate an iquest-like query whose condition values are given as
+	 * <code>?</code>, so that it can be run with different values without
+	 * being parsed again.
+	 * 
+	 * @param irodsQuery
+	 *            {@link org.irods.jargon.core.query.IRODSQuery} with
+	 *            <code>?</code> in place of condition values
+	 * @return {@link org.irods.jargon.core.query.IRODSPreparedQuery} to run
+	 *         with {@link #executePreparedIRODSQuery(IRODSPreparedQuery, String...)}
+	 * @throws JargonException
+	 * @throws JargonQueryException
+	 */
+	IRODSPreparedQuery prepareIRODSQuery(IRODSQuery irodsQuery)
+			throws JargonException, JargonQueryException;
+
+	/**
+	 * Execute a prepared query with values bound to its parameters. More
+	 * results are read with {@link #getMoreResults(IRODSQueryResultSet)}.
+	 * 
+	 * @param irodsPreparedQuery
+	 *            {@link org.irods.jargon.core.query.IRODSPreparedQuery} to run
+	 * @param values
+	 *            <code>String</code> values, in the order of the parameters in
+	 *            the query
+	 * @return {@link org.irods.jargon.core.query.IRODSQueryResultSet} that
+	 *         contains the results of the query
+	 * @throws JargonException
+	 * @throws JargonQueryException
+	 */
+	IRODSQueryResultSet executePreparedIRODSQuery(
+			IRODSPreparedQuery irodsPreparedQuery, String... values)
+			throws JargonException, JargonQueryException;
+
 }
@@ -9,7 +9,9 @@ import java.util.List;
 import org.irods.jargon.core.exception.JargonException;
 import org.irods.jargon.core.packinstr.GenQueryInp;
 import org.irods.jargon.core.packinstr.GenQueryOut;
+import org.irods.jargon.core.query.IRODSPreparedQuery;
 import org.irods.jargon.core.query.IRODSQuery;
+import org.irods.jargon.core.query.IRODSQueryColumnarResultSet;
 import org.irods.jargon.core.query.IRODSQueryResultRow;
 import org.irods.jargon.core.query.IRODSQueryResultSet;
 import org.irods.jargon.core.query.IRODSQueryTranslator;
@@ -68,7 +70,178 @@ public class IRODSGenQueryExecutorImpl extends AbstractIRODSAccessObject
 		}
 
 		return executeTranslatedIRODSQuery(
-				irodsQueryResultSet.getTranslatedIRODSQuery(), 1);
+				irodsQueryResultSet.getTranslatedIRODSQuery(),
+				irodsQueryResultSet.getContinuationIndex());
+	}
+
+	/**
+	 * Close a query that has more results without reading them, so that the
+	 * server frees the statement it holds for the continuation. Nothing is
+	 * sent if the result set has no more records.
+	 * 
+	 * @param irodsQueryResultSet
+	 *            {@link org.irods.jargon.core.query.IRODSQueryResultSet} with
+	 *            the last results read from the query
+	 * @throws JargonException
+	 */
+	public void closeResults(final IRODSQueryResultSet irodsQueryResultSet)
+			throws JargonException {
+		if (irodsQueryResultSet == null) {
+			throw new JargonException("null irodsQueryResultSet");
+		}
+
+		closeQuery(irodsQueryResultSet.getTranslatedIRODSQuery(),
+				irodsQueryResultSet.getContinuationIndex());
+	}
+
+	private void closeQuery(final TranslatedIRODSQuery translatedIRODSQuery,
+			final int continuationIndex) throws JargonException {
+		if (continuationIndex <= 0) {
+			return;
+		}
+
+		log.info("closing query with more results");
+		getIrodsCommands().irodsFunction(
+				GenQueryInp.instanceForCloseQuery(translatedIRODSQuery,
+						continuationIndex));
+	}
+
+	/**
+	 * Execute an iquest-like query and return an iterator over all of its
+	 * rows, with the next page of rows requested in the background.
+	 * 
+	 * @param irodsQuery
+	 *            {@link org.irods.jargon.core.query.IRODSQuery} that will wrap
+	 *            the given iquest-like query
+	 * @return {@link IRODSQueryResultIterator} over the rows of the query
+	 * @throws JargonException
+	 * @throws JargonQueryException
+	 */
+	public IRODSQueryResultIterator executeIRODSQueryAndIterate(
+			final IRODSQuery irodsQuery) throws JargonException,
+			JargonQueryException {
+		if (irodsQuery == null) {
+			throw new JargonException("null irodsQuery");
+		}
+
+		return IRODSQueryResultIterator.instance(this,
+				executeIRODSQuery(irodsQuery, 0));
+	}
+
+	/**
+	 * Translate an iquest-like query whose condition values are given as
+	 * <code>?</code>, so that it can be run with different values without
+	 * being parsed again.
+	 * 
+	 * @param irodsQuery
+	 *            {@link org.irods.jargon.core.query.IRODSQuery} with
+	 *            <code>?</code> in place of condition values
+	 * @return {@link org.irods.jargon.core.query.IRODSPreparedQuery}
+	 * @throws JargonException
+	 * @throws JargonQueryException
+	 */
+	public IRODSPreparedQuery prepareIRODSQuery(final IRODSQuery irodsQuery)
+			throws JargonException, JargonQueryException {
+		IRODSQueryTranslator irodsQueryTranslator = new IRODSQueryTranslator(
+				getIrodsCommands().getIrodsServerProperties());
+		return irodsQueryTranslator.prepareQuery(irodsQuery);
+	}
+
+	/**
+	 * Execute a prepared query with values bound to its parameters.
+	 * 
+	 * @param irodsPreparedQuery
+	 *            {@link org.irods.jargon.core.query.IRODSPreparedQuery} to run
+	 * @param values
+	 *            <code>String</code> values, in the order of the parameters in
+	 *            the query
+	 * @return {@link org.irods.jargon.core.query.IRODSQueryResultSet} that
+	 *         contains the results of the query
+	 * @throws JargonException
+	 * @throws JargonQueryException
+	 */
+	public IRODSQueryResultSet executePreparedIRODSQuery(
+			final IRODSPreparedQuery irodsPreparedQuery, final String... values)
+			throws JargonException, JargonQueryException {
+		if (irodsPreparedQuery == null) {
+			throw new JargonException("null irodsPreparedQuery");
+		}
+
+		log.info("executing prepared irods query");
+		return executeTranslatedIRODSQuery(irodsPreparedQuery.bind(values), 0);
+	}
+
+	/**
+	 * Execute an iquest-like query and return the results a column at a time.
+	 * 
+	 * @param irodsQuery
+	 *            {@link org.irods.jargon.core.query.IRODSQuery} that will wrap
+	 *            the given iquest-like query
+	 * @return {@link org.irods.jargon.core.query.IRODSQueryColumnarResultSet}
+	 *         that contains the first results of the query
+	 * @throws JargonException
+	 * @throws JargonQueryException
+	 */
+	public IRODSQueryColumnarResultSet executeIRODSQueryColumnar(
+			final IRODSQuery irodsQuery) throws JargonException,
+			JargonQueryException {
+		if (irodsQuery == null) {
+			throw new JargonException("null irodsQuery");
+		}
+
+		log.info("executing irods query for columnar results");
+		IRODSQueryTranslator irodsQueryTranslator = new IRODSQueryTranslator(
+				getIrodsCommands().getIrodsServerProperties());
+		return executeTranslatedIRODSQueryColumnar(
+				irodsQueryTranslator.getTranslatedQuery(irodsQuery), 0);
+	}
+
+	/**
+	 * Execute a requery meant to retrieve more results a column at a time.
+	 * 
+	 * @param columnarResultSet
+	 *            {@link org.irods.jargon.core.query.IRODSQueryColumnarResultSet}
+	 *            that contains the results of the previous query.
+	 * @return <code>IRODSQueryColumnarResultSet</code> containing the next
+	 *         batch of query results.
+	 * @throws JargonException
+	 * @throws JargonQueryException
+	 */
+	public IRODSQueryColumnarResultSet getMoreColumnarResults(
+			final IRODSQueryColumnarResultSet columnarResultSet)
+			throws JargonException, JargonQueryException {
+		log.info("getting more columnar results for query");
+		if (columnarResultSet == null) {
+			throw new JargonException("null columnarResultSet");
+		}
+
+		if (!columnarResultSet.isHasMoreRecords()) {
+			throw new JargonQueryException("no more results");
+		}
+
+		return executeTranslatedIRODSQueryColumnar(
+				columnarResultSet.getTranslatedIRODSQuery(),
+				columnarResultSet.getContinuationIndex());
+	}
+
+	/**
+	 * Close a query read a column at a time that has more results, without
+	 * reading them.
+	 * 
+	 * @param columnarResultSet
+	 *            {@link org.irods.jargon.core.query.IRODSQueryColumnarResultSet}
+	 *            with the last results read from the query
+	 * @throws JargonException
+	 */
+	public void closeColumnarResults(
+			final IRODSQueryColumnarResultSet columnarResultSet)
+			throws JargonException {
+		if (columnarResultSet == null) {
+			throw new JargonException("null columnarResultSet");
+		}
+
+		closeQuery(columnarResultSet.getTranslatedIRODSQuery(),
+				columnarResultSet.getContinuationIndex());
 	}
 
 	/**
@@ -102,6 +275,43 @@ public class IRODSGenQueryExecutorImpl extends AbstractIRODSAccessObject
 	private IRODSQueryResultSet executeTranslatedIRODSQuery(
 			final TranslatedIRODSQuery translatedIRODSQuery,
 			final int continueIndex) throws JargonException {
+		Tag response = sendQuery(translatedIRODSQuery, continueIndex);
+		int continuation = 0;
+		if (response != null) {
+			continuation = response.getTag(GenQueryOut.CONTINUE_INX)
+					.getIntValue();
+		}
+		List<IRODSQueryResultRow> result = translateResponseIntoResultSet(
+				response, translatedIRODSQuery);
+
+		return IRODSQueryResultSet.instance(translatedIRODSQuery, result,
+				continuation);
+
+	}
+
+	private IRODSQueryColumnarResultSet executeTranslatedIRODSQueryColumnar(
+			final TranslatedIRODSQuery translatedIRODSQuery,
+			final int continueIndex) throws JargonException {
+		Tag response = sendQuery(translatedIRODSQuery, continueIndex);
+		if (response == null) {
+			return IRODSQueryColumnarResultSet.instance(translatedIRODSQuery,
+					new String[translatedIRODSQuery.getSelectFields().size()][0],
+					0, 0);
+		}
+
+		int continuation = response.getTag(GenQueryOut.CONTINUE_INX)
+				.getIntValue();
+		int rows = response.getTag(GenQueryOut.ROW_CNT).getIntValue();
+		return IRODSQueryColumnarResultSet.instance(translatedIRODSQuery,
+				translateResponseIntoColumns(response), rows, continuation);
+	}
+
+	/**
+	 * @return <code>Tag</code> with the response, <code>null</code> if no
+	 *         rows were found
+	 */
+	private Tag sendQuery(final TranslatedIRODSQuery translatedIRODSQuery,
+			final int continueIndex) throws JargonException {
 		GenQueryInp genQueryInp = GenQueryInp.instance(translatedIRODSQuery,
 				continueIndex);
 		Tag response = getIrodsCommands().irodsFunction(genQueryInp);
@@ -109,12 +319,7 @@ public class IRODSGenQueryExecutorImpl extends AbstractIRODSAccessObject
 		if (response == null) {
 			log.info("null response from IRODS call indicates no rows found, translated query was:"
 					+ translatedIRODSQuery);
-			int continuation = 0;
-			List<IRODSQueryResultRow> result = translateResponseIntoResultSet(
-					response, translatedIRODSQuery);
-			IRODSQueryResultSet resultSet = IRODSQueryResultSet.instance(
-					translatedIRODSQuery, result, continuation);
-			return resultSet;
+			return null;
 		}
 
 		if (log.isDebugEnabled()) {
@@ -122,15 +327,31 @@ public class IRODSGenQueryExecutorImpl extends AbstractIRODSAccessObject
 					+ translatedIRODSQuery);
 			log.debug(response.parseTag());
 		}
+		return response;
+	}
 
-		int continuation = response.getTag(GenQueryOut.CONTINUE_INX)
+	/**
+	 * Take the values of each column from the response, which holds them a
+	 * column at a time.
+	 * 
+	 * @return <code>String[][]</code> indexed by column and then row
+	 */
+	String[][] translateResponseIntoColumns(final Tag queryResponse)
+			throws JargonException {
+		int rows = queryResponse.getTag(GenQueryOut.ROW_CNT).getIntValue();
+		int attributes = queryResponse.getTag(GenQueryOut.ATTRIB_CNT)
 				.getIntValue();
-		List<IRODSQueryResultRow> result = translateResponseIntoResultSet(
-				response, translatedIRODSQuery);
-
-		return IRODSQueryResultSet.instance(translatedIRODSQuery, result,
-				continuation);
 
+		String[][] columns = new String[attributes][rows];
+		Tag[] responseTags = queryResponse.getTags();
+		for (int j = 0; j < attributes; j++) {
+			// SqlResult_PI with attriInx and reslen, then a value per row
+			Tag[] values = responseTags[4 + j].getTags();
+			for (int i = 0; i < rows; i++) {
+				columns[j][i] = values[2 + i].getStringValue();
+			}
+		}
+		return columns;
 	}
 
 	List<IRODSQueryResultRow> translateResponseIntoResultSet(
@@ -138,30 +359,24 @@ public class IRODSGenQueryExecutorImpl extends AbstractIRODSAccessObject
 			final TranslatedIRODSQuery translatedIRODSQuery)
 			throws JargonException {
 
-		List<IRODSQueryResultRow> resultSet = new ArrayList<IRODSQueryResultRow>();
-		List<String> row = new ArrayList<String>();
-
 		if (queryResponse == null) {
 			// no response, create an empty result set, and never return null
 			log.info("empty result set from query, returning as an empty result set ( no rows found)");
-			return resultSet;
+			return new ArrayList<IRODSQueryResultRow>();
 		}
 
+		String[][] columns = translateResponseIntoColumns(queryResponse);
 		int rows = queryResponse.getTag(GenQueryOut.ROW_CNT).getIntValue();
 		if (log.isDebugEnabled()) {
 			log.debug("rows returned:" + rows);
 		}
 
-		int attributes = queryResponse.getTag(GenQueryOut.ATTRIB_CNT)
-				.getIntValue();
-
+		List<IRODSQueryResultRow> resultSet = new ArrayList<IRODSQueryResultRow>(
+				rows);
 		for (int i = 0; i < rows; i++) {
-			// new row
-			row = new ArrayList<String>();
-			for (int j = 0; j < attributes; j++) {
-
-				row.add(queryResponse.getTags()[4 + j].getTags()[2 + i]
-						.getStringValue());
+			List<String> row = new ArrayList<String>(columns.length);
+			for (String[] column : columns) {
+				row.add(column[i]);
 			}
 
 			resultSet.add(IRODSQueryResultRow.instance(row,
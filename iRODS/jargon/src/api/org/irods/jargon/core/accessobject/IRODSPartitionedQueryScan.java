@@ -0,0 +1,470 @@
+package org.irods.jargon.core.accessobject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.irods.jargon.core.exception.JargonException;
+import org.irods.jargon.core.exception.JargonRuntimeException;
+import org.irods.jargon.core.query.IRODSQuery;
+import org.irods.jargon.core.query.IRODSQueryResultRow;
+import org.irods.jargon.core.query.IRODSQueryResultSet;
+import org.irods.jargon.core.query.QueryPartition;
+import org.irods.jargon.core.query.QueryPartitionProgress;
+import org.irods.jargon.core.query.QueryPartitionProgress.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.sdsc.grid.io.irods.IRODSAccount;
+import edu.sdsc.grid.io.irods.IRODSConnectionPool;
+import edu.sdsc.grid.io.irods.PooledIRODSConnection;
+
+/**
+ * Scan of an iquest-like query split into {@link QueryPartition partitions},
+ * such as ranges of <code>DATA_ID</code>, which are run at the same time on
+ * connections borrowed from an {@link IRODSConnectionPool}, each reading its
+ * results a page of <code>numberOfResultsDesired</code> at a time with an
+ * {@link IRODSGenQueryExecutor}. The rows of all the partitions are handed out
+ * as one iterator.
+ * <p/>
+ * Rows are handed out in the order their pages arrive, or, with
+ * {@link MergeOrder#PARTITION}, all the rows of the first partition, then all
+ * of the second, and so on, which for key ranges in key order keeps the rows in
+ * key order if the query orders each partition. Each partition holds at most
+ * two pages that have not been handed out, and waits for them to be taken
+ * before reading more.
+ * <p/>
+ * Progress of each partition is given by {@link #getPartitionProgress()}. A
+ * partition that fails stops the other partitions, and the error is thrown from
+ * <code>hasNext()</code> and <code>next()</code> as a
+ * <code>JargonRuntimeException</code>. A caller that stops before the last row
+ * must call {@link #close()}, which closes the queries still running on the
+ * server and gives their connections back to the pool. The partition threads
+ * hold the scan, so it is never collected while they run, and without
+ * <code>close()</code> they keep their connections. This class is not
+ * thread-safe, and iterates once, <code>iterator()</code> returns this object.
+ */
+public final class IRODSPartitionedQueryScan implements
+		Iterator<IRODSQueryResultRow>, Iterable<IRODSQueryResultRow> {
+
+	public enum MergeOrder {
+		/**
+		 * Rows of any partition, as their pages arrive.
+		 */
+		ARRIVAL,
+		/**
+		 * All the rows of each partition in turn, in the order the partitions
+		 * were given.
+		 */
+		PARTITION
+	}
+
+	private static Logger log = LoggerFactory
+			.getLogger(IRODSPartitionedQueryScan.class);
+
+	static final int PAGES_BUFFERED_PER_PARTITION = 2;
+
+	/**
+	 * How long a partition waits to hand over a page before checking whether
+	 * the scan was closed.
+	 */
+	private static final long HAND_OVER_WAIT_MILLIS = 100;
+
+	private static final AtomicInteger scanThreadNumber = new AtomicInteger();
+
+	private final IRODSConnectionPool irodsConnectionPool;
+	private final IRODSAccount irodsAccount;
+	private final IRODSQuery irodsQuery;
+	private final MergeOrder mergeOrder;
+	private final PartitionReader[] readers;
+	private final ExecutorService executor;
+
+	/**
+	 * Queue all partitions hand their pages to in {@link MergeOrder#ARRIVAL}
+	 * order, <code>null</code> in partition order, where each has its own.
+	 */
+	private final BlockingQueue<Page> arrivals;
+
+	private volatile boolean closed = false;
+
+	/**
+	 * Error of the first partition that failed, which stops the others.
+	 */
+	private volatile Exception failure = null;
+
+	/**
+	 * Page the rows are handed out from, <code>null</code> before the first.
+	 */
+	private Page currentPage = null;
+	private int rowIndex = 0;
+
+	/**
+	 * Partition whose pages are taken next in {@link MergeOrder#PARTITION}
+	 * order.
+	 */
+	private int currentPartition = 0;
+
+	/**
+	 * Partitions whose last page has been taken in {@link MergeOrder#ARRIVAL}
+	 * order.
+	 */
+	private int partitionsFinished = 0;
+
+	/**
+	 * A page of results read by a partition.
+	 */
+	private static final class Page {
+		final List<IRODSQueryResultRow> rows;
+		final boolean last;
+
+		Page(final List<IRODSQueryResultRow> rows, final boolean last) {
+			this.rows = rows;
+			this.last = last;
+		}
+	}
+
+	/**
+	 * Start a scan of the partitions of a query.
+	 *
+	 * @param irodsConnectionPool
+	 *            {@link IRODSConnectionPool} each partition borrows its
+	 *            connection from
+	 * @param irodsAccount
+	 *            {@link IRODSAccount} the connections are borrowed for
+	 * @param irodsQuery
+	 *            {@link org.irods.jargon.core.query.IRODSQuery} to scan, to
+	 *            which the conditions of each partition are added
+	 * @param queryPartitions
+	 *            <code>List</code> of {@link QueryPartition}, which should not
+	 *            overlap
+	 * @param maxConcurrentPartitions
+	 *            <code>int</code> with the most partitions run at once, each
+	 *            on its own connection
+	 * @param mergeOrder
+	 *            {@link MergeOrder} the rows are handed out in
+	 * @return <code>IRODSPartitionedQueryScan</code> over the rows of all the
+	 *         partitions
+	 * @throws JargonException
+	 */
+	public static IRODSPartitionedQueryScan instance(
+			final IRODSConnectionPool irodsConnectionPool,
+			final IRODSAccount irodsAccount, final IRODSQuery irodsQuery,
+			final List<QueryPartition> queryPartitions,
+			final int maxConcurrentPartitions, final MergeOrder mergeOrder)
+			throws JargonException {
+		return new IRODSPartitionedQueryScan(irodsConnectionPool,
+				irodsAccount, irodsQuery, queryPartitions,
+				maxConcurrentPartitions, mergeOrder);
+	}
+
+	private IRODSPartitionedQueryScan(
+			final IRODSConnectionPool irodsConnectionPool,
+			final IRODSAccount irodsAccount, final IRODSQuery irodsQuery,
+			final List<QueryPartition> queryPartitions,
+			final int maxConcurrentPartitions, final MergeOrder mergeOrder)
+			throws JargonException {
+		if (irodsConnectionPool == null) {
+			throw new JargonException("null irodsConnectionPool");
+		}
+
+		if (irodsAccount == null) {
+			throw new JargonException("null irodsAccount");
+		}
+
+		if (irodsQuery == null) {
+			throw new JargonException("null irodsQuery");
+		}
+
+		if (queryPartitions == null || queryPartitions.isEmpty()) {
+			throw new JargonException("null or empty queryPartitions");
+		}
+
+		if (maxConcurrentPartitions < 1) {
+			throw new JargonException("maxConcurrentPartitions must be at least 1");
+		}
+
+		if (mergeOrder == null) {
+			throw new JargonException("null mergeOrder");
+		}
+
+		this.irodsConnectionPool = irodsConnectionPool;
+		this.irodsAccount = irodsAccount;
+		this.irodsQuery = irodsQuery;
+		this.mergeOrder = mergeOrder;
+
+		int threads = Math.min(maxConcurrentPartitions, queryPartitions.size());
+		if (mergeOrder == MergeOrder.ARRIVAL) {
+			arrivals = new LinkedBlockingQueue<Page>(threads
+					* PAGES_BUFFERED_PER_PARTITION);
+		} else {
+			arrivals = null;
+		}
+
+		readers = new PartitionReader[queryPartitions.size()];
+		for (int i = 0; i < readers.length; i++) {
+			QueryPartition queryPartition = queryPartitions.get(i);
+			if (queryPartition == null) {
+				throw new JargonException("null partition at:" + i);
+			}
+			readers[i] = new PartitionReader(queryPartition,
+					arrivals != null ? arrivals : new LinkedBlockingQueue<Page>(
+							PAGES_BUFFERED_PER_PARTITION));
+		}
+
+		log.info("scanning query in {} partitions, {} at once",
+				readers.length, threads);
+		final int scanNumber = scanThreadNumber.incrementAndGet();
+		executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger threadNumber = new AtomicInteger();
+
+			public Thread newThread(final Runnable runnable) {
+				Thread thread = new Thread(runnable, "irods-partitioned-scan-"
+						+ scanNumber + "-" + threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		// partitions start in order, so that in partition order the one
+		// being handed out is always running
+		for (PartitionReader reader : readers) {
+			executor.execute(reader);
+		}
+		executor.shutdown();
+	}
+
+	/**
+	 * @return this scan, which can only be iterated once
+	 */
+	public Iterator<IRODSQueryResultRow> iterator() {
+		return this;
+	}
+
+	public boolean hasNext() {
+		checkFailure();
+		while (!closed
+				&& (currentPage == null || rowIndex >= currentPage.rows.size())) {
+			Page page;
+			if (mergeOrder == MergeOrder.ARRIVAL) {
+				if (partitionsFinished == readers.length) {
+					closed = true;
+					break;
+				}
+				page = takePage(arrivals);
+				if (page.last) {
+					partitionsFinished++;
+				}
+			} else {
+				if (currentPartition == readers.length) {
+					closed = true;
+					break;
+				}
+				page = takePage(readers[currentPartition].pages);
+				if (page.last) {
+					currentPartition++;
+				}
+			}
+			currentPage = page;
+			rowIndex = 0;
+		}
+		checkFailure();
+		return !closed;
+	}
+
+	public IRODSQueryResultRow next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return currentPage.rows.get(rowIndex++);
+	}
+
+	/**
+	 * @throws UnsupportedOperationException
+	 *             rows of a query cannot be removed
+	 */
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * @return <code>List</code> of {@link QueryPartitionProgress}, in the order
+	 *         the partitions were given, with the progress of each as it is
+	 *         now
+	 */
+	public List<QueryPartitionProgress> getPartitionProgress() {
+		List<QueryPartitionProgress> progress = new ArrayList<QueryPartitionProgress>(
+				readers.length);
+		for (PartitionReader reader : readers) {
+			progress.add(reader.getProgress());
+		}
+		return Collections.unmodifiableList(progress);
+	}
+
+	/**
+	 * Stop the scan, and wait for the partitions still running to close their
+	 * queries on the server and give back their connections. Once closed,
+	 * <code>hasNext()</code> returns <code>false</code>.
+	 *
+	 * @throws JargonException
+	 *             if interrupted while waiting
+	 */
+	public void close() throws JargonException {
+		closed = true;
+		try {
+			while (!executor.awaitTermination(HAND_OVER_WAIT_MILLIS,
+					TimeUnit.MILLISECONDS)) {
+				log.debug("waiting for partitions to stop");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JargonException(
+					"interrupted waiting for partitions of the scan to stop");
+		}
+	}
+
+	private Page takePage(final BlockingQueue<Page> pages) {
+		Page page = null;
+		try {
+			while (page == null) {
+				checkFailure();
+				page = pages.poll(HAND_OVER_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JargonRuntimeException(
+					"interrupted waiting for partitioned query results");
+		}
+		return page;
+	}
+
+	private void checkFailure() {
+		if (failure != null) {
+			closed = true;
+			throw new JargonRuntimeException(
+					"partition of query failed, scan is stopped", failure);
+		}
+	}
+
+	/**
+	 * Reads the pages of one partition on a borrowed connection.
+	 */
+	private final class PartitionReader implements Runnable {
+
+		private final QueryPartition queryPartition;
+		private final BlockingQueue<Page> pages;
+		private volatile State state = State.WAITING;
+		private final AtomicLong rowsRead = new AtomicLong();
+		private final AtomicInteger pagesRead = new AtomicInteger();
+
+		PartitionReader(final QueryPartition queryPartition,
+				final BlockingQueue<Page> pages) {
+			this.queryPartition = queryPartition;
+			this.pages = pages;
+		}
+
+		QueryPartitionProgress getProgress() {
+			return QueryPartitionProgress.instance(queryPartition, state,
+					rowsRead.get(), pagesRead.get());
+		}
+
+		public void run() {
+			if (closed) {
+				state = State.CANCELLED;
+				return;
+			}
+
+			state = State.RUNNING;
+			PooledIRODSConnection connection = null;
+			boolean connectionUsable = false;
+			try {
+				connection = irodsConnectionPool.borrowConnection(irodsAccount);
+				IRODSGenQueryExecutor irodsGenQueryExecutor = IRODSAccessObjectFactoryImpl
+						.instance(connection.getIrodsCommands())
+						.getIRODSGenQueryExcecutor();
+
+				log.debug("running partition:{}", queryPartition);
+				IRODSQueryResultSet resultSet = irodsGenQueryExecutor
+						.executeIRODSQuery(IRODSQuery.instance(queryPartition
+								.addToQuery(irodsQuery.getQueryString()),
+								irodsQuery.getNumberOfResultsDesired()), 0);
+				while (true) {
+					pagesRead.incrementAndGet();
+					rowsRead.addAndGet(resultSet.getResults().size());
+					boolean last = !resultSet.isHasMoreRecords();
+					if (last) {
+						// done once handed over, which the caller may see first
+						state = State.DONE;
+					}
+					if (!handOver(new Page(resultSet.getResults(), last))) {
+						irodsGenQueryExecutor.closeResults(resultSet);
+						state = State.CANCELLED;
+						break;
+					}
+					if (last) {
+						break;
+					}
+					resultSet = irodsGenQueryExecutor.getMoreResults(resultSet);
+				}
+				connectionUsable = true;
+			} catch (Exception e) {
+				log.error("error reading partition:" + queryPartition, e);
+				state = State.FAILED;
+				synchronized (readers) {
+					if (failure == null) {
+						failure = e;
+					}
+				}
+				closed = true;
+			} finally {
+				if (connection != null) {
+					giveBack(connection, connectionUsable);
+				}
+			}
+		}
+
+		/**
+		 * Wait for room to hand over a page.
+		 *
+		 * @return <code>false</code> if the scan was closed first
+		 */
+		private boolean handOver(final Page page) {
+			try {
+				while (!closed) {
+					if (pages.offer(page, HAND_OVER_WAIT_MILLIS,
+							TimeUnit.MILLISECONDS)) {
+						return true;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return false;
+		}
+
+		private void giveBack(final PooledIRODSConnection connection,
+				final boolean connectionUsable) {
+			if (!connectionUsable) {
+				// the state of the protocol is not known after an error
+				connection.obliterateConnectionAndDiscardErrors();
+				return;
+			}
+
+			try {
+				connection.shutdown();
+			} catch (JargonException e) {
+				log.warn("error giving back connection of partition", e);
+			}
+		}
+	}
+
+}
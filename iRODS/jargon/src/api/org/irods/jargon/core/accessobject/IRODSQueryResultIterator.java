@@ -0,0 +1,208 @@
+package org.irods.jargon.core.accessobject;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.irods.jargon.core.exception.JargonException;
+import org.irods.jargon.core.exception.JargonRuntimeException;
+import org.irods.jargon.core.query.IRODSQueryResultRow;
+import org.irods.jargon.core.query.IRODSQueryResultSet;
+import org.irods.jargon.core.query.JargonQueryException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Iterator over every row of an iquest-like query, returned by
+ * {@link IRODSGenQueryExecutor#executeIRODSQueryAndIterate(org.irods.jargon.core.query.IRODSQuery)}
+ * .
+ * <p/>
+ * While the rows of a page are handed out, the next page is requested in the
+ * background, so at most two pages are held at once. The request holds the
+ * connection, so other calls on it wait for the page to arrive.
+ * <p/>
+ * The query is closed on the server when the last row has been read. A caller
+ * that stops before then must call {@link #close()}, otherwise the server
+ * holds the continuation until the connection is closed. Errors talking to the server are thrown from
+ * <code>hasNext()</code> and <code>next()</code> as a
+ * <code>JargonRuntimeException</code>. This class is not thread-safe, and
+ * iterates once, <code>iterator()</code> returns this object.
+ */
+public final class IRODSQueryResultIterator implements
+		Iterator<IRODSQueryResultRow>, Iterable<IRODSQueryResultRow> {
+
+	private static Logger log = LoggerFactory
+			.getLogger(IRODSQueryResultIterator.class);
+
+	private static final AtomicInteger prefetchThreadNumber = new AtomicInteger();
+
+	/**
+	 * Threads that request the next page of queries being iterated.
+	 */
+	private static final ExecutorService prefetchExecutor = Executors
+			.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(final Runnable runnable) {
+					Thread thread = new Thread(runnable, "irods-query-prefetch-"
+							+ prefetchThreadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	private final IRODSGenQueryExecutor irodsGenQueryExecutor;
+
+	/**
+	 * Page the rows are handed out from, which tells whether there is another.
+	 */
+	private IRODSQueryResultSet currentPage;
+	private int rowIndex = 0;
+
+	/**
+	 * Request for the page after the current one, <code>null</code> if there
+	 * is none or it has been taken.
+	 */
+	private Future<IRODSQueryResultSet> nextPage = null;
+
+	private boolean closed = false;
+
+	/**
+	 * @param irodsGenQueryExecutor
+	 *            {@link IRODSGenQueryExecutor} used to request more results
+	 * @param firstPage
+	 *            {@link org.irods.jargon.core.query.IRODSQueryResultSet} with
+	 *            the first results of the query
+	 * @return <code>IRODSQueryResultIterator</code> that starts with the rows
+	 *         of the first page
+	 * @throws JargonException
+	 */
+	static IRODSQueryResultIterator instance(
+			final IRODSGenQueryExecutor irodsGenQueryExecutor,
+			final IRODSQueryResultSet firstPage) throws JargonException {
+		return new IRODSQueryResultIterator(irodsGenQueryExecutor, firstPage);
+	}
+
+	private IRODSQueryResultIterator(
+			final IRODSGenQueryExecutor irodsGenQueryExecutor,
+			final IRODSQueryResultSet firstPage) throws JargonException {
+		if (irodsGenQueryExecutor == null) {
+			throw new JargonException("null irodsGenQueryExecutor");
+		}
+
+		if (firstPage == null) {
+			throw new JargonException("null firstPage");
+		}
+
+		this.irodsGenQueryExecutor = irodsGenQueryExecutor;
+		this.currentPage = firstPage;
+		requestNextPage();
+	}
+
+	/**
+	 * @return this iterator, which can only be iterated once
+	 */
+	public Iterator<IRODSQueryResultRow> iterator() {
+		return this;
+	}
+
+	public boolean hasNext() {
+		while (!closed && rowIndex >= currentPage.getResults().size()) {
+			if (!currentPage.isHasMoreRecords()) {
+				// the server closed the query with the last page
+				closed = true;
+				break;
+			}
+			try {
+				currentPage = takeNextPage();
+			} catch (JargonException e) {
+				throw new JargonRuntimeException(e);
+			}
+			rowIndex = 0;
+			requestNextPage();
+		}
+		return !closed;
+	}
+
+	public IRODSQueryResultRow next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return currentPage.getResults().get(rowIndex++);
+	}
+
+	/**
+	 * @throws UnsupportedOperationException
+	 *             rows of a query cannot be removed
+	 */
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Stop iterating, closing the query on the server if it has more results.
+	 * Once closed, <code>hasNext()</code> returns <code>false</code>.
+	 *
+	 * @throws JargonException
+	 */
+	public void close() throws JargonException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		IRODSQueryResultSet lastPage = currentPage;
+		if (nextPage != null) {
+			// the continuation to close is the one the next page came with
+			try {
+				lastPage = takeNextPage();
+			} catch (JargonException e) {
+				log.warn("error reading next page of query while closing it",
+						e);
+				return;
+			}
+		}
+		irodsGenQueryExecutor.closeResults(lastPage);
+	}
+
+	private void requestNextPage() {
+		if (!currentPage.isHasMoreRecords()) {
+			return;
+		}
+
+		final IRODSQueryResultSet page = currentPage;
+		nextPage = prefetchExecutor.submit(new Callable<IRODSQueryResultSet>() {
+			public IRODSQueryResultSet call() throws JargonException,
+					JargonQueryException {
+				return irodsGenQueryExecutor.getMoreResults(page);
+			}
+		});
+	}
+
+	/**
+	 * Wait for the page requested in the background.
+	 */
+	private IRODSQueryResultSet takeNextPage() throws JargonException {
+		Future<IRODSQueryResultSet> request = nextPage;
+		nextPage = null;
+		try {
+			return request.get();
+		} catch (InterruptedException e) {
+			// the request still holds the connection, close reads its page
+			nextPage = request;
+			Thread.currentThread().interrupt();
+			throw new JargonException(
+					"interrupted waiting for the next page of query results");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof JargonException) {
+				throw (JargonException) e.getCause();
+			}
+			throw new JargonException(e.getCause());
+		}
+	}
+
+}
@@ -0,0 +1,145 @@
+/**
+ *
+ */
+package org.irods.jargon.core.connection;
+
+/**
+ * Settings that control the behavior of an
+ * {@link edu.sdsc.grid.io.irods.IRODSConnectionPool IRODSConnectionPool}. The
+ * limits here are applied per pool key (that is, per distinct host, port, user,
+ * zone and proxy user). The data in this object are synchronized and
+ * thread-safe.
+ * <p/>
+ * This part of the API is new and subject to refactoring.
+ */
+public class IRODSConnectionPoolConfig {
+
+	public static final int DEFAULT_MAX_ACTIVE = 8;
+	public static final int DEFAULT_MAX_IDLE = 8;
+	public static final int DEFAULT_MIN_IDLE = 0;
+	public static final long DEFAULT_MAX_WAIT_MILLIS = 30000;
+	public static final long DEFAULT_MIN_EVICTABLE_IDLE_MILLIS = 5 * 60 * 1000;
+	public static final long DEFAULT_EVICTION_RUN_INTERVAL_MILLIS = 60 * 1000;
+
+	/**
+	 * Maximum number of connections (borrowed plus idle) per key. A value of
+	 * zero or less means no limit.
+	 */
+	private int maxActive = DEFAULT_MAX_ACTIVE;
+
+	/**
+	 * Maximum number of idle connections kept per key, connections returned
+	 * beyond this are closed.
+	 */
+	private int maxIdle = DEFAULT_MAX_IDLE;
+
+	/**
+	 * Number of idle connections the eviction run will try to keep open per
+	 * key.
+	 */
+	private int minIdle = DEFAULT_MIN_IDLE;
+
+	/**
+	 * Time a borrow will wait for a connection when <code>maxActive</code> is
+	 * reached. A value of zero or less will wait indefinitely.
+	 */
+	private long maxWaitMillis = DEFAULT_MAX_WAIT_MILLIS;
+
+	/**
+	 * Idle time after which a connection becomes eligible for eviction.
+	 */
+	private long minEvictableIdleTimeMillis = DEFAULT_MIN_EVICTABLE_IDLE_MILLIS;
+
+	/**
+	 * Time between eviction runs. A value of zero or less turns off the
+	 * background eviction, though <code>evictIdleConnections()</code> may still be
+	 * called directly.
+	 */
+	private long timeBetweenEvictionRunsMillis = DEFAULT_EVICTION_RUN_INTERVAL_MILLIS;
+
+	/**
+	 * Whether an idle connection is checked with a <code>miscServerInfo</code>
+	 * call before being handed out.
+	 */
+	private boolean validateOnBorrow = true;
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("irodsConnectionPoolConfig:");
+		sb.append("\n   maxActive:");
+		sb.append(maxActive);
+		sb.append("\n   maxIdle:");
+		sb.append(maxIdle);
+		sb.append("\n   minIdle:");
+		sb.append(minIdle);
+		sb.append("\n   maxWaitMillis:");
+		sb.append(maxWaitMillis);
+		sb.append("\n   minEvictableIdleTimeMillis:");
+		sb.append(minEvictableIdleTimeMillis);
+		sb.append("\n   timeBetweenEvictionRunsMillis:");
+		sb.append(timeBetweenEvictionRunsMillis);
+		sb.append("\n   validateOnBorrow:");
+		sb.append(validateOnBorrow);
+		return sb.toString();
+	}
+
+	public synchronized int getMaxActive() {
+		return maxActive;
+	}
+
+	public synchronized void setMaxActive(final int maxActive) {
+		this.maxActive = maxActive;
+	}
+
+	public synchronized int getMaxIdle() {
+		return maxIdle;
+	}
+
+	public synchronized void setMaxIdle(final int maxIdle) {
+		this.maxIdle = maxIdle;
+	}
+
+	public synchronized int getMinIdle() {
+		return minIdle;
+	}
+
+	public synchronized void setMinIdle(final int minIdle) {
+		this.minIdle = minIdle;
+	}
+
+	public synchronized long getMaxWaitMillis() {
+		return maxWaitMillis;
+	}
+
+	public synchronized void setMaxWaitMillis(final long maxWaitMillis) {
+		this.maxWaitMillis = maxWaitMillis;
+	}
+
+	public synchronized long getMinEvictableIdleTimeMillis() {
+		return minEvictableIdleTimeMillis;
+	}
+
+	public synchronized void setMinEvictableIdleTimeMillis(
+			final long minEvictableIdleTimeMillis) {
+		this.minEvictableIdleTimeMillis = minEvictableIdleTimeMillis;
+	}
+
+	public synchronized long getTimeBetweenEvictionRunsMillis() {
+		return timeBetweenEvictionRunsMillis;
+	}
+
+	public synchronized void setTimeBetweenEvictionRunsMillis(
+			final long timeBetweenEvictionRunsMillis) {
+		this.timeBetweenEvictionRunsMillis = timeBetweenEvictionRunsMillis;
+	}
+
+	public synchronized boolean isValidateOnBorrow() {
+		return validateOnBorrow;
+	}
+
+	public synchronized void setValidateOnBorrow(final boolean validateOnBorrow) {
+		this.validateOnBorrow = validateOnBorrow;
+	}
+
+}
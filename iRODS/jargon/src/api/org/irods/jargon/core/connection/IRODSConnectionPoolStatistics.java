@@ -0,0 +1,152 @@
+/**
+ *
+ */
+package org.irods.jargon.core.connection;
+
+/**
+ * Immutable snapshot of the counters kept by an
+ * {@link edu.sdsc.grid.io.irods.IRODSConnectionPool IRODSConnectionPool}. A
+ * 'hit' is a borrow satisfied by an idle connection, a 'miss' is a borrow that
+ * had to open a new connection and do the startup and authentication handshake.
+ */
+public final class IRODSConnectionPoolStatistics {
+
+	private final long hits;
+	private final long misses;
+	private final long validationFailures;
+	private final long evictions;
+	private final long borrowTimeouts;
+	private final long connectionsCreated;
+	private final long connectionsDestroyed;
+	private final int numActive;
+	private final int numIdle;
+
+	public static IRODSConnectionPoolStatistics instance(final long hits,
+			final long misses, final long validationFailures,
+			final long evictions, final long borrowTimeouts,
+			final long connectionsCreated, final long connectionsDestroyed,
+			final int numActive, final int numIdle) {
+		return new IRODSConnectionPoolStatistics(hits, misses,
+				validationFailures, evictions, borrowTimeouts,
+				connectionsCreated, connectionsDestroyed, numActive, numIdle);
+	}
+
+	private IRODSConnectionPoolStatistics(final long hits, final long misses,
+			final long validationFailures, final long evictions,
+			final long borrowTimeouts, final long connectionsCreated,
+			final long connectionsDestroyed, final int numActive,
+			final int numIdle) {
+		this.hits = hits;
+		this.misses = misses;
+		this.validationFailures = validationFailures;
+		this.evictions = evictions;
+		this.borrowTimeouts = borrowTimeouts;
+		this.connectionsCreated = connectionsCreated;
+		this.connectionsDestroyed = connectionsDestroyed;
+		this.numActive = numActive;
+		this.numIdle = numIdle;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return <code>double</code> with the fraction of borrows that were served
+	 *         from an idle connection, or zero if nothing has been borrowed.
+	 */
+	public double getHitRatio() {
+		long total = hits + misses;
+		if (total == 0) {
+			return 0;
+		}
+		return (double) hits / (double) total;
+	}
+
+	public long getValidationFailures() {
+		return validationFailures;
+	}
+
+	public long getEvictions() {
+		return evictions;
+	}
+
+	public long getBorrowTimeouts() {
+		return borrowTimeouts;
+	}
+
+	public long getConnectionsCreated() {
+		return connectionsCreated;
+	}
+
+	public long getConnectionsDestroyed() {
+		return connectionsDestroyed;
+	}
+
+	/**
+	 * @return <code>int</code> with the number of connections currently
+	 *         borrowed from the pool.
+	 */
+	public int getNumActive() {
+		return numActive;
+	}
+
+	/**
+	 * @return <code>int</code> with the number of connections currently idle
+	 *         in the pool.
+	 */
+	public int getNumIdle() {
+		return numIdle;
+	}
+
+	@Override
+	public String toString() {
+		char ret = '\n';
+		String tabOver = "    ";
+		StringBuilder builder = new StringBuilder();
+		builder.append("IRODS connection pool statistics");
+		builder.append(ret);
+		builder.append(tabOver);
+		builder.append("hits:");
+		builder.append(hits);
+		builder.append(ret);
+		builder.append(tabOver);
+		builder.append("misses:");
+		builder.append(misses);
+		builder.append(ret);
+		builder.append(tabOver);
+		builder.append("validation failures:");
+		builder.append(validationFailures);
+		builder.append(ret);
+		builder.append(tabOver);
+		builder.append("evictions:");
+		builder.append(evictions);
+		builder.append(ret);
+		builder.append(tabOver);
+		builder.append("borrow timeouts:");
+		builder.append(borrowTimeouts);
+		builder.append(ret);
+		builder.append(tabOver);
+		builder.append("created:");
+		builder.append(connectionsCreated);
+		builder.append(ret);
+		builder.append(tabOver);
+		builder.append("destroyed:");
+		builder.append(connectionsDestroyed);
+		builder.append(ret);
+		builder.append(tabOver);
+		builder.append("active:");
+		builder.append(numActive);
+		builder.append(ret);
+		builder.append(tabOver);
+		builder.append("idle:");
+		builder.append(numIdle);
+		builder.append(ret);
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,137 @@
+/**
+ *
+ */
+package org.irods.jargon.core.connection;
+
+/**
+ * Options that control the socket used for the connection to the iRODS agent.
+ * The data in this object are synchronized and thread-safe. Options are read
+ * when a connection is opened, so changes only affect later connections.
+ * <p/>
+ * The <code>SOCKET</code> transport uses the blocking
+ * <code>java.net.Socket</code> streams, as Jargon always has. The
+ * <code>NIO</code> transport uses a <code>SocketChannel</code> with direct
+ * buffers taken from a shared pool, and writes the header, message and any
+ * byte stream with gathering writes. If the channel cannot be opened, or a
+ * socket read timeout is configured (which a blocking channel does not honor),
+ * the <code>SOCKET</code> transport is used instead.
+ * <p/>
+ * A send or receive buffer size of zero leaves the operating system default in
+ * place.
+ */
+public class IRODSTransportOptions {
+
+	public enum TransportType {
+		SOCKET, NIO
+	}
+
+	public static final int DEFAULT_DIRECT_BUFFER_SIZE = 64 * 1024;
+	public static final int DEFAULT_MAX_POOLED_DIRECT_BUFFERS = 16;
+
+	private TransportType transportType = TransportType.SOCKET;
+	private int sendBufferSize = 0;
+	private int receiveBufferSize = 0;
+	private boolean tcpNoDelay = false;
+	private int directBufferSize = DEFAULT_DIRECT_BUFFER_SIZE;
+	private int maxPooledDirectBuffers = DEFAULT_MAX_POOLED_DIRECT_BUFFERS;
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("transportOptions:");
+		sb.append("\n   transportType:");
+		sb.append(transportType);
+		sb.append("\n   sendBufferSize:");
+		sb.append(sendBufferSize);
+		sb.append("\n   receiveBufferSize:");
+		sb.append(receiveBufferSize);
+		sb.append("\n   tcpNoDelay:");
+		sb.append(tcpNoDelay);
+		sb.append("\n   directBufferSize:");
+		sb.append(directBufferSize);
+		sb.append("\n   maxPooledDirectBuffers:");
+		sb.append(maxPooledDirectBuffers);
+		return sb.toString();
+	}
+
+	public synchronized TransportType getTransportType() {
+		return transportType;
+	}
+
+	public synchronized void setTransportType(final TransportType transportType) {
+		if (transportType == null) {
+			throw new IllegalArgumentException("null transportType");
+		}
+		this.transportType = transportType;
+	}
+
+	/**
+	 * @return <code>int</code> with the SO_SNDBUF size, or zero for the system
+	 *         default
+	 */
+	public synchronized int getSendBufferSize() {
+		return sendBufferSize;
+	}
+
+	public synchronized void setSendBufferSize(final int sendBufferSize) {
+		if (sendBufferSize < 0) {
+			throw new IllegalArgumentException("sendBufferSize < 0");
+		}
+		this.sendBufferSize = sendBufferSize;
+	}
+
+	/**
+	 * @return <code>int</code> with the SO_RCVBUF size, or zero for the system
+	 *         default
+	 */
+	public synchronized int getReceiveBufferSize() {
+		return receiveBufferSize;
+	}
+
+	public synchronized void setReceiveBufferSize(final int receiveBufferSize) {
+		if (receiveBufferSize < 0) {
+			throw new IllegalArgumentException("receiveBufferSize < 0");
+		}
+		this.receiveBufferSize = receiveBufferSize;
+	}
+
+	public synchronized boolean isTcpNoDelay() {
+		return tcpNoDelay;
+	}
+
+	public synchronized void setTcpNoDelay(final boolean tcpNoDelay) {
+		this.tcpNoDelay = tcpNoDelay;
+	}
+
+	/**
+	 * @return <code>int</code> with the size of each direct buffer used by the
+	 *         <code>NIO</code> transport
+	 */
+	public synchronized int getDirectBufferSize() {
+		return directBufferSize;
+	}
+
+	public synchronized void setDirectBufferSize(final int directBufferSize) {
+		if (directBufferSize <= 0) {
+			throw new IllegalArgumentException("directBufferSize <= 0");
+		}
+		this.directBufferSize = directBufferSize;
+	}
+
+	/**
+	 * @return <code>int</code> with the most direct buffers kept for reuse
+	 *         once connections using them are closed
+	 */
+	public synchronized int getMaxPooledDirectBuffers() {
+		return maxPooledDirectBuffers;
+	}
+
+	public synchronized void setMaxPooledDirectBuffers(
+			final int maxPooledDirectBuffers) {
+		if (maxPooledDirectBuffers < 0) {
+			throw new IllegalArgumentException("maxPooledDirectBuffers < 0");
+		}
+		this.maxPooledDirectBuffers = maxPooledDirectBuffers;
+	}
+
+}
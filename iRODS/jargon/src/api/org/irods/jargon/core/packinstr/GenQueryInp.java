@@ -30,6 +30,7 @@ public class GenQueryInp extends AbstractIRODSPackingInstruction implements
 	private final TranslatedIRODSQuery translatedIRODSQuery;
 	private final int continueIndex;
 	private final int partialStartIndex;
+	private final boolean closeQuery;
 	public static final String PI_TAG = "GenQueryInp_PI";
 	public static final String MAX_ROWS = "maxRows";
 	public static final String CONTINUE_INX = "continueInx";
@@ -59,7 +60,25 @@ public class GenQueryInp extends AbstractIRODSPackingInstruction implements
 	public static GenQueryInp instance(
 			final TranslatedIRODSQuery translatedIRODSQuery,
 			final int continueIndex) throws JargonException {
-		return new GenQueryInp(translatedIRODSQuery, continueIndex, 0);
+		return new GenQueryInp(translatedIRODSQuery, continueIndex, 0, false);
+	}
+
+	/**
+	 * Return an instance of a query command that asks for no rows, which tells
+	 * the server to close a query that has more results, freeing the
+	 * statement it holds for the continuation.
+	 * 
+	 * @param translatedIRODSQuery
+	 * @param continueIndex
+	 *            <code>int</code> with the continuation index returned with
+	 *            the last results of the query
+	 * @return <code>GenQueryInp</code> instance
+	 * @throws JargonException
+	 */
+	public static GenQueryInp instanceForCloseQuery(
+			final TranslatedIRODSQuery translatedIRODSQuery,
+			final int continueIndex) throws JargonException {
+		return new GenQueryInp(translatedIRODSQuery, continueIndex, 0, true);
 	}
 
 	/**
@@ -80,12 +99,13 @@ public class GenQueryInp extends AbstractIRODSPackingInstruction implements
 	public static GenQueryInp instanceWithPartialStart(
 			final TranslatedIRODSQuery translatedIRODSQuery,
 			final int partialStartIndex) throws JargonException {
-		return new GenQueryInp(translatedIRODSQuery, 0, partialStartIndex);
+		return new GenQueryInp(translatedIRODSQuery, 0, partialStartIndex,
+				false);
 	}
 
 	private GenQueryInp(final TranslatedIRODSQuery translatedIRODSQuery,
-			final int continueIndex, final int partialStartIndex)
-			throws JargonException {
+			final int continueIndex, final int partialStartIndex,
+			final boolean closeQuery) throws JargonException {
 		if (translatedIRODSQuery == null) {
 			throw new JargonException("irodsQuery is null");
 		}
@@ -101,6 +121,7 @@ public class GenQueryInp extends AbstractIRODSPackingInstruction implements
 		this.translatedIRODSQuery = translatedIRODSQuery;
 		this.continueIndex = continueIndex;
 		this.partialStartIndex = partialStartIndex;
+		this.closeQuery = closeQuery;
 		this.setApiNumber(API_NBR);
 	}
 
@@ -135,8 +156,8 @@ public class GenQueryInp extends AbstractIRODSPackingInstruction implements
 	@Override
 	public Tag getTagValue() throws JargonException {
 		Tag message = new Tag(PI_TAG, new Tag[] {
-				new Tag(MAX_ROWS, translatedIRODSQuery.getIrodsQuery()
-						.getNumberOfResultsDesired()),
+				new Tag(MAX_ROWS, closeQuery ? 0 : translatedIRODSQuery
+						.getIrodsQuery().getNumberOfResultsDesired()),
 				new Tag(CONTINUE_INX, continueIndex), // new query
 				new Tag(PARTIAL_START_INDEX, partialStartIndex) });
 
@@ -3,6 +3,8 @@ package org.irods.jargon.core.packinstr;
 
 import org.irods.jargon.core.exception.JargonException;
 
+import edu.sdsc.grid.io.irods.Tag;
+
 /**
  * 
  * @author toaster
@@ -17,4 +19,12 @@ public interface IRodsPI {
 
 	String getParsedTags() throws JargonException;
 
+	/**
+	 * @return {@link Tag Tag} with the packing instruction, which
+	 *         <code>IRODSCommands</code> writes straight to the connection
+	 *         rather than sending the parsed <code>String</code>.
+	 * @throws JargonException
+	 */
+	Tag getTagValue() throws JargonException;
+
 }
@@ -23,6 +23,11 @@ public class TransferOptions {
 	public static final int DEFAULT_UDP_SEND_RATE = 600000;
 	public static final int DEFAULT_UDP_PACKET_SIZE = 8192;
 	public static final int DEFAULT_MAX_PARALLEL_THREADS = 4;
+	public static final int DEFAULT_READ_AHEAD_BUFFER_SIZE = 64 * 1024;
+	public static final int DEFAULT_MAX_READ_AHEAD_BUFFER_SIZE = 4 * 1024 * 1024;
+	public static final int DEFAULT_WRITE_BEHIND_BUFFER_SIZE = 64 * 1024;
+	public static final int DEFAULT_RANDOM_ACCESS_CACHE_BLOCK_SIZE = 0;
+	public static final long DEFAULT_RANDOM_ACCESS_CACHE_SIZE = 16 * 1024 * 1024;
 
 	private int maxThreads = DEFAULT_MAX_PARALLEL_THREADS;
 	private int udpSendRate = DEFAULT_UDP_SEND_RATE;
@@ -35,6 +40,95 @@ public class TransferOptions {
 	 * collection are physically stored. <code>false</code> by default.
 	 */
 	private boolean redirectToResource = false;
+	/**
+	 * Milliseconds a parallel transfer may run before it is cancelled, zero
+	 * (the default) for no limit.
+	 */
+	private long parallelTransferTimeoutMillis = 0;
+	/**
+	 * <code>boolean</code> that indicates whether a parallel get into a local
+	 * file sizes the file first and receives each stripe into a memory mapped
+	 * region of it, rather than writing through the file channel.
+	 * <code>false</code> by default.
+	 */
+	private boolean memoryMappedParallelGet = false;
+	/**
+	 * <code>boolean</code> that indicates whether parallel gets and puts of
+	 * local files keep a journal of the byte ranges moved, so that a retry
+	 * after a failure only moves the missing ranges. <code>false</code> by
+	 * default.
+	 */
+	private boolean restartableTransfers = false;
+	/**
+	 * Directory holding the journals of restartable transfers, or
+	 * <code>null</code> (the default) for the <code>java.io.tmpdir</code>
+	 * directory.
+	 */
+	private String restartJournalDirectory = null;
+	/**
+	 * <code>boolean</code> that indicates whether the number of threads asked
+	 * for in a parallel transfer is tuned from the throughput of earlier
+	 * transfers to the same host, up to <code>maxThreads</code>, rather than
+	 * always being <code>maxThreads</code>. <code>false</code> by default.
+	 */
+	private boolean autotuneThreads = false;
+	/**
+	 * Size of the blocks an <code>IRODSFileInputStream</code> reads ahead in,
+	 * and the size it returns to after a skip or seek, zero to have every read
+	 * go to the server. 64 KB by default.
+	 */
+	private int readAheadBufferSize = DEFAULT_READ_AHEAD_BUFFER_SIZE;
+	/**
+	 * Largest block an <code>IRODSFileInputStream</code> grows to while it is
+	 * read sequentially. 4 MB by default.
+	 */
+	private int maxReadAheadBufferSize = DEFAULT_MAX_READ_AHEAD_BUFFER_SIZE;
+	/**
+	 * <code>boolean</code> that indicates whether an
+	 * <code>IRODSFileInputStream</code> that is being read sequentially reads
+	 * the next block in the background while the current one is consumed.
+	 * The background read goes over the stream's own connection, so while the
+	 * stream is open nothing else may use that connection, from this thread or
+	 * any other. <code>false</code> by default.
+	 */
+	private boolean readAheadPrefetch = false;
+	/**
+	 * Size of the buffer an <code>IRODSFileOutputStream</code> gathers writes
+	 * in before sending them, zero to send every write as it is made. 64 KB by
+	 * default.
+	 */
+	private int writeBehindBufferSize = DEFAULT_WRITE_BEHIND_BUFFER_SIZE;
+	/**
+	 * <code>boolean</code> that indicates whether an
+	 * <code>IRODSFileOutputStream</code> sends a full buffer in the background
+	 * while the next one is filled. An error in a background send is thrown by
+	 * the next write, flush or close, rather than by the write that filled the
+	 * buffer. <code>false</code> by default.
+	 */
+	private boolean writeBehindAsync = false;
+	/**
+	 * Size of the blocks an <code>IRODSRandomAccessFile</code> reads and
+	 * caches, zero to have every read go to the server. A cached block is not
+	 * read again, so changes made to the data object through another handle,
+	 * stream or client are not seen while it is cached. Zero, for no cache, by
+	 * default; 64 KB suits most random reads.
+	 */
+	private int randomAccessCacheBlockSize = DEFAULT_RANDOM_ACCESS_CACHE_BLOCK_SIZE;
+	/**
+	 * Most bytes of blocks an <code>IRODSRandomAccessFile</code> keeps, least
+	 * recently used blocks being dropped first. With a shared cache, this is
+	 * the budget of the cache as a whole, as set by the latest handle opened.
+	 * Used only with a <code>randomAccessCacheBlockSize</code> over zero.
+	 * 16 MB by default.
+	 */
+	private long randomAccessCacheSize = DEFAULT_RANDOM_ACCESS_CACHE_SIZE;
+	/**
+	 * <code>boolean</code> that indicates whether every
+	 * <code>IRODSRandomAccessFile</code> shares one block cache, so blocks
+	 * read by one handle serve the others, rather than each handle having a
+	 * cache of its own. <code>false</code> by default.
+	 */
+	private boolean sharedRandomAccessCache = false;
 
 	@Override
 	public String toString() {
@@ -50,6 +144,32 @@ public class TransferOptions {
 		sb.append(udpPacketSize);
 		sb.append("\n redirectToResource:");
 		sb.append(redirectToResource);
+		sb.append("\n parallelTransferTimeoutMillis:");
+		sb.append(parallelTransferTimeoutMillis);
+		sb.append("\n memoryMappedParallelGet:");
+		sb.append(memoryMappedParallelGet);
+		sb.append("\n restartableTransfers:");
+		sb.append(restartableTransfers);
+		sb.append("\n restartJournalDirectory:");
+		sb.append(restartJournalDirectory);
+		sb.append("\n autotuneThreads:");
+		sb.append(autotuneThreads);
+		sb.append("\n readAheadBufferSize:");
+		sb.append(readAheadBufferSize);
+		sb.append("\n maxReadAheadBufferSize:");
+		sb.append(maxReadAheadBufferSize);
+		sb.append("\n readAheadPrefetch:");
+		sb.append(readAheadPrefetch);
+		sb.append("\n writeBehindBufferSize:");
+		sb.append(writeBehindBufferSize);
+		sb.append("\n writeBehindAsync:");
+		sb.append(writeBehindAsync);
+		sb.append("\n randomAccessCacheBlockSize:");
+		sb.append(randomAccessCacheBlockSize);
+		sb.append("\n randomAccessCacheSize:");
+		sb.append(randomAccessCacheSize);
+		sb.append("\n sharedRandomAccessCache:");
+		sb.append(sharedRandomAccessCache);
 		return sb.toString();
 	}
 
@@ -94,4 +214,119 @@ public class TransferOptions {
 		this.redirectToResource = redirectToResource;
 	}
 
+	public synchronized long getParallelTransferTimeoutMillis() {
+		return parallelTransferTimeoutMillis;
+	}
+
+	public synchronized void setParallelTransferTimeoutMillis(
+			final long parallelTransferTimeoutMillis) {
+		this.parallelTransferTimeoutMillis = parallelTransferTimeoutMillis;
+	}
+
+	public synchronized boolean isMemoryMappedParallelGet() {
+		return memoryMappedParallelGet;
+	}
+
+	public synchronized void setMemoryMappedParallelGet(
+			final boolean memoryMappedParallelGet) {
+		this.memoryMappedParallelGet = memoryMappedParallelGet;
+	}
+
+	public synchronized boolean isRestartableTransfers() {
+		return restartableTransfers;
+	}
+
+	public synchronized void setRestartableTransfers(
+			final boolean restartableTransfers) {
+		this.restartableTransfers = restartableTransfers;
+	}
+
+	public synchronized String getRestartJournalDirectory() {
+		return restartJournalDirectory;
+	}
+
+	public synchronized void setRestartJournalDirectory(
+			final String restartJournalDirectory) {
+		this.restartJournalDirectory = restartJournalDirectory;
+	}
+
+	public synchronized boolean isAutotuneThreads() {
+		return autotuneThreads;
+	}
+
+	public synchronized void setAutotuneThreads(final boolean autotuneThreads) {
+		this.autotuneThreads = autotuneThreads;
+	}
+
+	public synchronized int getReadAheadBufferSize() {
+		return readAheadBufferSize;
+	}
+
+	public synchronized void setReadAheadBufferSize(
+			final int readAheadBufferSize) {
+		this.readAheadBufferSize = readAheadBufferSize;
+	}
+
+	public synchronized int getMaxReadAheadBufferSize() {
+		return maxReadAheadBufferSize;
+	}
+
+	public synchronized void setMaxReadAheadBufferSize(
+			final int maxReadAheadBufferSize) {
+		this.maxReadAheadBufferSize = maxReadAheadBufferSize;
+	}
+
+	public synchronized boolean isReadAheadPrefetch() {
+		return readAheadPrefetch;
+	}
+
+	public synchronized void setReadAheadPrefetch(
+			final boolean readAheadPrefetch) {
+		this.readAheadPrefetch = readAheadPrefetch;
+	}
+
+	public synchronized int getWriteBehindBufferSize() {
+		return writeBehindBufferSize;
+	}
+
+	public synchronized void setWriteBehindBufferSize(
+			final int writeBehindBufferSize) {
+		this.writeBehindBufferSize = writeBehindBufferSize;
+	}
+
+	public synchronized boolean isWriteBehindAsync() {
+		return writeBehindAsync;
+	}
+
+	public synchronized void setWriteBehindAsync(final boolean writeBehindAsync) {
+		this.writeBehindAsync = writeBehindAsync;
+	}
+
+	public synchronized int getRandomAccessCacheBlockSize() {
+		return randomAccessCacheBlockSize;
+	}
+
+	public synchronized void setRandomAccessCacheBlockSize(
+			final int randomAccessCacheBlockSize) {
+		this.randomAccessCacheBlockSize = randomAccessCacheBlockSize;
+	}
+
+	public synchronized long getRandomAccessCacheSize() {
+		return randomAccessCacheSize;
+	}
+
+	public synchronized void setRandomAccessCacheSize(
+			final long randomAccessCacheSize) {
+		this.randomAccessCacheSize = randomAccessCacheSize;
+	}
+
+	public synchronized boolean isSharedRandomAccessCache() {
+		return sharedRandomAccessCache;
+	}
+
+	public synchronized void setSharedRandomAccessCache(
+			final boolean sharedRandomAccessCache) {
+		this.sharedRandomAccessCache = sharedRandomAccessCache;
+	}
+
 }
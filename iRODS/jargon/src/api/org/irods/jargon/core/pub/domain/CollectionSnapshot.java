@@ -0,0 +1,234 @@
+package org.irods.jargon.core.pub.domain;
+
+import org.irods.jargon.core.exception.JargonException;
+
+/**
+ * The collections and data objects under a collection, as read from the
+ * catalog at one time, kept as a tree of {@link CollectionSnapshotNode
+ * CollectionSnapshotNode} in which each node holds its name rather than its
+ * path. Built by
+ * {@link org.irods.jargon.core.accessobject.FileCatalogObjectAO#snapshotSubtree(String)}
+ * with a few queries for the whole tree, rather than one for each
+ * collection.
+ * <p/>
+ * Paths are added with <code>addCollection()</code> and
+ * <code>addDataObject()</code>, which make the collections above them that
+ * were not added yet. A snapshot is not thread-safe while being built, and
+ * can be read from several threads once nothing more is added.
+ */
+public final class CollectionSnapshot {
+
+	private final String rootPath;
+
+	/**
+	 * Root path with a trailing slash, which the paths under it start with.
+	 */
+	private final String childPrefix;
+	private final CollectionSnapshotNode root;
+
+	private int collectionCount = 1;
+	private int dataObjectCount = 0;
+	private long totalLength = 0;
+
+	/**
+	 * @param rootPath
+	 *            <code>String</code> with the absolute path of the collection
+	 *            the snapshot is of
+	 * @param modifiedSeconds
+	 *            <code>long</code> with the modify time of the collection
+	 * @return <code>CollectionSnapshot</code> with only the collection
+	 * @throws JargonException
+	 */
+	public static CollectionSnapshot instance(final String rootPath,
+			final long modifiedSeconds) throws JargonException {
+		return new CollectionSnapshot(rootPath, modifiedSeconds);
+	}
+
+	private CollectionSnapshot(final String rootPath,
+			final long modifiedSeconds) throws JargonException {
+		if (rootPath == null || !rootPath.startsWith("/")) {
+			throw new JargonException("null or relative rootPath");
+		}
+
+		if (rootPath.length() > 1 && rootPath.endsWith("/")) {
+			this.rootPath = rootPath.substring(0, rootPath.length() - 1);
+		} else {
+			this.rootPath = rootPath;
+		}
+		this.childPrefix = this.rootPath.equals("/") ? "/" : this.rootPath
+				+ "/";
+		this.root = CollectionSnapshotNode.instanceForCollection(
+				this.rootPath, null, modifiedSeconds);
+	}
+
+	public String getRootPath() {
+		return rootPath;
+	}
+
+	public CollectionSnapshotNode getRoot() {
+		return root;
+	}
+
+	/**
+	 * @return <code>int</code> with the collections, including the root
+	 */
+	public int getCollectionCount() {
+		return collectionCount;
+	}
+
+	public int getDataObjectCount() {
+		return dataObjectCount;
+	}
+
+	/**
+	 * @return <code>long</code> with the sum of the sizes of the data objects
+	 */
+	public long getTotalLength() {
+		return totalLength;
+	}
+
+	/**
+	 * @param absolutePath
+	 *            <code>String</code> with the absolute path of a collection or
+	 *            data object
+	 * @return <code>CollectionSnapshotNode</code> of the path,
+	 *         <code>null</code> if it is not in the snapshot
+	 */
+	public CollectionSnapshotNode find(final String absolutePath) {
+		if (absolutePath == null) {
+			return null;
+		}
+
+		if (absolutePath.equals(rootPath)) {
+			return root;
+		}
+
+		if (!absolutePath.startsWith(childPrefix)) {
+			return null;
+		}
+
+		CollectionSnapshotNode node = root;
+		for (String name : absolutePath.substring(childPrefix.length()).split(
+				"/")) {
+			node = node.getChild(name);
+			if (node == null) {
+				return null;
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Add a collection under the root, or set the modify time of one already
+	 * added.
+	 *
+	 * @param absolutePath
+	 *            <code>String</code> with the absolute path of the collection
+	 * @param modifiedSeconds
+	 *            <code>long</code> with the modify time of the collection
+	 * @return <code>CollectionSnapshotNode</code> of the collection
+	 * @throws JargonException
+	 *             if the path is not under the root, or a data object was
+	 *             added with the path
+	 */
+	public CollectionSnapshotNode addCollection(final String absolutePath,
+			final long modifiedSeconds) throws JargonException {
+		if (absolutePath != null && absolutePath.equals(rootPath)) {
+			root.setModifiedSeconds(modifiedSeconds);
+			return root;
+		}
+
+		String[] names = splitUnderRoot(absolutePath);
+		CollectionSnapshotNode parent = collectionAbove(names, absolutePath);
+		String name = names[names.length - 1];
+		CollectionSnapshotNode node = parent.getChild(name);
+		if (node == null) {
+			node = CollectionSnapshotNode.instanceForCollection(name, parent,
+					modifiedSeconds);
+			parent.addChild(node);
+			collectionCount++;
+		} else if (node.isCollection()) {
+			node.setModifiedSeconds(modifiedSeconds);
+		} else {
+			throw new JargonException("data object already added with path:"
+					+ absolutePath);
+		}
+		return node;
+	}
+
+	/**
+	 * Add a data object under the root. A data object added again, such as
+	 * for another replica, is kept as it was first added.
+	 *
+	 * @param absolutePath
+	 *            <code>String</code> with the absolute path of the data object
+	 * @param length
+	 *            <code>long</code> with the size of the data object
+	 * @param modifiedSeconds
+	 *            <code>long</code> with the modify time of the data object
+	 * @return <code>CollectionSnapshotNode</code> of the data object
+	 * @throws JargonException
+	 *             if the path is not under the root, or a collection was added
+	 *             with the path
+	 */
+	public CollectionSnapshotNode addDataObject(final String absolutePath,
+			final long length, final long modifiedSeconds)
+			throws JargonException {
+		String[] names = splitUnderRoot(absolutePath);
+		CollectionSnapshotNode parent = collectionAbove(names, absolutePath);
+		String name = names[names.length - 1];
+		CollectionSnapshotNode node = parent.getChild(name);
+		if (node == null) {
+			node = CollectionSnapshotNode.instanceForDataObject(name, parent,
+					length, modifiedSeconds);
+			parent.addChild(node);
+			dataObjectCount++;
+			totalLength += length;
+		} else if (node.isCollection()) {
+			throw new JargonException("collection already added with path:"
+					+ absolutePath);
+		}
+		return node;
+	}
+
+	private String[] splitUnderRoot(final String absolutePath)
+			throws JargonException {
+		if (absolutePath == null || !absolutePath.startsWith(childPrefix)
+				|| absolutePath.length() == childPrefix.length()) {
+			throw new JargonException("path is not under " + rootPath + ":"
+					+ absolutePath);
+		}
+		return absolutePath.substring(childPrefix.length()).split("/");
+	}
+
+	/**
+	 * Find the collection holding the last name, making the collections
+	 * that were not added yet.
+	 */
+	private CollectionSnapshotNode collectionAbove(final String[] names,
+			final String absolutePath) throws JargonException {
+		CollectionSnapshotNode node = root;
+		for (int i = 0; i < names.length - 1; i++) {
+			CollectionSnapshotNode child = node.getChild(names[i]);
+			if (child == null) {
+				child = CollectionSnapshotNode.instanceForCollection(names[i],
+						node, 0);
+				node.addChild(child);
+				collectionCount++;
+			} else if (!child.isCollection()) {
+				throw new JargonException("data object in the path of:"
+						+ absolutePath);
+			}
+			node = child;
+		}
+		return node;
+	}
+
+	@Override
+	public String toString() {
+		return "CollectionSnapshot " + rootPath + " collections:"
+				+ collectionCount + " data objects:" + dataObjectCount
+				+ " total length:" + totalLength;
+	}
+
+}
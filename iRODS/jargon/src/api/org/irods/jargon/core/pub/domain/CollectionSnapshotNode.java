@@ -0,0 +1,157 @@
+package org.irods.jargon.core.pub.domain;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Collection or data object in a {@link CollectionSnapshot CollectionSnapshot}
+ * . A node keeps its own name, not its path, which is made from the names of
+ * the nodes above it when asked for.
+ * <p/>
+ * Nodes are changed only while the snapshot is built, after which they can be
+ * read from several threads.
+ */
+public final class CollectionSnapshotNode {
+
+	private final String name;
+	private final CollectionSnapshotNode parent;
+	private final boolean collection;
+	private final long length;
+	private long modifiedSeconds;
+
+	/**
+	 * Children by name, <code>null</code> for a data object, or for a
+	 * collection until it has a child.
+	 */
+	private Map<String, CollectionSnapshotNode> children = null;
+
+	static CollectionSnapshotNode instanceForCollection(final String name,
+			final CollectionSnapshotNode parent, final long modifiedSeconds) {
+		return new CollectionSnapshotNode(name, parent, true, 0,
+				modifiedSeconds);
+	}
+
+	static CollectionSnapshotNode instanceForDataObject(final String name,
+			final CollectionSnapshotNode parent, final long length,
+			final long modifiedSeconds) {
+		return new CollectionSnapshotNode(name, parent, false, length,
+				modifiedSeconds);
+	}
+
+	private CollectionSnapshotNode(final String name,
+			final CollectionSnapshotNode parent, final boolean collection,
+			final long length, final long modifiedSeconds) {
+		this.name = name;
+		this.parent = parent;
+		this.collection = collection;
+		this.length = length;
+		this.modifiedSeconds = modifiedSeconds;
+	}
+
+	/**
+	 * @return <code>String</code> with the name of this node, which for the
+	 *         root of the snapshot is its absolute path
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return <code>CollectionSnapshotNode</code> of the collection this is
+	 *         in, <code>null</code> for the root of the snapshot
+	 */
+	public CollectionSnapshotNode getParent() {
+		return parent;
+	}
+
+	public String getAbsolutePath() {
+		if (parent == null) {
+			return name;
+		}
+
+		StringBuilder sb = new StringBuilder();
+		appendPath(sb);
+		return sb.toString();
+	}
+
+	private void appendPath(final StringBuilder sb) {
+		if (parent == null) {
+			sb.append(name);
+			return;
+		}
+
+		parent.appendPath(sb);
+		if (sb.charAt(sb.length() - 1) != '/') {
+			sb.append('/');
+		}
+		sb.append(name);
+	}
+
+	public boolean isCollection() {
+		return collection;
+	}
+
+	/**
+	 * @return <code>long</code> with the size of a data object, 0 for a
+	 *         collection
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * @return <code>long</code> with the modify time in seconds, as kept by
+	 *         iRODS, 0 for a collection only known from the paths under it
+	 */
+	public long getModifiedSeconds() {
+		return modifiedSeconds;
+	}
+
+	void setModifiedSeconds(final long modifiedSeconds) {
+		this.modifiedSeconds = modifiedSeconds;
+	}
+
+	/**
+	 * @param childName
+	 *            <code>String</code> with the name of a child
+	 * @return <code>CollectionSnapshotNode</code> of the child,
+	 *         <code>null</code> if there is none
+	 */
+	public CollectionSnapshotNode getChild(final String childName) {
+		if (children == null) {
+			return null;
+		}
+		return children.get(childName);
+	}
+
+	/**
+	 * @return <code>Collection</code> of the children, in no order, empty for
+	 *         a data object
+	 */
+	public Collection<CollectionSnapshotNode> getChildren() {
+		if (children == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableCollection(children.values());
+	}
+
+	public int getChildCount() {
+		return children == null ? 0 : children.size();
+	}
+
+	void addChild(final CollectionSnapshotNode child) {
+		if (children == null) {
+			children = new HashMap<String, CollectionSnapshotNode>(4);
+		}
+		children.put(child.getName(), child);
+	}
+
+	@Override
+	public String toString() {
+		return "CollectionSnapshotNode " + getAbsolutePath()
+				+ (collection ? " collection" : " length:" + length);
+	}
+
+}
@@ -0,0 +1,397 @@
+package org.irods.jargon.core.pub.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * <code>InputStream</code> that reads a tar archive from another stream as it
+ * arrives, so an archive can be unpacked without first being stored in a file.
+ * Reads the ustar archives made by {@link TarOutputStream TarOutputStream} and
+ * by the tar support of iRODS, with GNU long names and the path of pax
+ * headers.
+ * <p/>
+ * <code>getNextEntry()</code> moves to the next file or directory, whose
+ * content is then read from this stream, which reports the end of the stream
+ * at the end of the entry. Content not read is skipped by the next call.
+ * <p/>
+ * This class is not thread-safe.
+ */
+public final class TarInputStream extends FilterInputStream {
+
+	private static final int BLOCK_SIZE = TarOutputStream.BLOCK_SIZE;
+	private static final String ENCODING = "UTF-8";
+
+	/**
+	 * Longest name read from a GNU long name or pax header.
+	 */
+	private static final int MAX_EXTENDED_HEADER_LENGTH = 1024 * 1024;
+
+	private static final byte TYPE_FILE = '0';
+	private static final byte TYPE_OLD_FILE = 0;
+	private static final byte TYPE_CONTIGUOUS_FILE = '7';
+	private static final byte TYPE_DIRECTORY = '5';
+	private static final byte TYPE_GNU_LONG_NAME = 'L';
+	private static final byte TYPE_PAX_HEADER = 'x';
+	private static final byte TYPE_PAX_GLOBAL_HEADER = 'g';
+
+	/**
+	 * File or directory of an archive.
+	 */
+	public static final class Entry {
+		private final String name;
+		private final long length;
+		private final long lastModified;
+		private final boolean directory;
+
+		private Entry(final String name, final long length,
+				final long lastModified, final boolean directory) {
+			this.name = name;
+			this.length = length;
+			this.lastModified = lastModified;
+			this.directory = directory;
+		}
+
+		/**
+		 * @return <code>String</code> with the relative path, using
+		 *         <code>/</code>, without a trailing <code>/</code> for a
+		 *         directory
+		 */
+		public String getName() {
+			return name;
+		}
+
+		public long getLength() {
+			return length;
+		}
+
+		/**
+		 * @return <code>long</code> with the modify time in milliseconds
+		 */
+		public long getLastModified() {
+			return lastModified;
+		}
+
+		public boolean isDirectory() {
+			return directory;
+		}
+
+		@Override
+		public String toString() {
+			return "TarInputStream.Entry " + name
+					+ (directory ? " directory" : " length:" + length);
+		}
+	}
+
+	private final byte[] header = new byte[BLOCK_SIZE];
+	private final byte[] skipBuffer = new byte[BLOCK_SIZE * 8];
+
+	/**
+	 * Bytes of the current entry not read yet, and the padding after them.
+	 */
+	private long entryRemaining = 0;
+	private long paddingRemaining = 0;
+	private boolean ended = false;
+
+	public TarInputStream(final InputStream in) {
+		super(in);
+		if (in == null) {
+			throw new IllegalArgumentException("null in");
+		}
+	}
+
+	/**
+	 * Move to the next file or directory, skipping what is left of the
+	 * current one. Entries other than files and directories, such as links,
+	 * are skipped.
+	 *
+	 * @return {@link Entry} read, <code>null</code> at the end of the archive
+	 * @throws IOException
+	 *             if the archive is damaged or ends early
+	 */
+	public Entry getNextEntry() throws IOException {
+		String longName = null;
+		while (!ended) {
+			skipFully(entryRemaining + paddingRemaining);
+			entryRemaining = 0;
+			paddingRemaining = 0;
+
+			if (!readHeader()) {
+				ended = true;
+				return null;
+			}
+
+			byte type = header[156];
+			long length = parseOctal(124, 12);
+			if (length < 0) {
+				throw new IOException("negative entry length in tar header");
+			}
+			entryRemaining = length;
+			paddingRemaining = padded(length) - length;
+
+			if (type == TYPE_GNU_LONG_NAME) {
+				longName = trimName(readExtendedHeader(length));
+			} else if (type == TYPE_PAX_HEADER) {
+				String path = paxPath(readExtendedHeader(length));
+				if (path != null) {
+					longName = path;
+				}
+			} else if (type == TYPE_PAX_GLOBAL_HEADER) {
+				continue;
+			} else {
+				String name = longName == null ? headerName() : longName;
+				longName = null;
+				long lastModified = parseOctal(136, 12) * 1000;
+				if (type == TYPE_DIRECTORY) {
+					// a directory has no content, whatever its length
+					return new Entry(trimName(name), 0, lastModified, true);
+				}
+				if (type == TYPE_FILE || type == TYPE_OLD_FILE
+						|| type == TYPE_CONTIGUOUS_FILE) {
+					if (name.endsWith("/")) {
+						return new Entry(trimName(name), 0, lastModified, true);
+					}
+					return new Entry(trimName(name), length, lastModified,
+							false);
+				}
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (entryRemaining <= 0) {
+			return -1;
+		}
+
+		int b = in.read();
+		if (b < 0) {
+			throw new EOFException("tar archive ends inside an entry");
+		}
+		entryRemaining--;
+		return b;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len)
+			throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+
+		if (entryRemaining <= 0) {
+			return -1;
+		}
+
+		int read = in.read(b, off, (int) Math.min(len, entryRemaining));
+		if (read < 0) {
+			throw new EOFException("tar archive ends inside an entry");
+		}
+		entryRemaining -= read;
+		return read;
+	}
+
+	@Override
+	public long skip(final long n) throws IOException {
+		long skipped = Math.min(Math.max(n, 0), entryRemaining);
+		skipFully(skipped);
+		entryRemaining -= skipped;
+		return skipped;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return (int) Math.min(in.available(), entryRemaining);
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	/**
+	 * Read a header block.
+	 *
+	 * @return <code>boolean</code> that is <code>false</code> at the end of
+	 *         the archive
+	 */
+	private boolean readHeader() throws IOException {
+		int read = 0;
+		while (read < BLOCK_SIZE) {
+			int n = in.read(header, read, BLOCK_SIZE - read);
+			if (n < 0) {
+				if (read == 0) {
+					// archives cut after the last entry are read as ended
+					return false;
+				}
+				throw new EOFException("tar archive ends inside a header");
+			}
+			read += n;
+		}
+
+		boolean empty = true;
+		for (byte b : header) {
+			if (b != 0) {
+				empty = false;
+				break;
+			}
+		}
+		if (empty) {
+			// the first of the blocks of zeros at the end
+			return false;
+		}
+
+		long checksum = parseOctal(148, 8);
+		long sum = 0;
+		for (int i = 0; i < BLOCK_SIZE; i++) {
+			sum += (i >= 148 && i < 156) ? ' ' : header[i] & 0xff;
+		}
+		if (sum != checksum) {
+			throw new IOException("bad tar header checksum");
+		}
+		return true;
+	}
+
+	private byte[] readExtendedHeader(final long length) throws IOException {
+		if (length > MAX_EXTENDED_HEADER_LENGTH) {
+			throw new IOException("tar extended header too long:" + length);
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) length);
+		byte[] buffer = new byte[BLOCK_SIZE];
+		int n;
+		while ((n = read(buffer, 0, buffer.length)) > 0) {
+			bytes.write(buffer, 0, n);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Find the <code>path</code> record of a pax header, whose records are
+	 * <code>length key=value\n</code>.
+	 */
+	private static String paxPath(final byte[] records) throws IOException {
+		int position = 0;
+		String path = null;
+		while (position < records.length) {
+			int space = position;
+			while (space < records.length && records[space] != ' ') {
+				space++;
+			}
+			int recordLength;
+			try {
+				recordLength = Integer.parseInt(decode(records, position,
+						space - position));
+			} catch (NumberFormatException e) {
+				throw new IOException("bad pax header record");
+			}
+			if (recordLength <= 0 || position + recordLength > records.length) {
+				throw new IOException("bad pax header record length");
+			}
+
+			String record = decode(records, space + 1, position + recordLength
+					- space - 2);
+			if (record.startsWith("path=")) {
+				path = record.substring(5);
+			}
+			position += recordLength;
+		}
+		return path;
+	}
+
+	private String headerName() throws IOException {
+		String name = field(0, 100);
+		String magic = field(257, 6);
+		if (magic.equals("ustar")) {
+			// posix ustar, not the gnu magic of "ustar  "
+			String prefix = field(345, 155);
+			if (prefix.length() > 0) {
+				name = prefix + "/" + name;
+			}
+		}
+		return name;
+	}
+
+	/**
+	 * Make a name relative, and remove a trailing slash.
+	 */
+	private static String trimName(final String name) throws IOException {
+		String trimmed = name;
+		int nul = trimmed.indexOf(0);
+		if (nul >= 0) {
+			trimmed = trimmed.substring(0, nul);
+		}
+		while (trimmed.startsWith("./") || trimmed.startsWith("/")) {
+			trimmed = trimmed.substring(trimmed.indexOf('/') + 1);
+		}
+		while (trimmed.endsWith("/")) {
+			trimmed = trimmed.substring(0, trimmed.length() - 1);
+		}
+		return trimmed;
+	}
+
+	private static String trimName(final byte[] name) throws IOException {
+		return trimName(decode(name, 0, name.length));
+	}
+
+	private String field(final int offset, final int length)
+			throws IOException {
+		int end = offset;
+		while (end < offset + length && header[end] != 0) {
+			end++;
+		}
+		return decode(header, offset, end - offset);
+	}
+
+	private long parseOctal(final int offset, final int length)
+			throws IOException {
+		if ((header[offset] & 0x80) != 0) {
+			// gnu base-256, for sizes too large for the octal digits
+			long value = header[offset] & 0x7f;
+			for (int i = offset + 1; i < offset + length; i++) {
+				value = (value << 8) | (header[i] & 0xff);
+			}
+			return value;
+		}
+
+		String digits = field(offset, length).trim();
+		if (digits.length() == 0) {
+			return 0;
+		}
+		try {
+			return Long.parseLong(digits, 8);
+		} catch (NumberFormatException e) {
+			throw new IOException("bad number in tar header:" + digits);
+		}
+	}
+
+	private void skipFully(final long length) throws IOException {
+		long remaining = length;
+		while (remaining > 0) {
+			int n = in.read(skipBuffer, 0, (int) Math.min(skipBuffer.length,
+					remaining));
+			if (n < 0) {
+				throw new EOFException("tar archive ends inside an entry");
+			}
+			remaining -= n;
+		}
+	}
+
+	private static long padded(final long length) {
+		return (length + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+	}
+
+	private static String decode(final byte[] bytes, final int offset,
+			final int length) throws IOException {
+		try {
+			return new String(bytes, offset, length, ENCODING);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException("no " + ENCODING + " encoding", e);
+		}
+	}
+
+}
@@ -0,0 +1,364 @@
+package org.irods.jargon.core.pub.io;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * <code>OutputStream</code> that writes a tar archive, in the ustar format
+ * read by the tar support of iRODS, to another stream as the entries are
+ * written, so an archive can be sent without first being made in a file.
+ * <p/>
+ * Each file is started with <code>putNextFileEntry()</code>, giving its size,
+ * then exactly that many bytes are written. A name too long for a ustar header
+ * is written with a GNU long name entry before the header.
+ * <p/>
+ * This class is not thread-safe.
+ */
+public final class TarOutputStream extends FilterOutputStream {
+
+	public static final int BLOCK_SIZE = 512;
+
+	/**
+	 * Largest size that fits in the eleven octal digits of a ustar header.
+	 */
+	public static final long MAX_ENTRY_LENGTH = 077777777777L;
+
+	private static final int NAME_LENGTH = 100;
+	private static final int PREFIX_LENGTH = 155;
+	private static final String LONG_NAME_ENTRY = "././@LongLink";
+	private static final String ENCODING = "UTF-8";
+
+	private static final byte TYPE_FILE = '0';
+	private static final byte TYPE_DIRECTORY = '5';
+	private static final byte TYPE_GNU_LONG_NAME = 'L';
+
+	private static final int FILE_MODE = 0644;
+	private static final int DIRECTORY_MODE = 0755;
+
+	private final byte[] header = new byte[BLOCK_SIZE];
+
+	/**
+	 * Bytes of the current entry not written yet, -1 between entries.
+	 */
+	private long entryRemaining = -1;
+	private long entryLength = 0;
+	private boolean finished = false;
+
+	/**
+	 * Get the bytes an entry takes in an archive, so archives can be made to a
+	 * size before they are written.
+	 *
+	 * @param name
+	 *            <code>String</code> with the relative path of the entry,
+	 *            ending with a <code>/</code> for a directory
+	 * @param length
+	 *            <code>long</code> with the size of the file, 0 for a
+	 *            directory
+	 * @return <code>long</code> with the bytes of the headers and the padded
+	 *         content
+	 */
+	public static long archivedLength(final String name, final long length) {
+		long archived = BLOCK_SIZE + padded(length);
+		byte[] nameBytes = encode(name);
+		if (splitName(nameBytes) < 0) {
+			archived += BLOCK_SIZE + padded(nameBytes.length + 1);
+		}
+		return archived;
+	}
+
+	/**
+	 * @return <code>long</code> with the bytes written by
+	 *         <code>finish()</code> after the last entry
+	 */
+	public static long trailerLength() {
+		return 2 * BLOCK_SIZE;
+	}
+
+	public TarOutputStream(final OutputStream out) {
+		super(out);
+		if (out == null) {
+			throw new IllegalArgumentException("null out");
+		}
+	}
+
+	/**
+	 * Start a file, whose content is written next.
+	 *
+	 * @param name
+	 *            <code>String</code> with the path of the file, relative to
+	 *            where the archive is extracted, using <code>/</code>
+	 * @param length
+	 *            <code>long</code> with the bytes that will be written
+	 * @param lastModified
+	 *            <code>long</code> with the modify time in milliseconds
+	 * @throws IOException
+	 *             if the last entry was not complete, or the name or length
+	 *             cannot be archived
+	 */
+	public void putNextFileEntry(final String name, final long length,
+			final long lastModified) throws IOException {
+		if (length < 0 || length > MAX_ENTRY_LENGTH) {
+			throw new IOException("cannot archive a length of:" + length
+					+ " for:" + name);
+		}
+		putNextEntry(checkName(name), TYPE_FILE, FILE_MODE, length,
+				lastModified);
+	}
+
+	/**
+	 * Add a directory, so it is made when the archive is extracted even if
+	 * no file is in it.
+	 *
+	 * @param name
+	 *            <code>String</code> with the path of the directory, relative
+	 *            to where the archive is extracted, using <code>/</code>
+	 * @param lastModified
+	 *            <code>long</code> with the modify time in milliseconds
+	 * @throws IOException
+	 *             if the last entry was not complete, or the name cannot be
+	 *             archived
+	 */
+	public void putDirectoryEntry(final String name, final long lastModified)
+			throws IOException {
+		String directoryName = checkName(name);
+		if (!directoryName.endsWith("/")) {
+			directoryName = directoryName + "/";
+		}
+		putNextEntry(directoryName, TYPE_DIRECTORY, DIRECTORY_MODE, 0,
+				lastModified);
+		closeEntry();
+	}
+
+	/**
+	 * End the current entry, padding it to a block.
+	 *
+	 * @throws IOException
+	 *             if fewer bytes were written than the length given for the
+	 *             entry
+	 */
+	public void closeEntry() throws IOException {
+		if (entryRemaining < 0) {
+			return;
+		}
+
+		if (entryRemaining > 0) {
+			throw new IOException("entry closed with " + entryRemaining
+					+ " of its bytes not written");
+		}
+
+		writePadding(entryLength);
+		entryRemaining = -1;
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		checkWritable(1);
+		out.write(b);
+		entryRemaining--;
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len)
+			throws IOException {
+		checkWritable(len);
+		out.write(b, off, len);
+		entryRemaining -= len;
+	}
+
+	/**
+	 * End the archive, without closing the stream it was written to.
+	 *
+	 * @throws IOException
+	 *             if the last entry was not complete
+	 */
+	public void finish() throws IOException {
+		if (finished) {
+			return;
+		}
+
+		closeEntry();
+		fill(header, 0, BLOCK_SIZE);
+		out.write(header);
+		out.write(header);
+		finished = true;
+	}
+
+	/**
+	 * End the archive and close the stream it was written to. The stream is
+	 * closed even if the archive could not be ended.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			finish();
+		} finally {
+			out.close();
+		}
+	}
+
+	private void checkWritable(final int len) throws IOException {
+		if (entryRemaining < 0) {
+			throw new IOException("no entry started");
+		}
+
+		if (len > entryRemaining) {
+			throw new IOException("write of " + len
+					+ " bytes is past the end of the entry, with "
+					+ entryRemaining + " left");
+		}
+	}
+
+	private String checkName(final String name) throws IOException {
+		if (finished) {
+			throw new IOException("archive already finished");
+		}
+
+		if (name == null || name.length() == 0 || name.startsWith("/")) {
+			throw new IOException("null, empty or absolute entry name:" + name);
+		}
+		return name;
+	}
+
+	private void putNextEntry(final String name, final byte type,
+			final int mode, final long length, final long lastModified)
+			throws IOException {
+		closeEntry();
+
+		byte[] nameBytes = encode(name);
+		int split = splitName(nameBytes);
+		if (split < 0) {
+			writeLongName(nameBytes);
+			// the header keeps what fits, the long name entry is used instead
+			split = 0;
+		}
+		writeHeader(nameBytes, split, type, mode, length, lastModified, false);
+
+		entryLength = length;
+		entryRemaining = length;
+	}
+
+	/**
+	 * Write a GNU long name entry, which holds the name of the entry after
+	 * it.
+	 */
+	private void writeLongName(final byte[] nameBytes) throws IOException {
+		byte[] longName = encode(LONG_NAME_ENTRY);
+		writeHeader(longName, 0, TYPE_GNU_LONG_NAME, FILE_MODE,
+				nameBytes.length + 1, 0, true);
+		out.write(nameBytes);
+		out.write(0);
+		writePadding(nameBytes.length + 1);
+	}
+
+	/**
+	 * Write a header. With a <code>split</code> of 0 the name field holds as
+	 * much of the name as fits, otherwise the prefix field holds the bytes
+	 * before the slash ending at <code>split</code>, and the name field those
+	 * after it.
+	 */
+	private void writeHeader(final byte[] nameBytes, final int split,
+			final byte type, final int mode, final long length,
+			final long lastModified, final boolean gnu) throws IOException {
+		fill(header, 0, BLOCK_SIZE);
+
+		if (split == 0) {
+			System.arraycopy(nameBytes, 0, header, 0, Math.min(
+					nameBytes.length, NAME_LENGTH));
+		} else {
+			System.arraycopy(nameBytes, split, header, 0, nameBytes.length
+					- split);
+			System.arraycopy(nameBytes, 0, header, 345, split - 1);
+		}
+
+		writeOctal(mode, 100, 8);
+		writeOctal(0, 108, 8);
+		writeOctal(0, 116, 8);
+		writeOctal(length, 124, 12);
+		writeOctal(lastModified / 1000, 136, 12);
+		header[156] = type;
+
+		byte[] magic = encode(gnu ? "ustar  " : "ustar\0" + "00");
+		System.arraycopy(magic, 0, header, 257, magic.length);
+
+		// the checksum is summed with its own field as spaces
+		for (int i = 148; i < 156; i++) {
+			header[i] = ' ';
+		}
+		long checksum = 0;
+		for (byte b : header) {
+			checksum += b & 0xff;
+		}
+		writeOctal(checksum, 148, 7);
+		header[155] = ' ';
+
+		out.write(header);
+	}
+
+	/**
+	 * Write a number as octal digits padded with zeros, ended with a NUL.
+	 */
+	private void writeOctal(final long value, final int offset,
+			final int length) {
+		String octal = Long.toOctalString(value);
+		int digits = length - 1;
+		int pad = digits - octal.length();
+		for (int i = 0; i < pad; i++) {
+			header[offset + i] = '0';
+		}
+		for (int i = 0; i < octal.length(); i++) {
+			header[offset + pad + i] = (byte) octal.charAt(i);
+		}
+		header[offset + digits] = 0;
+	}
+
+	private void writePadding(final long length) throws IOException {
+		int padding = (int) (padded(length) - length);
+		if (padding > 0) {
+			fill(header, 0, padding);
+			out.write(header, 0, padding);
+		}
+	}
+
+	private static long padded(final long length) {
+		return (length + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+	}
+
+	/**
+	 * Find where to split a name between the prefix and name fields of a
+	 * header.
+	 *
+	 * @return <code>int</code> with 0 if the name fits the name field, the
+	 *         index after the slash to split at, or -1 if it does not fit
+	 */
+	private static int splitName(final byte[] nameBytes) {
+		if (nameBytes.length <= NAME_LENGTH) {
+			return 0;
+		}
+
+		// the first slash that leaves a name short enough
+		for (int i = nameBytes.length - NAME_LENGTH - 1; i < nameBytes.length - 1; i++) {
+			if (nameBytes[i] == '/' && i > 0 && i <= PREFIX_LENGTH) {
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+
+	private static byte[] encode(final String value) {
+		try {
+			return value.getBytes(ENCODING);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException("no " + ENCODING + " encoding", e);
+		}
+	}
+
+	private static void fill(final byte[] bytes, final int offset,
+			final int length) {
+		for (int i = offset; i < offset + length; i++) {
+			bytes[i] = 0;
+		}
+	}
+
+}
@@ -0,0 +1,131 @@
+package org.irods.jargon.core.query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.irods.jargon.core.exception.JargonException;
+import org.irods.jargon.core.utils.IRODSDataConversionUtil;
+
+/**
+ * A query translated once, whose condition values are given as <code>?</code>
+ * , such as <code>select DATA_NAME where COLL_NAME = ?</code>. Values are bound
+ * to the parameters to give a {@link TranslatedIRODSQuery} to run, without
+ * parsing the query again. Created by
+ * {@link IRODSQueryTranslator#prepareQuery(IRODSQuery)}.
+ * <p/>
+ * This object is immutable, and is thread-safe.
+ */
+public final class IRODSPreparedQuery {
+
+	public static final String PARAMETER_MARKER = "?";
+
+	private final TranslatedIRODSQuery translatedIRODSQuery;
+
+	/**
+	 * Position in the conditions of the query of each parameter.
+	 */
+	private final int[] parameterConditions;
+
+	/**
+	 * @param translatedIRODSQuery
+	 *            {@link TranslatedIRODSQuery} with <code>?</code> as the value of
+	 *            the conditions to bind
+	 * @return <code>IRODSPreparedQuery</code>
+	 * @throws JargonException
+	 */
+	public static IRODSPreparedQuery instance(
+			final TranslatedIRODSQuery translatedIRODSQuery)
+			throws JargonException {
+		return new IRODSPreparedQuery(translatedIRODSQuery);
+	}
+
+	private IRODSPreparedQuery(final TranslatedIRODSQuery translatedIRODSQuery)
+			throws JargonException {
+		if (translatedIRODSQuery == null) {
+			throw new JargonException("null translatedIRODSQuery");
+		}
+
+		List<TranslatedQueryCondition> conditions = translatedIRODSQuery
+				.getTranslatedQueryConditions();
+		int parameterCount = 0;
+		for (TranslatedQueryCondition condition : conditions) {
+			if (PARAMETER_MARKER.equals(condition.getValue().trim())) {
+				parameterCount++;
+			}
+		}
+
+		this.parameterConditions = new int[parameterCount];
+		int parameter = 0;
+		for (int i = 0; i < conditions.size(); i++) {
+			if (PARAMETER_MARKER.equals(conditions.get(i).getValue().trim())) {
+				parameterConditions[parameter++] = i;
+			}
+		}
+
+		this.translatedIRODSQuery = translatedIRODSQuery;
+	}
+
+	/**
+	 * @return {@link TranslatedIRODSQuery} with <code>?</code> as the value of
+	 *         the conditions to bind.
+	 */
+	public TranslatedIRODSQuery getTranslatedIRODSQuery() {
+		return translatedIRODSQuery;
+	}
+
+	/**
+	 * @return <code>int</code> with the number of values to bind.
+	 */
+	public int getParameterCount() {
+		return parameterConditions.length;
+	}
+
+	/**
+	 * Bind values to the parameters of the query. Each value is quoted as a
+	 * single string, with any single quotes in it escaped.
+	 *
+	 * @param values
+	 *            <code>String</code> values, in the order of the parameters in
+	 *            the query
+	 * @return {@link TranslatedIRODSQuery} with the values in place of the
+	 *         parameters, which can be run.
+	 * @throws JargonException
+	 *             if the number of values is not the number of parameters, or
+	 *             a value is <code>null</code>
+	 */
+	public TranslatedIRODSQuery bind(final String... values)
+			throws JargonException {
+		if (values == null) {
+			throw new JargonException("null values");
+		}
+
+		if (values.length != parameterConditions.length) {
+			throw new JargonException("query has "
+					+ parameterConditions.length + " parameters, "
+					+ values.length + " values given");
+		}
+
+		List<TranslatedQueryCondition> conditions = new ArrayList<TranslatedQueryCondition>(
+				translatedIRODSQuery.getTranslatedQueryConditions());
+
+		try {
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] == null) {
+					throw new JargonException("null value for parameter:" + i);
+				}
+				int condition = parameterConditions[i];
+				conditions.set(condition, conditions.get(condition).withValue(
+						"'" + IRODSDataConversionUtil.escapeSingleQuotes(values[i])
+								+ "'"));
+			}
+		} catch (JargonQueryException e) {
+			throw new JargonException(e);
+		}
+
+		return TranslatedIRODSQuery.instanceWithGroupBy(translatedIRODSQuery
+				.getSelectFields(), conditions, translatedIRODSQuery
+				.getGroupByFields(), translatedIRODSQuery.getIrodsQuery(),
+				translatedIRODSQuery.isDistinct());
+	}
+
+}
@@ -0,0 +1,286 @@
+package org.irods.jargon.core.query;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.irods.jargon.core.exception.JargonException;
+
+/**
+ * Result set of an IRODS query held a column at a time, as the results come
+ * from the server, rather than as a row object per result. Rows are read by
+ * index, or through a {@link RowView} that is moved from row to row, so that
+ * large results do not create an object per row.
+ * <p/>
+ * Numeric columns, such as sizes and times, are parsed once, the first time a
+ * value in the column is asked for as a number, and kept. Apart from that the
+ * result set is immutable.
+ */
+public final class IRODSQueryColumnarResultSet {
+
+	private final TranslatedIRODSQuery translatedIRODSQuery;
+
+	/**
+	 * Values of each column, indexed by column and then row.
+	 */
+	private final String[][] columns;
+
+	/**
+	 * Values of each column parsed as numbers, <code>null</code> for columns
+	 * not yet asked for as numbers.
+	 */
+	private final long[][] numericColumns;
+
+	private final int rowCount;
+
+	private final int continuationIndex;
+
+	/**
+	 * @param translatedIRODSQuery
+	 *            {@link TranslatedIRODSQuery} the results are for
+	 * @param columns
+	 *            <code>String[][]</code> with the values of each selected
+	 *            column, indexed by column and then row, which the result set
+	 *            keeps
+	 * @param rowCount
+	 *            <code>int</code> with the number of rows
+	 * @param continuationIndex
+	 *            <code>int</code> with the index the server gave the query to
+	 *            continue it from, 0 if there are no more records
+	 * @return <code>IRODSQueryColumnarResultSet</code>
+	 * @throws JargonException
+	 */
+	public static IRODSQueryColumnarResultSet instance(
+			final TranslatedIRODSQuery translatedIRODSQuery,
+			final String[][] columns, final int rowCount,
+			final int continuationIndex) throws JargonException {
+		return new IRODSQueryColumnarResultSet(translatedIRODSQuery, columns,
+				rowCount, continuationIndex);
+	}
+
+	private IRODSQueryColumnarResultSet(
+			final TranslatedIRODSQuery translatedIRODSQuery,
+			final String[][] columns, final int rowCount,
+			final int continuationIndex) throws JargonException {
+
+		if (translatedIRODSQuery == null) {
+			throw new JargonException("translated IRODS query is null");
+		}
+
+		if (columns == null) {
+			throw new JargonException("columns is null");
+		}
+
+		if (rowCount < 0) {
+			throw new JargonException("rowCount is negative");
+		}
+
+		for (String[] column : columns) {
+			if (column == null || column.length < rowCount) {
+				throw new JargonException("column shorter than rowCount");
+			}
+		}
+
+		this.translatedIRODSQuery = translatedIRODSQuery;
+		this.columns = columns;
+		this.numericColumns = new long[columns.length][];
+		this.rowCount = rowCount;
+		this.continuationIndex = continuationIndex;
+	}
+
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	public int getNumberOfResultColumns() {
+		return columns.length;
+	}
+
+	public TranslatedIRODSQuery getTranslatedIRODSQuery() {
+		return translatedIRODSQuery;
+	}
+
+	public boolean isHasMoreRecords() {
+		return continuationIndex > 0;
+	}
+
+	/**
+	 * @return <code>int</code> with the index the server gave the query to
+	 *         continue it from, 0 if there are no more records.
+	 */
+	public int getContinuationIndex() {
+		return continuationIndex;
+	}
+
+	/**
+	 * @param columnName
+	 *            <code>String</code> with the name of a selected column, such
+	 *            as <code>DATA_SIZE</code>
+	 * @return <code>int</code> with the position of the column in the results
+	 * @throws JargonException
+	 *             if the column was not selected
+	 */
+	public int getColumnIndex(final String columnName) throws JargonException {
+		if (columnName == null || columnName.length() == 0) {
+			throw new JargonException("columnName is null or empty");
+		}
+
+		int idx = 0;
+		for (SelectField selectField : translatedIRODSQuery.getSelectFields()) {
+			if (selectField.getSelectFieldColumnName().equalsIgnoreCase(
+					columnName)) {
+				return idx;
+			}
+			idx++;
+		}
+
+		throw new JargonException("column name not found in result set:"
+				+ columnName);
+	}
+
+	/**
+	 * @return <code>List</code> of <code>String</code>, which cannot be
+	 *         changed, with the value of a column in each row
+	 * @throws JargonException
+	 */
+	public List<String> getColumnValues(final int column)
+			throws JargonException {
+		checkColumn(column);
+		return Collections.unmodifiableList(Arrays.asList(columns[column])
+				.subList(0, rowCount));
+	}
+
+	public String getString(final int row, final int column)
+			throws JargonException {
+		checkColumn(column);
+		checkRow(row);
+		return columns[column][row];
+	}
+
+	/**
+	 * @return <code>long</code> with a value parsed as a number, 0 if the
+	 *         value is empty
+	 * @throws JargonException
+	 *             if a value in the column is not a number
+	 */
+	public long getLong(final int row, final int column)
+			throws JargonException {
+		checkColumn(column);
+		checkRow(row);
+		return getNumericColumn(column)[row];
+	}
+
+	/**
+	 * @return <code>Date</code> of a time value, which IRODS keeps as seconds
+	 *         since the epoch, the epoch if the value is empty
+	 * @throws JargonException
+	 *             if a value in the column is not a number
+	 */
+	public Date getDate(final int row, final int column)
+			throws JargonException {
+		return new Date(getLong(row, column) * 1000L);
+	}
+
+	/**
+	 * @return a new {@link RowView} positioned at the first row, which can be
+	 *         moved to any row
+	 */
+	public RowView rowView() {
+		return new RowView();
+	}
+
+	private long[] getNumericColumn(final int column) throws JargonException {
+		synchronized (numericColumns) {
+			if (numericColumns[column] == null) {
+				long[] values = new long[rowCount];
+				for (int i = 0; i < rowCount; i++) {
+					String value = columns[column][i];
+					if (value == null || value.length() == 0) {
+						continue;
+					}
+					try {
+						values[i] = Long.parseLong(value.trim());
+					} catch (NumberFormatException nfe) {
+						throw new JargonException("value in column " + column
+								+ " is not a number:" + value, nfe);
+					}
+				}
+				numericColumns[column] = values;
+			}
+			return numericColumns[column];
+		}
+	}
+
+	private void checkColumn(final int column) throws JargonException {
+		if (column < 0 || column >= columns.length) {
+			throw new JargonException("column out of range");
+		}
+	}
+
+	private void checkRow(final int row) throws JargonException {
+		if (row < 0 || row >= rowCount) {
+			throw new JargonException("row out of range");
+		}
+	}
+
+	/**
+	 * A row of the result set, which reads the values of the row from the
+	 * columns, and can be moved to another row rather than creating a new
+	 * view for each row.
+	 */
+	public final class RowView {
+
+		private int row = 0;
+
+		private RowView() {
+		}
+
+		public int getRow() {
+			return row;
+		}
+
+		/**
+		 * @param row
+		 *            <code>int</code> with the row to view
+		 * @throws JargonException
+		 *             if the row is out of range
+		 */
+		public void setRow(final int row) throws JargonException {
+			checkRow(row);
+			this.row = row;
+		}
+
+		/**
+		 * Move to the next row.
+		 *
+		 * @return <code>false</code> if this view is at the last row, in which
+		 *         case it is not moved
+		 */
+		public boolean next() {
+			if (row + 1 >= rowCount) {
+				return false;
+			}
+			row++;
+			return true;
+		}
+
+		public String getColumn(final int column) throws JargonException {
+			return getString(row, column);
+		}
+
+		public String getColumn(final String columnName)
+				throws JargonException {
+			return getString(row, getColumnIndex(columnName));
+		}
+
+		public long getLong(final int column) throws JargonException {
+			return IRODSQueryColumnarResultSet.this.getLong(row, column);
+		}
+
+		public Date getDate(final int column) throws JargonException {
+			return IRODSQueryColumnarResultSet.this.getDate(row, column);
+		}
+	}
+
+}
@@ -22,7 +22,7 @@ public class IRODSQueryResultSet {
 			final List<IRODSQueryResultRow> results,
 			final boolean hasMoreRecords) throws JargonException {
 		return new IRODSQueryResultSet(translatedIRODSQuery, results,
-				hasMoreRecords);
+				hasMoreRecords, 0);
 	}
 
 	public static IRODSQueryResultSet instance(
@@ -32,11 +32,14 @@ public class IRODSQueryResultSet {
 
 		boolean hasMore = (continuationIndex > 0);
 
-		return new IRODSQueryResultSet(translatedIRODSQuery, results, hasMore);
+		return new IRODSQueryResultSet(translatedIRODSQuery, results, hasMore,
+				continuationIndex);
 	}
 
 	private final boolean hasMoreRecords;
 
+	private final int continuationIndex;
+
 	private final List<IRODSQueryResultRow> results;
 
 	private final TranslatedIRODSQuery translatedIRODSQuery;
@@ -44,7 +47,8 @@ public class IRODSQueryResultSet {
 	private IRODSQueryResultSet(
 			final TranslatedIRODSQuery translatedIRODSQuery,
 			final List<IRODSQueryResultRow> results,
-			final boolean hasMoreRecords) throws JargonException {
+			final boolean hasMoreRecords, final int continuationIndex)
+			throws JargonException {
 
 		if (translatedIRODSQuery == null) {
 			throw new JargonException("translated IRODS query is null");
@@ -57,6 +61,7 @@ public class IRODSQueryResultSet {
 		this.translatedIRODSQuery = translatedIRODSQuery;
 		this.results = results;
 		this.hasMoreRecords = hasMoreRecords;
+		this.continuationIndex = continuationIndex;
 	}
 
 	public IRODSQueryResultRow getFirstResult() throws DataNotFoundException {
@@ -100,4 +105,12 @@ public class IRODSQueryResultSet {
 		return hasMoreRecords;
 	}
 
+	/**
+	 * @return <code>int</code> with the index the server gave the query to
+	 *         continue it from, 0 if there are no more records.
+	 */
+	public int getContinuationIndex() {
+		return continuationIndex;
+	}
+
 }
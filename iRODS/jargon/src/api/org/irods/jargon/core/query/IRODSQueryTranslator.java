@@ -4,7 +4,9 @@
 package org.irods.jargon.core.query;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
 
 import org.irods.jargon.core.connection.IRODSServerProperties;
@@ -17,6 +19,14 @@ import org.slf4j.LoggerFactory;
  * Translate an IRODSQuery posed as a <code>String</code> query statement (as in
  * iquery) into a format that IRODS understands see
  * lib/core/include/rodsGenQueryNames.h
+ * <p/>
+ * Translations of queries without an extensible meta-data mapping are kept in
+ * a cache, shared by all translators, keyed by the query string and the
+ * release and API version of the server, so a query asked again is not parsed
+ * again. The cache holds the most recently used
+ * {@link #getTranslatedQueryCacheSize()} queries. Queries that differ only in
+ * their condition values can instead be prepared once with
+ * {@link #prepareQuery(IRODSQuery)}.
  * 
  * @author Mike Conway - DICE (www.irods.org)
  */
@@ -27,6 +37,24 @@ public class IRODSQueryTranslator {
 			.getLogger(IRODSQueryTranslator.class);
 	private ExtensibleMetaDataMapping extensibleMetaDataMapping = null;
 
+	public static final int DEFAULT_TRANSLATED_QUERY_CACHE_SIZE = 256;
+
+	private static int translatedQueryCacheSize = DEFAULT_TRANSLATED_QUERY_CACHE_SIZE;
+
+	/**
+	 * Translated queries, most recently used last, guarded by itself.
+	 */
+	private static final Map<String, TranslatedIRODSQuery> translatedQueryCache = new LinkedHashMap<String, TranslatedIRODSQuery>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(
+				final Map.Entry<String, TranslatedIRODSQuery> eldest) {
+			return size() > translatedQueryCacheSize;
+		}
+	};
+
 	public static String[] operatorStrings = { "=", "<>", "<", ">", "<=", ">=",
 			"in", "not in", "between", "not between", "like", "not like",
 			"sounds like", "sounds not like", "TABLE", "num<", "num>", "num<=",
@@ -89,6 +117,102 @@ public class IRODSQueryTranslator {
 	 */
 	public TranslatedIRODSQuery getTranslatedQuery(final IRODSQuery irodsQuery)
 			throws JargonQueryException, JargonException {
+		if (irodsQuery == null) {
+			throw new JargonException("null irodsQuery");
+		}
+
+		if (extensibleMetaDataMapping != null) {
+			// the mapping can change, so these are not cached
+			return translateQuery(irodsQuery);
+		}
+
+		String cacheKey = irodsServerProperties.getRelVersion() + ' '
+				+ irodsServerProperties.getApiVersion() + ' '
+				+ irodsQuery.getQueryString();
+		TranslatedIRODSQuery cached;
+		synchronized (translatedQueryCache) {
+			cached = translatedQueryCache.get(cacheKey);
+		}
+
+		if (cached == null) {
+			TranslatedIRODSQuery translatedIRODSQuery = translateQuery(irodsQuery);
+			synchronized (translatedQueryCache) {
+				translatedQueryCache.put(cacheKey, translatedIRODSQuery);
+			}
+			return translatedIRODSQuery;
+		}
+
+		if (log.isDebugEnabled()) {
+			log.debug("translated query found in cache:" + cacheKey);
+		}
+
+		if (cached.getIrodsQuery() == irodsQuery) {
+			return cached;
+		}
+
+		// the translation is immutable, the query carries the rows desired
+		return TranslatedIRODSQuery.instanceWithGroupBy(cached
+				.getSelectFields(), cached.getTranslatedQueryConditions(),
+				cached.getGroupByFields(), irodsQuery, cached.isDistinct());
+	}
+
+	/**
+	 * Translate a query whose condition values are given as <code>?</code>,
+	 * such as <code>select DATA_NAME where COLL_NAME = ?</code>, so that it can
+	 * be run with different values without parsing it again.
+	 * 
+	 * @param irodsQuery
+	 *            {@link org.irods.jargon.core.query.IRODSQuery} with
+	 *            <code>?</code> in place of condition values
+	 * @return {@link org.irods.jargon.core.query.IRODSPreparedQuery} to bind
+	 *         the values to
+	 * @throws JargonQueryException
+	 * @throws JargonException
+	 */
+	public IRODSPreparedQuery prepareQuery(final IRODSQuery irodsQuery)
+			throws JargonQueryException, JargonException {
+		return IRODSPreparedQuery.instance(getTranslatedQuery(irodsQuery));
+	}
+
+	/**
+	 * @return <code>int</code> with the number of translated queries kept in
+	 *         the cache.
+	 */
+	public static int getTranslatedQueryCacheSize() {
+		synchronized (translatedQueryCache) {
+			return translatedQueryCacheSize;
+		}
+	}
+
+	/**
+	 * Set the number of translated queries kept in the cache, 0 to keep none.
+	 * 
+	 * @param size
+	 *            <code>int</code> with the number of queries to keep
+	 */
+	public static void setTranslatedQueryCacheSize(final int size) {
+		if (size < 0) {
+			throw new IllegalArgumentException("negative cache size");
+		}
+		synchronized (translatedQueryCache) {
+			translatedQueryCacheSize = size;
+			if (translatedQueryCache.size() > size) {
+				translatedQueryCache.clear();
+			}
+		}
+	}
+
+	/**
+	 * Drop all translated queries from the cache.
+	 */
+	public static void clearTranslatedQueryCache() {
+		synchronized (translatedQueryCache) {
+			translatedQueryCache.clear();
+		}
+	}
+
+	private TranslatedIRODSQuery translateQuery(final IRODSQuery irodsQuery)
+			throws JargonQueryException, JargonException {
 		List<String> selects = parseSelectsIntoListOfNames(irodsQuery
 				.getQueryString());
 
@@ -0,0 +1,188 @@
+package org.irods.jargon.core.query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.irods.jargon.core.exception.JargonException;
+import org.irods.jargon.core.utils.IRODSDataConversionUtil;
+
+/**
+ * One part of a query split by a key, given as conditions that are added to
+ * the conditions of the query, such as
+ * <code>DATA_ID >= '1000' and DATA_ID < '2000'</code> or
+ * <code>COLL_NAME like '/zone/home/a%'</code>. The partitions of a query
+ * should not overlap, so that each row is read by one partition.
+ * <p/>
+ * This object is immutable, and is thread-safe.
+ */
+public final class QueryPartition {
+
+	private final String name;
+	private final String conditions;
+
+	/**
+	 * @param name
+	 *            <code>String</code> naming the partition in progress and log
+	 *            messages
+	 * @param conditions
+	 *            <code>String</code> with the conditions, in iquest form, that
+	 *            select the rows of this partition
+	 * @return <code>QueryPartition</code>
+	 * @throws JargonException
+	 */
+	public static QueryPartition instance(final String name,
+			final String conditions) throws JargonException {
+		return new QueryPartition(name, conditions);
+	}
+
+	/**
+	 * Partition of the rows whose numeric key, such as <code>DATA_ID</code>,
+	 * is from <code>fromInclusive</code> up to but not including
+	 * <code>toExclusive</code>.
+	 *
+	 * @param field
+	 *            {@link RodsGenQueryEnum} with the key
+	 * @param fromInclusive
+	 *            <code>long</code> with the first key of the partition
+	 * @param toExclusive
+	 *            <code>long</code> with the key after the last of the
+	 *            partition
+	 * @return <code>QueryPartition</code>
+	 * @throws JargonException
+	 */
+	public static QueryPartition instanceForRange(
+			final RodsGenQueryEnum field, final long fromInclusive,
+			final long toExclusive) throws JargonException {
+		if (field == null) {
+			throw new JargonException("null field");
+		}
+
+		if (toExclusive <= fromInclusive) {
+			throw new JargonException("empty range");
+		}
+
+		return new QueryPartition(field.getName() + "[" + fromInclusive + ","
+				+ toExclusive + ")", field.getName() + " >= '" + fromInclusive
+				+ "' and " + field.getName() + " < '" + toExclusive + "'");
+	}
+
+	/**
+	 * Partition of the rows whose key, such as <code>COLL_NAME</code>, starts
+	 * with the given prefix.
+	 *
+	 * @param field
+	 *            {@link RodsGenQueryEnum} with the key
+	 * @param prefix
+	 *            <code>String</code> the key starts with
+	 * @return <code>QueryPartition</code>
+	 * @throws JargonException
+	 */
+	public static QueryPartition instanceForPrefix(
+			final RodsGenQueryEnum field, final String prefix)
+			throws JargonException {
+		if (field == null) {
+			throw new JargonException("null field");
+		}
+
+		if (prefix == null) {
+			throw new JargonException("null prefix");
+		}
+
+		return new QueryPartition(field.getName() + ":" + prefix, field
+				.getName()
+				+ " like '"
+				+ IRODSDataConversionUtil.escapeSingleQuotes(prefix) + "%'");
+	}
+
+	/**
+	 * Split the numeric keys from <code>minimum</code> to <code>maximum</code>
+	 * into ranges of about the same size, such as the lowest and highest
+	 * <code>DATA_ID</code> of a zone, which can be found with a query of
+	 * <code>MIN(DATA_ID)</code> and <code>MAX(DATA_ID)</code>.
+	 *
+	 * @param field
+	 *            {@link RodsGenQueryEnum} with the key
+	 * @param minimum
+	 *            <code>long</code> with the lowest key
+	 * @param maximum
+	 *            <code>long</code> with the highest key, which is in the last
+	 *            range
+	 * @param count
+	 *            <code>int</code> with the number of ranges wanted, fewer are
+	 *            returned if there are fewer keys
+	 * @return <code>List</code> of <code>QueryPartition</code> in key order
+	 * @throws JargonException
+	 */
+	public static List<QueryPartition> rangePartitions(
+			final RodsGenQueryEnum field, final long minimum,
+			final long maximum, final int count) throws JargonException {
+		if (count < 1) {
+			throw new JargonException("count must be at least 1");
+		}
+
+		if (maximum < minimum || maximum == Long.MAX_VALUE) {
+			throw new JargonException("invalid key range");
+		}
+
+		long keys = maximum - minimum + 1;
+		int ranges = (int) Math.min(count, keys);
+		List<QueryPartition> partitions = new ArrayList<QueryPartition>(
+				ranges);
+		long from = minimum;
+		for (int i = 0; i < ranges; i++) {
+			// spread the remainder over the first ranges
+			long size = keys / ranges + (i < keys % ranges ? 1 : 0);
+			partitions.add(instanceForRange(field, from, from + size));
+			from += size;
+		}
+		return partitions;
+	}
+
+	private QueryPartition(final String name, final String conditions)
+			throws JargonException {
+		if (name == null || name.length() == 0) {
+			throw new JargonException("null or empty name");
+		}
+
+		if (conditions == null || conditions.trim().length() == 0) {
+			throw new JargonException("null or empty conditions");
+		}
+
+		this.name = name;
+		this.conditions = conditions.trim();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getConditions() {
+		return conditions;
+	}
+
+	/**
+	 * @param queryString
+	 *            <code>String</code> with an iquest-like query
+	 * @return <code>String</code> with the query, with the conditions of this
+	 *         partition added to its conditions
+	 * @throws JargonException
+	 */
+	public String addToQuery(final String queryString) throws JargonException {
+		if (queryString == null || queryString.length() == 0) {
+			throw new JargonException("null or empty queryString");
+		}
+
+		// where is found the way the translator finds it
+		if (queryString.indexOf(" WHERE ") != -1
+				|| queryString.indexOf(" where ") != -1) {
+			return queryString + " and " + conditions;
+		}
+		return queryString + " where " + conditions;
+	}
+
+	@Override
+	public String toString() {
+		return "QueryPartition " + name + ":" + conditions;
+	}
+
+}
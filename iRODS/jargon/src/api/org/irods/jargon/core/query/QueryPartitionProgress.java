@@ -0,0 +1,69 @@
+package org.irods.jargon.core.query;
+
+/**
+ * Progress of one partition of a partitioned query scan, as it was when asked
+ * for.
+ * <p/>
+ * This object is immutable, and is thread-safe.
+ */
+public final class QueryPartitionProgress {
+
+	public enum State {
+		WAITING, RUNNING, DONE, FAILED, CANCELLED
+	}
+
+	private final QueryPartition queryPartition;
+	private final State state;
+	private final long rowsRead;
+	private final int pagesRead;
+
+	public static QueryPartitionProgress instance(
+			final QueryPartition queryPartition, final State state,
+			final long rowsRead, final int pagesRead) {
+		return new QueryPartitionProgress(queryPartition, state, rowsRead,
+				pagesRead);
+	}
+
+	private QueryPartitionProgress(final QueryPartition queryPartition,
+			final State state, final long rowsRead, final int pagesRead) {
+		if (queryPartition == null) {
+			throw new IllegalArgumentException("null queryPartition");
+		}
+
+		if (state == null) {
+			throw new IllegalArgumentException("null state");
+		}
+
+		this.queryPartition = queryPartition;
+		this.state = state;
+		this.rowsRead = rowsRead;
+		this.pagesRead = pagesRead;
+	}
+
+	public QueryPartition getQueryPartition() {
+		return queryPartition;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * @return <code>long</code> with the number of rows read from the server,
+	 *         which may not all have been handed out yet.
+	 */
+	public long getRowsRead() {
+		return rowsRead;
+	}
+
+	public int getPagesRead() {
+		return pagesRead;
+	}
+
+	@Override
+	public String toString() {
+		return "QueryPartitionProgress " + queryPartition.getName() + " "
+				+ state + " rows:" + rowsRead + " pages:" + pagesRead;
+	}
+
+}
@@ -147,13 +147,26 @@ public class TranslatedQueryCondition {
 		}
 
 		this.columnName = fieldName;
-		this.fieldSource = SelectField.SelectFieldSource.DEFINED_QUERY_FIELD;
+		this.fieldSource = fieldSource;
 		this.operator = operator;
 		this.value = value;
 		this.columnNumericTranslation = columnNumericTranslation;
 
 	}
 
+	/**
+	 * @param value
+	 *            <code>String</code> with the value component of the condition.
+	 * @return <code>TranslatedQueryCondition</code> with the same field and
+	 *         operator as this one, and the given value.
+	 * @throws JargonQueryException
+	 */
+	TranslatedQueryCondition withValue(final String value)
+			throws JargonQueryException {
+		return new TranslatedQueryCondition(columnName, fieldSource,
+				columnNumericTranslation, operator, value);
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder b = new StringBuilder();
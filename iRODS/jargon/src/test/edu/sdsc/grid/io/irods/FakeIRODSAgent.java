@@ -0,0 +1,173 @@
+package edu.sdsc.grid.io.irods;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import edu.sdsc.grid.io.Base64;
+
+/**
+ * Plays an iRODS agent for tests: accepts one connection, answers the startup
+ * packet, the password challenge and the server info request, then answers
+ * each other request with the next of the replies queued by
+ * {@link #addReply(String, String, int, int) addReply()}.
+ */
+class FakeIRODSAgent {
+
+	private static final Pattern HEADER_VALUE = Pattern
+			.compile("<(type|msgLen|errorLen|bsLen|intInfo)>(.*?)</\\1>");
+
+	private final ServerSocket serverSocket;
+	private final LinkedList<byte[]> replies = new LinkedList<byte[]>();
+	private final List<Throwable> errors = new ArrayList<Throwable>();
+	private volatile Socket socket;
+	private volatile boolean closed = false;
+	private Thread acceptThread;
+
+	static FakeIRODSAgent instance() throws IOException {
+		FakeIRODSAgent agent = new FakeIRODSAgent();
+		agent.start();
+		return agent;
+	}
+
+	private FakeIRODSAgent() throws IOException {
+		this.serverSocket = new ServerSocket(0);
+	}
+
+	IRODSAccount getAccount() {
+		return new IRODSAccount("localhost", serverSocket.getLocalPort(),
+				"test1", "test", "/test1/home/test1", "test1", "");
+	}
+
+	/**
+	 * Queue a reply with the given body and error, each <code>null</code> for
+	 * none, followed by a byte stream of <code>bytesLength</code> bytes.
+	 */
+	void addReply(final String message, final String error,
+			final int bytesLength, final int info) {
+		synchronized (replies) {
+			replies.add(reply(message, error, bytesLength, info));
+		}
+	}
+
+	private static byte[] reply(final String message, final String error,
+			final int bytesLength, final int info) {
+		String body = message == null ? "" : message;
+		String errorBody = error == null ? "" : error;
+		String header = "<MsgHeader_PI><type>RODS_API_REPLY</type><msgLen>"
+				+ body.length() + "</msgLen><errorLen>" + errorBody.length()
+				+ "</errorLen><bsLen>" + bytesLength + "</bsLen><intInfo>"
+				+ info + "</intInfo></MsgHeader_PI>\n";
+		byte[] bytes = new byte[4 + header.length() + body.length()
+				+ errorBody.length() + bytesLength];
+		int length = header.length();
+		bytes[0] = (byte) (length >>> 24);
+		bytes[1] = (byte) (length >>> 16);
+		bytes[2] = (byte) (length >>> 8);
+		bytes[3] = (byte) length;
+		String text = header + body + errorBody;
+		for (int i = 0; i < text.length(); i++) {
+			bytes[4 + i] = (byte) text.charAt(i);
+		}
+		return bytes;
+	}
+
+	private void start() {
+		acceptThread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					socket = serverSocket.accept();
+					serve(socket);
+				} catch (Throwable e) {
+					if (!closed) {
+						synchronized (errors) {
+							errors.add(e);
+						}
+					}
+				}
+			}
+		});
+		acceptThread.setDaemon(true);
+		acceptThread.start();
+	}
+
+	private void serve(final Socket socket) throws IOException {
+		DataInputStream in = new DataInputStream(socket.getInputStream());
+		DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+		while (true) {
+			byte[] header = new byte[in.readInt()];
+			in.readFully(header);
+			String type = null;
+			int skip = 0;
+			int api = 0;
+			Matcher matcher = HEADER_VALUE.matcher(new String(header, "UTF-8"));
+			while (matcher.find()) {
+				if (matcher.group(1).equals("type")) {
+					type = matcher.group(2);
+				} else if (matcher.group(1).equals("intInfo")) {
+					api = Integer.parseInt(matcher.group(2));
+				} else {
+					skip += Integer.parseInt(matcher.group(2));
+				}
+			}
+			in.readFully(new byte[skip]);
+
+			if ("RODS_DISCONNECT".equals(type)) {
+				socket.close();
+				return;
+			} else if ("RODS_CONNECT".equals(type)) {
+				out.write(reply("<Version_PI><status>0</status>\n"
+						+ "<relVersion>rods2.5</relVersion>\n"
+						+ "<apiVersion>d</apiVersion>\n"
+						+ "<reconnPort>0</reconnPort>\n"
+						+ "<reconnAddr></reconnAddr>\n"
+						+ "<cookie>0</cookie>\n</Version_PI>\n", null, 0, 0));
+			} else if (api == IRODSConstants.AUTH_REQUEST_AN) {
+				out.write(reply("<authRequestOut_PI><challenge>"
+						+ Base64.toString(new byte[64])
+						+ "</challenge>\n</authRequestOut_PI>\n", null, 0, 0));
+			} else if (api == IRODSConstants.AUTH_RESPONSE_AN) {
+				out.write(reply(null, null, 0, 0));
+			} else if (api == IRODSConstants.GET_MISC_SVR_INFO_AN) {
+				out.write(reply("<MiscSvrInfo_PI><serverType>1</serverType>\n"
+						+ "<serverBootTime>1225230863</serverBootTime>\n"
+						+ "<relVersion>rods2.5</relVersion>\n"
+						+ "<apiVersion>d</apiVersion>\n"
+						+ "<rodsZone>test1</rodsZone>\n</MiscSvrInfo_PI>\n",
+						null, 0, 0));
+			} else {
+				byte[] reply;
+				synchronized (replies) {
+					reply = replies.removeFirst();
+				}
+				out.write(reply);
+			}
+			out.flush();
+		}
+	}
+
+	/**
+	 * @return <code>List</code> of the errors seen by the agent
+	 */
+	List<Throwable> getErrors() {
+		synchronized (errors) {
+			return new ArrayList<Throwable>(errors);
+		}
+	}
+
+	void close() throws IOException {
+		closed = true;
+		serverSocket.close();
+		if (socket != null) {
+			socket.close();
+		}
+	}
+
+}
@@ -0,0 +1,235 @@
+package edu.sdsc.grid.io.irods;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plays the server side of an iRODS parallel transfer for tests: accepts a
+ * socket per stripe, checks the cookie, asks for two ranges of the stripe's
+ * share of the file, as iRODS does, then sends DONE_OPR. The file contents are
+ * the pattern given by {@link #expectedByte(long) expectedByte()}.
+ */
+class FakeParallelTransferServer {
+
+	static final int COOKIE = 424242;
+
+	private static final int PATTERN_LENGTH = 1024 * 1024 + 7;
+	private static final byte[] PATTERN = new byte[PATTERN_LENGTH];
+	static {
+		for (int i = 0; i < PATTERN_LENGTH; i++) {
+			PATTERN[i] = (byte) (i * 13 + i / 251);
+		}
+	}
+
+	private final ServerSocket serverSocket;
+	private final int stripes;
+	private final int operation;
+	private final long length;
+	private final boolean silent;
+	private final boolean failing;
+	private final List<Throwable> errors = new ArrayList<Throwable>();
+	private final List<Socket> sockets = new ArrayList<Socket>();
+	private Thread acceptThread;
+
+	/**
+	 * Serve a get or put of <code>length</code> bytes over
+	 * <code>stripes</code> sockets.
+	 */
+	static FakeParallelTransferServer instance(final int stripes,
+			final int operation, final long length) throws IOException {
+		FakeParallelTransferServer server = new FakeParallelTransferServer(
+				stripes, operation, length, false, false);
+		server.start();
+		return server;
+	}
+
+	/**
+	 * Serve a get of <code>length</code> bytes, but close each socket half way
+	 * through its second range.
+	 */
+	static FakeParallelTransferServer failing(final int stripes,
+			final long length) throws IOException {
+		FakeParallelTransferServer server = new FakeParallelTransferServer(
+				stripes, IRODSConstants.GET_OPR, length, false, true);
+		server.start();
+		return server;
+	}
+
+	/**
+	 * Accept <code>stripes</code> sockets but never send a header.
+	 */
+	static FakeParallelTransferServer silent(final int stripes)
+			throws IOException {
+		FakeParallelTransferServer server = new FakeParallelTransferServer(
+				stripes, 0, 0, true, false);
+		server.start();
+		return server;
+	}
+
+	private FakeParallelTransferServer(final int stripes, final int operation,
+			final long length, final boolean silent, final boolean failing)
+			throws IOException {
+		this.serverSocket = new ServerSocket(0);
+		this.stripes = stripes;
+		this.operation = operation;
+		this.length = length;
+		this.silent = silent;
+		this.failing = failing;
+	}
+
+	static byte expectedByte(final long position) {
+		return PATTERN[(int) (position % PATTERN_LENGTH)];
+	}
+
+	/**
+	 * Fill <code>buffer</code> with the pattern starting at
+	 * <code>position</code>.
+	 */
+	static void fill(final byte[] buffer, final int count, final long position) {
+		int patternOffset = (int) (position % PATTERN_LENGTH);
+		int filled = 0;
+		while (filled < count) {
+			int n = Math.min(count - filled, PATTERN_LENGTH - patternOffset);
+			System.arraycopy(PATTERN, patternOffset, buffer, filled, n);
+			filled += n;
+			patternOffset = 0;
+		}
+	}
+
+	int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	private void start() {
+		acceptThread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					List<Thread> handlers = new ArrayList<Thread>();
+					for (int i = 0; i < stripes; i++) {
+						final Socket socket = serverSocket.accept();
+						synchronized (sockets) {
+							sockets.add(socket);
+						}
+						if (silent) {
+							continue;
+						}
+						final int stripe = i;
+						Thread handler = new Thread(new Runnable() {
+							public void run() {
+								try {
+									serveStripe(socket, stripe);
+								} catch (Throwable e) {
+									addError(e);
+								}
+							}
+						});
+						handler.start();
+						handlers.add(handler);
+					}
+					for (Thread handler : handlers) {
+						handler.join();
+					}
+				} catch (Throwable e) {
+					addError(e);
+				}
+			}
+		});
+		acceptThread.setDaemon(true);
+		acceptThread.start();
+	}
+
+	private void addError(final Throwable e) {
+		synchronized (errors) {
+			errors.add(e);
+		}
+	}
+
+	private void serveStripe(final Socket socket, final int stripe)
+			throws IOException {
+		DataInputStream in = new DataInputStream(socket.getInputStream());
+		DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+		int cookie = in.readInt();
+		if (cookie != COOKIE) {
+			throw new IOException("bad cookie:" + cookie);
+		}
+
+		long share = length / stripes;
+		long start = share * stripe;
+		long end = stripe == stripes - 1 ? length : start + share;
+		long middle = start + (end - start) / 2;
+		long[][] ranges = { { start, middle }, { middle, end } };
+		byte[] buffer = new byte[64 * 1024];
+		byte[] expected = new byte[buffer.length];
+
+		for (int r = 0; r < ranges.length; r++) {
+			long[] range = ranges[r];
+			writeHeader(out, operation, range[0], range[1] - range[0]);
+			long position = range[0];
+			long stop = range[1];
+			if (failing && r == 1) {
+				stop = range[0] + (range[1] - range[0]) / 2;
+			}
+			while (position < stop) {
+				int n = (int) Math.min(buffer.length, stop - position);
+				if (operation == IRODSConstants.GET_OPR) {
+					fill(buffer, n, position);
+					out.write(buffer, 0, n);
+				} else {
+					in.readFully(buffer, 0, n);
+					fill(expected, n, position);
+					for (int i = 0; i < n; i++) {
+						if (buffer[i] != expected[i]) {
+							throw new IOException("put byte " + (position + i)
+									+ " differs");
+						}
+					}
+				}
+				position += n;
+			}
+			out.flush();
+			if (position < range[1]) {
+				socket.close();
+				return;
+			}
+		}
+		writeHeader(out, IRODSConstants.DONE_OPR, 0, 0);
+		socket.close();
+	}
+
+	private static void writeHeader(final DataOutputStream out,
+			final int operation, final long offset, final long length)
+			throws IOException {
+		out.writeInt(operation);
+		out.writeInt(0);
+		out.writeLong(offset);
+		out.writeLong(length);
+		out.flush();
+	}
+
+	/**
+	 * Wait for every stripe to be served.
+	 *
+	 * @return <code>List</code> of the errors seen by the server
+	 */
+	List<Throwable> join() throws InterruptedException {
+		acceptThread.join();
+		synchronized (errors) {
+			return new ArrayList<Throwable>(errors);
+		}
+	}
+
+	void close() throws IOException {
+		serverSocket.close();
+		synchronized (sockets) {
+			for (Socket socket : sockets) {
+				socket.close();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,127 @@
+package edu.sdsc.grid.io.irods;
+
+import java.util.Arrays;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class IRODSBlockCacheTest {
+
+	private static final String PATH = "localhost:1247/zone/home/test/blockCacheTest.dat";
+	private static final int BLOCK_SIZE = 100;
+
+	private static byte[] block(final int length, final int fill) {
+		byte[] data = new byte[length];
+		Arrays.fill(data, (byte) fill);
+		return data;
+	}
+
+	@Test
+	public void testGetReturnsPutBlock() throws Exception {
+		IRODSBlockCache cache = IRODSBlockCache.instance(1000);
+		byte[] data = block(BLOCK_SIZE, 1);
+		cache.put(PATH, "", 3, data);
+		Assert.assertSame(data, cache.get(PATH, "", 3));
+		Assert.assertNull(cache.get(PATH, "", 4));
+		Assert.assertEquals(BLOCK_SIZE, cache.getBytesHeld());
+	}
+
+	@Test
+	public void testReplicasAreSeparate() throws Exception {
+		IRODSBlockCache cache = IRODSBlockCache.instance(1000);
+		cache.put(PATH, "resc1", 0, block(BLOCK_SIZE, 1));
+		Assert.assertNull(cache.get(PATH, "resc2", 0));
+		Assert.assertNull(cache.get(PATH, "", 0));
+		Assert.assertNotNull(cache.get(PATH, "resc1", 0));
+		cache.put(PATH, null, 0, block(BLOCK_SIZE, 2));
+		Assert.assertNotNull("null replica is the default",
+				cache.get(PATH, "", 0));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEvicted() throws Exception {
+		IRODSBlockCache cache = IRODSBlockCache.instance(3 * BLOCK_SIZE);
+		cache.put(PATH, "", 0, block(BLOCK_SIZE, 0));
+		cache.put(PATH, "", 1, block(BLOCK_SIZE, 1));
+		cache.put(PATH, "", 2, block(BLOCK_SIZE, 2));
+		// use block 0 so block 1 is the eldest
+		cache.get(PATH, "", 0);
+		cache.put(PATH, "", 3, block(BLOCK_SIZE, 3));
+
+		Assert.assertNotNull(cache.get(PATH, "", 0));
+		Assert.assertNull(cache.get(PATH, "", 1));
+		Assert.assertNotNull(cache.get(PATH, "", 2));
+		Assert.assertNotNull(cache.get(PATH, "", 3));
+		Assert.assertEquals(3 * BLOCK_SIZE, cache.getBytesHeld());
+	}
+
+	@Test
+	public void testReplacingBlockKeepsCount() throws Exception {
+		IRODSBlockCache cache = IRODSBlockCache.instance(1000);
+		cache.put(PATH, "", 0, block(BLOCK_SIZE, 0));
+		cache.put(PATH, "", 0, block(40, 1));
+		Assert.assertEquals(40, cache.getBytesHeld());
+		Assert.assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testBlockLargerThanBudgetNotKept() throws Exception {
+		IRODSBlockCache cache = IRODSBlockCache.instance(50);
+		cache.put(PATH, "", 0, block(BLOCK_SIZE, 0));
+		Assert.assertNull(cache.get(PATH, "", 0));
+		Assert.assertEquals(0, cache.getBytesHeld());
+	}
+
+	@Test
+	public void testShrinkingBudgetEvicts() throws Exception {
+		IRODSBlockCache cache = IRODSBlockCache.instance(1000);
+		for (int i = 0; i < 5; i++) {
+			cache.put(PATH, "", i, block(BLOCK_SIZE, i));
+		}
+		cache.setMemoryBudget(2 * BLOCK_SIZE);
+		Assert.assertEquals(2, cache.size());
+		Assert.assertNotNull(cache.get(PATH, "", 4));
+	}
+
+	@Test
+	public void testInvalidateRangeAndLastBlock() throws Exception {
+		IRODSBlockCache cache = IRODSBlockCache.instance(10000);
+		for (int i = 0; i < 5; i++) {
+			cache.put(PATH, "resc1", i, block(BLOCK_SIZE, i));
+		}
+		cache.put(PATH, "resc1", 5, block(30, 5));
+		cache.put(PATH, "resc2", 2, block(BLOCK_SIZE, 2));
+		cache.put("other", "resc1", 2, block(BLOCK_SIZE, 2));
+
+		cache.invalidate(PATH, 1, 2, BLOCK_SIZE);
+
+		Assert.assertNotNull(cache.get(PATH, "resc1", 0));
+		Assert.assertNull(cache.get(PATH, "resc1", 1));
+		Assert.assertNull(cache.get(PATH, "resc1", 2));
+		Assert.assertNull("other replica kept", cache.get(PATH, "resc2", 2));
+		Assert.assertNotNull(cache.get(PATH, "resc1", 3));
+		Assert.assertNull("last block kept", cache.get(PATH, "resc1", 5));
+		Assert.assertNotNull(cache.get("other", "resc1", 2));
+		Assert.assertEquals(4 * BLOCK_SIZE, cache.getBytesHeld());
+	}
+
+	@Test
+	public void testInvalidatePath() throws Exception {
+		IRODSBlockCache cache = IRODSBlockCache.instance(10000);
+		cache.put(PATH, "", 0, block(BLOCK_SIZE, 0));
+		cache.put(PATH, "", 7, block(BLOCK_SIZE, 7));
+		cache.put("other", "", 0, block(BLOCK_SIZE, 0));
+		cache.invalidate(PATH);
+		Assert.assertEquals(1, cache.size());
+		Assert.assertEquals(BLOCK_SIZE, cache.getBytesHeld());
+	}
+
+	@Test
+	public void testSharedInstanceTakesLatestBudget() throws Exception {
+		IRODSBlockCache shared = IRODSBlockCache.getSharedInstance(1000);
+		Assert.assertSame(shared, IRODSBlockCache.getSharedInstance(2000));
+		Assert.assertEquals(2000, shared.getMemoryBudget());
+	}
+
+}
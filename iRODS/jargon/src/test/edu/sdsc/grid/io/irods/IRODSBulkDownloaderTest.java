@@ -0,0 +1,178 @@
+package edu.sdsc.grid.io.irods;
+
+import java.io.File;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.irods.jargon.core.exception.JargonException;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.sdsc.grid.io.local.LocalFile;
+import edu.sdsc.jargon.testutils.IRODSTestSetupUtilities;
+import edu.sdsc.jargon.testutils.TestingPropertiesHelper;
+import edu.sdsc.jargon.testutils.filemanip.FileGenerator;
+import edu.sdsc.jargon.testutils.filemanip.ScratchFileUtils;
+
+public class IRODSBulkDownloaderTest {
+	private static Properties testingProperties = new Properties();
+	private static TestingPropertiesHelper testingPropertiesHelper = new TestingPropertiesHelper();
+	private static ScratchFileUtils scratchFileUtils = null;
+	public static final String IRODS_TEST_SUBDIR_PATH = "IRODSBulkDownloaderTest";
+	private static IRODSTestSetupUtilities irodsTestSetupUtilities = null;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		TestingPropertiesHelper testingPropertiesLoader = new TestingPropertiesHelper();
+		testingProperties = testingPropertiesLoader.getTestProperties();
+		scratchFileUtils = new ScratchFileUtils(testingProperties);
+		scratchFileUtils
+				.clearAndReinitializeScratchDirectory(IRODS_TEST_SUBDIR_PATH);
+		irodsTestSetupUtilities = new IRODSTestSetupUtilities();
+		irodsTestSetupUtilities.initializeIrodsScratchDirectory();
+		irodsTestSetupUtilities
+				.initializeDirectoryForTest(IRODS_TEST_SUBDIR_PATH);
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+	}
+
+	/**
+	 * Listener that counts its callbacks.
+	 */
+	private static class CountingListener implements IRODSBulkDownloadListener {
+		final AtomicInteger downloaded = new AtomicInteger();
+		final AtomicInteger skipped = new AtomicInteger();
+
+		public void fileDownloaded(final String name, final File localFile,
+				final long length) {
+			downloaded.incrementAndGet();
+		}
+
+		public void fileSkipped(final String name, final File localFile) {
+			skipped.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Put 20 files in a collection, 10 of them in a subcollection.
+	 *
+	 * @return <code>String</code> with the absolute path of the collection
+	 */
+	private String putCollection(final IRODSFileSystem irodsFileSystem,
+			final String testSubdir) throws Exception {
+		String localDir = IRODS_TEST_SUBDIR_PATH + "/" + testSubdir;
+		FileGenerator.generateManyFilesInGivenDirectory(localDir, "bulk",
+				".txt", 10, 10, 2000);
+		FileGenerator.generateManyFilesInGivenDirectory(localDir + "/sub",
+				"bulk", ".txt", 10, 10, 2000);
+
+		String collection = testingPropertiesHelper
+				.buildIRODSCollectionAbsolutePathFromTestProperties(
+						testingProperties, IRODS_TEST_SUBDIR_PATH + "/"
+								+ testSubdir);
+		new IRODSFile(irodsFileSystem, collection).copyFrom(new LocalFile(
+				scratchFileUtils.createAndReturnAbsoluteScratchPath(localDir)),
+				true);
+		return collection;
+	}
+
+	@Test
+	public void testDownloadCollection() throws Exception {
+		IRODSAccount irodsAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSFileSystem irodsFileSystem = new IRODSFileSystem(irodsAccount);
+		String collection = putCollection(irodsFileSystem, "download");
+		File target = new File(scratchFileUtils
+				.createAndReturnAbsoluteScratchPath(IRODS_TEST_SUBDIR_PATH
+						+ "/downloadReturned"));
+
+		IRODSBulkDownloader downloader = IRODSBulkDownloader
+				.instance(irodsFileSystem);
+		CountingListener listener = new CountingListener();
+		downloader.setListener(listener);
+		int files = downloader.download(collection, target);
+
+		Assert.assertEquals(20, files);
+		Assert.assertEquals(20, listener.downloaded.get());
+		Assert.assertEquals(10, new File(target, "sub").list().length);
+		Assert.assertEquals(new IRODSFile(irodsFileSystem, collection
+				+ "/sub/bulk3.txt").length(), new File(target, "sub/bulk3.txt")
+				.length());
+		for (String name : new IRODSFile(irodsFileSystem, irodsFileSystem
+				.getHomeDirectory()).list()) {
+			Assert.assertFalse("bundle left in staging:" + name, name
+					.startsWith(IRODSBulkDownloader.BUNDLE_NAME_PREFIX));
+		}
+
+		irodsFileSystem.close();
+	}
+
+	@Test
+	public void testDownloadSkipsFilesThatExist() throws Exception {
+		IRODSAccount irodsAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSFileSystem irodsFileSystem = new IRODSFileSystem(irodsAccount);
+		String collection = putCollection(irodsFileSystem, "downloadSkip");
+		File target = new File(scratchFileUtils
+				.createAndReturnAbsoluteScratchPath(IRODS_TEST_SUBDIR_PATH
+						+ "/downloadSkipReturned"));
+
+		IRODSBulkDownloader downloader = IRODSBulkDownloader
+				.instance(irodsFileSystem);
+		downloader.download(collection, target);
+		downloader.setOverwritePolicy(IRODSBulkDownloader.OverwritePolicy.SKIP);
+		CountingListener listener = new CountingListener();
+		downloader.setListener(listener);
+		int files = downloader.download(collection, target);
+
+		Assert.assertEquals(0, files);
+		Assert.assertEquals(20, listener.skipped.get());
+
+		irodsFileSystem.close();
+	}
+
+	@Test(expected = JargonException.class)
+	public void testDownloadFailsWhenFileExists() throws Exception {
+		IRODSAccount irodsAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSFileSystem irodsFileSystem = new IRODSFileSystem(irodsAccount);
+		String collection = putCollection(irodsFileSystem, "downloadFail");
+		File target = new File(scratchFileUtils
+				.createAndReturnAbsoluteScratchPath(IRODS_TEST_SUBDIR_PATH
+						+ "/downloadFailReturned"));
+
+		IRODSBulkDownloader downloader = IRODSBulkDownloader
+				.instance(irodsFileSystem);
+		try {
+			downloader.download(collection, target);
+			downloader.download(collection, target);
+		} finally {
+			irodsFileSystem.close();
+		}
+	}
+
+	@Test(expected = JargonException.class)
+	public void testStagingUnderCollection() throws Exception {
+		IRODSAccount irodsAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSFileSystem irodsFileSystem = new IRODSFileSystem(irodsAccount);
+		IRODSBulkDownloader downloader = IRODSBulkDownloader
+				.instance(irodsFileSystem);
+		downloader.setStagingCollection(irodsFileSystem.getHomeDirectory()
+				+ "/staging");
+		try {
+			downloader.download(irodsFileSystem.getHomeDirectory(), new File(
+					scratchFileUtils
+							.createAndReturnAbsoluteScratchPath(IRODS_TEST_SUBDIR_PATH
+									+ "/stagingReturned")));
+		} finally {
+			irodsFileSystem.close();
+		}
+	}
+
+}
@@ -0,0 +1,139 @@
+package edu.sdsc.grid.io.irods;
+
+import java.io.File;
+import java.util.Properties;
+
+import junit.framework.Assert;
+
+import org.irods.jargon.core.connection.IRODSConnectionPoolConfig;
+import org.irods.jargon.core.exception.JargonException;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.sdsc.jargon.testutils.IRODSTestSetupUtilities;
+import edu.sdsc.jargon.testutils.TestingPropertiesHelper;
+import edu.sdsc.jargon.testutils.filemanip.FileGenerator;
+import edu.sdsc.jargon.testutils.filemanip.ScratchFileUtils;
+
+public class IRODSBulkUploaderTest {
+	private static Properties testingProperties = new Properties();
+	private static TestingPropertiesHelper testingPropertiesHelper = new TestingPropertiesHelper();
+	private static ScratchFileUtils scratchFileUtils = null;
+	public static final String IRODS_TEST_SUBDIR_PATH = "IRODSBulkUploaderTest";
+	private static IRODSTestSetupUtilities irodsTestSetupUtilities = null;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		TestingPropertiesHelper testingPropertiesLoader = new TestingPropertiesHelper();
+		testingProperties = testingPropertiesLoader.getTestProperties();
+		scratchFileUtils = new ScratchFileUtils(testingProperties);
+		scratchFileUtils
+				.clearAndReinitializeScratchDirectory(IRODS_TEST_SUBDIR_PATH);
+		irodsTestSetupUtilities = new IRODSTestSetupUtilities();
+		irodsTestSetupUtilities.initializeIrodsScratchDirectory();
+		irodsTestSetupUtilities
+				.initializeDirectoryForTest(IRODS_TEST_SUBDIR_PATH);
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+	}
+
+	private IRODSConnectionPool buildPool() throws JargonException {
+		IRODSConnectionPoolConfig config = new IRODSConnectionPoolConfig();
+		config.setTimeBetweenEvictionRunsMillis(0);
+		return IRODSConnectionPool.instance(config);
+	}
+
+	@Test
+	public void testUploadInSeveralBundles() throws Exception {
+		String localDir = IRODS_TEST_SUBDIR_PATH + "/severalBundles";
+		FileGenerator.generateManyFilesInGivenDirectory(localDir + "/a",
+				"bulk", ".txt", 30, 100, 2000);
+		FileGenerator.generateManyFilesInGivenDirectory(localDir + "/b/c",
+				"bulk", ".txt", 30, 100, 2000);
+		scratchFileUtils.createDirectoryUnderScratch(localDir + "/empty");
+
+		IRODSAccount irodsAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSFileSystem irodsFileSystem = new IRODSFileSystem(irodsAccount);
+		IRODSConnectionPool irodsConnectionPool = buildPool();
+		String target = testingPropertiesHelper
+				.buildIRODSCollectionAbsolutePathFromTestProperties(
+						testingProperties, IRODS_TEST_SUBDIR_PATH
+								+ "/severalBundles");
+
+		IRODSBulkUploader uploader = IRODSBulkUploader.instance(
+				irodsFileSystem, irodsConnectionPool, 3);
+		// a few files to a bundle
+		uploader.setBundleLength(16 * 1024);
+		int put = uploader.upload(new File(scratchFileUtils
+				.createAndReturnAbsoluteScratchPath(localDir)), target);
+
+		Assert.assertEquals(60, put);
+		Assert.assertEquals(30, new IRODSFile(irodsFileSystem, target + "/b/c")
+				.list().length);
+		Assert.assertTrue(new IRODSFile(irodsFileSystem, target + "/empty")
+				.isDirectory());
+		for (String name : new IRODSFile(irodsFileSystem, target).list()) {
+			Assert.assertFalse("bundle left in target:" + name, name
+					.startsWith(IRODSBulkUploader.BUNDLE_NAME_PREFIX));
+		}
+		Assert.assertEquals("connections not given back", 0,
+				irodsConnectionPool.getStatistics().getNumActive());
+
+		irodsConnectionPool.close();
+		irodsFileSystem.close();
+	}
+
+	@Test
+	public void testUploadFileLargerThanBundle() throws Exception {
+		String localDir = IRODS_TEST_SUBDIR_PATH + "/largerThanBundle";
+		String absPath = scratchFileUtils
+				.createAndReturnAbsoluteScratchPath(localDir);
+		FileGenerator.generateFileOfFixedLengthGivenName(absPath, "large.txt",
+				20000);
+		FileGenerator.generateFileOfFixedLengthGivenName(absPath, "small.txt",
+				100);
+
+		IRODSAccount irodsAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSFileSystem irodsFileSystem = new IRODSFileSystem(irodsAccount);
+		IRODSConnectionPool irodsConnectionPool = buildPool();
+		String target = testingPropertiesHelper
+				.buildIRODSCollectionAbsolutePathFromTestProperties(
+						testingProperties, IRODS_TEST_SUBDIR_PATH
+								+ "/largerThanBundle");
+
+		IRODSBulkUploader uploader = IRODSBulkUploader.instance(
+				irodsFileSystem, irodsConnectionPool, 2);
+		uploader.setBundleLength(8 * 1024);
+		int put = uploader.upload(new File(absPath), target);
+
+		Assert.assertEquals(2, put);
+		Assert.assertEquals(20000, new IRODSFile(irodsFileSystem, target
+				+ "/large.txt").length());
+		Assert.assertEquals(100, new IRODSFile(irodsFileSystem, target
+				+ "/small.txt").length());
+
+		irodsConnectionPool.close();
+		irodsFileSystem.close();
+	}
+
+	@Test(expected = JargonException.class)
+	public void testUploadMissingLocalDirectory() throws Exception {
+		IRODSAccount irodsAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSFileSystem irodsFileSystem = new IRODSFileSystem(irodsAccount);
+		IRODSConnectionPool irodsConnectionPool = buildPool();
+		try {
+			IRODSBulkUploader.instance(irodsFileSystem, irodsConnectionPool, 1)
+					.upload(new File("/doesNotExist/bulkUpload"), "/tmp");
+		} finally {
+			irodsConnectionPool.close();
+			irodsFileSystem.close();
+		}
+	}
+
+}
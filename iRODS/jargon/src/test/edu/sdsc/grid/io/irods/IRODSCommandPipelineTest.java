@@ -0,0 +1,185 @@
+package edu.sdsc.grid.io.irods;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import junit.framework.Assert;
+
+import org.irods.jargon.core.exception.JargonException;
+import org.irods.jargon.core.packinstr.CollInp;
+import org.irods.jargon.core.packinstr.ModAvuMetadataInp;
+import org.irods.jargon.core.pub.domain.AvuData;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.sdsc.jargon.testutils.IRODSTestSetupUtilities;
+import edu.sdsc.jargon.testutils.TestingPropertiesHelper;
+
+public class IRODSCommandPipelineTest {
+	private static Properties testingProperties = new Properties();
+	private static TestingPropertiesHelper testingPropertiesHelper = new TestingPropertiesHelper();
+	public static final String IRODS_TEST_SUBDIR_PATH = "IRODSCommandPipelineTest";
+	private static IRODSTestSetupUtilities irodsTestSetupUtilities = null;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		TestingPropertiesHelper testingPropertiesLoader = new TestingPropertiesHelper();
+		testingProperties = testingPropertiesLoader.getTestProperties();
+		irodsTestSetupUtilities = new IRODSTestSetupUtilities();
+		irodsTestSetupUtilities.initializeIrodsScratchDirectory();
+		irodsTestSetupUtilities
+				.initializeDirectoryForTest(IRODS_TEST_SUBDIR_PATH);
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+	}
+
+	@Test(expected = JargonException.class)
+	public void testInstanceNullCommands() throws Exception {
+		IRODSCommandPipeline.instance(null);
+	}
+
+	@Test(expected = JargonException.class)
+	public void testInstanceZeroDepth() throws Exception {
+		IRODSCommandPipeline.instance(new IRODSCommands(), 0);
+	}
+
+	@Test(expected = JargonException.class)
+	public void testSubmitByteStreamRequest() throws Exception {
+		IRODSCommandPipeline pipeline = IRODSCommandPipeline
+				.instance(new IRODSCommands());
+		pipeline.submit(new Tag("STR_PI", "x"),
+				IRODSConstants.DATA_OBJ_READ_AN);
+	}
+
+	@Test
+	public void testCancelBeforeExecute() throws Exception {
+		IRODSCommandPipeline pipeline = IRODSCommandPipeline
+				.instance(new IRODSCommands());
+		Future<Tag> future = pipeline.submit(new Tag("STR_PI", "x"), 0);
+		Assert.assertEquals(1, pipeline.getQueuedCount());
+		Assert.assertTrue("should cancel", future.cancel(false));
+		Assert.assertTrue(future.isCancelled());
+		Assert.assertTrue(future.isDone());
+		Assert.assertEquals(0, pipeline.getQueuedCount());
+		Assert.assertEquals("nothing to send", 0, pipeline.execute());
+	}
+
+	@Test
+	public void testErrorWithoutNegativeInfoKeepsRepliesAligned()
+			throws Exception {
+		FakeIRODSAgent agent = FakeIRODSAgent.instance();
+		agent.addReply(null, null, 0, 0);
+		agent.addReply("<STR_PI><myStr>body</myStr>\n</STR_PI>\n",
+				"<RError_PI><count>1</count>\n<RErrMsg_PI><status>-1</status>\n"
+						+ "<msg>warned</msg>\n</RErrMsg_PI>\n</RError_PI>\n",
+				2000, 0);
+		agent.addReply("<STR_PI><myStr>third</myStr>\n</STR_PI>\n", null, 0,
+				0);
+		IRODSCommands commands = new IRODSCommands();
+		commands.connect(agent.getAccount());
+
+		IRODSCommandPipeline pipeline = IRODSCommandPipeline.instance(
+				commands, 3);
+		List<Future<Tag>> futures = new ArrayList<Future<Tag>>();
+		for (int i = 0; i < 3; i++) {
+			futures.add(pipeline.submit(CollInp.instance(
+					"/test1/home/test1/aligned" + i, false).getTagValue(),
+					CollInp.MKDIR_API_NBR));
+		}
+		pipeline.execute();
+
+		futures.get(0).get();
+		boolean failed = false;
+		try {
+			futures.get(1).get();
+		} catch (ExecutionException e) {
+			failed = e.getCause() instanceof IRODSException;
+		}
+		Tag third = futures.get(2).get();
+		commands.close();
+		agent.close();
+
+		Assert.assertTrue("reply with an error should have failed", failed);
+		Assert.assertEquals("third", third.getTag("myStr").getStringValue());
+		Assert.assertTrue(agent.getErrors().isEmpty());
+	}
+
+	@Test
+	public void testPipelinedMkdirs() throws Exception {
+		IRODSAccount testAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSFileSystem irodsFileSystem = new IRODSFileSystem(testAccount);
+		String targetIrodsCollection = testingPropertiesHelper
+				.buildIRODSCollectionAbsolutePathFromTestProperties(
+						testingProperties, IRODS_TEST_SUBDIR_PATH);
+
+		IRODSCommandPipeline pipeline = IRODSCommandPipeline.instance(
+				irodsFileSystem.commands, 4);
+		List<Future<Tag>> futures = new ArrayList<Future<Tag>>();
+		int count = 10;
+		for (int i = 0; i < count; i++) {
+			CollInp collInp = CollInp.instance(targetIrodsCollection
+					+ "/testPipelinedMkdirs" + i, false);
+			futures.add(pipeline.submit(collInp.getTagValue(),
+					CollInp.MKDIR_API_NBR));
+		}
+		Assert.assertEquals(count, pipeline.execute());
+
+		for (Future<Tag> future : futures) {
+			Assert.assertTrue("should be done", future.isDone());
+			future.get();
+		}
+
+		for (int i = 0; i < count; i++) {
+			IRODSFile collection = new IRODSFile(irodsFileSystem,
+					targetIrodsCollection + "/testPipelinedMkdirs" + i);
+			Assert.assertTrue("collection not created", collection.exists());
+		}
+		irodsFileSystem.close();
+	}
+
+	@Test
+	public void testOneFailureDoesNotFailBatch() throws Exception {
+		IRODSAccount testAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSFileSystem irodsFileSystem = new IRODSFileSystem(testAccount);
+		String targetIrodsCollection = testingPropertiesHelper
+				.buildIRODSCollectionAbsolutePathFromTestProperties(
+						testingProperties, IRODS_TEST_SUBDIR_PATH);
+
+		IRODSCommandPipeline pipeline = IRODSCommandPipeline
+				.instance(irodsFileSystem.commands);
+		Future<Tag> first = pipeline.submit(ModAvuMetadataInp
+				.instanceForAddCollectionMetadata(targetIrodsCollection,
+						AvuData.instance("testOneFailureAttr1", "val", "")));
+		Future<Tag> failing = pipeline.submit(ModAvuMetadataInp
+				.instanceForAddCollectionMetadata(targetIrodsCollection
+						+ "/doesNotExist", AvuData.instance(
+						"testOneFailureAttr2", "val", "")));
+		Future<Tag> last = pipeline.submit(ModAvuMetadataInp
+				.instanceForAddCollectionMetadata(targetIrodsCollection,
+						AvuData.instance("testOneFailureAttr3", "val", "")));
+
+		// get() executes the pipeline
+		first.get();
+		boolean failed = false;
+		try {
+			failing.get();
+		} catch (ExecutionException e) {
+			failed = e.getCause() instanceof IRODSException;
+		}
+		last.get();
+
+		// connection still usable afterwards
+		Assert.assertTrue(irodsFileSystem.commands.miscServerInfo().length() > 0);
+		irodsFileSystem.close();
+		Assert.assertTrue("middle request should have failed", failed);
+	}
+
+}
@@ -0,0 +1,232 @@
+package edu.sdsc.grid.io.irods;
+
+import java.util.Properties;
+
+import junit.framework.Assert;
+
+import org.irods.jargon.core.connection.IRODSConnectionPoolConfig;
+import org.irods.jargon.core.connection.IRODSConnectionPoolStatistics;
+import org.irods.jargon.core.exception.JargonException;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.sdsc.jargon.testutils.TestingPropertiesHelper;
+
+public class IRODSConnectionPoolTest {
+	private static Properties testingProperties = new Properties();
+	private static TestingPropertiesHelper testingPropertiesHelper = new TestingPropertiesHelper();
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		TestingPropertiesHelper testingPropertiesLoader = new TestingPropertiesHelper();
+		testingProperties = testingPropertiesLoader.getTestProperties();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+	}
+
+	private IRODSConnectionPoolConfig buildConfigWithNoEvictor() {
+		IRODSConnectionPoolConfig config = new IRODSConnectionPoolConfig();
+		config.setTimeBetweenEvictionRunsMillis(0);
+		return config;
+	}
+
+	@Test
+	public void testKeyEqualForSameAccount() throws Exception {
+		IRODSAccount testAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSAccount otherAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSConnectionPoolKey key = IRODSConnectionPoolKey
+				.instance(testAccount);
+		IRODSConnectionPoolKey otherKey = IRODSConnectionPoolKey
+				.instance(otherAccount);
+		Assert.assertEquals("keys should be equal", key, otherKey);
+		Assert.assertEquals("hash codes should be equal", key.hashCode(),
+				otherKey.hashCode());
+	}
+
+	@Test
+	public void testKeyDiffersForProxyUser() throws Exception {
+		IRODSAccount testAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSAccount proxyAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		proxyAccount.setClientUserName("someoneElse");
+		Assert.assertFalse("keys should differ by proxy user",
+				IRODSConnectionPoolKey.instance(testAccount).equals(
+						IRODSConnectionPoolKey.instance(proxyAccount)));
+	}
+
+	@Test
+	public void testKeyDiffersForPassword() throws Exception {
+		IRODSAccount testAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSAccount otherAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		otherAccount.setPassword("notTheSamePassword");
+		Assert.assertFalse("keys should differ by password",
+				IRODSConnectionPoolKey.instance(testAccount).equals(
+						IRODSConnectionPoolKey.instance(otherAccount)));
+	}
+
+	@Test
+	public void testKeyToStringHasNoPassword() throws Exception {
+		IRODSAccount testAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		testAccount.setPassword("secretPasswordValue");
+		Assert.assertTrue("password in key string", IRODSConnectionPoolKey
+				.instance(testAccount).toString()
+				.indexOf("secretPasswordValue") == -1);
+	}
+
+	@Test(expected = JargonException.class)
+	public void testInstanceNullConfig() throws Exception {
+		IRODSConnectionPool.instance(null);
+	}
+
+	@Test
+	public void testBorrowReturnBorrowIsAHit() throws Exception {
+		IRODSAccount testAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSConnectionPool pool = IRODSConnectionPool
+				.instance(buildConfigWithNoEvictor());
+
+		PooledIRODSConnection connection = pool.borrowConnection(testAccount);
+		IRODSCommands firstCommands = connection.getIrodsCommands();
+		connection.shutdown();
+		connection = pool.borrowConnection(testAccount);
+		IRODSCommands secondCommands = connection.getIrodsCommands();
+		connection.shutdown();
+
+		IRODSConnectionPoolStatistics statistics = pool.getStatistics();
+		pool.close();
+
+		Assert.assertSame("connection was not reused", firstCommands,
+				secondCommands);
+		Assert.assertEquals("expected one miss", 1, statistics.getMisses());
+		Assert.assertEquals("expected one hit", 1, statistics.getHits());
+		Assert.assertEquals("expected one idle", 1, statistics.getNumIdle());
+		Assert.assertEquals("expected none active", 0,
+				statistics.getNumActive());
+	}
+
+	@Test(expected = JargonException.class)
+	public void testUseAfterReturn() throws Exception {
+		IRODSAccount testAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSConnectionPool pool = IRODSConnectionPool
+				.instance(buildConfigWithNoEvictor());
+		PooledIRODSConnection connection = pool.borrowConnection(testAccount);
+		connection.shutdown();
+		try {
+			connection.getIrodsCommands();
+		} finally {
+			pool.close();
+		}
+	}
+
+	@Test
+	public void testReturnAgainAfterReborrow() throws Exception {
+		IRODSAccount testAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSConnectionPool pool = IRODSConnectionPool
+				.instance(buildConfigWithNoEvictor());
+		PooledIRODSConnection first = pool.borrowConnection(testAccount);
+		first.shutdown();
+		PooledIRODSConnection second = pool.borrowConnection(testAccount);
+		first.shutdown();
+		first.obliterateConnectionAndDiscardErrors();
+
+		IRODSConnectionPoolStatistics statistics = pool.getStatistics();
+		IRODSCommands secondCommands = second.getIrodsCommands();
+		boolean connected = second.isConnected();
+		second.shutdown();
+		pool.close();
+
+		Assert.assertNotNull(secondCommands);
+		Assert.assertTrue("second borrow should stay connected", connected);
+		Assert.assertEquals("expected one active", 1,
+				statistics.getNumActive());
+		Assert.assertEquals("expected no idle", 0, statistics.getNumIdle());
+	}
+
+	@Test
+	public void testBorrowTimeout() throws Exception {
+		IRODSAccount testAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSConnectionPoolConfig config = buildConfigWithNoEvictor();
+		config.setMaxActive(1);
+		config.setMaxWaitMillis(200);
+		IRODSConnectionPool pool = IRODSConnectionPool.instance(config);
+		PooledIRODSConnection connection = pool.borrowConnection(testAccount);
+		boolean timedOut = false;
+		try {
+			pool.borrowConnection(testAccount);
+		} catch (JargonException e) {
+			timedOut = true;
+		}
+		connection.shutdown();
+		IRODSConnectionPoolStatistics statistics = pool.getStatistics();
+		pool.close();
+		Assert.assertTrue("borrow should have timed out", timedOut);
+		Assert.assertEquals("timeout not counted", 1,
+				statistics.getBorrowTimeouts());
+	}
+
+	@Test
+	public void testObliteratedConnectionNotReused() throws Exception {
+		IRODSAccount testAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSConnectionPool pool = IRODSConnectionPool
+				.instance(buildConfigWithNoEvictor());
+		PooledIRODSConnection connection = pool.borrowConnection(testAccount);
+		connection.obliterateConnectionAndDiscardErrors();
+		IRODSConnectionPoolStatistics statistics = pool.getStatistics();
+		pool.close();
+		Assert.assertEquals("expected no idle", 0, statistics.getNumIdle());
+		Assert.assertEquals("expected none active", 0,
+				statistics.getNumActive());
+		Assert.assertEquals("expected one destroyed", 1,
+				statistics.getConnectionsDestroyed());
+	}
+
+	@Test
+	public void testEvictIdleConnections() throws Exception {
+		IRODSAccount testAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSConnectionPoolConfig config = buildConfigWithNoEvictor();
+		config.setMinEvictableIdleTimeMillis(1);
+		IRODSConnectionPool pool = IRODSConnectionPool.instance(config);
+		pool.borrowConnection(testAccount).shutdown();
+		Thread.sleep(20);
+		pool.evictIdleConnections();
+		IRODSConnectionPoolStatistics statistics = pool.getStatistics();
+		pool.close();
+		Assert.assertEquals("expected one eviction", 1,
+				statistics.getEvictions());
+		Assert.assertEquals("expected no idle", 0, statistics.getNumIdle());
+	}
+
+	@Test
+	public void testPooledFileSystemCloseReturnsConnection() throws Exception {
+		IRODSAccount testAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSConnectionPool pool = IRODSConnectionPool
+				.instance(buildConfigWithNoEvictor());
+		IRODSFileSystem irodsFileSystem = new IRODSFileSystem(testAccount,
+				pool);
+		Assert.assertTrue("file system should be connected",
+				irodsFileSystem.isConnected());
+		irodsFileSystem.close();
+		Assert.assertTrue("file system should report closed",
+				irodsFileSystem.isClosed());
+		IRODSConnectionPoolStatistics statistics = pool.getStatistics();
+		pool.close();
+		Assert.assertEquals("connection not returned to pool", 1,
+				statistics.getNumIdle());
+	}
+
+}
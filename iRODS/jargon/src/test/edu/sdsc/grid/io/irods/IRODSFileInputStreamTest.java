@@ -6,8 +6,10 @@ import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.net.URI;
+import java.util.Arrays;
 import java.util.Properties;
 
 import junit.framework.Assert;
@@ -15,6 +17,7 @@ import junit.framework.TestCase;
 
 import org.irods.jargon.core.connection.ConnectionConstants;
 import org.irods.jargon.core.connection.IRODSServerProperties;
+import org.irods.jargon.core.packinstr.TransferOptions;
 import org.irods.jargon.core.remoteexecute.RemoteExecuteServiceImpl;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -635,4 +638,122 @@ public class IRODSFileInputStreamTest {
 
 	}
 
+	/**
+	 * Put a generated file of the given length into the test collection.
+	 * 
+	 * @return <code>String</code> with the absolute path of the local file
+	 */
+	private String putReadAheadTestFile(final String testFileName,
+			final long fileLengthInBytes) throws Exception {
+		String absPath = scratchFileUtils
+				.createAndReturnAbsoluteScratchPath(IRODS_TEST_SUBDIR_PATH);
+		FileGenerator.generateFileOfFixedLengthGivenName(absPath, testFileName,
+				fileLengthInBytes);
+
+		IrodsInvocationContext invocationContext = testingPropertiesHelper
+				.buildIRODSInvocationContextFromTestProperties(testingProperties);
+		IputCommand iputCommand = new IputCommand();
+		iputCommand.setLocalFileName(absPath + testFileName);
+		iputCommand.setIrodsFileName(testingPropertiesHelper
+				.buildIRODSCollectionAbsolutePathFromTestProperties(
+						testingProperties, IRODS_TEST_SUBDIR_PATH));
+		iputCommand.setForceOverride(true);
+
+		IcommandInvoker invoker = new IcommandInvoker(invocationContext);
+		invoker.invokeCommandAndGetResultAsString(iputCommand);
+		return absPath + testFileName;
+	}
+
+	private byte[] readLocalFile(final String path) throws Exception {
+		ByteArrayOutputStream contents = new ByteArrayOutputStream();
+		FileInputStream in = new FileInputStream(path);
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) > -1) {
+			contents.write(buffer, 0, read);
+		}
+		in.close();
+		return contents.toByteArray();
+	}
+
+	@Test
+	public final void testReadAheadSingleBytes() throws Exception {
+		String testFileName = "testReadAheadSingleBytes.txt";
+		byte[] expected = readLocalFile(putReadAheadTestFile(testFileName,
+				300 * 1024 + 17));
+
+		IRODSFileSystem irodsFileSystem = new IRODSFileSystem(
+				testingPropertiesHelper
+						.buildIRODSAccountFromTestProperties(testingProperties));
+		TransferOptions transferOptions = new TransferOptions();
+		transferOptions.setReadAheadBufferSize(4 * 1024);
+		transferOptions.setMaxReadAheadBufferSize(64 * 1024);
+		irodsFileSystem.getCommands().setTransferOptions(transferOptions);
+		IRODSFile irodsFile = new IRODSFile(irodsFileSystem,
+				testingPropertiesHelper
+						.buildIRODSCollectionAbsolutePathFromTestProperties(
+								testingProperties, IRODS_TEST_SUBDIR_PATH)
+						+ '/' + testFileName);
+
+		IRODSFileInputStream fis = new IRODSFileInputStream(irodsFile);
+		ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		int read;
+		while ((read = fis.read()) > -1) {
+			actual.write(read);
+		}
+		fis.close();
+		irodsFileSystem.close();
+
+		Assert.assertTrue("file read a byte at a time does not match",
+				Arrays.equals(expected, actual.toByteArray()));
+	}
+
+	@Test
+	public final void testReadAheadSeekBackAndSkip() throws Exception {
+		String testFileName = "testReadAheadSeekBackAndSkip.txt";
+		byte[] expected = readLocalFile(putReadAheadTestFile(testFileName,
+				200 * 1024));
+
+		IRODSFileSystem irodsFileSystem = new IRODSFileSystem(
+				testingPropertiesHelper
+						.buildIRODSAccountFromTestProperties(testingProperties));
+		TransferOptions transferOptions = new TransferOptions();
+		transferOptions.setReadAheadBufferSize(8 * 1024);
+		irodsFileSystem.getCommands().setTransferOptions(transferOptions);
+		IRODSFile irodsFile = new IRODSFile(irodsFileSystem,
+				testingPropertiesHelper
+						.buildIRODSCollectionAbsolutePathFromTestProperties(
+								testingProperties, IRODS_TEST_SUBDIR_PATH)
+						+ '/' + testFileName);
+
+		IRODSFileInputStream fis = new IRODSFileInputStream(irodsFile);
+		byte[] buffer = new byte[100];
+
+		// inside the first block
+		fis.read(buffer, 0, 100);
+		Assert.assertEquals("seek back within block", 50L, fis.seek(-50L));
+		fis.read(buffer, 0, 10);
+		Assert.assertEquals("wrong byte after seek back", expected[50],
+				buffer[0]);
+
+		// past the blocks read so far
+		long skipped = fis.skip(100 * 1024);
+		Assert.assertEquals("did not skip", 100 * 1024, skipped);
+		int position = 60 + 100 * 1024;
+		Assert.assertEquals("wrong byte after skip", expected[position] & 0xFF,
+				fis.read());
+		position++;
+
+		// back before the current block
+		fis.seek(-(60 * 1024));
+		position -= 60 * 1024;
+		fis.read(buffer, 0, buffer.length);
+		for (int i = 0; i < buffer.length; i++) {
+			Assert.assertEquals("wrong byte after seek before block",
+					expected[position + i], buffer[i]);
+		}
+		fis.close();
+		irodsFileSystem.close();
+	}
+
 }
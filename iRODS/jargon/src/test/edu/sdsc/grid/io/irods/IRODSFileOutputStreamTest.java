@@ -12,6 +12,7 @@ import junit.framework.TestCase;
 
 import org.irods.jargon.core.connection.ConnectionConstants;
 import org.irods.jargon.core.connection.IRODSServerProperties;
+import org.irods.jargon.core.packinstr.TransferOptions;
 import org.irods.jargon.core.remoteexecute.RemoteExecuteServiceImpl;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -760,4 +761,95 @@ public class IRODSFileOutputStreamTest {
 		irodsFileSystem.close();
 
 	}
+
+	/**
+	 * Write small records through the write-behind buffer and read them back.
+	 */
+	private void writeSmallRecordsAndReadBack(final String testFileName,
+			final boolean writeBehindAsync) throws Exception {
+		String testIRODSFileName = testingPropertiesHelper
+				.buildIRODSCollectionAbsolutePathFromTestProperties(
+						testingProperties, IRODS_TEST_SUBDIR_PATH + '/'
+								+ testFileName);
+
+		IRODSAccount account = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSFileSystem irodsFileSystem = new IRODSFileSystem(account);
+		TransferOptions transferOptions = new TransferOptions();
+		transferOptions.setWriteBehindBufferSize(4 * 1024);
+		transferOptions.setWriteBehindAsync(writeBehindAsync);
+		irodsFileSystem.getCommands().setTransferOptions(transferOptions);
+
+		IRODSFile irodsFile = new IRODSFile(irodsFileSystem, testIRODSFileName);
+		IRODSFileOutputStream irodsFileOutputStream = new IRODSFileOutputStream(
+				irodsFile);
+
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			String row = "row" + i + ",value" + (i * 7) + "\n";
+			expected.append(row);
+			if (i % 3 == 0) {
+				for (byte b : row.getBytes()) {
+					irodsFileOutputStream.write(b);
+				}
+			} else {
+				irodsFileOutputStream.write(row.getBytes());
+			}
+			if (i == 1000) {
+				irodsFileOutputStream.flush();
+			}
+		}
+		byte[] large = new byte[10 * 1024];
+		Arrays.fill(large, (byte) 'x');
+		irodsFileOutputStream.write(large);
+		expected.append(new String(large));
+		irodsFileOutputStream.close();
+
+		IRODSFileInputStream irodsFileInputStream = new IRODSFileInputStream(
+				new IRODSFile(irodsFileSystem, testIRODSFileName));
+		byte[] actual = new byte[expected.length() + 1];
+		int total = 0;
+		int read;
+		while ((read = irodsFileInputStream.read(actual, total, actual.length
+				- total)) > 0) {
+			total += read;
+		}
+		irodsFileInputStream.close();
+		irodsFileSystem.close();
+
+		Assert.assertEquals("wrong length written", expected.length(), total);
+		Assert.assertEquals("wrong data written", expected.toString(),
+				new String(actual, 0, total));
+	}
+
+	@Test
+	public final void testWriteBehindSmallRecords() throws Exception {
+		writeSmallRecordsAndReadBack("testWriteBehindSmallRecords.csv", false);
+	}
+
+	@Test
+	public final void testWriteBehindSmallRecordsAsync() throws Exception {
+		writeSmallRecordsAndReadBack("testWriteBehindSmallRecordsAsync.csv",
+				true);
+	}
+
+	@Test(expected = IOException.class)
+	public final void testWriteAfterCloseWithWriteBehind() throws Exception {
+		String testIRODSFileName = testingPropertiesHelper
+				.buildIRODSCollectionAbsolutePathFromTestProperties(
+						testingProperties, IRODS_TEST_SUBDIR_PATH
+								+ "/testWriteAfterCloseWithWriteBehind.txt");
+
+		IRODSAccount account = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSFileSystem irodsFileSystem = new IRODSFileSystem(account);
+		IRODSFileOutputStream irodsFileOutputStream = new IRODSFileOutputStream(
+				new IRODSFile(irodsFileSystem, testIRODSFileName));
+		irodsFileOutputStream.close();
+		try {
+			irodsFileOutputStream.write(1);
+		} finally {
+			irodsFileSystem.close();
+		}
+	}
 }
@@ -1467,6 +1467,81 @@ public class IRODSFileTest {
 		TestCase.assertTrue("no results", dirs.length == 3);
 	}
 
+	@Test
+	public final void testListEntriesFromPreparedSubdir() throws Exception {
+		String targetIrodsCollection = testingPropertiesHelper
+				.buildIRODSCollectionAbsolutePathFromTestProperties(
+						testingProperties, IRODS_TEST_SUBDIR_PATH);
+
+		String topLevelTestDir = "listEntriesFromPreparedSubdirTopLevel";
+		String subdir1 = "subdir1";
+		String testFileName = "testListEntries.txt";
+		long testFileLength = 8;
+
+		IrodsInvocationContext invocationContext = testingPropertiesHelper
+				.buildIRODSInvocationContextFromTestProperties(testingProperties);
+		IcommandInvoker invoker = new IcommandInvoker(invocationContext);
+
+		ImkdirCommand imkdirCommand = new ImkdirCommand();
+		imkdirCommand.setCollectionName(targetIrodsCollection + '/'
+				+ topLevelTestDir);
+		invoker.invokeCommandAndGetResultAsString(imkdirCommand);
+
+		imkdirCommand = new ImkdirCommand();
+		imkdirCommand.setCollectionName(targetIrodsCollection + '/'
+				+ topLevelTestDir + '/' + subdir1);
+		invoker.invokeCommandAndGetResultAsString(imkdirCommand);
+
+		String absPath = scratchFileUtils
+				.createAndReturnAbsoluteScratchPath(IRODS_TEST_SUBDIR_PATH);
+		FileGenerator.generateFileOfFixedLengthGivenName(absPath, testFileName,
+				testFileLength);
+
+		targetIrodsCollection = targetIrodsCollection + '/' + topLevelTestDir;
+		IputCommand iputCommand = new IputCommand();
+		iputCommand.setLocalFileName(absPath + testFileName);
+		iputCommand.setIrodsFileName(targetIrodsCollection);
+		iputCommand.setForceOverride(true);
+		invoker.invokeCommandAndGetResultAsString(iputCommand);
+
+		IRODSAccount irodsAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSFileSystem irodsFileSystem = new IRODSFileSystem(irodsAccount);
+		irodsFileSystem.getStatCache().setTimeToLiveMillis(60000);
+		IRODSFile irodsFile = new IRODSFile(irodsFileSystem,
+				targetIrodsCollection);
+
+		IRODSFileListingEntry dirEntry = null;
+		IRODSFileListingEntry fileEntry = null;
+		int entries = 0;
+		for (IRODSFileListingEntry entry : irodsFile.listEntries()) {
+			entries++;
+			if (entry.isDirectory()) {
+				dirEntry = entry;
+			} else {
+				fileEntry = entry;
+			}
+		}
+
+		TestCase.assertEquals("wrong number of entries", 2, entries);
+		TestCase.assertNotNull("no directory listed", dirEntry);
+		TestCase.assertEquals(subdir1, dirEntry.getName());
+		TestCase.assertNotNull("no file listed", fileEntry);
+		TestCase.assertEquals(testFileName, fileEntry.getName());
+		TestCase.assertEquals(testFileLength, fileEntry.getLength());
+		TestCase.assertEquals(irodsAccount.getUserName(), fileEntry.getOwner());
+		TestCase.assertEquals(1, fileEntry.getReplicaCount());
+
+		long misses = irodsFileSystem.getStatCache().getMisses();
+		IRODSFile childFile = fileEntry.getFile();
+		TestCase.assertTrue(childFile.isFile());
+		TestCase.assertEquals(testFileLength, childFile.length());
+		TestCase.assertTrue(dirEntry.getFile().isDirectory());
+		TestCase.assertEquals("listed files should not be queried again",
+				misses, irodsFileSystem.getStatCache().getMisses());
+		irodsFileSystem.close();
+	}
+
 	/**
 	 * Test method for
 	 * {@link org.irods.jargon.core.pub.io.IRODSFile#equals(java.lang.Object)}.
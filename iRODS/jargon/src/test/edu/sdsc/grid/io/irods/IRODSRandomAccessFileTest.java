@@ -3,9 +3,13 @@ package edu.sdsc.grid.io.irods;
 import static org.junit.Assert.*;
 
 import java.io.BufferedInputStream;
+import java.io.EOFException;
 import java.io.FileInputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
 
 import junit.framework.Assert;
@@ -19,6 +23,7 @@ import org.junit.Ignore;
 import org.junit.Test;
 
 import edu.sdsc.grid.io.FileFactory;
+import edu.sdsc.grid.io.FileRange;
 import edu.sdsc.grid.io.GeneralFile;
 import edu.sdsc.grid.io.GeneralRandomAccessFile;
 import edu.sdsc.jargon.testutils.AssertionHelper;
@@ -428,4 +433,93 @@ public class IRODSRandomAccessFileTest {
 
 	}
 
+	private IRODSFile putRangesTestFile(final IRODSFileSystem irodsFileSystem,
+			final String testFileName, final long fileLengthInBytes)
+			throws Exception {
+		String absPath = scratchFileUtils
+				.createAndReturnAbsoluteScratchPath(IRODS_TEST_SUBDIR_PATH);
+		FileGenerator.generateFileOfFixedLengthGivenName(absPath, testFileName,
+				fileLengthInBytes);
+
+		IrodsInvocationContext invocationContext = testingPropertiesHelper
+				.buildIRODSInvocationContextFromTestProperties(testingProperties);
+		IputCommand iputCommand = new IputCommand();
+		String targetIrodsCollection = testingPropertiesHelper
+				.buildIRODSCollectionAbsolutePathFromTestProperties(
+						testingProperties, IRODS_TEST_SUBDIR_PATH);
+		iputCommand.setLocalFileName(absPath + testFileName);
+		iputCommand.setIrodsFileName(targetIrodsCollection);
+		iputCommand.setForceOverride(true);
+
+		IcommandInvoker invoker = new IcommandInvoker(invocationContext);
+		invoker.invokeCommandAndGetResultAsString(iputCommand);
+		return new IRODSFile(irodsFileSystem, targetIrodsCollection + '/'
+				+ testFileName);
+	}
+
+	@Test
+	public final void testReadRanges() throws Exception {
+		String testFileName = "testReadRanges.txt";
+		IRODSFileSystem irodsFileSystem = new IRODSFileSystem(
+				testingPropertiesHelper
+						.buildIRODSAccountFromTestProperties(testingProperties));
+		IRODSFile irodsFile = putRangesTestFile(irodsFileSystem, testFileName,
+				300 * 1024);
+		RandomAccessFile localFile = new RandomAccessFile(scratchFileUtils
+				.createAndReturnAbsoluteScratchPath(IRODS_TEST_SUBDIR_PATH)
+				+ testFileName, "r");
+
+		// close together, overlapping, far apart, and out of order
+		long[] offsets = { 250 * 1024, 10, 100, 150, 200 * 1024 - 5, 0 };
+		int[] lengths = { 1000, 50, 100, 8, 10, 1 };
+		List<FileRange> ranges = new ArrayList<FileRange>();
+		for (int i = 0; i < offsets.length; i++) {
+			ranges.add(new FileRange(offsets[i], ByteBuffer
+					.allocate(lengths[i])));
+		}
+
+		IRODSRandomAccessFile randomAccessFile = new IRODSRandomAccessFile(
+				irodsFile, "r");
+		randomAccessFile.seek(42);
+		randomAccessFile.readRanges(ranges);
+		long filePointer = randomAccessFile.getFilePointer();
+		int byteAtPointer = randomAccessFile.read();
+		randomAccessFile.close();
+		irodsFileSystem.close();
+
+		for (FileRange range : ranges) {
+			byte[] expected = new byte[range.getLength()];
+			localFile.seek(range.getOffset());
+			localFile.readFully(expected);
+			Assert.assertFalse("range not filled:" + range, range.getBuffer()
+					.hasRemaining());
+			Assert.assertTrue("wrong bytes for range:" + range, Arrays.equals(
+					expected, range.getBuffer().array()));
+		}
+		localFile.seek(42);
+		Assert.assertEquals("file pointer moved", 42, filePointer);
+		Assert.assertEquals("wrong byte after ranges", localFile.read(),
+				byteAtPointer);
+		localFile.close();
+	}
+
+	@Test(expected = EOFException.class)
+	public final void testReadRangesPastEnd() throws Exception {
+		IRODSFileSystem irodsFileSystem = new IRODSFileSystem(
+				testingPropertiesHelper
+						.buildIRODSAccountFromTestProperties(testingProperties));
+		IRODSFile irodsFile = putRangesTestFile(irodsFileSystem,
+				"testReadRangesPastEnd.txt", 1024);
+		IRODSRandomAccessFile randomAccessFile = new IRODSRandomAccessFile(
+				irodsFile, "r");
+		List<FileRange> ranges = new ArrayList<FileRange>();
+		ranges.add(new FileRange(1000, ByteBuffer.allocate(100)));
+		try {
+			randomAccessFile.readRanges(ranges);
+		} finally {
+			randomAccessFile.close();
+			irodsFileSystem.close();
+		}
+	}
+
 }
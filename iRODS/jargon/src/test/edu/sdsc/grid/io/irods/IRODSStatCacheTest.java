@@ -0,0 +1,134 @@
+package edu.sdsc.grid.io.irods;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class IRODSStatCacheTest {
+
+	private static final String DIR = "/zone/home/test/statCacheTest";
+	private static final String FILE = DIR + "/file.txt";
+
+	private static IRODSFileStat fileStat(final String path) {
+		return IRODSFileStat.instanceForFile(path, new String[] { "resc1",
+				"resc2" }, new long[] { 100, 200 }, 1234);
+	}
+
+	private static IRODSStatCache enabledCache() {
+		IRODSStatCache cache = IRODSStatCache.instance();
+		cache.setTimeToLiveMillis(60000);
+		return cache;
+	}
+
+	@Test
+	public void testOffByDefault() throws Exception {
+		IRODSStatCache cache = IRODSStatCache.instance();
+		Assert.assertFalse(cache.isEnabled());
+		cache.put(fileStat(FILE));
+		Assert.assertNull(cache.get(FILE));
+		Assert.assertEquals(0, cache.size());
+		Assert.assertEquals("lookups of a cache that is off are not counted",
+				0, cache.getMisses());
+	}
+
+	@Test
+	public void testGetReturnsPutStat() throws Exception {
+		IRODSStatCache cache = enabledCache();
+		IRODSFileStat stat = fileStat(FILE);
+		cache.put(stat);
+		Assert.assertSame(stat, cache.get(FILE));
+		Assert.assertNull(cache.get(DIR));
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(1, cache.getMisses());
+		Assert.assertEquals(0.5, cache.getHitRatio(), 0.0001);
+	}
+
+	@Test
+	public void testReplicaLengths() throws Exception {
+		IRODSFileStat stat = fileStat(FILE);
+		Assert.assertEquals("resc1", stat.getResource());
+		Assert.assertEquals(100, stat.getLength(null));
+		Assert.assertEquals(100, stat.getLength(""));
+		Assert.assertEquals(200, stat.getLength("resc2"));
+		Assert.assertEquals(0, stat.getLength("resc3"));
+		Assert.assertNull(IRODSFileStat.instanceForMissing(FILE).getResource());
+	}
+
+	@Test
+	public void testEntryExpires() throws Exception {
+		IRODSStatCache cache = IRODSStatCache.instance();
+		cache.setTimeToLiveMillis(50);
+		cache.put(fileStat(FILE));
+		Assert.assertNotNull(cache.get(FILE));
+		Thread.sleep(100);
+		Assert.assertNull(cache.get(FILE));
+		Assert.assertEquals(1, cache.getExpirations());
+		Assert.assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testTurningOffClears() throws Exception {
+		IRODSStatCache cache = enabledCache();
+		cache.put(fileStat(FILE));
+		cache.setTimeToLiveMillis(0);
+		Assert.assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsDropped() throws Exception {
+		IRODSStatCache cache = enabledCache();
+		cache.setMaxEntries(2);
+		cache.put(fileStat(DIR + "/a"));
+		cache.put(fileStat(DIR + "/b"));
+		Assert.assertNotNull(cache.get(DIR + "/a"));
+		cache.put(fileStat(DIR + "/c"));
+		Assert.assertEquals(2, cache.size());
+		Assert.assertNull("b was least recently used", cache.get(DIR + "/b"));
+		Assert.assertNotNull(cache.get(DIR + "/a"));
+		Assert.assertNotNull(cache.get(DIR + "/c"));
+	}
+
+	@Test
+	public void testInvalidateTree() throws Exception {
+		IRODSStatCache cache = enabledCache();
+		cache.put(IRODSFileStat.instanceForDirectory(DIR, 1));
+		cache.put(fileStat(FILE));
+		cache.put(fileStat(DIR + "Sibling"));
+		cache.invalidateTree(DIR);
+		Assert.assertNull(cache.get(DIR));
+		Assert.assertNull(cache.get(FILE));
+		Assert.assertNotNull("a path sharing the prefix is not under it",
+				cache.get(DIR + "Sibling"));
+		Assert.assertEquals(2, cache.getInvalidations());
+	}
+
+	@Test
+	public void testInvalidateChangeDropsParents() throws Exception {
+		IRODSStatCache cache = enabledCache();
+		cache.put(IRODSFileStat.instanceForDirectory("/zone", 1));
+		cache.put(IRODSFileStat.instanceForDirectory(DIR, 1));
+		cache.put(IRODSFileStat.instanceForMissing(FILE));
+		cache.put(fileStat(DIR + "/other.txt"));
+		cache.invalidateChange(FILE);
+		Assert.assertNull(cache.get(FILE));
+		Assert.assertNull(cache.get(DIR));
+		Assert.assertNull(cache.get("/zone"));
+		Assert.assertNotNull(cache.get(DIR + "/other.txt"));
+	}
+
+	@Test
+	public void testReplaceKeepsInvalidation() throws Exception {
+		IRODSStatCache cache = enabledCache();
+		IRODSFileStat stat = fileStat(FILE);
+		cache.put(stat);
+		cache.invalidate(FILE);
+		cache.replace(stat, stat.withPermissions(2));
+		Assert.assertNull("an invalidated entry is not put back", cache
+				.get(FILE));
+
+		cache.put(stat);
+		cache.replace(stat, stat.withPermissions(2));
+		Assert.assertEquals(2, cache.get(FILE).getPermissions());
+	}
+
+}
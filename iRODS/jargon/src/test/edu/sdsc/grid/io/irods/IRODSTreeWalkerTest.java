@@ -0,0 +1,238 @@
+package edu.sdsc.grid.io.irods;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import junit.framework.Assert;
+
+import org.irods.jargon.core.connection.IRODSConnectionPoolConfig;
+import org.irods.jargon.core.exception.JargonException;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.sdsc.jargon.testutils.IRODSTestSetupUtilities;
+import edu.sdsc.jargon.testutils.TestingPropertiesHelper;
+
+public class IRODSTreeWalkerTest {
+	private static Properties testingProperties = new Properties();
+	private static TestingPropertiesHelper testingPropertiesHelper = new TestingPropertiesHelper();
+	public static final String IRODS_TEST_SUBDIR_PATH = "IRODSTreeWalkerTest";
+	private static IRODSTestSetupUtilities irodsTestSetupUtilities = null;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		TestingPropertiesHelper testingPropertiesLoader = new TestingPropertiesHelper();
+		testingProperties = testingPropertiesLoader.getTestProperties();
+		irodsTestSetupUtilities = new IRODSTestSetupUtilities();
+		irodsTestSetupUtilities.initializeIrodsScratchDirectory();
+		irodsTestSetupUtilities
+				.initializeDirectoryForTest(IRODS_TEST_SUBDIR_PATH);
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+	}
+
+	/**
+	 * Visitor that records what it is called for, and whether a directory
+	 * was post visited before something under it was visited.
+	 */
+	private static class RecordingVisitor implements IRODSFileVisitor {
+		final Set<String> directories = Collections
+				.synchronizedSet(new HashSet<String>());
+		final Set<String> files = Collections
+				.synchronizedSet(new HashSet<String>());
+		final Set<String> postVisited = Collections
+				.synchronizedSet(new HashSet<String>());
+		volatile boolean outOfOrder = false;
+
+		public VisitResult preVisitDirectory(
+				final IRODSFileListingEntry directory, final int depth) {
+			checkParentNotPostVisited(directory);
+			directories.add(directory.getAbsolutePath());
+			return VisitResult.CONTINUE;
+		}
+
+		public VisitResult visitFile(final IRODSFileListingEntry file,
+				final int depth) {
+			checkParentNotPostVisited(file);
+			files.add(file.getAbsolutePath());
+			return VisitResult.CONTINUE;
+		}
+
+		public VisitResult postVisitDirectory(
+				final IRODSFileListingEntry directory, final int depth) {
+			checkParentNotPostVisited(directory);
+			postVisited.add(directory.getAbsolutePath());
+			return VisitResult.CONTINUE;
+		}
+
+		public VisitResult visitDirectoryFailed(
+				final IRODSFileListingEntry directory, final int depth,
+				final Exception exception) {
+			return VisitResult.TERMINATE;
+		}
+
+		private void checkParentNotPostVisited(final IRODSFileListingEntry entry) {
+			String path = entry.getAbsolutePath();
+			if (postVisited.contains(path.substring(0, path.lastIndexOf('/')))) {
+				outOfOrder = true;
+			}
+		}
+	}
+
+	/**
+	 * Make top/a/a1 and top/b, with the files top/f1, top/a/f2 and
+	 * top/a/a1/f3.
+	 *
+	 * @return <code>String</code> with the absolute path of top
+	 */
+	private String makeTree(final IRODSFileSystem irodsFileSystem,
+			final String topName) throws Exception {
+		String top = testingPropertiesHelper
+				.buildIRODSCollectionAbsolutePathFromTestProperties(
+						testingProperties, IRODS_TEST_SUBDIR_PATH + '/'
+								+ topName);
+		new IRODSFile(irodsFileSystem, top + "/a/a1").mkdirs();
+		new IRODSFile(irodsFileSystem, top + "/b").mkdirs();
+		new IRODSFile(irodsFileSystem, top + "/f1").createNewFile();
+		new IRODSFile(irodsFileSystem, top + "/a/f2").createNewFile();
+		new IRODSFile(irodsFileSystem, top + "/a/a1/f3").createNewFile();
+		return top;
+	}
+
+	private IRODSConnectionPool buildPool() throws JargonException {
+		IRODSConnectionPoolConfig config = new IRODSConnectionPoolConfig();
+		config.setTimeBetweenEvictionRunsMillis(0);
+		return IRODSConnectionPool.instance(config);
+	}
+
+	@Test
+	public void testWalkVisitsEverythingInOrder() throws Exception {
+		IRODSAccount irodsAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSFileSystem irodsFileSystem = new IRODSFileSystem(irodsAccount);
+		IRODSConnectionPool irodsConnectionPool = buildPool();
+		String top = makeTree(irodsFileSystem, "walkEverything");
+
+		IRODSTreeWalker walker = IRODSTreeWalker.instance(irodsFileSystem,
+				irodsConnectionPool, 3);
+		RecordingVisitor visitor = new RecordingVisitor();
+		walker.walk(top, visitor);
+
+		Assert.assertEquals(4, visitor.directories.size());
+		Assert.assertTrue(visitor.directories.contains(top + "/a/a1"));
+		Assert.assertEquals(3, visitor.files.size());
+		Assert.assertTrue(visitor.files.contains(top + "/a/a1/f3"));
+		Assert.assertEquals(visitor.directories, visitor.postVisited);
+		Assert.assertFalse("directory post visited before its contents",
+				visitor.outOfOrder);
+		Assert.assertEquals("connections not given back", 0,
+				irodsConnectionPool.getStatistics().getNumActive());
+
+		irodsConnectionPool.close();
+		irodsFileSystem.close();
+	}
+
+	@Test
+	public void testWalkToDepth() throws Exception {
+		IRODSAccount irodsAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSFileSystem irodsFileSystem = new IRODSFileSystem(irodsAccount);
+		IRODSConnectionPool irodsConnectionPool = buildPool();
+		String top = makeTree(irodsFileSystem, "walkToDepth");
+
+		IRODSTreeWalker walker = IRODSTreeWalker.instance(irodsFileSystem,
+				irodsConnectionPool, 2);
+		walker.setMaxDepth(1);
+		RecordingVisitor visitor = new RecordingVisitor();
+		walker.walk(top, visitor);
+
+		Assert.assertEquals(3, visitor.directories.size());
+		Assert.assertFalse(visitor.directories.contains(top + "/a/a1"));
+		Assert.assertEquals(1, visitor.files.size());
+		Assert.assertTrue(visitor.files.contains(top + "/f1"));
+
+		irodsConnectionPool.close();
+		irodsFileSystem.close();
+	}
+
+	@Test
+	public void testWalkUnderPathPrefix() throws Exception {
+		IRODSAccount irodsAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSFileSystem irodsFileSystem = new IRODSFileSystem(irodsAccount);
+		IRODSConnectionPool irodsConnectionPool = buildPool();
+		String top = makeTree(irodsFileSystem, "walkUnderPrefix");
+
+		IRODSTreeWalker walker = IRODSTreeWalker.instance(irodsFileSystem,
+				irodsConnectionPool, 2);
+		walker.setPathPrefix(top + "/a/a");
+		RecordingVisitor visitor = new RecordingVisitor();
+		walker.walk(top, visitor);
+
+		Assert.assertEquals("should be top, a, and a1", 3,
+				visitor.directories.size());
+		Assert.assertTrue(visitor.directories.contains(top + "/a/a1"));
+		Assert.assertFalse(visitor.directories.contains(top + "/b"));
+		Assert.assertEquals("only f3 starts with the prefix", 1,
+				visitor.files.size());
+		Assert.assertTrue(visitor.files.contains(top + "/a/a1/f3"));
+
+		irodsConnectionPool.close();
+		irodsFileSystem.close();
+	}
+
+	@Test
+	public void testTerminateStopsWalk() throws Exception {
+		IRODSAccount irodsAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSFileSystem irodsFileSystem = new IRODSFileSystem(irodsAccount);
+		IRODSConnectionPool irodsConnectionPool = buildPool();
+		String top = makeTree(irodsFileSystem, "walkTerminate");
+
+		IRODSTreeWalker walker = IRODSTreeWalker.instance(irodsFileSystem,
+				irodsConnectionPool, 2);
+		RecordingVisitor visitor = new RecordingVisitor() {
+			@Override
+			public VisitResult preVisitDirectory(
+					final IRODSFileListingEntry directory, final int depth) {
+				super.preVisitDirectory(directory, depth);
+				return depth == 1 ? VisitResult.TERMINATE
+						: VisitResult.CONTINUE;
+			}
+		};
+		walker.walk(top, visitor);
+
+		Assert.assertFalse("walk went below a terminated directory",
+				visitor.directories.contains(top + "/a/a1"));
+		Assert.assertFalse("top was post visited after termination",
+				visitor.postVisited.contains(top));
+
+		irodsConnectionPool.close();
+		irodsFileSystem.close();
+	}
+
+	@Test(expected = JargonException.class)
+	public void testWalkMissingDirectory() throws Exception {
+		IRODSAccount irodsAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSFileSystem irodsFileSystem = new IRODSFileSystem(irodsAccount);
+		IRODSConnectionPool irodsConnectionPool = buildPool();
+		String missing = testingPropertiesHelper
+				.buildIRODSCollectionAbsolutePathFromTestProperties(
+						testingProperties, IRODS_TEST_SUBDIR_PATH
+								+ "/doesNotExist");
+		try {
+			IRODSTreeWalker.instance(irodsFileSystem, irodsConnectionPool, 1)
+					.walk(missing, new RecordingVisitor());
+		} finally {
+			irodsConnectionPool.close();
+			irodsFileSystem.close();
+		}
+	}
+
+}
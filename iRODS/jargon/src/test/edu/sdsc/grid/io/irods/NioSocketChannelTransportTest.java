@@ -0,0 +1,217 @@
+package edu.sdsc.grid.io.irods;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+
+import junit.framework.Assert;
+
+import org.irods.jargon.core.connection.IRODSTransportOptions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NioSocketChannelTransportTest {
+
+	private static final int BUFFER_SIZE = 1024;
+
+	private ServerSocket serverSocket;
+	private Thread echoThread;
+
+	/**
+	 * Accept one connection and echo everything back on it.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		serverSocket = new ServerSocket(0);
+		echoThread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					Socket socket = serverSocket.accept();
+					InputStream in = socket.getInputStream();
+					OutputStream out = socket.getOutputStream();
+					byte[] buffer = new byte[4096];
+					int n;
+					while ((n = in.read(buffer)) > 0) {
+						out.write(buffer, 0, n);
+					}
+					socket.close();
+				} catch (IOException e) {
+					// test over
+				}
+			}
+		});
+		echoThread.setDaemon(true);
+		echoThread.start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		serverSocket.close();
+	}
+
+	private NioSocketChannelTransport connect() throws Exception {
+		IRODSTransportOptions transportOptions = new IRODSTransportOptions();
+		transportOptions.setTransportType(IRODSTransportOptions.TransportType.NIO);
+		transportOptions.setDirectBufferSize(BUFFER_SIZE);
+		transportOptions.setTcpNoDelay(true);
+		transportOptions.setReceiveBufferSize(64 * 1024);
+		return NioSocketChannelTransport.instance(SocketChannel.open(),
+				"127.0.0.1", serverSocket.getLocalPort(), transportOptions);
+	}
+
+	private static byte[] pattern(final int length) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = (byte) (i * 31);
+		}
+		return bytes;
+	}
+
+	private static void readFully(final IRODSTransport transport,
+			final byte[] value) throws IOException {
+		int read = 0;
+		while (read < value.length) {
+			int n = transport.read(value, read, value.length - read);
+			Assert.assertTrue("unexpected end of stream", n > 0);
+			read += n;
+		}
+	}
+
+	@Test
+	public void testSmallWritesAreBufferedUntilFlush() throws Exception {
+		NioSocketChannelTransport transport = connect();
+		Assert.assertTrue(transport.getSocket().getTcpNoDelay());
+		byte[] sent = pattern(100);
+		transport.write(sent, 0, 60);
+		transport.write(sent, 60, 40);
+		transport.flush();
+
+		byte[] received = new byte[100];
+		readFully(transport, received);
+		for (int i = 0; i < sent.length; i++) {
+			Assert.assertEquals(sent[i], received[i]);
+		}
+		transport.close();
+	}
+
+	@Test
+	public void testLargeWriteAndReadBypassBuffers() throws Exception {
+		NioSocketChannelTransport transport = connect();
+		byte[] header = pattern(10);
+		byte[] sent = pattern(BUFFER_SIZE * 20 + 7);
+		transport.write(header, 0, header.length);
+		// larger than the direct buffer, goes out with the header in one
+		// gathering write
+		transport.write(sent, 0, sent.length);
+		transport.flush();
+
+		byte[] receivedHeader = new byte[header.length];
+		readFully(transport, receivedHeader);
+		byte[] received = new byte[sent.length];
+		readFully(transport, received);
+		for (int i = 0; i < header.length; i++) {
+			Assert.assertEquals(header[i], receivedHeader[i]);
+		}
+		for (int i = 0; i < sent.length; i++) {
+			Assert.assertEquals("byte " + i, sent[i], received[i]);
+		}
+		transport.close();
+	}
+
+	@Test
+	public void testStreamsGoThroughTransport() throws Exception {
+		NioSocketChannelTransport transport = connect();
+		byte[] sent = pattern(50);
+		transport.getOutputStream().write(sent);
+
+		// part read through the transport, rest through the stream
+		byte[] first = new byte[10];
+		readFully(transport, first);
+		InputStream in = transport.getInputStream();
+		Assert.assertEquals(sent[10] & 0xff, in.read());
+		byte[] rest = new byte[39];
+		int read = 0;
+		while (read < rest.length) {
+			read += in.read(rest, read, rest.length - read);
+		}
+		Assert.assertEquals(sent[49], rest[38]);
+		transport.close();
+	}
+
+	@Test
+	public void testSendAndReceiveFile() throws Exception {
+		NioSocketChannelTransport transport = connect();
+		byte[] header = pattern(10);
+		byte[] contents = pattern(BUFFER_SIZE * 50 + 3);
+		File source = File.createTempFile("nioTransportSource", ".dat");
+		File destination = File.createTempFile("nioTransportDest", ".dat");
+		source.deleteOnExit();
+		destination.deleteOnExit();
+		FileOutputStream out = new FileOutputStream(source);
+		out.write(contents);
+		out.close();
+
+		// the header is buffered and must go out before the file
+		transport.write(header, 0, header.length);
+		RandomAccessFile sourceFile = new RandomAccessFile(source, "r");
+		transport.sendFile(sourceFile.getChannel(), 0, contents.length);
+		sourceFile.close();
+
+		// read part of the header, so the rest and some of the file are
+		// left in the input buffer
+		byte[] receivedHeader = new byte[4];
+		readFully(transport, receivedHeader);
+		byte[] restOfHeader = new byte[6];
+		readFully(transport, restOfHeader);
+		Assert.assertEquals(header[9], restOfHeader[5]);
+
+		RandomAccessFile destinationFile = new RandomAccessFile(destination,
+				"rw");
+		FileChannel channel = destinationFile.getChannel();
+		transport.receiveFile(channel, 0, contents.length);
+		Assert.assertEquals(contents.length, channel.size());
+		byte[] received = new byte[contents.length];
+		destinationFile.seek(0);
+		destinationFile.readFully(received);
+		destinationFile.close();
+		for (int i = 0; i < contents.length; i++) {
+			Assert.assertEquals("byte " + i, contents[i], received[i]);
+		}
+		transport.close();
+	}
+
+	@Test
+	public void testBuffersReturnedToPoolOnClose() throws Exception {
+		int freeBefore = DirectByteBufferPool.getFreeCount(BUFFER_SIZE);
+		NioSocketChannelTransport transport = connect();
+		transport.close();
+		transport.close();
+		Assert.assertTrue(transport.isClosed());
+		int freeAfter = DirectByteBufferPool.getFreeCount(BUFFER_SIZE);
+		// two were borrowed from the pool, or allocated if it was empty
+		Assert.assertEquals("both buffers returned once",
+				Math.max(freeBefore, 2), freeAfter);
+	}
+
+	@Test(expected = ClosedChannelException.class)
+	public void testWriteAfterClose() throws Exception {
+		NioSocketChannelTransport transport = connect();
+		transport.close();
+		transport.write(new byte[1], 0, 1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeSendBufferSize() throws Exception {
+		new IRODSTransportOptions().setSendBufferSize(-1);
+	}
+
+}
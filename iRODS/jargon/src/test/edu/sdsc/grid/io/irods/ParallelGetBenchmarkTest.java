@@ -0,0 +1,136 @@
+package edu.sdsc.grid.io.irods;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.sdsc.grid.io.FileFactory;
+import edu.sdsc.grid.io.local.LocalFile;
+
+/**
+ * Times a parallel get of the same data, served from a local fake portal,
+ * through the seek and write path of <code>TransferThread</code>, through
+ * channel writes, and through memory mapped stripes. Results are logged, only
+ * the file contents are asserted. The size in MB is set with the
+ * <code>jargon.benchmark.get.mb</code> system property.
+ */
+public class ParallelGetBenchmarkTest {
+
+	private static Logger log = LoggerFactory
+			.getLogger(ParallelGetBenchmarkTest.class);
+
+	private static final int STRIPES = 4;
+	private static final int RUNS = 3;
+
+	private static long length;
+	private static ParallelTransferEngine engine;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		length = Long.getLong("jargon.benchmark.get.mb", 256) * 1024 * 1024;
+		engine = ParallelTransferEngine.instance(STRIPES);
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		engine.shutdown();
+	}
+
+	private interface GetPath {
+		void get(FakeParallelTransferServer server, File destination)
+				throws Exception;
+	}
+
+	private long time(final String name, final GetPath path) throws Exception {
+		long best = Long.MAX_VALUE;
+		for (int run = 0; run < RUNS; run++) {
+			File destination = File.createTempFile("parallelGetBenchmark",
+					".dat");
+			destination.deleteOnExit();
+			FakeParallelTransferServer server = FakeParallelTransferServer
+					.instance(STRIPES, IRODSConstants.GET_OPR, length);
+
+			long start = System.nanoTime();
+			path.get(server, destination);
+			long elapsed = (System.nanoTime() - start) / 1000000;
+
+			List<Throwable> serverErrors = server.join();
+			server.close();
+			Assert.assertTrue(name + " server errors:" + serverErrors,
+					serverErrors.isEmpty());
+			ParallelTransferEngineTest.assertContents(destination, length);
+			destination.delete();
+			best = Math.min(best, elapsed);
+		}
+
+		log.info(name + ": best of " + RUNS + " runs " + best + " ms, "
+				+ (length / 1024 / 1024 * 1000 / Math.max(best, 1)) + " MB/s");
+		return best;
+	}
+
+	@Test
+	public void testCompareGetPaths() throws Exception {
+		log.info("parallel get of " + length + " bytes over " + STRIPES
+				+ " stripes");
+
+		time("seek and write (TransferThread)", new GetPath() {
+			public void get(final FakeParallelTransferServer server,
+					final File destination) throws Exception {
+				IRODSCommands commands = new IRODSCommands();
+				Thread[] threads = new Thread[STRIPES];
+				IRODSCommands.TransferThread[] transfers = new IRODSCommands.TransferThread[STRIPES];
+				for (int i = 0; i < STRIPES; i++) {
+					transfers[i] = commands.new TransferThread("127.0.0.1",
+							server.getPort(), FakeParallelTransferServer.COOKIE,
+							FileFactory.newRandomAccessFile(new LocalFile(
+									destination), "rw"));
+					threads[i] = new Thread(transfers[i]);
+				}
+				for (Thread thread : threads) {
+					thread.start();
+				}
+				for (Thread thread : threads) {
+					thread.join();
+				}
+				for (IRODSCommands.TransferThread transfer : transfers) {
+					transfer.close();
+					transfer.local.close();
+				}
+			}
+		});
+
+		time("channel writes", new GetPath() {
+			public void get(final FakeParallelTransferServer server,
+					final File destination) throws Exception {
+				RandomAccessFile localFile = new RandomAccessFile(destination,
+						"rw");
+				engine.get("127.0.0.1", server.getPort(),
+						FakeParallelTransferServer.COOKIE, STRIPES, localFile
+								.getChannel(), false, null, 0);
+				localFile.close();
+			}
+		});
+
+		time("memory mapped", new GetPath() {
+			public void get(final FakeParallelTransferServer server,
+					final File destination) throws Exception {
+				RandomAccessFile localFile = new RandomAccessFile(destination,
+						"rw");
+				localFile.setLength(length);
+				engine.get("127.0.0.1", server.getPort(),
+						FakeParallelTransferServer.COOKIE, STRIPES, localFile
+								.getChannel(), true, null, 0);
+				localFile.close();
+			}
+		});
+	}
+
+}
@@ -0,0 +1,88 @@
+package edu.sdsc.grid.io.irods;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class ParallelTransferAutotunerTest {
+
+	private static final String HOST = "irods.example.org";
+	private static final long BYTES = 100 * 1024 * 1024;
+
+	/**
+	 * nanoseconds to move BYTES with the given threads, fastest at 3 threads
+	 */
+	private static long elapsed(final int threads) {
+		return 1000000000L + Math.abs(threads - 3) * 300000000L;
+	}
+
+	@Test
+	public void testFirstTransferUsesMaxThreads() throws Exception {
+		ParallelTransferAutotuner autotuner = ParallelTransferAutotuner
+				.instance();
+		Assert.assertEquals(8, autotuner.recommendThreads(HOST, 8));
+	}
+
+	@Test
+	public void testSingleOrNoThreads() throws Exception {
+		ParallelTransferAutotuner autotuner = ParallelTransferAutotuner
+				.instance();
+		Assert.assertEquals(1, autotuner.recommendThreads(HOST, 1));
+		Assert.assertEquals(0, autotuner.recommendThreads(HOST, 0));
+		Assert.assertEquals(0, autotuner.recommendThreads(HOST, -1));
+	}
+
+	@Test
+	public void testTriesFewerThreadsAfterMax() throws Exception {
+		ParallelTransferAutotuner autotuner = ParallelTransferAutotuner
+				.instance();
+		autotuner.record(HOST, 8, BYTES, elapsed(8));
+		Assert.assertEquals(7, autotuner.recommendThreads(HOST, 8));
+	}
+
+	@Test
+	public void testConvergesOnFastestThreadCount() throws Exception {
+		ParallelTransferAutotuner autotuner = ParallelTransferAutotuner
+				.instance();
+		int atBest = 0;
+		for (int i = 0; i < 48; i++) {
+			int threads = autotuner.recommendThreads(HOST, 8);
+			autotuner.record(HOST, threads, BYTES, elapsed(threads));
+			if (i >= 16 && threads == 3) {
+				atBest++;
+			}
+		}
+		Assert.assertTrue("only " + atBest + " of 32 transfers used 3 threads",
+				atBest >= 24);
+	}
+
+	@Test
+	public void testRecordsThreadsServerUsed() throws Exception {
+		ParallelTransferAutotuner autotuner = ParallelTransferAutotuner
+				.instance();
+		// asked for 8, the server used 2
+		autotuner.record(HOST, 2, BYTES, elapsed(2));
+		Assert.assertEquals(0.0, autotuner.getThroughput(HOST, 8));
+		Assert.assertTrue(autotuner.getThroughput(HOST, 2) > 0);
+		Assert.assertEquals(3, autotuner.recommendThreads(HOST, 8));
+	}
+
+	@Test
+	public void testHostsAreTunedSeparately() throws Exception {
+		ParallelTransferAutotuner autotuner = ParallelTransferAutotuner
+				.instance();
+		autotuner.record(HOST, 8, BYTES, elapsed(8));
+		Assert.assertEquals(8, autotuner.recommendThreads("other.example.org",
+				8));
+	}
+
+	@Test
+	public void testIgnoresEmptyTransfers() throws Exception {
+		ParallelTransferAutotuner autotuner = ParallelTransferAutotuner
+				.instance();
+		autotuner.record(HOST, 4, 0, elapsed(4));
+		autotuner.record(HOST, 4, BYTES, 0);
+		Assert.assertEquals(8, autotuner.recommendThreads(HOST, 8));
+	}
+
+}
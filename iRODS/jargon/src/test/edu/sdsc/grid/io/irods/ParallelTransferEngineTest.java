@@ -0,0 +1,331 @@
+package edu.sdsc.grid.io.irods;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.ProtocolException;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.sdsc.grid.io.FileFactory;
+import edu.sdsc.grid.io.local.LocalFile;
+
+public class ParallelTransferEngineTest {
+
+	private ParallelTransferEngine engine;
+
+	@Before
+	public void setUp() throws Exception {
+		engine = ParallelTransferEngine.instance(2);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		engine.shutdown();
+	}
+
+	static void assertContents(final File file, final long length)
+			throws IOException {
+		Assert.assertEquals(length, file.length());
+		RandomAccessFile localFile = new RandomAccessFile(file, "r");
+		byte[] buffer = new byte[64 * 1024];
+		byte[] expected = new byte[buffer.length];
+		long position = 0;
+		while (position < length) {
+			int n = (int) Math.min(buffer.length, length - position);
+			localFile.readFully(buffer, 0, n);
+			FakeParallelTransferServer.fill(expected, n, position);
+			for (int i = 0; i < n; i++) {
+				if (buffer[i] != expected[i]) {
+					localFile.close();
+					Assert.fail("byte " + (position + i) + " differs");
+				}
+			}
+			position += n;
+		}
+		localFile.close();
+	}
+
+	private long get(final FakeParallelTransferServer server,
+			final int stripes, final File destination,
+			final boolean memoryMapped, final long timeoutMillis)
+			throws IOException {
+		return get(server, stripes, destination, memoryMapped, null,
+				timeoutMillis);
+	}
+
+	private long get(final FakeParallelTransferServer server,
+			final int stripes, final File destination,
+			final boolean memoryMapped, final TransferJournal journal,
+			final long timeoutMillis) throws IOException {
+		RandomAccessFile localFile = new RandomAccessFile(destination, "rw");
+		try {
+			return engine.get("127.0.0.1", server.getPort(),
+					FakeParallelTransferServer.COOKIE, stripes,
+					localFile.getChannel(), memoryMapped, journal,
+					timeoutMillis);
+		} finally {
+			localFile.close();
+		}
+	}
+
+	@Test
+	public void testParallelGet() throws Exception {
+		long length = 3 * 1024 * 1024 + 11;
+		File destination = File.createTempFile("parallelGet", ".dat");
+		destination.deleteOnExit();
+		FakeParallelTransferServer server = FakeParallelTransferServer
+				.instance(3, IRODSConstants.GET_OPR, length);
+
+		Assert.assertEquals(length, get(server, 3, destination, false, 0));
+		List<Throwable> serverErrors = server.join();
+		server.close();
+
+		Assert.assertTrue("server errors:" + serverErrors, serverErrors
+				.isEmpty());
+		assertContents(destination, length);
+	}
+
+	@Test
+	public void testMemoryMappedParallelGet() throws Exception {
+		long length = 5 * 1024 * 1024 + 3;
+		File destination = File.createTempFile("parallelMappedGet", ".dat");
+		destination.deleteOnExit();
+		RandomAccessFile presize = new RandomAccessFile(destination, "rw");
+		presize.setLength(length);
+		presize.close();
+		FakeParallelTransferServer server = FakeParallelTransferServer
+				.instance(4, IRODSConstants.GET_OPR, length);
+
+		Assert.assertEquals(length, get(server, 4, destination, true, 0));
+		List<Throwable> serverErrors = server.join();
+		server.close();
+
+		Assert.assertTrue("server errors:" + serverErrors, serverErrors
+				.isEmpty());
+		assertContents(destination, length);
+	}
+
+	@Test
+	public void testParallelPut() throws Exception {
+		int length = 2 * 1024 * 1024 + 5;
+		File source = File.createTempFile("parallelPut", ".dat");
+		source.deleteOnExit();
+		byte[] contents = new byte[length];
+		FakeParallelTransferServer.fill(contents, length, 0);
+		FileOutputStream out = new FileOutputStream(source);
+		out.write(contents);
+		out.close();
+		FakeParallelTransferServer server = FakeParallelTransferServer
+				.instance(4, IRODSConstants.PUT_OPR, length);
+
+		RandomAccessFile localFile = new RandomAccessFile(source, "r");
+		long sent = engine.put("127.0.0.1", server.getPort(),
+				FakeParallelTransferServer.COOKIE, 4, localFile.getChannel(),
+				null, 0);
+		localFile.close();
+		List<Throwable> serverErrors = server.join();
+		server.close();
+
+		Assert.assertTrue("server errors:" + serverErrors, serverErrors
+				.isEmpty());
+		Assert.assertEquals(length, sent);
+	}
+
+	@Test
+	public void testWrongOperationFailsTransfer() throws Exception {
+		File destination = File.createTempFile("parallelWrongOpr", ".dat");
+		destination.deleteOnExit();
+		// server asks for a put while the client gets
+		FakeParallelTransferServer server = FakeParallelTransferServer
+				.instance(2, IRODSConstants.PUT_OPR, 1024);
+
+		try {
+			get(server, 2, destination, false, 0);
+			Assert.fail("expected ParallelTransferException");
+		} catch (ParallelTransferException e) {
+			Assert.assertFalse(e.getStripeErrors().isEmpty());
+			Assert.assertTrue(e.getCause() instanceof ProtocolException);
+		} finally {
+			server.close();
+		}
+	}
+
+	@Test
+	public void testTimeoutClosesStripes() throws Exception {
+		File destination = File.createTempFile("parallelTimeout", ".dat");
+		destination.deleteOnExit();
+		// accepts but never sends a header
+		FakeParallelTransferServer silent = FakeParallelTransferServer
+				.silent(2);
+
+		long start = System.currentTimeMillis();
+		try {
+			get(silent, 2, destination, false, 200);
+			Assert.fail("expected ParallelTransferException");
+		} catch (ParallelTransferException e) {
+			Assert.assertTrue("took too long",
+					System.currentTimeMillis() - start < 10000);
+		} finally {
+			silent.close();
+		}
+
+		// the pool is free again
+		long length = 4096;
+		FakeParallelTransferServer server = FakeParallelTransferServer
+				.instance(2, IRODSConstants.GET_OPR, length);
+		Assert.assertEquals(length, get(server, 2, destination, false, 10000));
+		server.join();
+		server.close();
+	}
+
+	@Test
+	public void testJournaledGetRecordsEveryRange() throws Exception {
+		long length = 9 * 1024 * 1024 + 1;
+		File destination = File.createTempFile("parallelJournaledGet", ".dat");
+		destination.deleteOnExit();
+		TransferJournal journal = TransferJournal.instance(new File(System
+				.getProperty("java.io.tmpdir")), IRODSConstants.GET_OPR,
+				destination.getAbsolutePath(), "/zone/home/journaledGet",
+				length, 0);
+		FakeParallelTransferServer server = FakeParallelTransferServer
+				.instance(3, IRODSConstants.GET_OPR, length);
+
+		get(server, 3, destination, false, journal, 0);
+		server.join();
+		server.close();
+
+		Assert.assertEquals(length, journal.getCompletedLength());
+		Assert.assertTrue(journal.getMissingRanges().isEmpty());
+		journal.delete();
+	}
+
+	@Test
+	public void testJournaledPutRecordsEveryRange() throws Exception {
+		int length = 1024 * 1024 + 3;
+		File source = File.createTempFile("parallelJournaledPut", ".dat");
+		source.deleteOnExit();
+		byte[] contents = new byte[length];
+		FakeParallelTransferServer.fill(contents, length, 0);
+		FileOutputStream out = new FileOutputStream(source);
+		out.write(contents);
+		out.close();
+		TransferJournal journal = TransferJournal.instance(new File(System
+				.getProperty("java.io.tmpdir")), IRODSConstants.PUT_OPR,
+				source.getAbsolutePath(), "/zone/home/journaledPut", length,
+				source.lastModified());
+		FakeParallelTransferServer server = FakeParallelTransferServer
+				.instance(2, IRODSConstants.PUT_OPR, length);
+
+		RandomAccessFile localFile = new RandomAccessFile(source, "r");
+		engine.put("127.0.0.1", server.getPort(),
+				FakeParallelTransferServer.COOKIE, 2, localFile.getChannel(),
+				journal, 0);
+		localFile.close();
+		server.join();
+		server.close();
+
+		Assert.assertEquals(length, journal.getCompletedLength());
+		journal.delete();
+	}
+
+	@Test
+	public void testFailedGetKeepsCompletedRanges() throws Exception {
+		long length = 12 * 1024 * 1024;
+		File destination = File.createTempFile("parallelFailedGet", ".dat");
+		destination.deleteOnExit();
+		File directory = new File(System.getProperty("java.io.tmpdir"));
+		String irodsPath = "/zone/home/failedGet";
+		TransferJournal journal = TransferJournal.instance(directory,
+				IRODSConstants.GET_OPR, destination.getAbsolutePath(),
+				irodsPath, length, 0);
+		FakeParallelTransferServer server = FakeParallelTransferServer
+				.failing(2, length);
+
+		try {
+			get(server, 2, destination, false, journal, 0);
+			Assert.fail("expected ParallelTransferException");
+		} catch (ParallelTransferException e) {
+			// expected
+		} finally {
+			journal.close();
+			server.close();
+		}
+
+		TransferJournal resumed = TransferJournal.resume(directory,
+				IRODSConstants.GET_OPR, destination.getAbsolutePath(),
+				irodsPath, length, 0);
+		Assert.assertNotNull("journal should have the first ranges", resumed);
+		Assert.assertTrue(resumed.getCompletedLength() < length);
+
+		// every byte the journal holds as received is in the file
+		RandomAccessFile localFile = new RandomAccessFile(destination, "r");
+		long position = 0;
+		List<long[]> missing = resumed.getMissingRanges();
+		missing.add(new long[] { length, 0 });
+		for (long[] range : missing) {
+			byte[] received = new byte[(int) (range[0] - position)];
+			localFile.seek(position);
+			localFile.readFully(received);
+			byte[] expected = new byte[received.length];
+			FakeParallelTransferServer.fill(expected, expected.length,
+					position);
+			Assert.assertTrue("range at " + position + " differs", Arrays
+					.equals(expected, received));
+			position = range[0] + range[1];
+		}
+		localFile.close();
+		resumed.delete();
+	}
+
+	@Test
+	public void testTransferThreadPutSendsRequestedRanges() throws Exception {
+		int length = 3 * 1024 * 1024 + 1;
+		File source = File.createTempFile("transferThreadPut", ".dat");
+		source.deleteOnExit();
+		byte[] contents = new byte[length];
+		FakeParallelTransferServer.fill(contents, length, 0);
+		FileOutputStream out = new FileOutputStream(source);
+		out.write(contents);
+		out.close();
+		FakeParallelTransferServer server = FakeParallelTransferServer
+				.instance(3, IRODSConstants.PUT_OPR, length);
+
+		IRODSCommands commands = new IRODSCommands();
+		Thread[] threads = new Thread[3];
+		IRODSCommands.TransferThread[] transfers = new IRODSCommands.TransferThread[3];
+		for (int i = 0; i < threads.length; i++) {
+			transfers[i] = commands.new TransferThread("127.0.0.1", server
+					.getPort(), FakeParallelTransferServer.COOKIE, FileFactory
+					.newRandomAccessFile(new LocalFile(source), "r"),
+					IRODSConstants.PUT_OPR);
+			threads[i] = new Thread(transfers[i]);
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		List<Throwable> serverErrors = server.join();
+		for (IRODSCommands.TransferThread transfer : transfers) {
+			transfer.close();
+			transfer.local.close();
+		}
+		server.close();
+
+		Assert.assertTrue("server errors:" + serverErrors, serverErrors
+				.isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testZeroPoolSize() throws Exception {
+		ParallelTransferEngine.instance(0);
+	}
+
+}
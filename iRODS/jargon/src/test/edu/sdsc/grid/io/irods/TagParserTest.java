@@ -0,0 +1,145 @@
+package edu.sdsc.grid.io.irods;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class TagParserTest {
+
+	private static final String ENCODING = "utf-8";
+
+	private static final String GEN_QUERY_OUT = "<GenQueryOut_PI><rowCnt>2</rowCnt>\n"
+			+ "<attriCnt>2</attriCnt>\n<continueInx>0</continueInx>\n"
+			+ "<totalRowCount>0</totalRowCount>\n"
+			+ "<SqlResult_PI><attriInx>403</attriInx>\n<reslen>20</reslen>\n"
+			+ "<value>a</value>\n<value>b</value>\n</SqlResult_PI>\n"
+			+ "<SqlResult_PI><attriInx>501</attriInx>\n<reslen>20</reslen>\n"
+			+ "<value>/zone/home</value>\n<value>/zone/trash</value>\n</SqlResult_PI>\n"
+			+ "</GenQueryOut_PI>\n";
+
+	private Tag parse(final String message, final boolean decode)
+			throws Exception {
+		byte[] bytes = message.getBytes(ENCODING);
+		return Tag.readNextTag(bytes, decode, ENCODING);
+	}
+
+	@Test
+	public void testParseHeader() throws Exception {
+		Tag header = parse(
+				"<MsgHeader_PI>\n<type>RODS_API_REPLY</type>\n<msgLen>123</msgLen>\n"
+						+ "<errorLen>0</errorLen>\n<bsLen>4</bsLen>\n<intInfo>0</intInfo>\n"
+						+ "</MsgHeader_PI>\n", true);
+		Assert.assertEquals("MsgHeader_PI", header.getName());
+		Assert.assertEquals(5, header.getLength());
+		Assert.assertEquals("RODS_API_REPLY", header.tags[0].getStringValue());
+		Assert.assertEquals(123, header.tags[1].getIntValue());
+		Assert.assertEquals(4, header.tags[3].getIntValue());
+		Assert.assertNull("container should have no value", header.value);
+	}
+
+	@Test
+	public void testParseGenQueryOut() throws Exception {
+		Tag response = parse(GEN_QUERY_OUT, true);
+		Assert.assertEquals(6, response.getLength());
+		Assert.assertEquals(2, response.getTag("rowCnt").getIntValue());
+		Tag secondResult = response.getTag(IRODSConstants.SqlResult_PI, 1);
+		Assert.assertEquals(501, secondResult.getTag("attriInx").getIntValue());
+		Assert.assertEquals("/zone/trash", secondResult.tags[3]
+				.getStringValue());
+	}
+
+	@Test
+	public void testKnownTagNamesAreShared() throws Exception {
+		Tag first = parse(GEN_QUERY_OUT, true);
+		Tag second = parse(GEN_QUERY_OUT, true);
+		Assert.assertSame(first.tags[4].getName(), second.tags[4].getName());
+		Assert.assertSame(IRODSConstants.SqlResult_PI, first.tags[4].getName());
+		Assert.assertSame(first.tags[4].tags[2].getName(), second.tags[5].tags[3]
+				.getName());
+	}
+
+	@Test
+	public void testUnknownTagName() throws Exception {
+		Tag tag = parse("<Unheard_PI><someField>x</someField>\n</Unheard_PI>\n",
+				true);
+		Assert.assertEquals("Unheard_PI", tag.getName());
+		Assert.assertEquals("x", tag.getTag("someField").getStringValue());
+	}
+
+	@Test
+	public void testEmptyValue() throws Exception {
+		Tag tag = parse("<STR_PI><myStr></myStr>\n</STR_PI>\n", true);
+		Assert.assertEquals("", tag.getTag("myStr").getStringValue());
+	}
+
+	@Test
+	public void testDecodeEntities() throws Exception {
+		Tag tag = parse(
+				"<STR_PI><myStr>a &amp; b &lt;c&gt; &quot;d&quot; &apos;e&apos;</myStr>\n</STR_PI>\n",
+				true);
+		Assert.assertEquals("a & b <c> \"d\" `e`", tag.getTag("myStr")
+				.getStringValue());
+	}
+
+	@Test
+	public void testDecodeIsSinglePass() throws Exception {
+		Tag tag = parse("<STR_PI><myStr>&amp;lt;</myStr>\n</STR_PI>\n", true);
+		Assert.assertEquals("&lt;", tag.getTag("myStr").getStringValue());
+	}
+
+	@Test
+	public void testNoDecode() throws Exception {
+		Tag tag = parse("<STR_PI><myStr>a &amp; b</myStr>\n</STR_PI>\n", false);
+		Assert.assertEquals("a &amp; b", tag.getTag("myStr").getStringValue());
+	}
+
+	@Test
+	public void testNonAsciiValue() throws Exception {
+		Tag tag = parse(
+				"<STR_PI><myStr>caf\u00e9 &amp; cr\u00e8me</myStr>\n</STR_PI>\n",
+				true);
+		Assert.assertEquals("caf\u00e9 & cr\u00e8me", tag.getTag("myStr")
+				.getStringValue());
+	}
+
+	@Test
+	public void testValueKeepsInnerNewlines() throws Exception {
+		Tag tag = parse("<STR_PI><myStr>\nline1\nline2\n</myStr>\n</STR_PI>\n",
+				true);
+		Assert.assertEquals("line1\nline2\n", tag.getTag("myStr")
+				.getStringValue());
+	}
+
+	@Test
+	public void testRoundTripThroughParseTag() throws Exception {
+		Tag original = new Tag(IRODSConstants.KeyValPair_PI, new Tag[] {
+				new Tag(IRODSConstants.ssLen, 1),
+				new Tag(IRODSConstants.keyWord, "a<b>&\"c`"),
+				new Tag(IRODSConstants.svalue, "") });
+		Tag parsed = parse(original.parseTag(), true);
+		Assert.assertEquals(original.parseTag(), parsed.parseTag());
+	}
+
+	@Test
+	public void testParseRange() throws Exception {
+		byte[] bytes = ("junk<STR_PI><myStr>x</myStr>\n</STR_PI>\nmore")
+				.getBytes(ENCODING);
+		Tag tag = TagParser.parse(bytes, 2, bytes.length - 6, true, ENCODING);
+		Assert.assertEquals("STR_PI", tag.getName());
+		Assert.assertEquals("x", tag.getTag("myStr").getStringValue());
+	}
+
+	@Test
+	public void testNoTag() throws Exception {
+		Assert.assertNull(parse("no tags here", true));
+		Assert.assertNull(Tag.readNextTag(null, ENCODING));
+	}
+
+	@Test
+	public void testSetValueDecodes() throws Exception {
+		Tag tag = new Tag("myStr");
+		tag.setValue("&lt;&amp;&apos;", true);
+		Assert.assertEquals("<&`", tag.getStringValue());
+	}
+
+}
@@ -0,0 +1,105 @@
+package edu.sdsc.grid.io.irods;
+
+import java.util.Arrays;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import edu.sdsc.grid.io.Host;
+
+public class TagWriterTest {
+
+	private static final String ENCODING = "utf-8";
+
+	private void assertSameAsParseTag(final Tag tag) throws Exception {
+		TagWriter writer = new TagWriter(ENCODING, 8);
+		writer.writeTag(tag);
+		byte[] expected = tag.parseTag().getBytes(ENCODING);
+		Assert.assertTrue("bytes differ from parseTag() for:"
+				+ tag.parseTag(), Arrays.equals(expected, writer.toByteArray()));
+	}
+
+	@Test
+	public void testWriteNestedTag() throws Exception {
+		Tag tag = new Tag(IRODSConstants.KeyValPair_PI, new Tag[] {
+				new Tag(IRODSConstants.ssLen, 2),
+				new Tag(IRODSConstants.keyWord, "dataType"),
+				new Tag(IRODSConstants.keyWord, "destRescName"),
+				new Tag(IRODSConstants.svalue, "generic"),
+				new Tag(IRODSConstants.svalue, "") });
+		assertSameAsParseTag(tag);
+	}
+
+	@Test
+	public void testWriteEscapedValue() throws Exception {
+		assertSameAsParseTag(new Tag("objPath", "/zone/a&b<c>\"d\"`e`"));
+	}
+
+	@Test
+	public void testWriteNonAsciiValue() throws Exception {
+		assertSameAsParseTag(new Tag("objPath",
+				"/zone/caf\u00e9 & cr\u00e8me/\u65e5\u672c"));
+	}
+
+	@Test
+	public void testWriteNullValue() throws Exception {
+		assertSameAsParseTag(new Tag("objPath"));
+	}
+
+	@Test
+	public void testWriteLargeMessage() throws Exception {
+		Tag tag = new Tag("GenQueryInp_PI");
+		for (int i = 0; i < 2000; i++) {
+			tag.addTag("value", "value number " + i);
+		}
+		assertSameAsParseTag(tag);
+	}
+
+	@Test
+	public void testWriteHeader() throws Exception {
+		TagWriter writer = new TagWriter(ENCODING);
+		writer.writeHeader("RODS_API_REQ", 123, 0, 5000000000L, -808000);
+		String expected = "<MsgHeader_PI><type>RODS_API_REQ</type><msgLen>123</msgLen>"
+				+ "<errorLen>0</errorLen><bsLen>5000000000</bsLen>"
+				+ "<intInfo>-808000</intInfo></MsgHeader_PI>";
+		byte[] bytes = writer.toByteArray();
+		Assert.assertEquals(expected.length() + 4, bytes.length);
+		Assert.assertEquals(expected.length(), Host.castToInt(bytes));
+		Assert.assertEquals(expected, new String(bytes, 4, bytes.length - 4,
+				ENCODING));
+	}
+
+	@Test
+	public void testResetReusesBuffer() throws Exception {
+		TagWriter writer = new TagWriter(ENCODING);
+		writer.writeTag(new Tag("a", "first"));
+		byte[] buffer = writer.getBuffer();
+		writer.reset();
+		Assert.assertEquals(0, writer.getLength());
+		writer.writeTag(new Tag("a", "2"));
+		Assert.assertSame(buffer, writer.getBuffer());
+		Assert.assertEquals("<a>2</a>\n", new String(writer.toByteArray(),
+				ENCODING));
+	}
+
+	@Test
+	public void testRoundTripThroughParser() throws Exception {
+		Tag tag = new Tag("STR_PI", new Tag[] { new Tag("myStr",
+				"x & y <\u00e9>") });
+		TagWriter writer = new TagWriter(ENCODING);
+		writer.writeTag(tag);
+		Tag parsed = TagParser.parse(writer.getBuffer(), 0, writer
+				.getLength(), true, ENCODING);
+		Assert.assertEquals("x & y <\u00e9>", parsed.getTag("myStr")
+				.getStringValue());
+	}
+
+	@Test
+	public void testEscapeValue() throws Exception {
+		Assert.assertEquals("&amp;&lt;&gt;&quot;&apos;abc", Tag
+				.escapeValue("&<>\"`abc"));
+		Assert.assertNull(Tag.escapeValue(null));
+	}
+
+}
@@ -0,0 +1,170 @@
+package edu.sdsc.grid.io.irods;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TransferJournalTest {
+
+	private static final String LOCAL_PATH = "/tmp/transferJournalTest.dat";
+	private static final String IRODS_PATH = "/zone/home/test/transferJournalTest.dat";
+	private static final long LENGTH = 100 * 1024 * 1024;
+
+	private File directory;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = File.createTempFile("transferJournalTest", "");
+		directory.delete();
+		directory.mkdirs();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	private TransferJournal newJournal() throws IOException {
+		return TransferJournal.instance(directory, IRODSConstants.GET_OPR,
+				LOCAL_PATH, IRODS_PATH, LENGTH, 0);
+	}
+
+	private TransferJournal resume() throws IOException {
+		return TransferJournal.resume(directory, IRODSConstants.GET_OPR,
+				LOCAL_PATH, IRODS_PATH, LENGTH, 0);
+	}
+
+	@Test
+	public void testNewJournalIsMissingEverything() throws Exception {
+		TransferJournal journal = newJournal();
+		List<long[]> missing = journal.getMissingRanges();
+		journal.delete();
+
+		Assert.assertEquals(1, missing.size());
+		Assert.assertEquals(0, missing.get(0)[0]);
+		Assert.assertEquals(LENGTH, missing.get(0)[1]);
+	}
+
+	@Test
+	public void testRangesMerge() throws Exception {
+		TransferJournal journal = newJournal();
+		journal.recordCompleted(0, 10);
+		journal.recordCompleted(20, 10);
+		journal.recordCompleted(10, 10);
+		journal.recordCompleted(50, 10);
+		journal.recordCompleted(55, 10);
+		List<long[]> missing = journal.getMissingRanges();
+		long completed = journal.getCompletedLength();
+		journal.delete();
+
+		Assert.assertEquals(45, completed);
+		Assert.assertEquals(2, missing.size());
+		Assert.assertEquals(30, missing.get(0)[0]);
+		Assert.assertEquals(20, missing.get(0)[1]);
+		Assert.assertEquals(65, missing.get(1)[0]);
+		Assert.assertEquals(LENGTH - 65, missing.get(1)[1]);
+	}
+
+	@Test
+	public void testResumeReadsRecordedRanges() throws Exception {
+		TransferJournal journal = newJournal();
+		journal.recordCompleted(1024, 4096);
+		journal.recordCompleted(LENGTH - 10, 10);
+		journal.close();
+
+		TransferJournal resumed = resume();
+		Assert.assertNotNull(resumed);
+		Assert.assertEquals(4096 + 10, resumed.getCompletedLength());
+		Assert.assertEquals(2, resumed.getMissingRanges().size());
+		resumed.delete();
+		Assert.assertFalse(resumed.getJournalFile().exists());
+	}
+
+	@Test
+	public void testResumeWithoutJournal() throws Exception {
+		Assert.assertNull(resume());
+	}
+
+	@Test
+	public void testResumeEmptyJournalRemovesIt() throws Exception {
+		TransferJournal journal = newJournal();
+		journal.close();
+
+		Assert.assertNull(resume());
+		Assert.assertFalse(journal.getJournalFile().exists());
+	}
+
+	@Test
+	public void testResumeDiscardsChangedLocalFile() throws Exception {
+		TransferJournal journal = TransferJournal.instance(directory,
+				IRODSConstants.PUT_OPR, LOCAL_PATH, IRODS_PATH, LENGTH, 1000);
+		journal.recordCompleted(0, 4096);
+		journal.close();
+
+		Assert.assertNull(TransferJournal.resume(directory,
+				IRODSConstants.PUT_OPR, LOCAL_PATH, IRODS_PATH, LENGTH, 2000));
+		Assert.assertFalse(journal.getJournalFile().exists());
+	}
+
+	@Test
+	public void testResumeDiscardsChangedLength() throws Exception {
+		TransferJournal journal = newJournal();
+		journal.recordCompleted(0, 4096);
+		journal.close();
+
+		Assert.assertNull(TransferJournal.resume(directory,
+				IRODSConstants.GET_OPR, LOCAL_PATH, IRODS_PATH, LENGTH + 1, 0));
+	}
+
+	@Test
+	public void testResumeIgnoresTornRecord() throws Exception {
+		TransferJournal journal = newJournal();
+		journal.recordCompleted(0, 4096);
+		journal.close();
+		FileOutputStream append = new FileOutputStream(journal
+				.getJournalFile(), true);
+		append.write(new byte[] { 0, 0, 0, 0, 0 });
+		append.close();
+
+		TransferJournal resumed = resume();
+		Assert.assertEquals(4096, resumed.getCompletedLength());
+		resumed.recordCompleted(8192, 4096);
+		resumed.close();
+
+		TransferJournal again = resume();
+		Assert.assertEquals(8192, again.getCompletedLength());
+		again.delete();
+	}
+
+	@Test(expected = IOException.class)
+	public void testRangeOutsideTransfer() throws Exception {
+		TransferJournal journal = newJournal();
+		try {
+			journal.recordCompleted(LENGTH - 10, 20);
+		} finally {
+			journal.delete();
+		}
+	}
+
+	@Test
+	public void testJournalNamesDiffer() throws Exception {
+		Assert.assertFalse(TransferJournal.journalName(IRODSConstants.GET_OPR,
+				LOCAL_PATH, IRODS_PATH).equals(
+				TransferJournal.journalName(IRODSConstants.PUT_OPR, LOCAL_PATH,
+						IRODS_PATH)));
+	}
+
+}
@@ -0,0 +1,215 @@
+package edu.sdsc.grid.io.local;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LocalRandomAccessFileTest {
+
+	private File scratchFile = null;
+
+	/**
+	 * Counts the reads that go to the file.
+	 */
+	private static class CountingRandomAccessFile extends LocalRandomAccessFile {
+
+		private int fileReads = 0;
+
+		CountingRandomAccessFile(final File file, final String mode)
+				throws IOException {
+			super(file, mode);
+		}
+
+		@Override
+		protected int readBytes(final byte b[], final int offset, final int len)
+				throws IOException {
+			fileReads++;
+			return super.readBytes(b, offset, len);
+		}
+
+		int getFileReads() {
+			return fileReads;
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		scratchFile = File.createTempFile("LocalRandomAccessFileTest", ".dat");
+		scratchFile.deleteOnExit();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		scratchFile.delete();
+	}
+
+	private CountingRandomAccessFile openWith(final String contents)
+			throws Exception {
+		CountingRandomAccessFile raf = new CountingRandomAccessFile(
+				scratchFile, "rw");
+		raf.write(contents.getBytes("ISO-8859-1"));
+		raf.seek(0);
+		return raf;
+	}
+
+	@Test
+	public void testReadLineTerminators() throws Exception {
+		CountingRandomAccessFile raf = openWith("one\ntwo\r\nthree\rfour\r\rsix");
+		Assert.assertEquals("one", raf.readLine());
+		Assert.assertEquals(4, raf.getFilePointer());
+		Assert.assertEquals("two", raf.readLine());
+		Assert.assertEquals(9, raf.getFilePointer());
+		Assert.assertEquals("three", raf.readLine());
+		Assert.assertEquals("four", raf.readLine());
+		Assert.assertEquals("", raf.readLine());
+		Assert.assertEquals("six", raf.readLine());
+		Assert.assertNull(raf.readLine());
+		raf.close();
+	}
+
+	@Test
+	public void testReadLinesUseFewReads() throws Exception {
+		StringBuffer contents = new StringBuffer();
+		int lines = 5000;
+		for (int i = 0; i < lines; i++) {
+			contents.append("line number ").append(i).append('\n');
+		}
+		CountingRandomAccessFile raf = openWith(contents.toString());
+		for (int i = 0; i < lines; i++) {
+			Assert.assertEquals("line number " + i, raf.readLine());
+		}
+		Assert.assertNull(raf.readLine());
+		Assert.assertTrue("reads went to the file per line:"
+				+ raf.getFileReads(), raf.getFileReads() < lines / 20);
+		raf.close();
+	}
+
+	@Test
+	public void testLongLineSpansWindows() throws Exception {
+		StringBuffer line = new StringBuffer();
+		for (int i = 0; i < 20000; i++) {
+			line.append((char) ('a' + i % 26));
+		}
+		CountingRandomAccessFile raf = openWith(line + "\r\nnext");
+		Assert.assertEquals(line.toString(), raf.readLine());
+		Assert.assertEquals("next", raf.readLine());
+		Assert.assertNull(raf.readLine());
+		raf.close();
+	}
+
+	@Test
+	public void testReadAfterReadLineStartsAtNextLine() throws Exception {
+		CountingRandomAccessFile raf = openWith("first\r\nsecond\n");
+		Assert.assertEquals("first", raf.readLine());
+		byte[] bytes = new byte[6];
+		raf.readFully(bytes);
+		Assert.assertEquals("second", new String(bytes, "ISO-8859-1"));
+		raf.seek(2);
+		Assert.assertEquals("rst", raf.readLine());
+		raf.close();
+	}
+
+	@Test
+	public void testHighBytesAreNotEndOfFile() throws Exception {
+		CountingRandomAccessFile raf = new CountingRandomAccessFile(
+				scratchFile, "rw");
+		raf.write(new byte[] { (byte) 0xff, 'a', (byte) 0xe9, '\n' });
+		raf.seek(0);
+		Assert.assertEquals("\u00ffa\u00e9", raf.readLine());
+		raf.seek(0);
+		Assert.assertEquals(255, raf.readUnsignedByte());
+		Assert.assertEquals('a', raf.readByte());
+		Assert.assertEquals((byte) 0xe9, raf.readByte());
+		raf.close();
+	}
+
+	@Test
+	public void testPrimitivesRoundTrip() throws Exception {
+		CountingRandomAccessFile raf = new CountingRandomAccessFile(
+				scratchFile, "rw");
+		int values = 1000;
+		for (int i = 0; i < values; i++) {
+			raf.writeInt(i * 7919);
+			raf.writeLong(i * 1000000007L);
+			raf.writeDouble(i / 3.0);
+			raf.writeShort(i);
+			raf.writeBoolean(i % 2 == 0);
+			raf.writeChar('A' + i % 26);
+		}
+		long recordLength = raf.getFilePointer() / values;
+		raf.seek(0);
+		int readsBefore = raf.getFileReads();
+		for (int i = 0; i < values; i++) {
+			Assert.assertEquals(i * 7919, raf.readInt());
+			Assert.assertEquals(i * 1000000007L, raf.readLong());
+			Assert.assertEquals(i / 3.0, raf.readDouble(), 0);
+			Assert.assertEquals((short) i, raf.readShort());
+			Assert.assertEquals(i % 2 == 0, raf.readBoolean());
+			Assert.assertEquals('A' + i % 26, raf.readChar());
+		}
+		Assert.assertEquals(values * recordLength, raf.getFilePointer());
+		Assert.assertTrue(raf.getFileReads() - readsBefore < values / 10);
+
+		// seek back into the window, and out of it
+		raf.seek((values - 1) * recordLength);
+		Assert.assertEquals((values - 1) * 7919, raf.readInt());
+		raf.seek(3 * recordLength);
+		Assert.assertEquals(3 * 7919, raf.readInt());
+		Assert.assertEquals(3 * 1000000007L, raf.readLong());
+		raf.close();
+	}
+
+	@Test
+	public void testMultiValueReadLargerThanWindow() throws Exception {
+		CountingRandomAccessFile raf = new CountingRandomAccessFile(
+				scratchFile, "rw");
+		int values = 20000;
+		raf.writeInt(-1);
+		for (int i = 0; i < values; i++) {
+			raf.writeBoolean(i % 3 == 0);
+		}
+		raf.writeInt(-2);
+		raf.seek(0);
+		Assert.assertEquals(-1, raf.readInt());
+		boolean[] read = new boolean[values];
+		raf.readBooleans(read, values);
+		for (int i = 0; i < values; i++) {
+			Assert.assertEquals(i % 3 == 0, read[i]);
+		}
+		Assert.assertEquals(-2, raf.readInt());
+		Assert.assertEquals(raf.length(), raf.getFilePointer());
+		raf.close();
+	}
+
+	@Test
+	public void testWriteInsideWindowIsRead() throws Exception {
+		CountingRandomAccessFile raf = openWith("aaaa\nbbbb\n");
+		Assert.assertEquals("aaaa", raf.readLine());
+		raf.write("cccc".getBytes("ISO-8859-1"));
+		raf.seek(0);
+		Assert.assertEquals("aaaa", raf.readLine());
+		Assert.assertEquals("cccc", raf.readLine());
+		raf.seek(0);
+		raf.write('x');
+		raf.seek(0);
+		Assert.assertEquals("xaaa", raf.readLine());
+		raf.close();
+	}
+
+	@Test(expected = EOFException.class)
+	public void testReadIntPastEnd() throws Exception {
+		CountingRandomAccessFile raf = openWith("ab");
+		try {
+			raf.readInt();
+		} finally {
+			raf.close();
+		}
+	}
+
+}
@@ -1,11 +1,15 @@
 package edu.sdsc.jargon.unittest.testsuites;
 
 import org.irods.jargon.core.pub.io.RemoteExecutionBinaryResultInputStreamTest;
+import org.irods.jargon.core.pub.io.TarInputStreamTest;
+import org.irods.jargon.core.pub.io.TarOutputStreamTest;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
-@Suite.SuiteClasses({ RemoteExecutionBinaryResultInputStreamTest.class })
+@Suite.SuiteClasses({ RemoteExecutionBinaryResultInputStreamTest.class,
+		TarOutputStreamTest.class,
+		TarInputStreamTest.class })
 public class IOTests {
 
 }
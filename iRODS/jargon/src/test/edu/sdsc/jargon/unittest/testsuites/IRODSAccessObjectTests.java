@@ -8,6 +8,7 @@ import org.irods.jargon.core.accessobject.FileCatalogObjectAOImplTest;
 import org.irods.jargon.core.accessobject.IRODSAccessObjectFactoryImplTest;
 import org.irods.jargon.core.accessobject.IRODSGenQueryExecutorImplTest;
 import org.irods.jargon.core.accessobject.RemoteExecutionOfCommandsAOImplTest;
+import org.irods.jargon.core.pub.domain.CollectionSnapshotTest;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
@@ -15,7 +16,8 @@ import org.junit.runners.Suite;
 @Suite.SuiteClasses({ IRODSAccessObjectFactoryImplTest.class,
 		IRODSGenQueryExecutorImplTest.class,
 		RemoteExecutionOfCommandsAOImplTest.class,
-		BulkFileOperationsAOImplTest.class, FileCatalogObjectAOImplTest.class })
+		BulkFileOperationsAOImplTest.class, FileCatalogObjectAOImplTest.class,
+		CollectionSnapshotTest.class })
 public class IRODSAccessObjectTests {
 
 }
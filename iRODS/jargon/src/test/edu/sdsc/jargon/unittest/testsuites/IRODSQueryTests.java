@@ -7,9 +7,12 @@ import org.irods.jargon.core.query.AVUQueryElementTest;
 import org.irods.jargon.core.query.ExtensibleMetaDataMappingTest;
 import org.irods.jargon.core.query.ExtensibleMetadataPropertiesSourceTest;
 import org.irods.jargon.core.query.GenQueryClassicMidLevelServiceTest;
+import org.irods.jargon.core.query.IRODSPreparedQueryTest;
+import org.irods.jargon.core.query.IRODSQueryColumnarResultSetTest;
 import org.irods.jargon.core.query.IRODSQueryResultRowTest;
 import org.irods.jargon.core.query.IRODSQueryTest;
 import org.irods.jargon.core.query.IRODSQueryTranslatorTest;
+import org.irods.jargon.core.query.QueryPartitionTest;
 import org.irods.jargon.core.query.SelectFieldTest;
 import org.irods.jargon.core.query.TranslatedIRODSQueryTest;
 import org.junit.runner.RunWith;
@@ -27,7 +30,10 @@ import org.junit.runners.Suite;
   GenQueryClassicMidLevelServiceTest.class,
   IRODSQueryResultRowTest.class,
   IRODSQueryTest.class,
-  IRODSQueryTranslatorTest.class
+  IRODSQueryTranslatorTest.class,
+  IRODSQueryColumnarResultSetTest.class,
+  IRODSPreparedQueryTest.class,
+  QueryPartitionTest.class
   
 })
 public class IRODSQueryTests {
@@ -13,12 +13,17 @@ import edu.sdsc.grid.io.irods.DomainTest;
 import edu.sdsc.grid.io.irods.IRODSAccountTest;
 import edu.sdsc.grid.io.irods.IRODSAdminTest;
 import edu.sdsc.grid.io.irods.IRODSAvuTest;
+import edu.sdsc.grid.io.irods.IRODSBlockCacheTest;
+import edu.sdsc.grid.io.irods.IRODSBulkDownloaderTest;
+import edu.sdsc.grid.io.irods.IRODSBulkUploaderTest;
+import edu.sdsc.grid.io.irods.IRODSCommandPipelineTest;
 import edu.sdsc.grid.io.irods.IRODSCommandsCopyToTest;
 import edu.sdsc.grid.io.irods.IRODSCommandsDeleteTest;
 import edu.sdsc.grid.io.irods.IRODSCommandsGetTest;
 import edu.sdsc.grid.io.irods.IRODSCommandsMiscTest;
 import edu.sdsc.grid.io.irods.IRODSCommandsPutTest;
 import edu.sdsc.grid.io.irods.IRODSCommandsQueryTest;
+import edu.sdsc.grid.io.irods.IRODSConnectionPoolTest;
 import edu.sdsc.grid.io.irods.IRODSExecuteCommandsTest;
 import edu.sdsc.grid.io.irods.IRODSFileAVUTest;
 import edu.sdsc.grid.io.irods.IRODSFileCommandsTest;
@@ -35,10 +40,19 @@ import edu.sdsc.grid.io.irods.IRODSExtensibleMetaDataTest;
 import edu.sdsc.grid.io.irods.IRODSMultiThreadGetAndPutTest;
 import edu.sdsc.grid.io.irods.IRODSRandomAccessFileTest;
 import edu.sdsc.grid.io.irods.IRODSResourceQueryTest;
+import edu.sdsc.grid.io.irods.IRODSStatCacheTest;
 import edu.sdsc.grid.io.irods.IRODSThousandFilesTest;
+import edu.sdsc.grid.io.irods.IRODSTreeWalkerTest;
+import edu.sdsc.grid.io.irods.NioSocketChannelTransportTest;
+import edu.sdsc.grid.io.irods.ParallelTransferAutotunerTest;
+import edu.sdsc.grid.io.irods.ParallelTransferEngineTest;
 import edu.sdsc.grid.io.irods.ResourceTest;
 import edu.sdsc.grid.io.irods.RuleTest;
+import edu.sdsc.grid.io.irods.TagParserTest;
+import edu.sdsc.grid.io.irods.TagWriterTest;
+import edu.sdsc.grid.io.irods.TransferJournalTest;
 import edu.sdsc.grid.io.irods.UserTest;
+import edu.sdsc.grid.io.local.LocalRandomAccessFileTest;
 
 /**
  * Test suite for Irods functionality within Jargon libraries
@@ -80,7 +94,21 @@ import edu.sdsc.grid.io.irods.UserTest;
   ExtensibleMetaDataMappingTest.class,
   ExtensibleMetadataPropertiesSourceTest.class,
   IRODSExtensibleMetaDataTest.class,
-  GenUpdateProcessorTest.class
+  GenUpdateProcessorTest.class,
+  IRODSConnectionPoolTest.class,
+  TagParserTest.class,
+  TagWriterTest.class,
+  IRODSCommandPipelineTest.class,
+  NioSocketChannelTransportTest.class,
+  ParallelTransferEngineTest.class,
+  TransferJournalTest.class,
+  ParallelTransferAutotunerTest.class,
+  IRODSBlockCacheTest.class,
+  LocalRandomAccessFileTest.class,
+  IRODSStatCacheTest.class,
+  IRODSTreeWalkerTest.class,
+  IRODSBulkUploaderTest.class,
+  IRODSBulkDownloaderTest.class
   
 })
 public class IRODSTests {
@@ -8,6 +8,7 @@ import edu.sdsc.grid.io.irods.IRODSCommandsBigCopyTest;
 import edu.sdsc.grid.io.irods.IRODSCommandsDeleteBigTest;
 import edu.sdsc.grid.io.irods.IRODSFileInputStreamParallelTest;
 import edu.sdsc.grid.io.irods.IRODSFileOutputStreamParallelTest;
+import edu.sdsc.grid.io.irods.ParallelGetBenchmarkTest;
 
 /**
  * Main test suite to run all Jargon unit tests,including ones that take a while to run
@@ -21,7 +22,8 @@ import edu.sdsc.grid.io.irods.IRODSFileOutputStreamParallelTest;
   IRODSCommandsDeleteBigTest.class, 
   IRODSFileOutputStreamParallelTest.class,
   IRODSFileInputStreamParallelTest.class,
-  IRODSCommandsBigCopyTest.class
+  IRODSCommandsBigCopyTest.class,
+  ParallelGetBenchmarkTest.class
 })
 
 public class LongRunningTests {
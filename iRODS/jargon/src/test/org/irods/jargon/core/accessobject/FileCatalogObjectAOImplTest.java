@@ -6,6 +6,8 @@ import java.util.Properties;
 import junit.framework.Assert;
 
 import org.irods.jargon.core.connection.IRODSServerProperties;
+import org.irods.jargon.core.exception.JargonException;
+import org.irods.jargon.core.pub.domain.CollectionSnapshot;
 import org.irods.jargon.core.remoteexecute.RemoteExecuteServiceImpl;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -351,4 +353,44 @@ public class FileCatalogObjectAOImplTest {
 
 	}
 
+	@Test
+	public void testSnapshotSubtree() throws Exception {
+		String top = testingPropertiesHelper
+				.buildIRODSCollectionAbsolutePathFromTestProperties(
+						testingProperties, IRODS_TEST_SUBDIR_PATH
+								+ "/snapshotSubtree");
+		new IRODSFile(irodsFileSystem, top + "/a/a1").mkdirs();
+		new IRODSFile(irodsFileSystem, top + "/b").mkdirs();
+		new IRODSFile(irodsFileSystem, top + "/f1").createNewFile();
+		new IRODSFile(irodsFileSystem, top + "/a/a1/f2").createNewFile();
+		// shares a prefix with top, and should not be in the snapshot
+		new IRODSFile(irodsFileSystem, top + "Other").mkdirs();
+
+		IRODSAccessObjectFactory accessObjectFactory = IRODSAccessObjectFactoryImpl
+				.instance(irodsFileSystem.getCommands());
+		FileCatalogObjectAO fileCatalogObjectAO = accessObjectFactory
+				.getFileCatalogObjectAO();
+		CollectionSnapshot snapshot = fileCatalogObjectAO
+				.snapshotSubtree(top);
+
+		Assert.assertEquals("should be top, a, a1 and b", 4,
+				snapshot.getCollectionCount());
+		Assert.assertEquals(2, snapshot.getDataObjectCount());
+		Assert.assertNotNull(snapshot.find(top + "/a/a1/f2"));
+		Assert.assertTrue(snapshot.find(top + "/b").isCollection());
+		Assert.assertTrue("modify time not read for a1", snapshot.find(
+				top + "/a/a1").getModifiedSeconds() > 0);
+	}
+
+	@Test(expected = JargonException.class)
+	public void testSnapshotSubtreeMissingCollection() throws Exception {
+		String missing = testingPropertiesHelper
+				.buildIRODSCollectionAbsolutePathFromTestProperties(
+						testingProperties, IRODS_TEST_SUBDIR_PATH
+								+ "/snapshotDoesNotExist");
+		IRODSAccessObjectFactory accessObjectFactory = IRODSAccessObjectFactoryImpl
+				.instance(irodsFileSystem.getCommands());
+		accessObjectFactory.getFileCatalogObjectAO().snapshotSubtree(missing);
+	}
+
 }
@@ -3,19 +3,28 @@
  */
 package org.irods.jargon.core.accessobject;
 
+import java.util.HashSet;
+import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 
 import junit.framework.Assert;
 import junit.framework.TestCase;
 
+import org.irods.jargon.core.connection.IRODSConnectionPoolConfig;
+import org.irods.jargon.core.query.IRODSPreparedQuery;
 import org.irods.jargon.core.query.IRODSQuery;
+import org.irods.jargon.core.query.IRODSQueryResultRow;
 import org.irods.jargon.core.query.IRODSQueryResultSet;
+import org.irods.jargon.core.query.QueryPartition;
+import org.irods.jargon.core.query.QueryPartitionProgress;
 import org.irods.jargon.core.query.RodsGenQueryEnum;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import edu.sdsc.grid.io.irods.IRODSAccount;
+import edu.sdsc.grid.io.irods.IRODSConnectionPool;
 import edu.sdsc.grid.io.irods.IRODSFile;
 import edu.sdsc.grid.io.irods.IRODSFileSystem;
 import edu.sdsc.jargon.testutils.AssertionHelper;
@@ -227,6 +236,75 @@ public class IRODSGenQueryExecutorImplTest {
 		Assert.assertTrue("no results, some expected", resultSet.getResults().size() > 0);
 	}
 
+	@Test
+	public final void testExecuteIRODSQueryAndIterate() throws Exception {
+		String targetIrodsCollection = testingPropertiesHelper
+				.buildIRODSCollectionAbsolutePathFromTestProperties(
+						testingProperties, IRODS_TEST_SUBDIR_PATH + '/'
+								+ collDir);
+		String queryString = "select "
+				+ RodsGenQueryEnum.COL_DATA_NAME.getName() + " where "
+				+ RodsGenQueryEnum.COL_COLL_NAME.getName() + " = '"
+				+ targetIrodsCollection + "'";
+
+		// small pages so that many continuations are read
+		IRODSQuery irodsQuery = IRODSQuery.instance(queryString, 7);
+
+		IRODSAccount irodsAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSFileSystem irodsFileSystem = new IRODSFileSystem(irodsAccount);
+		IRODSAccessObjectFactory accessObjectFactory = IRODSAccessObjectFactoryImpl
+				.instance(irodsFileSystem.getCommands());
+		IRODSGenQueryExecutor irodsGenQueryExecutor = accessObjectFactory
+				.getIRODSGenQueryExcecutor();
+
+		IRODSQueryResultIterator results = irodsGenQueryExecutor
+				.executeIRODSQueryAndIterate(irodsQuery);
+		Set<String> dataNames = new HashSet<String>();
+		for (IRODSQueryResultRow row : results) {
+			Assert.assertTrue("row returned twice", dataNames.add(row
+					.getColumn(0)));
+		}
+		results.close();
+		irodsFileSystem.close();
+
+		Assert.assertEquals("did not iterate all files", 100, dataNames
+				.size());
+	}
+
+	@Test
+	public final void testExecuteIRODSQueryAndIterateCloseEarly()
+			throws Exception {
+		String queryString = "select "
+				+ RodsGenQueryEnum.COL_COLL_NAME.getName() + " ,"
+				+ RodsGenQueryEnum.COL_DATA_NAME.getName();
+
+		IRODSQuery irodsQuery = IRODSQuery.instance(queryString, 10);
+
+		IRODSAccount irodsAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSFileSystem irodsFileSystem = new IRODSFileSystem(irodsAccount);
+		IRODSAccessObjectFactory accessObjectFactory = IRODSAccessObjectFactoryImpl
+				.instance(irodsFileSystem.getCommands());
+		IRODSGenQueryExecutor irodsGenQueryExecutor = accessObjectFactory
+				.getIRODSGenQueryExcecutor();
+
+		IRODSQueryResultIterator results = irodsGenQueryExecutor
+				.executeIRODSQueryAndIterate(irodsQuery);
+		for (int i = 0; i < 15; i++) {
+			Assert.assertNotNull(results.next());
+		}
+		results.close();
+		Assert.assertFalse("closed iterator has next", results.hasNext());
+
+		// the connection is still usable after the query is closed
+		IRODSQueryResultSet resultSet = irodsGenQueryExecutor
+				.executeIRODSQuery(irodsQuery, 0);
+		irodsFileSystem.close();
+		Assert.assertTrue("no results, some expected", resultSet
+				.getResults().size() > 0);
+	}
+
 	public static final void addAVUsToEachFile() throws Exception {
 
 		String avu1Attrib = "avu1";
@@ -270,4 +348,106 @@ public class IRODSGenQueryExecutorImplTest {
 		irodsFileSystem.close();
 	}
 
+	@Test
+	public final void testExecutePreparedIRODSQuery() throws Exception {
+		String targetIrodsCollection = testingPropertiesHelper
+				.buildIRODSCollectionAbsolutePathFromTestProperties(
+						testingProperties, IRODS_TEST_SUBDIR_PATH + '/'
+								+ collDir);
+		String queryString = "select "
+				+ RodsGenQueryEnum.COL_DATA_NAME.getName() + " where "
+				+ RodsGenQueryEnum.COL_COLL_NAME.getName() + " = ?";
+
+		IRODSAccount irodsAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSFileSystem irodsFileSystem = new IRODSFileSystem(irodsAccount);
+		IRODSAccessObjectFactory accessObjectFactory = IRODSAccessObjectFactoryImpl
+				.instance(irodsFileSystem.getCommands());
+		IRODSGenQueryExecutor irodsGenQueryExecutor = accessObjectFactory
+				.getIRODSGenQueryExcecutor();
+
+		IRODSPreparedQuery preparedQuery = irodsGenQueryExecutor
+				.prepareIRODSQuery(IRODSQuery.instance(queryString, 500));
+		IRODSQueryResultSet resultSet = irodsGenQueryExecutor
+				.executePreparedIRODSQuery(preparedQuery, targetIrodsCollection);
+		IRODSQueryResultSet noResults = irodsGenQueryExecutor
+				.executePreparedIRODSQuery(preparedQuery, targetIrodsCollection
+						+ "/notthere");
+		irodsFileSystem.close();
+		Assert.assertEquals(100, resultSet.getResults().size());
+		Assert.assertEquals(0, noResults.getResults().size());
+	}
+
+	@Test
+	public final void testPartitionedQueryScan() throws Exception {
+		String targetIrodsCollection = testingPropertiesHelper
+				.buildIRODSCollectionAbsolutePathFromTestProperties(
+						testingProperties, IRODS_TEST_SUBDIR_PATH + '/'
+								+ collDir);
+		String collectionCondition = " where "
+				+ RodsGenQueryEnum.COL_COLL_NAME.getName() + " = '"
+				+ targetIrodsCollection + "'";
+
+		IRODSAccount irodsAccount = testingPropertiesHelper
+				.buildIRODSAccountFromTestProperties(testingProperties);
+		IRODSFileSystem irodsFileSystem = new IRODSFileSystem(irodsAccount);
+		IRODSGenQueryExecutor irodsGenQueryExecutor = IRODSAccessObjectFactoryImpl
+				.instance(irodsFileSystem.getCommands())
+				.getIRODSGenQueryExcecutor();
+		IRODSQueryResultSet keyRange = irodsGenQueryExecutor.executeIRODSQuery(
+				IRODSQuery.instance("select MIN("
+						+ RodsGenQueryEnum.COL_D_DATA_ID.getName() + "), MAX("
+						+ RodsGenQueryEnum.COL_D_DATA_ID.getName() + ")"
+						+ collectionCondition, 10), 0);
+		irodsFileSystem.close();
+		List<QueryPartition> partitions = QueryPartition.rangePartitions(
+				RodsGenQueryEnum.COL_D_DATA_ID, Long.parseLong(keyRange
+						.getFirstResult().getColumn(0)), Long
+						.parseLong(keyRange.getFirstResult().getColumn(1)), 4);
+
+		IRODSConnectionPoolConfig config = new IRODSConnectionPoolConfig();
+		config.setTimeBetweenEvictionRunsMillis(0);
+		IRODSConnectionPool irodsConnectionPool = IRODSConnectionPool
+				.instance(config);
+		IRODSPartitionedQueryScan scan = IRODSPartitionedQueryScan.instance(
+				irodsConnectionPool, irodsAccount, IRODSQuery.instance("select "
+						+ RodsGenQueryEnum.COL_D_DATA_ID.getName() + ", "
+						+ RodsGenQueryEnum.COL_DATA_NAME.getName()
+						+ collectionCondition, 7), partitions, 2,
+				IRODSPartitionedQueryScan.MergeOrder.PARTITION);
+
+		Set<String> names = new HashSet<String>();
+		int lastPartition = 0;
+		for (IRODSQueryResultRow row : scan) {
+			names.add(row.getColumn(1));
+			long dataId = Long.parseLong(row.getColumn(0));
+			while (!isInPartition(dataId, partitions.get(lastPartition))) {
+				lastPartition++;
+			}
+		}
+		scan.close();
+		List<QueryPartitionProgress> progress = scan.getPartitionProgress();
+		int activeConnections = irodsConnectionPool.getStatistics()
+				.getNumActive();
+		irodsConnectionPool.close();
+
+		Assert.assertEquals(100, names.size());
+		long rowsRead = 0;
+		for (QueryPartitionProgress partitionProgress : progress) {
+			Assert.assertEquals(QueryPartitionProgress.State.DONE,
+					partitionProgress.getState());
+			rowsRead += partitionProgress.getRowsRead();
+		}
+		Assert.assertEquals(100, rowsRead);
+		Assert.assertEquals(0, activeConnections);
+	}
+
+	private boolean isInPartition(final long dataId,
+			final QueryPartition partition) {
+		// conditions are DATA_ID >= 'from' and DATA_ID < 'to'
+		String[] parts = partition.getConditions().split("'");
+		return dataId >= Long.parseLong(parts[1])
+				&& dataId < Long.parseLong(parts[3]);
+	}
+
 }
@@ -80,4 +80,31 @@ public class GenQueryInp_PITest {
 
 	}
 
+	@Test
+	public final void testCloseQueryAsksForNoRows() throws Exception {
+		String queryString = "select "
+				+ RodsGenQueryEnum.COL_D_COLL_ID.getName();
+
+		IRODSServerProperties props = IRODSServerProperties.instance(
+				IRODSServerProperties.IcatEnabled.ICAT_ENABLED, 100, "rods2.2",
+				"d", "zone");
+
+		IRODSQuery irodsQuery = IRODSQuery.instance(queryString, 500);
+		IRODSQueryTranslator irodsQueryTranslator = new IRODSQueryTranslator(
+				props);
+		TranslatedIRODSQuery translatedIRODSQuery = irodsQueryTranslator
+				.getTranslatedQuery(irodsQuery);
+
+		GenQueryInp genQueryInp = GenQueryInp.instanceForCloseQuery(
+				translatedIRODSQuery, 3);
+		Assert.assertEquals(0, genQueryInp.getTagValue().getTag(
+				GenQueryInp.MAX_ROWS).getIntValue());
+		Assert.assertEquals(3, genQueryInp.getTagValue().getTag(
+				GenQueryInp.CONTINUE_INX).getIntValue());
+
+		genQueryInp = GenQueryInp.instance(translatedIRODSQuery, 3);
+		Assert.assertEquals(500, genQueryInp.getTagValue().getTag(
+				GenQueryInp.MAX_ROWS).getIntValue());
+	}
+
 }
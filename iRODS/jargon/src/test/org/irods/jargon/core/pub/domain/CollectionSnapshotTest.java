@@ -0,0 +1,113 @@
+package org.irods.jargon.core.pub.domain;
+
+import junit.framework.Assert;
+
+import org.irods.jargon.core.exception.JargonException;
+import org.junit.Test;
+
+public class CollectionSnapshotTest {
+
+	@Test
+	public void testInstance() throws Exception {
+		CollectionSnapshot snapshot = CollectionSnapshot.instance("/zone/home",
+				100);
+		Assert.assertEquals("/zone/home", snapshot.getRootPath());
+		Assert.assertEquals(1, snapshot.getCollectionCount());
+		Assert.assertEquals(0, snapshot.getDataObjectCount());
+		Assert.assertEquals(100, snapshot.getRoot().getModifiedSeconds());
+		Assert.assertEquals("/zone/home", snapshot.getRoot().getAbsolutePath());
+	}
+
+	@Test
+	public void testInstanceTrailingSlash() throws Exception {
+		CollectionSnapshot snapshot = CollectionSnapshot.instance(
+				"/zone/home/", 0);
+		Assert.assertEquals("/zone/home", snapshot.getRootPath());
+	}
+
+	@Test(expected = JargonException.class)
+	public void testInstanceRelativePath() throws Exception {
+		CollectionSnapshot.instance("zone/home", 0);
+	}
+
+	@Test
+	public void testAddDataObjectMakesCollections() throws Exception {
+		CollectionSnapshot snapshot = CollectionSnapshot.instance("/zone/home",
+				0);
+		CollectionSnapshotNode node = snapshot.addDataObject(
+				"/zone/home/a/b/file.txt", 10, 200);
+		Assert.assertFalse(node.isCollection());
+		Assert.assertEquals("file.txt", node.getName());
+		Assert.assertEquals("/zone/home/a/b/file.txt", node.getAbsolutePath());
+		Assert.assertEquals(10, node.getLength());
+		Assert.assertEquals(200, node.getModifiedSeconds());
+		Assert.assertEquals(3, snapshot.getCollectionCount());
+		Assert.assertEquals(1, snapshot.getDataObjectCount());
+
+		CollectionSnapshotNode b = snapshot.find("/zone/home/a/b");
+		Assert.assertTrue(b.isCollection());
+		Assert.assertEquals(0, b.getModifiedSeconds());
+		Assert.assertSame(b, node.getParent());
+	}
+
+	@Test
+	public void testAddCollectionAfterItsChildrenSetsModifyTime()
+			throws Exception {
+		CollectionSnapshot snapshot = CollectionSnapshot.instance("/zone/home",
+				0);
+		snapshot.addDataObject("/zone/home/a/file.txt", 1, 1);
+		CollectionSnapshotNode a = snapshot.addCollection("/zone/home/a", 300);
+		Assert.assertEquals(300, a.getModifiedSeconds());
+		Assert.assertEquals(1, a.getChildCount());
+		Assert.assertEquals(2, snapshot.getCollectionCount());
+	}
+
+	@Test
+	public void testReplicaCountedOnce() throws Exception {
+		CollectionSnapshot snapshot = CollectionSnapshot.instance("/zone/home",
+				0);
+		snapshot.addDataObject("/zone/home/file.txt", 10, 1);
+		snapshot.addDataObject("/zone/home/file.txt", 10, 1);
+		snapshot.addDataObject("/zone/home/other.txt", 5, 1);
+		Assert.assertEquals(2, snapshot.getDataObjectCount());
+		Assert.assertEquals(15, snapshot.getTotalLength());
+		Assert.assertEquals(2, snapshot.getRoot().getChildren().size());
+	}
+
+	@Test(expected = JargonException.class)
+	public void testAddNotUnderRoot() throws Exception {
+		CollectionSnapshot snapshot = CollectionSnapshot.instance("/zone/home",
+				0);
+		snapshot.addCollection("/zone/homeother", 0);
+	}
+
+	@Test(expected = JargonException.class)
+	public void testAddCollectionOverDataObject() throws Exception {
+		CollectionSnapshot snapshot = CollectionSnapshot.instance("/zone/home",
+				0);
+		snapshot.addDataObject("/zone/home/a", 1, 1);
+		snapshot.addCollection("/zone/home/a/b", 0);
+	}
+
+	@Test
+	public void testFindMissing() throws Exception {
+		CollectionSnapshot snapshot = CollectionSnapshot.instance("/zone/home",
+				0);
+		snapshot.addCollection("/zone/home/a", 0);
+		Assert.assertNull(snapshot.find("/zone/home/b"));
+		Assert.assertNull(snapshot.find("/zone/home/a/c"));
+		Assert.assertNull(snapshot.find("/zone"));
+		Assert.assertSame(snapshot.getRoot(), snapshot.find("/zone/home"));
+	}
+
+	@Test
+	public void testRootOfZone() throws Exception {
+		CollectionSnapshot snapshot = CollectionSnapshot.instance("/", 0);
+		CollectionSnapshotNode node = snapshot.addDataObject("/zone/file.txt",
+				1, 1);
+		Assert.assertEquals("/zone/file.txt", node.getAbsolutePath());
+		Assert.assertSame(node, snapshot.find("/zone/file.txt"));
+		Assert.assertEquals("/zone", node.getParent().getAbsolutePath());
+	}
+
+}
@@ -0,0 +1,127 @@
+package org.irods.jargon.core.pub.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class TarInputStreamTest {
+
+	private static byte[] content(final int length) {
+		byte[] content = new byte[length];
+		for (int i = 0; i < length; i++) {
+			content[i] = (byte) i;
+		}
+		return content;
+	}
+
+	private static byte[] readAll(final TarInputStream tar) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[100];
+		int n;
+		while ((n = tar.read(buffer)) > 0) {
+			bytes.write(buffer, 0, n);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static String longName() {
+		StringBuilder name = new StringBuilder("dir/");
+		for (int i = 0; i < 150; i++) {
+			name.append('y');
+		}
+		return name.append("/file.txt").toString();
+	}
+
+	private static byte[] archive() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		TarOutputStream tar = new TarOutputStream(bytes);
+		tar.putDirectoryEntry("dir", 3000);
+		tar.putNextFileEntry("dir/a.txt", 700, 5000);
+		tar.write(content(700));
+		tar.putNextFileEntry("dir/empty.txt", 0, 0);
+		tar.putNextFileEntry(longName(), 3, 0);
+		tar.write(content(3));
+		tar.close();
+		return bytes.toByteArray();
+	}
+
+	@Test
+	public void testReadArchive() throws Exception {
+		TarInputStream tar = new TarInputStream(new ByteArrayInputStream(
+				archive()));
+
+		TarInputStream.Entry entry = tar.getNextEntry();
+		Assert.assertEquals("dir", entry.getName());
+		Assert.assertTrue(entry.isDirectory());
+		Assert.assertEquals(3000, entry.getLastModified());
+
+		entry = tar.getNextEntry();
+		Assert.assertEquals("dir/a.txt", entry.getName());
+		Assert.assertFalse(entry.isDirectory());
+		Assert.assertEquals(700, entry.getLength());
+		Assert.assertEquals(5000, entry.getLastModified());
+		byte[] read = readAll(tar);
+		Assert.assertEquals(700, read.length);
+		Assert.assertEquals((byte) 699, read[699]);
+
+		entry = tar.getNextEntry();
+		Assert.assertEquals("dir/empty.txt", entry.getName());
+		Assert.assertEquals(-1, tar.read());
+
+		entry = tar.getNextEntry();
+		Assert.assertEquals(longName(), entry.getName());
+		Assert.assertEquals(3, readAll(tar).length);
+
+		Assert.assertNull(tar.getNextEntry());
+		Assert.assertNull(tar.getNextEntry());
+	}
+
+	@Test
+	public void testContentNotReadIsSkipped() throws Exception {
+		TarInputStream tar = new TarInputStream(new ByteArrayInputStream(
+				archive()));
+		tar.getNextEntry();
+		tar.getNextEntry();
+		Assert.assertEquals(0, tar.read());
+		Assert.assertEquals("dir/empty.txt", tar.getNextEntry().getName());
+	}
+
+	@Test
+	public void testDotSlashRemoved() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		TarOutputStream out = new TarOutputStream(bytes);
+		out.putDirectoryEntry("./", 0);
+		out.putNextFileEntry("./sub/file.txt", 0, 0);
+		out.close();
+
+		TarInputStream tar = new TarInputStream(new ByteArrayInputStream(bytes
+				.toByteArray()));
+		Assert.assertEquals("", tar.getNextEntry().getName());
+		Assert.assertEquals("sub/file.txt", tar.getNextEntry().getName());
+	}
+
+	@Test(expected = EOFException.class)
+	public void testArchiveEndsInEntry() throws Exception {
+		byte[] archive = archive();
+		byte[] cut = new byte[TarOutputStream.BLOCK_SIZE * 2 + 100];
+		System.arraycopy(archive, 0, cut, 0, cut.length);
+
+		TarInputStream tar = new TarInputStream(new ByteArrayInputStream(cut));
+		tar.getNextEntry();
+		tar.getNextEntry();
+		readAll(tar);
+	}
+
+	@Test(expected = IOException.class)
+	public void testBadChecksum() throws Exception {
+		byte[] archive = archive();
+		archive[0] = 'x';
+		new TarInputStream(new ByteArrayInputStream(archive)).getNextEntry();
+	}
+
+}
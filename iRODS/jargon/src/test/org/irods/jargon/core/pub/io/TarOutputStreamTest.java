@@ -0,0 +1,143 @@
+package org.irods.jargon.core.pub.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class TarOutputStreamTest {
+
+	private static String field(final byte[] archive, final int offset,
+			final int length) throws Exception {
+		int end = offset;
+		while (end < offset + length && archive[end] != 0) {
+			end++;
+		}
+		return new String(archive, offset, end - offset, "UTF-8");
+	}
+
+	private static long octal(final byte[] archive, final int offset,
+			final int length) throws Exception {
+		return Long.parseLong(field(archive, offset, length).trim(), 8);
+	}
+
+	private static long checksum(final byte[] archive, final int offset) {
+		long sum = 0;
+		for (int i = offset; i < offset + TarOutputStream.BLOCK_SIZE; i++) {
+			sum += (i >= offset + 148 && i < offset + 156) ? ' '
+					: archive[i] & 0xff;
+		}
+		return sum;
+	}
+
+	@Test
+	public void testFileEntry() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		TarOutputStream tar = new TarOutputStream(bytes);
+		tar.putNextFileEntry("dir/file.txt", 5, 2000000);
+		tar.write("hello".getBytes("UTF-8"));
+		tar.closeEntry();
+		tar.close();
+
+		byte[] archive = bytes.toByteArray();
+		Assert.assertEquals(TarOutputStream.archivedLength("dir/file.txt", 5)
+				+ TarOutputStream.trailerLength(), archive.length);
+		Assert.assertEquals(4 * TarOutputStream.BLOCK_SIZE, archive.length);
+		Assert.assertEquals("dir/file.txt", field(archive, 0, 100));
+		Assert.assertEquals(5, octal(archive, 124, 12));
+		Assert.assertEquals(2000, octal(archive, 136, 12));
+		Assert.assertEquals('0', archive[156]);
+		Assert.assertEquals("ustar", field(archive, 257, 6));
+		Assert.assertEquals(checksum(archive, 0), octal(archive, 148, 7));
+		Assert.assertEquals("hello", field(archive, 512, 512));
+	}
+
+	@Test
+	public void testDirectoryEntry() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		TarOutputStream tar = new TarOutputStream(bytes);
+		tar.putDirectoryEntry("dir", 0);
+		tar.finish();
+
+		byte[] archive = bytes.toByteArray();
+		Assert.assertEquals(3 * TarOutputStream.BLOCK_SIZE, archive.length);
+		Assert.assertEquals("dir/", field(archive, 0, 100));
+		Assert.assertEquals('5', archive[156]);
+		Assert.assertEquals(0, octal(archive, 124, 12));
+	}
+
+	@Test
+	public void testNameSplitIntoPrefix() throws Exception {
+		StringBuilder directory = new StringBuilder();
+		for (int i = 0; i < 10; i++) {
+			directory.append("directory").append(i).append('/');
+		}
+		String name = directory.toString() + "file.txt";
+		Assert.assertTrue(name.length() > 100);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		TarOutputStream tar = new TarOutputStream(bytes);
+		tar.putNextFileEntry(name, 0, 0);
+		tar.finish();
+
+		byte[] archive = bytes.toByteArray();
+		Assert.assertEquals(TarOutputStream.archivedLength(name, 0)
+				+ TarOutputStream.trailerLength(), archive.length);
+		Assert.assertEquals(name, field(archive, 345, 155) + "/"
+				+ field(archive, 0, 100));
+		Assert.assertEquals(checksum(archive, 0), octal(archive, 148, 7));
+	}
+
+	@Test
+	public void testLongNameEntry() throws Exception {
+		StringBuilder name = new StringBuilder("dir/");
+		for (int i = 0; i < 120; i++) {
+			name.append('x');
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		TarOutputStream tar = new TarOutputStream(bytes);
+		tar.putNextFileEntry(name.toString(), 1, 0);
+		tar.write('a');
+		tar.finish();
+
+		byte[] archive = bytes.toByteArray();
+		Assert.assertEquals(TarOutputStream.archivedLength(name.toString(), 1)
+				+ TarOutputStream.trailerLength(), archive.length);
+		Assert.assertEquals('L', archive[156]);
+		Assert.assertEquals(name.length() + 1, octal(archive, 124, 12));
+		Assert.assertEquals(name.toString(), field(archive, 512, 512));
+		Assert.assertEquals('0', archive[1024 + 156]);
+		Assert.assertEquals("a", field(archive, 1536, 512));
+	}
+
+	@Test(expected = IOException.class)
+	public void testWritePastEntry() throws Exception {
+		TarOutputStream tar = new TarOutputStream(new ByteArrayOutputStream());
+		tar.putNextFileEntry("file.txt", 2, 0);
+		tar.write(new byte[3]);
+	}
+
+	@Test(expected = IOException.class)
+	public void testEntryShort() throws Exception {
+		TarOutputStream tar = new TarOutputStream(new ByteArrayOutputStream());
+		tar.putNextFileEntry("file.txt", 2, 0);
+		tar.write(1);
+		tar.putNextFileEntry("other.txt", 0, 0);
+	}
+
+	@Test(expected = IOException.class)
+	public void testWriteWithoutEntry() throws Exception {
+		TarOutputStream tar = new TarOutputStream(new ByteArrayOutputStream());
+		tar.write(1);
+	}
+
+	@Test(expected = IOException.class)
+	public void testAbsoluteName() throws Exception {
+		TarOutputStream tar = new TarOutputStream(new ByteArrayOutputStream());
+		tar.putNextFileEntry("/etc/passwd", 0, 0);
+	}
+
+}
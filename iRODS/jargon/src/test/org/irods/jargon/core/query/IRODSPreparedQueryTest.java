@@ -0,0 +1,75 @@
+package org.irods.jargon.core.query;
+
+import junit.framework.Assert;
+
+import org.irods.jargon.core.connection.IRODSServerProperties;
+import org.irods.jargon.core.exception.JargonException;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class IRODSPreparedQueryTest {
+
+	private static IRODSQueryTranslator translator = null;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		IRODSServerProperties props = IRODSServerProperties.instance(
+				IRODSServerProperties.IcatEnabled.ICAT_ENABLED, 100, "rods2.2",
+				"d", "zone");
+		translator = new IRODSQueryTranslator(props);
+	}
+
+	@Test
+	public void testBind() throws Exception {
+		IRODSPreparedQuery prepared = translator.prepareQuery(IRODSQuery
+				.instance("select DATA_NAME where COLL_NAME = ? and DATA_SIZE > '10' and DATA_NAME like ?",
+						100));
+		Assert.assertEquals(2, prepared.getParameterCount());
+
+		TranslatedIRODSQuery bound = prepared.bind("/zone/home", "it's%");
+		Assert.assertEquals(3, bound.getTranslatedQueryConditions().size());
+		TranslatedQueryCondition collection = bound
+				.getTranslatedQueryConditions().get(0);
+		Assert.assertEquals("'/zone/home'", collection.getValue());
+		Assert.assertEquals(RodsGenQueryEnum.COL_COLL_NAME.getName(),
+				collection.getColumnName());
+		Assert.assertEquals("=", collection.getOperator().trim());
+		Assert.assertEquals("'10'", bound.getTranslatedQueryConditions()
+				.get(1).getValue());
+		Assert.assertEquals("'it\\'s%'", bound.getTranslatedQueryConditions()
+				.get(2).getValue());
+		Assert.assertSame(prepared.getTranslatedIRODSQuery().getSelectFields(),
+				bound.getSelectFields());
+
+		// the prepared query is unchanged, and can be bound again
+		Assert.assertEquals("?", prepared.getTranslatedIRODSQuery()
+				.getTranslatedQueryConditions().get(0).getValue().trim());
+		Assert.assertEquals("'/zone/other'", prepared.bind("/zone/other",
+				"x").getTranslatedQueryConditions().get(0).getValue());
+	}
+
+	@Test
+	public void testNoParameters() throws Exception {
+		IRODSPreparedQuery prepared = translator.prepareQuery(IRODSQuery
+				.instance("select DATA_NAME where COLL_NAME = '/zone'", 100));
+		Assert.assertEquals(0, prepared.getParameterCount());
+		Assert.assertEquals("'/zone'", prepared.bind()
+				.getTranslatedQueryConditions().get(0).getValue().trim());
+	}
+
+	@Test(expected = JargonException.class)
+	public void testBindTooFewValues() throws Exception {
+		translator.prepareQuery(
+				IRODSQuery.instance(
+						"select DATA_NAME where COLL_NAME = ? and DATA_NAME = ?",
+						100)).bind("/zone");
+	}
+
+	@Test(expected = JargonException.class)
+	public void testBindNullValue() throws Exception {
+		translator.prepareQuery(
+				IRODSQuery.instance("select DATA_NAME where COLL_NAME = ?",
+						100)).bind((String) null);
+	}
+
+}
@@ -0,0 +1,108 @@
+package org.irods.jargon.core.query;
+
+import java.util.Date;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.irods.jargon.core.connection.IRODSServerProperties;
+import org.irods.jargon.core.exception.JargonException;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class IRODSQueryColumnarResultSetTest {
+
+	private static TranslatedIRODSQuery translatedIRODSQuery = null;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		String queryString = "select "
+				+ RodsGenQueryEnum.COL_DATA_NAME.getName() + " ,"
+				+ RodsGenQueryEnum.COL_DATA_SIZE.getName() + " ,"
+				+ RodsGenQueryEnum.COL_D_MODIFY_TIME.getName();
+		IRODSServerProperties props = IRODSServerProperties.instance(
+				IRODSServerProperties.IcatEnabled.ICAT_ENABLED, 100, "rods2.2",
+				"d", "zone");
+		translatedIRODSQuery = new IRODSQueryTranslator(props)
+				.getTranslatedQuery(IRODSQuery.instance(queryString, 500));
+	}
+
+	private static IRODSQueryColumnarResultSet threeRows(
+			final int continuationIndex) throws Exception {
+		String[][] columns = { { "a.txt", "b.txt", "c.txt" },
+				{ "100", "", "5000000000" },
+				{ "01277151262", "0", "1277151263" } };
+		return IRODSQueryColumnarResultSet.instance(translatedIRODSQuery,
+				columns, 3, continuationIndex);
+	}
+
+	@Test
+	public void testStringAccess() throws Exception {
+		IRODSQueryColumnarResultSet resultSet = threeRows(0);
+		Assert.assertEquals(3, resultSet.getRowCount());
+		Assert.assertEquals(3, resultSet.getNumberOfResultColumns());
+		Assert.assertEquals("b.txt", resultSet.getString(1, 0));
+		Assert.assertEquals(1, resultSet.getColumnIndex(RodsGenQueryEnum.COL_DATA_SIZE
+				.getName()));
+		Assert.assertFalse(resultSet.isHasMoreRecords());
+	}
+
+	@Test
+	public void testTypedAccess() throws Exception {
+		IRODSQueryColumnarResultSet resultSet = threeRows(0);
+		Assert.assertEquals(100L, resultSet.getLong(0, 1));
+		Assert.assertEquals("empty value is zero", 0L, resultSet.getLong(1, 1));
+		Assert.assertEquals(5000000000L, resultSet.getLong(2, 1));
+		Assert.assertEquals(new Date(1277151262000L), resultSet.getDate(0, 2));
+	}
+
+	@Test(expected = JargonException.class)
+	public void testTypedAccessNotANumber() throws Exception {
+		threeRows(0).getLong(0, 0);
+	}
+
+	@Test
+	public void testRowView() throws Exception {
+		IRODSQueryColumnarResultSet resultSet = threeRows(4);
+		Assert.assertTrue(resultSet.isHasMoreRecords());
+		Assert.assertEquals(4, resultSet.getContinuationIndex());
+
+		IRODSQueryColumnarResultSet.RowView row = resultSet.rowView();
+		StringBuffer names = new StringBuffer();
+		long total = 0;
+		do {
+			names.append(row.getColumn(0));
+			total += row.getLong(1);
+		} while (row.next());
+		Assert.assertEquals("a.txtb.txtc.txt", names.toString());
+		Assert.assertEquals(5000000100L, total);
+		Assert.assertEquals(2, row.getRow());
+
+		row.setRow(1);
+		Assert.assertEquals("b.txt", row.getColumn(RodsGenQueryEnum.COL_DATA_NAME
+				.getName()));
+	}
+
+	@Test
+	public void testColumnValues() throws Exception {
+		String[][] columns = { { "a", "b", "unused" } };
+		IRODSQueryColumnarResultSet resultSet = IRODSQueryColumnarResultSet
+				.instance(translatedIRODSQuery, columns, 2, 0);
+		List<String> values = resultSet.getColumnValues(0);
+		Assert.assertEquals(2, values.size());
+		Assert.assertEquals("b", values.get(1));
+	}
+
+	@Test(expected = JargonException.class)
+	public void testRowOutOfRange() throws Exception {
+		threeRows(0).getString(3, 0);
+	}
+
+	@Test(expected = JargonException.class)
+	public void testColumnShorterThanRowCount() throws Exception {
+		String[][] columns = { { "a" } };
+		IRODSQueryColumnarResultSet.instance(translatedIRODSQuery, columns, 2,
+				0);
+	}
+
+}
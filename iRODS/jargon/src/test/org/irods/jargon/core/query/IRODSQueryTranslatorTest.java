@@ -634,4 +634,64 @@ public class IRODSQueryTranslatorTest {
 		TranslatedIRODSQuery translatedQuery = translator
 				.getTranslatedQuery(irodsQuery);
 	}
+
+	@Test
+	public final void testTranslatedQueryIsCached() throws Exception {
+		String query = "select COLL_NAME, DATA_NAME where COLL_NAME = '/zone/a' and DATA_NAME like 'x%'";
+		IRODSServerProperties props = IRODSServerProperties.instance(
+				IRODSServerProperties.IcatEnabled.ICAT_ENABLED, 100, "rods2.2",
+				"d", "zone");
+		IRODSQueryTranslator translator = new IRODSQueryTranslator(props);
+		TranslatedIRODSQuery first = translator.getTranslatedQuery(IRODSQuery
+				.instance(query, 10));
+		IRODSQuery again = IRODSQuery.instance(query, 500);
+		TranslatedIRODSQuery second = new IRODSQueryTranslator(props)
+				.getTranslatedQuery(again);
+		TestCase.assertSame(first.getSelectFields(), second.getSelectFields());
+		TestCase.assertSame(first.getTranslatedQueryConditions(), second
+				.getTranslatedQueryConditions());
+		TestCase.assertSame("query is the one asked for", again, second
+				.getIrodsQuery());
+		TestCase.assertEquals(500, second.getIrodsQuery()
+				.getNumberOfResultsDesired());
+	}
+
+	@Test
+	public final void testTranslatedQueryCachedPerServerVersion()
+			throws Exception {
+		String query = "select COLL_NAME where COLL_NAME = '/zone/b'";
+		TranslatedIRODSQuery first = new IRODSQueryTranslator(
+				IRODSServerProperties.instance(
+						IRODSServerProperties.IcatEnabled.ICAT_ENABLED, 100,
+						"rods2.2", "d", "zone")).getTranslatedQuery(IRODSQuery
+				.instance(query, 10));
+		TranslatedIRODSQuery second = new IRODSQueryTranslator(
+				IRODSServerProperties.instance(
+						IRODSServerProperties.IcatEnabled.ICAT_ENABLED, 100,
+						"rods2.4", "d", "zone")).getTranslatedQuery(IRODSQuery
+				.instance(query, 10));
+		TestCase.assertNotSame(first.getSelectFields(), second
+				.getSelectFields());
+	}
+
+	@Test
+	public final void testTranslatedQueryCacheDisabled() throws Exception {
+		String query = "select COLL_NAME where COLL_NAME = '/zone/c'";
+		IRODSServerProperties props = IRODSServerProperties.instance(
+				IRODSServerProperties.IcatEnabled.ICAT_ENABLED, 100, "rods2.2",
+				"d", "zone");
+		int size = IRODSQueryTranslator.getTranslatedQueryCacheSize();
+		IRODSQueryTranslator.setTranslatedQueryCacheSize(0);
+		try {
+			IRODSQueryTranslator translator = new IRODSQueryTranslator(props);
+			TranslatedIRODSQuery first = translator
+					.getTranslatedQuery(IRODSQuery.instance(query, 10));
+			TranslatedIRODSQuery second = translator
+					.getTranslatedQuery(IRODSQuery.instance(query, 10));
+			TestCase.assertNotSame(first.getSelectFields(), second
+					.getSelectFields());
+		} finally {
+			IRODSQueryTranslator.setTranslatedQueryCacheSize(size);
+		}
+	}
 }
@@ -0,0 +1,82 @@
+package org.irods.jargon.core.query;
+
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.irods.jargon.core.connection.IRODSServerProperties;
+import org.irods.jargon.core.exception.JargonException;
+import org.junit.Test;
+
+public class QueryPartitionTest {
+
+	@Test
+	public void testRangeConditions() throws Exception {
+		QueryPartition partition = QueryPartition.instanceForRange(
+				RodsGenQueryEnum.COL_D_DATA_ID, 10, 20);
+		Assert.assertEquals("DATA_ID >= '10' and DATA_ID < '20'", partition
+				.getConditions());
+	}
+
+	@Test(expected = JargonException.class)
+	public void testEmptyRange() throws Exception {
+		QueryPartition.instanceForRange(RodsGenQueryEnum.COL_D_DATA_ID, 10, 10);
+	}
+
+	@Test
+	public void testPrefixIsQuoted() throws Exception {
+		QueryPartition partition = QueryPartition.instanceForPrefix(
+				RodsGenQueryEnum.COL_COLL_NAME, "/zone/home/o'brien");
+		Assert.assertEquals("COLL_NAME like '/zone/home/o\\'brien%'",
+				partition.getConditions());
+	}
+
+	@Test
+	public void testAddToQuery() throws Exception {
+		QueryPartition partition = QueryPartition.instance("a",
+				"DATA_ID < '5'");
+		Assert.assertEquals("select DATA_NAME where DATA_ID < '5'", partition
+				.addToQuery("select DATA_NAME"));
+		Assert.assertEquals(
+				"select DATA_NAME where COLL_NAME = 'x' and DATA_ID < '5'",
+				partition.addToQuery("select DATA_NAME where COLL_NAME = 'x'"));
+	}
+
+	@Test
+	public void testAddedConditionsTranslate() throws Exception {
+		QueryPartition partition = QueryPartition.instanceForRange(
+				RodsGenQueryEnum.COL_D_DATA_ID, 1, 1000);
+		IRODSQueryTranslator translator = new IRODSQueryTranslator(
+				IRODSServerProperties.instance(
+						IRODSServerProperties.IcatEnabled.ICAT_ENABLED, 100,
+						"rods2.2", "d", "zone"));
+		TranslatedIRODSQuery translated = translator
+				.getTranslatedQuery(IRODSQuery.instance(partition
+						.addToQuery("select DATA_NAME where COLL_NAME = 'x'"),
+						100));
+		Assert.assertEquals(3, translated.getTranslatedQueryConditions()
+				.size());
+		Assert.assertEquals("'1000'", translated
+				.getTranslatedQueryConditions().get(2).getValue());
+	}
+
+	@Test
+	public void testRangePartitionsCoverKeys() throws Exception {
+		List<QueryPartition> partitions = QueryPartition.rangePartitions(
+				RodsGenQueryEnum.COL_D_DATA_ID, 10, 20, 4);
+		Assert.assertEquals(4, partitions.size());
+		// 11 keys, the first three ranges take the remainder
+		Assert.assertEquals("DATA_ID >= '10' and DATA_ID < '13'", partitions
+				.get(0).getConditions());
+		Assert.assertEquals("DATA_ID >= '19' and DATA_ID < '21'", partitions
+				.get(3).getConditions());
+	}
+
+	@Test
+	public void testRangePartitionsFewerKeysThanCount() throws Exception {
+		List<QueryPartition> partitions = QueryPartition.rangePartitions(
+				RodsGenQueryEnum.COL_D_DATA_ID, 5, 6, 10);
+		Assert.assertEquals(2, partitions.size());
+	}
+
+}